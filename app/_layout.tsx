@@ -1,8 +1,10 @@
-import { StyleSheet, Text, View, ActivityIndicator } from 'react-native'
+import { StyleSheet, Text, View, ActivityIndicator, InteractionManager, Platform } from 'react-native'
 import React, { useEffect, useState } from 'react'
 import { Stack } from 'expo-router'
 import { AuthProvider } from '@/contexts/authContext'
 import * as SplashScreen from 'expo-splash-screen'
+import { samsungHealthService } from '@/utils/samsungHealthData'
+import { realCardioAIService } from '@/services/ai/realCardioAI'
 
 // Keep the splash screen visible while we fetch resources
 SplashScreen.preventAutoHideAsync();
@@ -12,6 +14,15 @@ const StackLayout = () => {
     // Direkt olarak splash screen'i gizle
     console.log('App initialization completed');
     SplashScreen.hideAsync();
+
+    // Modeller ve bugünün verileri ilk kare çizildikten sonra arka planda hazırlanır
+    const warmUp = InteractionManager.runAfterInteractions(() => {
+      if (Platform.OS === 'android') {
+        samsungHealthService.warmUp().catch(() => {});
+      }
+      realCardioAIService.warmUp();
+    });
+    return () => warmUp.cancel();
   }, []);
 
   return (
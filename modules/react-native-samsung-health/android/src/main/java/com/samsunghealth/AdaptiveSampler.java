@@ -0,0 +1,80 @@
+package com.samsunghealth;
+
+/**
+ * Applies a {@link SamplingPolicy} to one tracked metric: picks the delay before the next
+ * reading from the readings so far and counts what it decided. Not thread-safe; the owning
+ * tracker calls it one reading at a time.
+ */
+final class AdaptiveSampler {
+
+    // Weight of the newest reading in the smoothed level the change threshold is measured from
+    private static final float LEVEL_ALPHA = 0.3f;
+
+    private SamplingPolicy policy;
+    private final long nominalPeriodMillis;
+    private final long startedAt;
+    private long periodMillis;
+    private float level = Float.NaN;
+    private int stableCount;
+
+    private long readings;
+    private long abnormalReadings;
+    private long rapidChanges;
+
+    /** @param nominalPeriodMillis the source's own period; the first delay, within the policy's bounds */
+    AdaptiveSampler(SamplingPolicy policy, long nominalPeriodMillis, long now) {
+        this.nominalPeriodMillis = nominalPeriodMillis;
+        this.startedAt = now;
+        setPolicy(policy);
+    }
+
+    void setPolicy(SamplingPolicy policy) {
+        this.policy = policy;
+        this.periodMillis = clamp(periodMillis > 0 ? periodMillis : nominalPeriodMillis);
+        this.stableCount = 0;
+    }
+
+    SamplingPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Records a reading and returns the period until the next one, ms. */
+    long onReading(float value) {
+        readings++;
+        boolean abnormal = value < policy.low || value > policy.high;
+        boolean rapid = !Float.isNaN(level) && Math.abs(value - level) > policy.changeThreshold;
+        level = Float.isNaN(level) ? value : level + LEVEL_ALPHA * (value - level);
+
+        if (abnormal || rapid) {
+            if (abnormal) {
+                abnormalReadings++;
+            } else {
+                rapidChanges++;
+            }
+            periodMillis = policy.minPeriodMillis;
+            stableCount = 0;
+        } else if (++stableCount >= policy.stableReadings) {
+            periodMillis = clamp((long) Math.ceil(periodMillis * (double) policy.backoffFactor));
+            stableCount = 0;
+        }
+        return periodMillis;
+    }
+
+    long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * [0] current period ms, [1] nominal period ms, [2] readings per minute since start,
+     * [3] readings, [4] abnormal readings, [5] rapid changes.
+     */
+    double[] getStats(long now) {
+        double minutes = Math.max(1, now - startedAt) / 60_000.0;
+        return new double[] {periodMillis, nominalPeriodMillis, readings / minutes, readings,
+            abnormalReadings, rapidChanges};
+    }
+
+    private long clamp(long period) {
+        return Math.max(policy.minPeriodMillis, Math.min(policy.maxPeriodMillis, period));
+    }
+}
@@ -0,0 +1,140 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One streaming condition evaluated by {@link AnomalyDetector} on every value of a stream.
+ *
+ * Kinds:
+ * <ul>
+ *   <li>ABOVE / BELOW: the value crosses a fixed threshold.</li>
+ *   <li>EWMA_DEVIATION: the value is more than {@code threshold} away from an exponentially
+ *       weighted mean of the stream (weight {@code alpha}), i.e. a sudden jump.</li>
+ *   <li>CUSUM_HIGH / CUSUM_LOW: the cumulative sum of deviations beyond {@code slack} from
+ *       {@code target} exceeds {@code threshold}, i.e. a slow drift. A NaN target is learned
+ *       as the stream's own EWMA, so the rule follows the wearer's baseline.</li>
+ * </ul>
+ * A condition must hold on every value for {@code sustainMillis} before the alert is raised;
+ * it is raised once per episode and at most once per {@code cooldownMillis}.
+ */
+public final class AlertRule {
+
+    public enum Kind {
+        ABOVE, BELOW, EWMA_DEVIATION, CUSUM_HIGH, CUSUM_LOW
+    }
+
+    /** Streams the session feeds: the metrics' live readings and HRV of the heart rate window. */
+    public static final String STREAM_HEART_RATE = HealthSession.METRIC_HEART_RATE;
+    public static final String STREAM_SPO2 = HealthSession.METRIC_SPO2;
+    public static final String STREAM_HRV_RMSSD = "hrvRmssd";
+    public static final String STREAM_HRV_SDNN = "hrvSdnn";
+
+    public static final String SEVERITY_INFO = "info";
+    public static final String SEVERITY_WARNING = "warning";
+    public static final String SEVERITY_CRITICAL = "critical";
+
+    // Values a learned baseline or EWMA needs before its rule is evaluated
+    static final int WARMUP_VALUES = 5;
+    private static final long DEFAULT_COOLDOWN_MS = 10 * 60_000;
+
+    final String id;
+    final String stream;
+    final Kind kind;
+    final float threshold;
+    final float alpha;
+    final float target;
+    final float slack;
+    final long sustainMillis;
+    final long cooldownMillis;
+    final String severity;
+
+    public AlertRule(String id, String stream, Kind kind, float threshold, float alpha, float target, float slack,
+                     long sustainMillis, long cooldownMillis, String severity) {
+        if (id == null || stream == null || kind == null || Float.isNaN(threshold)) {
+            throw new IllegalArgumentException("An alert rule needs an id, a stream, a kind and a threshold");
+        }
+        if ((kind == Kind.EWMA_DEVIATION || kind == Kind.CUSUM_HIGH || kind == Kind.CUSUM_LOW)
+                && !(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Rule " + id + ": alpha must be in (0, 1]");
+        }
+        this.id = id;
+        this.stream = stream;
+        this.kind = kind;
+        this.threshold = threshold;
+        this.alpha = alpha;
+        this.target = target;
+        this.slack = Math.max(0, slack);
+        this.sustainMillis = Math.max(0, sustainMillis);
+        this.cooldownMillis = Math.max(0, cooldownMillis);
+        this.severity = severity != null ? severity : SEVERITY_WARNING;
+    }
+
+    public static AlertRule above(String id, String stream, float threshold, long sustainMillis, String severity) {
+        return new AlertRule(id, stream, Kind.ABOVE, threshold, 0, Float.NaN, 0, sustainMillis, DEFAULT_COOLDOWN_MS, severity);
+    }
+
+    public static AlertRule below(String id, String stream, float threshold, long sustainMillis, String severity) {
+        return new AlertRule(id, stream, Kind.BELOW, threshold, 0, Float.NaN, 0, sustainMillis, DEFAULT_COOLDOWN_MS, severity);
+    }
+
+    public static AlertRule ewmaDeviation(String id, String stream, float alpha, float maxDeviation,
+                                          long sustainMillis, String severity) {
+        return new AlertRule(id, stream, Kind.EWMA_DEVIATION, maxDeviation, alpha, Float.NaN, 0,
+            sustainMillis, DEFAULT_COOLDOWN_MS, severity);
+    }
+
+    /** Upward drift; {@code target} NaN to learn the baseline with weight {@code alpha}. */
+    public static AlertRule cusumHigh(String id, String stream, float target, float alpha, float slack,
+                                      float threshold, String severity) {
+        return new AlertRule(id, stream, Kind.CUSUM_HIGH, threshold, alpha, target, slack, 0, DEFAULT_COOLDOWN_MS, severity);
+    }
+
+    /** Downward drift; {@code target} NaN to learn the baseline with weight {@code alpha}. */
+    public static AlertRule cusumLow(String id, String stream, float target, float alpha, float slack,
+                                     float threshold, String severity) {
+        return new AlertRule(id, stream, Kind.CUSUM_LOW, threshold, alpha, target, slack, 0, DEFAULT_COOLDOWN_MS, severity);
+    }
+
+    /**
+     * Heart rate above 120 for a minute or below 40 for 30 s, SpO2 below 90, and heart rate
+     * drifting up from the wearer's own baseline.
+     */
+    public static List<AlertRule> defaults() {
+        List<AlertRule> rules = new ArrayList<>();
+        rules.add(above("highHeartRate", STREAM_HEART_RATE, 120, 60_000, SEVERITY_WARNING));
+        rules.add(below("lowHeartRate", STREAM_HEART_RATE, 40, 30_000, SEVERITY_CRITICAL));
+        rules.add(below("lowSpo2", STREAM_SPO2, 90, 0, SEVERITY_CRITICAL));
+        rules.add(cusumHigh("heartRateRising", STREAM_HEART_RATE, Float.NaN, 0.05f, 5, 60, SEVERITY_WARNING));
+        return rules;
+    }
+
+    public static Kind parseKind(String kind) {
+        try {
+            return Kind.valueOf(kind.toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown alert kind: " + kind);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+}
@@ -0,0 +1,25 @@
+package com.samsunghealth;
+
+import android.os.Trace;
+
+/** {@link HealthMetrics.Tracer} over {@code android.os.Trace}, so timed calls show up in systrace / Perfetto. */
+final class AndroidTracer implements HealthMetrics.Tracer {
+
+    static final AndroidTracer INSTANCE = new AndroidTracer();
+
+    // Section names longer than this are rejected by Trace.beginSection
+    private static final int MAX_SECTION_NAME = 127;
+
+    private AndroidTracer() {
+    }
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name.length() > MAX_SECTION_NAME ? name.substring(0, MAX_SECTION_NAME) : name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+}
@@ -0,0 +1,135 @@
+package com.samsunghealth;
+
+import java.util.List;
+
+/**
+ * Evaluates {@link AlertRule}s incrementally on live streams, so alerts do not depend on JS
+ * (or a server) being awake. Each rule keeps a fixed handful of numbers (an EWMA, a CUSUM
+ * sum, when its condition started), so memory is constant however long a stream runs, and
+ * nothing is reported except alerts being raised and resolved.
+ */
+public final class AnomalyDetector {
+
+    public interface AlertListener {
+        /**
+         * {@code raised} true when the rule's condition has held long enough, false when it
+         * stops holding after a raise. {@code sinceTimestamp} is when the condition started.
+         */
+        void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised);
+    }
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private static final class RuleState {
+        final AlertRule rule;
+        double ewma;
+        long count;
+        double cusum;
+        long since = NONE;
+        boolean raised;
+        long lastRaisedAt = NONE;
+
+        RuleState(AlertRule rule) {
+            this.rule = rule;
+        }
+    }
+
+    private final AlertListener listener;
+    private RuleState[] states = new RuleState[0];
+    private long alertsRaised;
+
+    public AnomalyDetector(AlertListener listener) {
+        this.listener = listener;
+    }
+
+    /** Replaces every rule; streaming state (baselines, open episodes) starts over. */
+    public synchronized void setRules(List<AlertRule> rules) {
+        RuleState[] next = new RuleState[rules.size()];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = new RuleState(rules.get(i));
+        }
+        states = next;
+    }
+
+    public synchronized AlertRule[] getRules() {
+        AlertRule[] rules = new AlertRule[states.length];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = states[i].rule;
+        }
+        return rules;
+    }
+
+    public synchronized long getAlertsRaised() {
+        return alertsRaised;
+    }
+
+    /** Feeds one value of {@code stream} to the rules watching it; values must come in time order. */
+    public synchronized void evaluate(String stream, long timestamp, float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        for (RuleState state : states) {
+            if (state.rule.stream.equals(stream)) {
+                transition(state, timestamp, value, test(state, value));
+            }
+        }
+    }
+
+    private static boolean test(RuleState state, float value) {
+        AlertRule rule = state.rule;
+        boolean condition;
+        switch (rule.kind) {
+            case ABOVE:
+                return value > rule.threshold;
+            case BELOW:
+                return value < rule.threshold;
+            case EWMA_DEVIATION:
+                condition = state.count >= AlertRule.WARMUP_VALUES && Math.abs(value - state.ewma) > rule.threshold;
+                updateEwma(state, value);
+                return condition;
+            default: {
+                boolean learned = Float.isNaN(rule.target);
+                if (learned && state.count < AlertRule.WARMUP_VALUES) {
+                    updateEwma(state, value);
+                    return false;
+                }
+                double baseline = learned ? state.ewma : rule.target;
+                double deviation = rule.kind == AlertRule.Kind.CUSUM_HIGH ? value - baseline : baseline - value;
+                state.cusum = Math.max(0, state.cusum + deviation - rule.slack);
+                condition = state.cusum > rule.threshold;
+                // The baseline must not follow the drift it is meant to detect
+                if (learned && state.cusum == 0) {
+                    updateEwma(state, value);
+                }
+                return condition;
+            }
+        }
+    }
+
+    private static void updateEwma(RuleState state, float value) {
+        state.ewma = state.count == 0 ? value : state.ewma + state.rule.alpha * (value - state.ewma);
+        state.count++;
+    }
+
+    private void transition(RuleState state, long timestamp, float value, boolean condition) {
+        AlertRule rule = state.rule;
+        if (!condition) {
+            if (state.raised) {
+                state.raised = false;
+                listener.onAlert(rule, timestamp, value, state.since, false);
+            }
+            state.since = NONE;
+            return;
+        }
+        if (state.since == NONE) {
+            state.since = timestamp;
+        }
+        if (!state.raised && timestamp - state.since >= rule.sustainMillis
+                && (state.lastRaisedAt == NONE || timestamp - state.lastRaisedAt >= rule.cooldownMillis)) {
+            state.raised = true;
+            state.lastRaisedAt = timestamp;
+            alertsRaised++;
+            listener.onAlert(rule, timestamp, value, state.since, true);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.samsunghealth;
+
+/**
+ * Second-order IIR section in transposed direct form II, RBJ cookbook coefficients. Filters a
+ * sample at a time or a run in place; allocates nothing. Not thread-safe.
+ */
+final class Biquad {
+
+    /** Maximally flat pass band; the Q of the band-pass and high-pass stages unless given. */
+    static final double BUTTERWORTH_Q = 1 / Math.sqrt(2);
+
+    private final float b0;
+    private final float b1;
+    private final float b2;
+    private final float a1;
+    private final float a2;
+    private float z1;
+    private float z2;
+
+    private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+        this.b0 = (float) (b0 / a0);
+        this.b1 = (float) (b1 / a0);
+        this.b2 = (float) (b2 / a0);
+        this.a1 = (float) (a1 / a0);
+        this.a2 = (float) (a2 / a0);
+    }
+
+    static Biquad lowPass(double sampleRate, double cutoff) {
+        double w = omega(sampleRate, cutoff);
+        double alpha = Math.sin(w) / (2 * BUTTERWORTH_Q);
+        double cos = Math.cos(w);
+        return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    static Biquad highPass(double sampleRate, double cutoff) {
+        double w = omega(sampleRate, cutoff);
+        double alpha = Math.sin(w) / (2 * BUTTERWORTH_Q);
+        double cos = Math.cos(w);
+        return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /** Band-stop of width {@code frequency / q} around {@code frequency}, e.g. powerline hum. */
+    static Biquad notch(double sampleRate, double frequency, double q) {
+        double w = omega(sampleRate, frequency);
+        double alpha = Math.sin(w) / (2 * q);
+        double cos = Math.cos(w);
+        return new Biquad(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    private static double omega(double sampleRate, double frequency) {
+        if (frequency <= 0 || frequency >= sampleRate / 2) {
+            throw new IllegalArgumentException("Filter frequency " + frequency + " Hz is outside (0, "
+                + sampleRate / 2 + ") Hz");
+        }
+        return 2 * Math.PI * frequency / sampleRate;
+    }
+
+    float filter(float x) {
+        float y = b0 * x + z1;
+        z1 = b1 * x - a1 * y + z2;
+        z2 = b2 * x - a2 * y;
+        return y;
+    }
+
+    void filter(float[] samples, int offset, int length) {
+        float s1 = z1;
+        float s2 = z2;
+        for (int i = offset; i < offset + length; i++) {
+            float x = samples[i];
+            float y = b0 * x + s1;
+            s1 = b1 * x - a1 * y + s2;
+            s2 = b2 * x - a2 * y;
+            samples[i] = y;
+        }
+        z1 = s1;
+        z2 = s2;
+    }
+
+    void reset() {
+        z1 = 0;
+        z2 = 0;
+    }
+
+    /**
+     * Sets the state a constant input {@code x} would have settled to, so a window that starts
+     * far from zero (e.g. baseline offset into a high-pass) does not begin with a step response.
+     */
+    void prime(float x) {
+        float y = (b0 + b1 + b2) / (1 + a1 + a2) * x;
+        z1 = y - b0 * x;
+        z2 = b2 * x - a2 * y;
+    }
+}
@@ -0,0 +1,337 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces sensor events per stream and hands them to the bridge as one batch.
+ *
+ * A stream flushes when its batch reaches {@code maxBatchSize} or when the oldest pending
+ * event is {@code maxDelayMillis} old, whichever comes first. Pending events are bounded by
+ * {@code maxPending}; once JS falls behind (unacknowledged batches reach {@code maxInFlight},
+ * or the buffer fills between flushes) the stream's {@link OverflowPolicy} decides what to
+ * drop. Acknowledgements are optional: streams only apply in-flight limits after JS has
+ * acknowledged at least one batch, and stop applying them when JS has not acknowledged for
+ * {@link #ACK_TIMEOUT_MILLIS} (e.g. its listener was removed) or the listeners change, until
+ * the next acknowledgement.
+ *
+ * @param <T> event payload, {@code WritableMap} on Android
+ */
+public final class BridgeEventBatcher<T> {
+
+    /** How long a stream waits on JS acknowledgements before it emits regardless. */
+    public static final long ACK_TIMEOUT_MILLIS = 5000;
+
+    public enum OverflowPolicy {
+        /** Discard the oldest pending event to make room. */
+        DROP_OLDEST,
+        /** Discard the incoming event. */
+        DROP_NEWEST,
+        /** Replace the newest pending event; JS only sees the latest reading. */
+        LATEST_ONLY,
+        /** Keep every Nth incoming event while saturated, then fall back to DROP_OLDEST. */
+        DOWNSAMPLE
+    }
+
+    public interface Sink<T> {
+        /** Emits one batch. {@code events} is reused after the call returns. */
+        void emitBatch(String stream, List<T> events, long sequence);
+    }
+
+    public static final class StreamPolicy {
+        final int maxBatchSize;
+        final long maxDelayMillis;
+        final int maxPending;
+        final OverflowPolicy overflow;
+        final int downsampleFactor;
+        final int maxInFlight;
+
+        public StreamPolicy(int maxBatchSize, long maxDelayMillis, int maxPending,
+                            OverflowPolicy overflow, int downsampleFactor, int maxInFlight) {
+            if (maxBatchSize < 1 || maxPending < maxBatchSize) {
+                throw new IllegalArgumentException("maxPending must be >= maxBatchSize >= 1");
+            }
+            this.maxBatchSize = maxBatchSize;
+            this.maxDelayMillis = Math.max(0, maxDelayMillis);
+            this.maxPending = maxPending;
+            this.overflow = overflow;
+            this.downsampleFactor = Math.max(1, downsampleFactor);
+            this.maxInFlight = Math.max(1, maxInFlight);
+        }
+
+        /** Every event is emitted on its own, as soon as it arrives. */
+        public static StreamPolicy immediate() {
+            return new StreamPolicy(1, 0, 64, OverflowPolicy.DROP_OLDEST, 1, 16);
+        }
+    }
+
+    private final class Stream {
+        final String name;
+        volatile StreamPolicy policy;
+
+        List<T> pending = new ArrayList<>();
+        List<T> outgoing = new ArrayList<>();
+        boolean flushScheduled;
+        boolean flushing;
+        long saturatedArrivals;
+
+        long sentSequence;
+        volatile long ackedSequence = -1;
+        // Acknowledgements of batches sent before the last reset are stale
+        long ackFloor;
+        long lastAckNanos;
+
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong emitted = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+
+        final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush(Stream.this);
+            }
+        };
+
+        Stream(String name, StreamPolicy policy) {
+            this.name = name;
+            this.policy = policy;
+        }
+
+        boolean jsBehind() {
+            long acked = ackedSequence;
+            return acked >= 0 && sentSequence - 1 - acked >= policy.maxInFlight;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final Sink<T> sink;
+    private final ConcurrentHashMap<String, Stream> streams = new ConcurrentHashMap<>();
+    private final StreamPolicy defaultPolicy;
+
+    public BridgeEventBatcher(ScheduledExecutorService scheduler, Sink<T> sink, StreamPolicy defaultPolicy) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public void setPolicy(String stream, StreamPolicy policy) {
+        stream(stream).policy = policy;
+    }
+
+    public void submit(String streamName, T event) {
+        Stream stream = stream(streamName);
+        stream.received.incrementAndGet();
+        boolean flushNow;
+        synchronized (stream) {
+            StreamPolicy policy = stream.policy;
+            if (!enqueue(stream, policy, event)) {
+                return;
+            }
+            flushNow = stream.pending.size() >= policy.maxBatchSize && !stream.jsBehind();
+            if (!flushNow && stream.flushScheduled) {
+                return;
+            }
+            stream.flushScheduled = true;
+            if (!flushNow) {
+                scheduler.schedule(stream.flushTask, policy.maxDelayMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        scheduler.execute(stream.flushTask);
+    }
+
+    // Called with the stream lock held; returns false when the event was dropped
+    private boolean enqueue(Stream stream, StreamPolicy policy, T event) {
+        List<T> pending = stream.pending;
+        boolean saturated = pending.size() >= policy.maxPending || stream.jsBehind();
+        if (!saturated) {
+            stream.saturatedArrivals = 0;
+            pending.add(event);
+            return true;
+        }
+
+        switch (policy.overflow) {
+            case DROP_NEWEST:
+                stream.dropped.incrementAndGet();
+                return false;
+            case LATEST_ONLY:
+                if (pending.isEmpty()) {
+                    pending.add(event);
+                } else {
+                    pending.set(pending.size() - 1, event);
+                    stream.dropped.incrementAndGet();
+                }
+                return true;
+            case DOWNSAMPLE:
+                if (stream.saturatedArrivals++ % policy.downsampleFactor != 0) {
+                    stream.dropped.incrementAndGet();
+                    return false;
+                }
+                // The kept sample still needs a free slot
+                addDroppingOldest(stream, policy, event);
+                return true;
+            case DROP_OLDEST:
+            default:
+                addDroppingOldest(stream, policy, event);
+                return true;
+        }
+    }
+
+    private void addDroppingOldest(Stream stream, StreamPolicy policy, T event) {
+        List<T> pending = stream.pending;
+        if (pending.size() >= policy.maxPending) {
+            pending.remove(0);
+            stream.dropped.incrementAndGet();
+        }
+        pending.add(event);
+    }
+
+    public void acknowledge(String streamName, long sequence) {
+        Stream stream = streams.get(streamName);
+        if (stream == null) {
+            return;
+        }
+        boolean resume;
+        synchronized (stream) {
+            if (sequence <= stream.ackedSequence || sequence < stream.ackFloor || sequence >= stream.sentSequence) {
+                return;
+            }
+            boolean wasBehind = stream.jsBehind();
+            stream.ackedSequence = sequence;
+            stream.lastAckNanos = System.nanoTime();
+            // A stalled stream only has its ack-timeout retry scheduled, so resume it now
+            resume = !stream.pending.isEmpty() && (wasBehind || !stream.flushScheduled);
+            if (resume) {
+                stream.flushScheduled = true;
+            }
+        }
+        if (resume) {
+            scheduler.execute(stream.flushTask);
+        }
+    }
+
+    /**
+     * Forgets the in-flight state of {@code streamName}, or of every stream when null, so it
+     * emits without waiting on acknowledgements for batches sent so far. For when JS listeners
+     * are added or removed: batches sent to no listener will never be acknowledged.
+     */
+    public void resetAcknowledgements(String streamName) {
+        if (streamName == null) {
+            for (Stream stream : streams.values()) {
+                resetAcknowledgements(stream);
+            }
+            return;
+        }
+        Stream stream = streams.get(streamName);
+        if (stream != null) {
+            resetAcknowledgements(stream);
+        }
+    }
+
+    private void resetAcknowledgements(Stream stream) {
+        boolean resume;
+        synchronized (stream) {
+            boolean wasBehind = stream.jsBehind();
+            stream.ackedSequence = -1;
+            stream.ackFloor = stream.sentSequence;
+            resume = !stream.pending.isEmpty() && (wasBehind || !stream.flushScheduled);
+            if (resume) {
+                stream.flushScheduled = true;
+            }
+        }
+        if (resume) {
+            scheduler.execute(stream.flushTask);
+        }
+    }
+
+    /** Emits everything pending on every stream, e.g. before the module shuts down. */
+    public void flushAll() {
+        for (Stream stream : streams.values()) {
+            flush(stream);
+        }
+    }
+
+    private void flush(Stream stream) {
+        List<T> batch;
+        long sequence;
+        synchronized (stream) {
+            stream.flushScheduled = false;
+            if (stream.flushing || stream.pending.isEmpty()) {
+                return;
+            }
+            if (stream.jsBehind()) {
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stream.lastAckNanos);
+                if (waitedMillis < ACK_TIMEOUT_MILLIS) {
+                    // The next acknowledgement resumes the stream; this retry only covers JS going quiet.
+                    // Meanwhile the overflow policy bounds what accumulates.
+                    stream.flushScheduled = true;
+                    scheduler.schedule(stream.flushTask, ACK_TIMEOUT_MILLIS - waitedMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                // JS stopped acknowledging; send without in-flight limits until it acknowledges again
+                stream.ackedSequence = -1;
+                stream.ackFloor = stream.sentSequence;
+            }
+            batch = stream.pending;
+            stream.pending = stream.outgoing;
+            stream.outgoing = batch;
+            stream.flushing = true;
+            sequence = stream.sentSequence++;
+        }
+
+        try {
+            sink.emitBatch(stream.name, batch, sequence);
+            stream.batches.incrementAndGet();
+            stream.emitted.addAndGet(batch.size());
+        } finally {
+            batch.clear();
+            synchronized (stream) {
+                stream.flushing = false;
+                // Events that arrived while this batch was on its way get their own flush
+                if (!stream.pending.isEmpty() && !stream.flushScheduled) {
+                    stream.flushScheduled = true;
+                    scheduler.schedule(stream.flushTask, stream.policy.maxDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private Stream stream(String name) {
+        Stream stream = streams.get(name);
+        if (stream == null) {
+            Stream created = new Stream(name, defaultPolicy);
+            stream = streams.putIfAbsent(name, created);
+            if (stream == null) {
+                stream = created;
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Per-stream counters as {@code [received, emitted, coalesced, dropped, batches, pending]}.
+     * Coalesced counts events that reached JS inside another event's bridge call.
+     */
+    public Map<String, long[]> getStats() {
+        Map<String, long[]> stats = new LinkedHashMap<>();
+        for (Stream stream : streams.values()) {
+            long emitted = stream.emitted.get();
+            long batches = stream.batches.get();
+            int pending;
+            synchronized (stream) {
+                pending = stream.pending.size();
+            }
+            stats.put(stream.name, new long[] {
+                stream.received.get(), emitted, emitted - batches, stream.dropped.get(), batches, pending
+            });
+        }
+        return stats;
+    }
+}
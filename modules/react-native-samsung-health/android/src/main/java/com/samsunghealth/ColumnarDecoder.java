@@ -0,0 +1,168 @@
+package com.samsunghealth;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads payloads written by {@link ColumnarEncoder}, e.g. batches uploaded by devices.
+ *
+ * The header and column directory are validated up front; column data is only decoded when
+ * asked for, straight from the payload buffer. Malformed payloads raise
+ * {@link IllegalArgumentException}.
+ */
+public final class ColumnarDecoder {
+
+    private static final class Column {
+        final byte type;
+        final int offset;
+        final int byteLength;
+
+        Column(byte type, int offset, int byteLength) {
+            this.type = type;
+            this.offset = offset;
+            this.byteLength = byteLength;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    public ColumnarDecoder(byte[] payload, int offset, int length) {
+        this(ByteBuffer.wrap(payload, offset, length).slice());
+    }
+
+    public ColumnarDecoder(ByteBuffer payload) {
+        buffer = payload.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt(buffer.position()) != ColumnarEncoder.MAGIC) {
+            throw new IllegalArgumentException("Not a columnar payload");
+        }
+        int base = buffer.position();
+        int version = buffer.getShort(base + 4) & 0xFFFF;
+        if (version != ColumnarEncoder.VERSION) {
+            throw new IllegalArgumentException("Unsupported columnar version " + version);
+        }
+        int columnCount = buffer.getShort(base + 6) & 0xFFFF;
+        rowCount = buffer.getInt(base + 8);
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Negative row count");
+        }
+
+        int position = 12;
+        int limit = buffer.limit() - base;
+        for (int c = 0; c < columnCount; c++) {
+            require(position + 2 <= limit);
+            byte type = buffer.get(base + position);
+            int nameLength = buffer.get(base + position + 1) & 0xFF;
+            position += 2;
+            require(position + nameLength <= limit);
+            byte[] name = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                name[i] = buffer.get(base + position + i);
+            }
+            position += nameLength;
+            while ((position + 4) % 8 != 0) {
+                position++;
+            }
+            require(position + 4 <= limit);
+            int byteLength = buffer.getInt(base + position);
+            position += 4;
+            require(byteLength >= 0 && byteLength <= limit - position);
+            checkLength(type, byteLength);
+            columns.put(new String(name, StandardCharsets.UTF_8), new Column(type, base + position, byteLength));
+            position += byteLength;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    /** Column names in payload order. */
+    public Iterable<String> getColumnNames() {
+        return columns.keySet();
+    }
+
+    /**
+     * Appends rows to {@code out}: timestamps from {@code timestampColumn} (delta encoded) and
+     * values from {@code valueColumn}, any numeric type, narrowed to float.
+     */
+    public void readSeries(String timestampColumn, String valueColumn, SeriesSlice out) {
+        Column timestamps = column(timestampColumn);
+        Column values = column(valueColumn);
+        if (timestamps.type != ColumnarEncoder.TYPE_TIMESTAMP_DELTA) {
+            throw new IllegalArgumentException("Column " + timestampColumn + " is not a timestamp column");
+        }
+        out.ensureCapacity(out.size() + rowCount);
+
+        int position = timestamps.offset;
+        int end = timestamps.offset + timestamps.byteLength;
+        long previous = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= end || shift > 63) {
+                    throw new IllegalArgumentException("Truncated timestamp column");
+                }
+                b = buffer.get(position++);
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            out.add(previous, valueAt(values, row));
+        }
+    }
+
+    private float valueAt(Column column, int row) {
+        switch (column.type) {
+            case ColumnarEncoder.TYPE_INT32:
+                return buffer.getInt(column.offset + row * 4);
+            case ColumnarEncoder.TYPE_FLOAT32:
+                return buffer.getFloat(column.offset + row * 4);
+            case ColumnarEncoder.TYPE_FLOAT64:
+                return (float) buffer.getDouble(column.offset + row * 8);
+            default:
+                throw new IllegalArgumentException("Column type " + column.type + " is not numeric");
+        }
+    }
+
+    private Column column(String name) {
+        Column column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Missing column " + name);
+        }
+        return column;
+    }
+
+    private void checkLength(byte type, int byteLength) {
+        switch (type) {
+            case ColumnarEncoder.TYPE_INT32:
+            case ColumnarEncoder.TYPE_FLOAT32:
+                require(byteLength == (long) rowCount * 4);
+                break;
+            case ColumnarEncoder.TYPE_FLOAT64:
+                require(byteLength == (long) rowCount * 8);
+                break;
+            case ColumnarEncoder.TYPE_TIMESTAMP_DELTA:
+                require(byteLength >= rowCount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown column type " + type);
+        }
+    }
+
+    private static void require(boolean condition) {
+        if (!condition) {
+            throw new IllegalArgumentException("Malformed columnar payload");
+        }
+    }
+}
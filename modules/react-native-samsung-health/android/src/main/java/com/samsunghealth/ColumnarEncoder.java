@@ -0,0 +1,164 @@
+package com.samsunghealth;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Packs parallel primitive columns into one little-endian blob for the bridge, so bulk results
+ * cross as a single base64 string instead of one {@code WritableMap} per row.
+ *
+ * Layout (decoded by {@code decodeColumnarPayload} in utils/samsungHealthData.ts):
+ * <pre>
+ *   u32 magic "MDCB", u16 version, u16 columnCount, u32 rowCount
+ *   per column: u8 type, u8 nameLength, name (UTF-8), pad to 8, u32 byteLength, data
+ * </pre>
+ * Column data starts on an 8-byte boundary so JS can view fixed-width columns as typed arrays
+ * without copying. Timestamp columns are zigzag varint deltas from zero; they shrink a
+ * minute-spaced series from 8 bytes to 3-4 bytes per row.
+ */
+public final class ColumnarEncoder {
+
+    public static final int MAGIC = 0x4243444D; // "MDCB" read little-endian
+    public static final int VERSION = 1;
+
+    public static final byte TYPE_TIMESTAMP_DELTA = 1;
+    public static final byte TYPE_INT32 = 2;
+    public static final byte TYPE_FLOAT32 = 3;
+    public static final byte TYPE_FLOAT64 = 4;
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private ByteBuffer buffer;
+    private int columnCount;
+    private int rowCount = -1;
+
+    public ColumnarEncoder() {
+        this(4096);
+    }
+
+    public ColumnarEncoder(int initialCapacity) {
+        buffer = ByteBuffer.allocate(Math.max(64, initialCapacity)).order(ByteOrder.LITTLE_ENDIAN);
+        reset();
+    }
+
+    /** Starts a new payload, keeping the buffer. */
+    public ColumnarEncoder reset() {
+        buffer.clear();
+        buffer.position(12); // header is written by finish()
+        columnCount = 0;
+        rowCount = -1;
+        return this;
+    }
+
+    public ColumnarEncoder addTimestamps(String name, long[] timestamps, int count) {
+        int lengthPosition = beginColumn(TYPE_TIMESTAMP_DELTA, name, count, (long) count * MAX_VARINT_BYTES);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = timestamps[i] - previous;
+            previous = timestamps[i];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            buffer.put((byte) zigzag);
+        }
+        endColumn(lengthPosition);
+        return this;
+    }
+
+    /** Values rounded to the nearest integer, for metrics like steps or BPM. */
+    public ColumnarEncoder addRoundedInts(String name, float[] values, int count) {
+        int lengthPosition = beginColumn(TYPE_INT32, name, count, (long) count * 4);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(Math.round(values[i]));
+        }
+        endColumn(lengthPosition);
+        return this;
+    }
+
+    public ColumnarEncoder addInts(String name, int[] values, int count) {
+        int lengthPosition = beginColumn(TYPE_INT32, name, count, (long) count * 4);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(values[i]);
+        }
+        endColumn(lengthPosition);
+        return this;
+    }
+
+    public ColumnarEncoder addFloats(String name, float[] values, int count) {
+        int lengthPosition = beginColumn(TYPE_FLOAT32, name, count, (long) count * 4);
+        for (int i = 0; i < count; i++) {
+            buffer.putFloat(values[i]);
+        }
+        endColumn(lengthPosition);
+        return this;
+    }
+
+    public ColumnarEncoder addDoubles(String name, double[] values, int count) {
+        int lengthPosition = beginColumn(TYPE_FLOAT64, name, count, (long) count * 8);
+        for (int i = 0; i < count; i++) {
+            buffer.putDouble(values[i]);
+        }
+        endColumn(lengthPosition);
+        return this;
+    }
+
+    /** Writes the header and returns the payload bytes. */
+    public byte[] finish() {
+        int length = buffer.position();
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, (short) VERSION);
+        buffer.putShort(6, (short) columnCount);
+        buffer.putInt(8, Math.max(0, rowCount));
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    public String finishBase64() {
+        return Base64.getEncoder().encodeToString(finish());
+    }
+
+    private int beginColumn(byte type, String name, int count, long maxDataBytes) {
+        if (rowCount >= 0 && count != rowCount) {
+            throw new IllegalArgumentException("Column " + name + " has " + count + " rows, expected " + rowCount);
+        }
+        rowCount = count;
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 255) {
+            throw new IllegalArgumentException("Column name too long: " + name);
+        }
+        ensureRemaining(2 + nameBytes.length + 7 + 4 + 8 + maxDataBytes);
+        buffer.put(type);
+        buffer.put((byte) nameBytes.length);
+        buffer.put(nameBytes);
+        while ((buffer.position() + 4) % 8 != 0) {
+            buffer.put((byte) 0);
+        }
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        columnCount++;
+        return lengthPosition;
+    }
+
+    private void endColumn(int lengthPosition) {
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    private void ensureRemaining(long bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        long required = buffer.position() + bytes;
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Columnar payload too large");
+        }
+        int capacity = (int) Math.max(required, Math.min(Integer.MAX_VALUE - 8, buffer.capacity() * 2L));
+        ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
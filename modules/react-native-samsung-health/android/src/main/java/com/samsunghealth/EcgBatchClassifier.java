@@ -0,0 +1,309 @@
+package com.samsunghealth;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies whole recordings (thousands of beat windows, e.g. a Holter day) off the live path.
+ *
+ * A batch is laid out as one contiguous float array, windows back to back, and split into
+ * ranges on a work-stealing {@link ForkJoinPool}: ranges halve until they are a few
+ * {@link EcgClassifier#BATCH_BLOCK}s long, so idle workers steal the other halves and a slow
+ * core never holds up the rest. Each worker thread has its own engine ({@link EcgClassifier#copy()})
+ * over the shared read-only weights, and runs its range through
+ * {@link EcgClassifier#classifyBatch}, which reads each dense kernel row once per block.
+ *
+ * A {@link Job} can be cancelled at any time; workers stop at the next block.
+ */
+public final class EcgBatchClassifier implements Closeable {
+
+    public interface Callback {
+        /** Called once on a pool thread when the job finishes, fails or is cancelled. */
+        void onDone(Job job);
+    }
+
+    // Smallest range a worker takes on before it stops splitting
+    private static final int LEAF_WINDOWS = 4 * EcgClassifier.BATCH_BLOCK;
+
+    public static final class Job {
+        final float[] windows;
+        final int count;
+        final float[] probabilities;
+        final int[] classes;
+        private final Callback callback;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long startedNanos = System.nanoTime();
+        private volatile long finishedNanos;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        Job(float[] windows, int count, int classCount, Callback callback) {
+            this.windows = windows;
+            this.count = count;
+            this.probabilities = new float[count * classCount];
+            this.classes = new int[count];
+            this.callback = callback;
+        }
+
+        /** Stops the job at the next block; {@link #await()} then throws. */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /** Windows classified so far, for progress reporting. */
+        public int getCompleted() {
+            return completed.get();
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        /** Predicted class per window; complete once the job is done and not cancelled. */
+        public int[] getClasses() {
+            return classes;
+        }
+
+        /** Softmax probabilities, {@code classCount} per window. */
+        public float[] getProbabilities() {
+            return probabilities;
+        }
+
+        public long getElapsedNanos() {
+            return (isDone() ? finishedNanos : System.nanoTime()) - startedNanos;
+        }
+
+        /** Blocks until the job is done; returns the classes. */
+        public int[] await() throws InterruptedException {
+            done.await();
+            if (error != null) {
+                throw new IllegalStateException("ECG batch failed: " + error.getMessage(), error);
+            }
+            if (cancelled) {
+                throw new CancellationException("ECG batch cancelled");
+            }
+            return classes;
+        }
+
+        void finish(Throwable failure) {
+            error = failure;
+            finishedNanos = System.nanoTime();
+            done.countDown();
+            if (callback != null) {
+                callback.onDone(this);
+            }
+        }
+    }
+
+    private final EcgClassifier prototype;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<EcgClassifier> engines;
+    private final Set<Job> running = Collections.newSetFromMap(new ConcurrentHashMap<Job, Boolean>());
+
+    public EcgBatchClassifier(final EcgClassifier prototype, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.prototype = prototype;
+        this.pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("ecg-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, null, false);
+        this.engines = new ThreadLocal<EcgClassifier>() {
+            @Override
+            protected EcgClassifier initialValue() {
+                return prototype.copy();
+            }
+        };
+    }
+
+    /** A pool sized to the device's big cores; see {@link #bigCoreCount()}. */
+    public EcgBatchClassifier(EcgClassifier prototype) {
+        this(prototype, bigCoreCount());
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getInputLength() {
+        return prototype.getInputLength();
+    }
+
+    public int getClassCount() {
+        return prototype.getClassCount();
+    }
+
+    public String getClassName(int index) {
+        return prototype.getClassName(index);
+    }
+
+    /** Copies {@code windows} into one contiguous batch and submits it. */
+    public Job submit(float[][] windows, Callback callback) {
+        final int n = prototype.getInputLength();
+        float[] contiguous = new float[windows.length * n];
+        for (int i = 0; i < windows.length; i++) {
+            if (windows[i].length != n) {
+                throw new IllegalArgumentException("Window " + i + " has " + windows[i].length + " samples, need " + n);
+            }
+            System.arraycopy(windows[i], 0, contiguous, i * n, n);
+        }
+        return submit(contiguous, windows.length, callback);
+    }
+
+    /** Submits {@code count} windows already laid out back to back in {@code windows}. */
+    public Job submit(float[] windows, int count, Callback callback) {
+        if ((long) count * prototype.getInputLength() > windows.length) {
+            throw new IllegalArgumentException("Batch of " + count + " windows needs "
+                + count * prototype.getInputLength() + " samples, got " + windows.length);
+        }
+        final Job job = new Job(windows, count, prototype.getClassCount(), callback);
+        running.add(job);
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                Throwable failure = null;
+                try {
+                    new Range(job, 0, job.count).compute();
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    running.remove(job);
+                    job.finish(failure);
+                }
+            }
+        });
+        return job;
+    }
+
+    /** Classifies {@code windows} and blocks for the result: one predicted class per window. */
+    public int[] classifyBatch(float[][] windows) throws InterruptedException {
+        return submit(windows, null).await();
+    }
+
+    public void cancelAll() {
+        for (Job job : running) {
+            job.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        pool.shutdown();
+    }
+
+    private final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        Range(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.cancelled) {
+                return;
+            }
+            if (to - from > LEAF_WINDOWS) {
+                // Split on a block boundary so every leaf but the last runs full blocks
+                int middle = from + ((to - from) / 2 + EcgClassifier.BATCH_BLOCK - 1)
+                    / EcgClassifier.BATCH_BLOCK * EcgClassifier.BATCH_BLOCK;
+                invokeAll(new Range(job, from, middle), new Range(job, middle, to));
+                return;
+            }
+            EcgClassifier engine = engines.get();
+            for (int start = from; start < to; start += EcgClassifier.BATCH_BLOCK) {
+                if (job.cancelled) {
+                    return;
+                }
+                int block = Math.min(EcgClassifier.BATCH_BLOCK, to - start);
+                engine.classifyBatch(job.windows, start, block, job.probabilities, job.classes);
+                job.completed.addAndGet(block);
+            }
+        }
+    }
+
+    /**
+     * Cores of the fastest cluster(s): on big.LITTLE phones the little cores would only slow a
+     * work-stealing batch down at the tail, so CPUs whose maximum frequency is the lowest on
+     * the device are left out. Homogeneous devices, and ones whose cpufreq is unreadable, use
+     * every available processor.
+     */
+    public static int bigCoreCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long[] maxFrequency = new long[processors];
+        long slowest = Long.MAX_VALUE;
+        long fastest = 0;
+        for (int cpu = 0; cpu < processors; cpu++) {
+            maxFrequency[cpu] = readLong(new File("/sys/devices/system/cpu/cpu" + cpu + "/cpufreq/cpuinfo_max_freq"));
+            if (maxFrequency[cpu] <= 0) {
+                return processors;
+            }
+            slowest = Math.min(slowest, maxFrequency[cpu]);
+            fastest = Math.max(fastest, maxFrequency[cpu]);
+        }
+        if (fastest == slowest) {
+            return processors;
+        }
+        int big = 0;
+        for (long frequency : maxFrequency) {
+            if (frequency > slowest) {
+                big++;
+            }
+        }
+        return Math.max(1, big);
+    }
+
+    private static long readLong(File file) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line = reader.readLine();
+                return line != null ? Long.parseLong(line.trim()) : -1;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
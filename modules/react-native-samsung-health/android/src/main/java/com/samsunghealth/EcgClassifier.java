@@ -0,0 +1,46 @@
+package com.samsunghealth;
+
+/**
+ * A beat classifier {@link HealthSession} can stream ECG through: the float model
+ * ({@link EcgInferenceEngine}) or its int8 quantization ({@link QuantizedEcgEngine}).
+ * Implementations keep scratch state and are not thread-safe; {@link #copy()} makes another
+ * engine over the same read-only weights for another thread.
+ */
+public interface EcgClassifier {
+
+    /** Windows {@link #classifyBatch} pushes through the dense layers together. */
+    int BATCH_BLOCK = 16;
+
+    int getInputLength();
+
+    int getClassCount();
+
+    String getClassName(int index);
+
+    /** A new engine sharing this one's weights, with its own scratch buffers. */
+    EcgClassifier copy();
+
+    /**
+     * Applies the model's input normalization (the weights file's scaler, or a per-window
+     * z-score without one) to the window at {@code offset}, in place. {@link #classify} does
+     * this itself; this is for callers that need the model's actual input.
+     */
+    void normalize(float[] window, int offset);
+
+    /**
+     * Classifies one beat window of {@link #getInputLength()} raw samples starting at
+     * {@code offset}, writing softmax probabilities into {@code probabilities}.
+     *
+     * @return index of the most likely class
+     */
+    int classify(float[] signal, int offset, float[] probabilities);
+
+    /**
+     * Classifies windows {@code first .. first + count - 1} of {@code windows}, which holds
+     * windows of {@link #getInputLength()} samples back to back. Window i's probabilities go
+     * to {@code probabilities[i * classCount ..]} and its class to {@code classes[i]}. Gives
+     * the same results as {@link #classify} per window, but reads each dense kernel row once
+     * per {@link #BATCH_BLOCK} windows instead of once per window.
+     */
+    void classifyBatch(float[] windows, int first, int count, float[] probabilities, int[] classes);
+}
@@ -0,0 +1,306 @@
+package com.samsunghealth;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Native port of the Conv1D -> ReLU -> MaxPool (x3) -> Dense -> Dense -> Softmax pipeline
+ * that services/ai/ecgAI.ts runs in JS.
+ *
+ * All activations live in scratch buffers allocated once per engine, so {@link #classify}
+ * does not allocate. An engine is not thread-safe; the weights it reads are, so create one
+ * engine per thread over a shared {@link EcgModelWeights}.
+ */
+public final class EcgInferenceEngine implements EcgClassifier {
+
+    private final EcgModelWeights weights;
+
+    private final float[] input;
+    private final float[] convScratch;
+    private final float[] pingBuffer;
+    private final float[] pongBuffer;
+    private final float[] hiddenBuffer;
+    private final float[] logits;
+    // Flattened conv features and hidden activations of one batch block, allocated on first use
+    private float[] batchFeatures;
+    private float[] batchHidden;
+
+    public EcgInferenceEngine(EcgModelWeights weights) {
+        this.weights = weights;
+        this.input = new float[weights.inputLength];
+
+        int maxConv = 0;
+        int maxPooled = 0;
+        int length = weights.inputLength;
+        for (EcgModelWeights.Conv1dLayer layer : weights.convLayers) {
+            int convLength = length - layer.kernelSize + 1;
+            int pooled = EcgModelWeights.pooledLength(convLength, weights.poolSize);
+            maxConv = Math.max(maxConv, convLength * layer.outChannels);
+            maxPooled = Math.max(maxPooled, pooled * layer.outChannels);
+            length = pooled;
+        }
+        this.convScratch = new float[maxConv];
+        this.pingBuffer = new float[maxPooled];
+        this.pongBuffer = new float[maxPooled];
+        this.hiddenBuffer = new float[weights.hidden.outputs];
+        this.logits = new float[weights.output.outputs];
+    }
+
+    public EcgModelWeights getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int getInputLength() {
+        return weights.inputLength;
+    }
+
+    @Override
+    public int getClassCount() {
+        return weights.getClassCount();
+    }
+
+    @Override
+    public String getClassName(int index) {
+        return weights.getClassName(index);
+    }
+
+    @Override
+    public EcgInferenceEngine copy() {
+        return new EcgInferenceEngine(weights);
+    }
+
+    @Override
+    public void normalize(float[] window, int offset) {
+        normalize(weights.inputLength, weights.scalerMean, weights.scalerScale, window, offset, window, offset);
+    }
+
+    @Override
+    public int classify(float[] signal, int offset, float[] probabilities) {
+        if (signal.length - offset < weights.inputLength) {
+            throw new IllegalArgumentException("ECG window needs " + weights.inputLength + " samples");
+        }
+        if (probabilities.length < logits.length) {
+            throw new IllegalArgumentException("Probability buffer needs " + logits.length + " slots");
+        }
+
+        float[] features = convFeatures(signal, offset);
+        denseLayer(features, weights.hidden, hiddenBuffer, true);
+        denseLayer(hiddenBuffer, weights.output, logits, false);
+        return softmax(logits, probabilities, 0);
+    }
+
+    @Override
+    public void classifyBatch(float[] windows, int first, int count, float[] probabilities, int[] classes) {
+        final int n = weights.inputLength;
+        final int classCount = logits.length;
+        if ((long) (first + count) * n > windows.length) {
+            throw new IllegalArgumentException("Batch needs " + (first + count) * n + " samples");
+        }
+        if ((long) (first + count) * classCount > probabilities.length || first + count > classes.length) {
+            throw new IllegalArgumentException("Result buffers need room for " + (first + count) + " windows");
+        }
+        final int flattened = weights.hidden.inputs;
+        final int hiddenSize = weights.hidden.outputs;
+        if (batchFeatures == null) {
+            batchFeatures = new float[BATCH_BLOCK * flattened];
+            batchHidden = new float[BATCH_BLOCK * hiddenSize];
+        }
+
+        for (int start = first; start < first + count; start += BATCH_BLOCK) {
+            int block = Math.min(BATCH_BLOCK, first + count - start);
+            for (int b = 0; b < block; b++) {
+                System.arraycopy(convFeatures(windows, (start + b) * n), 0, batchFeatures, b * flattened, flattened);
+            }
+            denseBlock(batchFeatures, block, weights.hidden, batchHidden);
+            for (int b = 0; b < block; b++) {
+                System.arraycopy(batchHidden, b * hiddenSize, hiddenBuffer, 0, hiddenSize);
+                denseLayer(hiddenBuffer, weights.output, logits, false);
+                classes[start + b] = softmax(logits, probabilities, (start + b) * classCount);
+            }
+        }
+    }
+
+    // Normalization and the Conv1D/MaxPool stages; returns the buffer holding the flattened features
+    private float[] convFeatures(float[] signal, int offset) {
+        normalize(weights.inputLength, weights.scalerMean, weights.scalerScale, signal, offset, input, 0);
+
+        float[] current = input;
+        int length = weights.inputLength;
+        float[] target = pingBuffer;
+        for (EcgModelWeights.Conv1dLayer layer : weights.convLayers) {
+            int convLength = conv1dRelu(current, length, layer, convScratch);
+            length = maxPool(convScratch, convLength, layer.outChannels, weights.poolSize, target);
+            current = target;
+            target = target == pingBuffer ? pongBuffer : pingBuffer;
+        }
+        return current;
+    }
+
+    // Same scaler semantics as ecgAI.ts::normalizeSignal; without a scaler, per-window z-score. Safe in place.
+    static void normalize(int n, FloatBuffer mean, FloatBuffer scale, float[] signal, int offset,
+                          float[] out, int outOffset) {
+        if (mean != null && scale != null) {
+            int meanLength = mean.capacity();
+            int scaleLength = scale.capacity();
+            for (int i = 0; i < n; i++) {
+                out[outOffset + i] = (signal[offset + i] - mean.get(i % meanLength)) / scale.get(i % scaleLength);
+            }
+            return;
+        }
+
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += signal[offset + i];
+        }
+        double average = sum / n;
+        double squares = 0;
+        for (int i = 0; i < n; i++) {
+            double d = signal[offset + i] - average;
+            squares += d * d;
+        }
+        double std = Math.sqrt(squares / n);
+        float inv = (float) (1.0 / (std == 0 ? 1 : std));
+        for (int i = 0; i < n; i++) {
+            out[outOffset + i] = (float) (signal[offset + i] - average) * inv;
+        }
+    }
+
+    /** Valid-padding Conv1D with fused ReLU over a [length][inChannels] buffer. */
+    static int conv1dRelu(float[] in, int length, EcgModelWeights.Conv1dLayer layer, float[] out) {
+        final int k = layer.kernelSize;
+        final int inC = layer.inChannels;
+        final int outC = layer.outChannels;
+        final FloatBuffer kernel = layer.kernel;
+        final FloatBuffer bias = layer.bias;
+        final int outLength = length - k + 1;
+
+        for (int t = 0; t < outLength; t++) {
+            final int outBase = t * outC;
+            for (int o = 0; o < outC; o++) {
+                out[outBase + o] = bias.get(o);
+            }
+            for (int j = 0; j < k; j++) {
+                final int inBase = (t + j) * inC;
+                final int kernelBase = j * inC * outC;
+                for (int c = 0; c < inC; c++) {
+                    final float x = in[inBase + c];
+                    if (x == 0f) {
+                        continue;
+                    }
+                    final int row = kernelBase + c * outC;
+                    for (int o = 0; o < outC; o++) {
+                        out[outBase + o] += x * kernel.get(row + o);
+                    }
+                }
+            }
+            for (int o = 0; o < outC; o++) {
+                if (out[outBase + o] < 0f) {
+                    out[outBase + o] = 0f;
+                }
+            }
+        }
+        return outLength;
+    }
+
+    static int maxPool(float[] in, int length, int channels, int poolSize, float[] out) {
+        int outLength = EcgModelWeights.pooledLength(length, poolSize);
+        for (int p = 0; p < outLength; p++) {
+            int start = p * poolSize;
+            int end = Math.min(start + poolSize, length);
+            int outBase = p * channels;
+            System.arraycopy(in, start * channels, out, outBase, channels);
+            for (int t = start + 1; t < end; t++) {
+                int inBase = t * channels;
+                for (int c = 0; c < channels; c++) {
+                    float v = in[inBase + c];
+                    if (v > out[outBase + c]) {
+                        out[outBase + c] = v;
+                    }
+                }
+            }
+        }
+        return outLength;
+    }
+
+    static void denseLayer(float[] in, EcgModelWeights.DenseLayer layer, float[] out, boolean relu) {
+        final int outputs = layer.outputs;
+        final FloatBuffer kernel = layer.kernel;
+        final FloatBuffer bias = layer.bias;
+        for (int o = 0; o < outputs; o++) {
+            out[o] = bias.get(o);
+        }
+        for (int i = 0; i < layer.inputs; i++) {
+            final float x = in[i];
+            if (x == 0f) {
+                continue;
+            }
+            final int row = i * outputs;
+            for (int o = 0; o < outputs; o++) {
+                out[o] += x * kernel.get(row + o);
+            }
+        }
+        if (relu) {
+            for (int o = 0; o < outputs; o++) {
+                if (out[o] < 0f) {
+                    out[o] = 0f;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dense layer with fused ReLU over {@code block} input rows: each kernel row is read once
+     * and applied to every row of the block while it is hot.
+     */
+    static void denseBlock(float[] in, int block, EcgModelWeights.DenseLayer layer, float[] out) {
+        final int inputs = layer.inputs;
+        final int outputs = layer.outputs;
+        final FloatBuffer kernel = layer.kernel;
+        final FloatBuffer bias = layer.bias;
+        for (int b = 0; b < block; b++) {
+            for (int o = 0; o < outputs; o++) {
+                out[b * outputs + o] = bias.get(o);
+            }
+        }
+        for (int i = 0; i < inputs; i++) {
+            final int row = i * outputs;
+            for (int b = 0; b < block; b++) {
+                final float x = in[b * inputs + i];
+                if (x == 0f) {
+                    continue;
+                }
+                final int outBase = b * outputs;
+                for (int o = 0; o < outputs; o++) {
+                    out[outBase + o] += x * kernel.get(row + o);
+                }
+            }
+        }
+        for (int j = 0; j < block * outputs; j++) {
+            if (out[j] < 0f) {
+                out[j] = 0f;
+            }
+        }
+    }
+
+    /** Softmax of {@code logits} into {@code probabilities} from {@code offset}; returns the arg max. */
+    static int softmax(float[] logits, float[] probabilities, int offset) {
+        int best = 0;
+        float max = logits[0];
+        for (int i = 1; i < logits.length; i++) {
+            if (logits[i] > max) {
+                max = logits[i];
+                best = i;
+            }
+        }
+        double sum = 0;
+        for (int i = 0; i < logits.length; i++) {
+            double e = Math.exp(logits[i] - max);
+            probabilities[offset + i] = (float) e;
+            sum += e;
+        }
+        for (int i = 0; i < logits.length; i++) {
+            probabilities[offset + i] = (float) (probabilities[offset + i] / sum);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,242 @@
+package com.samsunghealth;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable weights of the EKG CNN described by ai-models/ekg_weights.json.
+ *
+ * Layout follows Keras: conv kernels are [kernelSize][inChannels][outChannels] and dense
+ * kernels are [inputs][outputs], both flattened row-major. Layers hold read-only
+ * {@link FloatBuffer}s so the same engine runs over heap arrays parsed from JSON or over a
+ * memory-mapped {@link MappedWeightFile} without copying. Instances are shared read-only
+ * between {@link EcgInferenceEngine}s.
+ */
+public final class EcgModelWeights {
+
+    static final String[] CONV_LAYERS = {"conv1d", "conv1d_1", "conv1d_2"};
+    static final String HIDDEN_DENSE_LAYER = "dense";
+    static final String OUTPUT_DENSE_LAYER = "dense_1";
+
+    public static final class Conv1dLayer {
+        public final int kernelSize;
+        public final int inChannels;
+        public final int outChannels;
+        final FloatBuffer kernel;
+        final FloatBuffer bias;
+
+        Conv1dLayer(int kernelSize, int inChannels, int outChannels, FloatBuffer kernel, FloatBuffer bias) {
+            if (kernel.capacity() != kernelSize * inChannels * outChannels || bias.capacity() != outChannels) {
+                throw new IllegalArgumentException("Conv1D weights do not match declared shape");
+            }
+            this.kernelSize = kernelSize;
+            this.inChannels = inChannels;
+            this.outChannels = outChannels;
+            this.kernel = kernel;
+            this.bias = bias;
+        }
+    }
+
+    public static final class DenseLayer {
+        public final int inputs;
+        public final int outputs;
+        final FloatBuffer kernel;
+        final FloatBuffer bias;
+
+        DenseLayer(int inputs, int outputs, FloatBuffer kernel, FloatBuffer bias) {
+            if (kernel.capacity() != inputs * outputs || bias.capacity() != outputs) {
+                throw new IllegalArgumentException("Dense weights do not match declared shape");
+            }
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.kernel = kernel;
+            this.bias = bias;
+        }
+    }
+
+    public final int inputLength;
+    public final int poolSize;
+    final Conv1dLayer[] convLayers;
+    final DenseLayer hidden;
+    final DenseLayer output;
+    final FloatBuffer scalerMean;
+    final FloatBuffer scalerScale;
+    final String[] classNames;
+
+    EcgModelWeights(int inputLength, int poolSize, Conv1dLayer[] convLayers, DenseLayer hidden,
+                    DenseLayer output, FloatBuffer scalerMean, FloatBuffer scalerScale, String[] classNames) {
+        this.inputLength = inputLength;
+        this.poolSize = poolSize;
+        this.convLayers = convLayers;
+        this.hidden = hidden;
+        this.output = output;
+        this.scalerMean = scalerMean;
+        this.scalerScale = scalerScale;
+        this.classNames = classNames;
+        validate();
+    }
+
+    public int getClassCount() {
+        return output.outputs;
+    }
+
+    public String getClassName(int index) {
+        return index >= 0 && index < classNames.length ? classNames[index] : "Unknown";
+    }
+
+    public boolean hasScaler() {
+        return scalerMean != null && scalerScale != null;
+    }
+
+    /** Length of the flattened feature vector after the last Conv1D/MaxPool stage. */
+    int flattenedLength() {
+        int length = inputLength;
+        for (Conv1dLayer layer : convLayers) {
+            length = pooledLength(length - layer.kernelSize + 1, poolSize);
+        }
+        return length * convLayers[convLayers.length - 1].outChannels;
+    }
+
+    // Partial windows are kept, the same way ecgAI.ts pools
+    static int pooledLength(int length, int poolSize) {
+        return (length + poolSize - 1) / poolSize;
+    }
+
+    private void validate() {
+        int channels = 1;
+        for (Conv1dLayer layer : convLayers) {
+            if (layer.inChannels != channels) {
+                throw new IllegalArgumentException("Conv1D input channels do not chain: expected " + channels);
+            }
+            channels = layer.outChannels;
+        }
+        if (hidden.inputs != flattenedLength()) {
+            throw new IllegalArgumentException("Dense input " + hidden.inputs
+                + " does not match flattened length " + flattenedLength());
+        }
+        if (output.inputs != hidden.outputs) {
+            throw new IllegalArgumentException("Output layer does not chain from hidden dense layer");
+        }
+    }
+
+    public static EcgModelWeights fromJson(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")), 64 * 1024);
+        Map<String, Object> root = JsonWeightsReader.readObject(reader);
+
+        Map<String, Object> weights = child(root, "weights");
+        Conv1dLayer[] convs = new Conv1dLayer[CONV_LAYERS.length];
+        for (int i = 0; i < convs.length; i++) {
+            Map<String, Object> layer = child(weights, CONV_LAYERS[i]);
+            JsonWeightsReader.FloatTensor kernel = tensor(layer, "kernel", 3);
+            JsonWeightsReader.FloatTensor bias = tensor(layer, "bias", 1);
+            convs[i] = new Conv1dLayer(kernel.dim(0), kernel.dim(1), kernel.dim(2), wrap(kernel), wrap(bias));
+        }
+        DenseLayer hidden = dense(child(weights, HIDDEN_DENSE_LAYER));
+        DenseLayer output = dense(child(weights, OUTPUT_DENSE_LAYER));
+
+        FloatBuffer mean = null;
+        FloatBuffer scale = null;
+        Object scaler = root.get("scaler");
+        if (scaler instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> scalerMap = (Map<String, Object>) scaler;
+            mean = wrap(tensor(scalerMap, "mean", 1));
+            scale = wrap(tensor(scalerMap, "scale", 1));
+        }
+
+        Map<String, Object> metadata = child(root, "metadata");
+        return new EcgModelWeights(inputLength(metadata), 2, convs, hidden, output, mean, scale,
+            classNames(metadata, output.outputs));
+    }
+
+    /** Builds the model over views of a mapped binary weight file; no weights are copied. */
+    public static EcgModelWeights fromBinary(MappedWeightFile file) throws IOException {
+        Conv1dLayer[] convs = new Conv1dLayer[CONV_LAYERS.length];
+        for (int i = 0; i < convs.length; i++) {
+            MappedWeightFile.Tensor kernel = file.tensor("weights/" + CONV_LAYERS[i] + "/kernel");
+            MappedWeightFile.Tensor bias = file.tensor("weights/" + CONV_LAYERS[i] + "/bias");
+            if (kernel.rank() != 3) {
+                throw new IOException(kernel.name + " has rank " + kernel.rank() + ", expected 3");
+            }
+            convs[i] = new Conv1dLayer(kernel.dim(0), kernel.dim(1), kernel.dim(2),
+                file.floats(kernel), file.floats(bias));
+        }
+        DenseLayer hidden = dense(file, HIDDEN_DENSE_LAYER);
+        DenseLayer output = dense(file, OUTPUT_DENSE_LAYER);
+
+        FloatBuffer mean = null;
+        FloatBuffer scale = null;
+        if (file.has("scaler/mean") && file.has("scaler/scale")) {
+            mean = file.floats("scaler/mean");
+            scale = file.floats("scaler/scale");
+        }
+
+        Map<String, Object> metadata = file.getMetadata();
+        return new EcgModelWeights(inputLength(metadata), 2, convs, hidden, output, mean, scale,
+            classNames(metadata, output.outputs));
+    }
+
+    private static DenseLayer dense(Map<String, Object> layer) throws IOException {
+        JsonWeightsReader.FloatTensor kernel = tensor(layer, "kernel", 2);
+        JsonWeightsReader.FloatTensor bias = tensor(layer, "bias", 1);
+        return new DenseLayer(kernel.dim(0), kernel.dim(1), wrap(kernel), wrap(bias));
+    }
+
+    private static DenseLayer dense(MappedWeightFile file, String layer) throws IOException {
+        MappedWeightFile.Tensor kernel = file.tensor("weights/" + layer + "/kernel");
+        MappedWeightFile.Tensor bias = file.tensor("weights/" + layer + "/bias");
+        if (kernel.rank() != 2) {
+            throw new IOException(kernel.name + " has rank " + kernel.rank() + ", expected 2");
+        }
+        return new DenseLayer(kernel.dim(0), kernel.dim(1), file.floats(kernel), file.floats(bias));
+    }
+
+    static int inputLength(Map<String, Object> metadata) throws IOException {
+        return (int) tensor(metadata, "input_shape", 1).data[0];
+    }
+
+    static String[] classNames(Map<String, Object> metadata, int count) {
+        String[] classNames = new String[count];
+        Object classes = metadata.get("classes");
+        for (int i = 0; i < count; i++) {
+            Object name = classes instanceof Map ? ((Map<?, ?>) classes).get(String.valueOf(i)) : null;
+            classNames[i] = name != null ? name.toString() : "Class " + i;
+        }
+        return classNames;
+    }
+
+    private static FloatBuffer wrap(JsonWeightsReader.FloatTensor tensor) {
+        return FloatBuffer.wrap(tensor.data).asReadOnlyBuffer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> parent, String key) throws IOException {
+        Object value = parent.get(key);
+        if (!(value instanceof Map)) {
+            throw new IOException("Missing '" + key + "' block in EKG weights");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static JsonWeightsReader.FloatTensor tensor(Map<String, Object> parent, String key, int rank)
+            throws IOException {
+        Object value = parent.get(key);
+        if (value instanceof List && ((List<?>) value).isEmpty()) {
+            value = new JsonWeightsReader.FloatTensor(new float[0], new int[] {0});
+        }
+        if (!(value instanceof JsonWeightsReader.FloatTensor)) {
+            throw new IOException("Missing numeric '" + key + "' in EKG weights");
+        }
+        JsonWeightsReader.FloatTensor tensor = (JsonWeightsReader.FloatTensor) value;
+        if (tensor.shape.length != rank) {
+            throw new IOException("'" + key + "' has rank " + tensor.shape.length + ", expected " + rank);
+        }
+        return tensor;
+    }
+}
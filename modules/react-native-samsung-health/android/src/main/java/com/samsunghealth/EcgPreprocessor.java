@@ -0,0 +1,153 @@
+package com.samsunghealth;
+
+/**
+ * Cleans raw ECG for the beat classifier: a high-pass {@link Biquad} against baseline wander,
+ * a notch at the powerline frequency, then {@link PolyphaseResampler polyphase resampling}
+ * to the rate the model was trained at.
+ *
+ * As a {@link EcgStreamPipeline.SampleTap} it filters and resamples every drained run into
+ * its own buffers and hands the result to the next stage (e.g. {@link QrsDetector}), so the
+ * pipeline's window keeps the raw samples. {@link #prepareWindow} does the same for one
+ * finished window and resamples it to a fixed length, optionally normalized with the
+ * model's scaler. Nothing is allocated once the buffers have grown to the longest run.
+ * Not thread-safe, and an instance is either streamed or used for windows, not both.
+ */
+public final class EcgPreprocessor implements EcgStreamPipeline.SampleTap {
+
+    /** Below the slowest heart rates, above respiration-driven baseline drift. */
+    public static final float DEFAULT_HIGH_PASS_HZ = 0.5f;
+    public static final float DEFAULT_NOTCH_HZ = 50f;
+
+    // Narrow enough to leave the QRS complex's 50/60 Hz content mostly alone
+    private static final double NOTCH_Q = 30;
+
+    private final int sampleRate;
+    private final int targetRate;
+    private final Biquad highPass;
+    private final Biquad notch;
+    private final PolyphaseResampler resampler;
+    private final EcgStreamPipeline.SampleTap next;
+
+    private float[] filtered = new float[0];
+    private float[] resampled = new float[0];
+
+    // Window mode: the resampler of the last input/output length pair
+    private PolyphaseResampler windowResampler;
+    private int windowInputLength;
+    private int windowOutputLength;
+
+    /**
+     * @param highPassHz high-pass cutoff, or 0 for none
+     * @param notchHz    powerline frequency to suppress, or 0 for none
+     * @param next       stage receiving the cleaned stream at {@code targetRate}
+     */
+    public EcgPreprocessor(int sampleRate, int targetRate, float highPassHz, float notchHz,
+                           EcgStreamPipeline.SampleTap next) {
+        if (sampleRate <= 0 || targetRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rates " + sampleRate + " -> " + targetRate);
+        }
+        this.sampleRate = sampleRate;
+        this.targetRate = targetRate;
+        this.highPass = highPassHz > 0 ? Biquad.highPass(sampleRate, highPassHz) : null;
+        this.notch = notchHz > 0 ? Biquad.notch(sampleRate, notchHz, NOTCH_Q) : null;
+        this.resampler = sampleRate != targetRate ? new PolyphaseResampler(sampleRate, targetRate) : null;
+        this.next = next;
+    }
+
+    /** For {@link #prepareWindow} only. */
+    public EcgPreprocessor(int sampleRate, float highPassHz, float notchHz) {
+        this(sampleRate, sampleRate, highPassHz, notchHz, null);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    @Override
+    public void onSamples(float[] samples, int offset, int length) {
+        if (next == null) {
+            throw new IllegalStateException("No next stage to stream to");
+        }
+        if (filtered.length < length) {
+            filtered = new float[length];
+        }
+        System.arraycopy(samples, offset, filtered, 0, length);
+        filter(filtered, 0, length);
+        if (resampler == null) {
+            next.onSamples(filtered, 0, length);
+            return;
+        }
+        int capacity = resampler.maxOutputLength(length);
+        if (resampled.length < capacity) {
+            resampled = new float[capacity];
+        }
+        int produced = resampler.process(filtered, 0, length, resampled, 0);
+        if (produced > 0) {
+            next.onSamples(resampled, 0, produced);
+        }
+    }
+
+    /**
+     * Filters {@code length} samples of {@code signal} from {@code offset} in place, from a
+     * settled state, and resamples them to {@code outLength} samples at {@code out[outOffset]},
+     * i.e. from this preprocessor's rate to {@code outLength / length} times it.
+     */
+    public void prepareWindow(float[] signal, int offset, int length, float[] out, int outOffset, int outLength) {
+        if (length < 1 || outLength < 1) {
+            throw new IllegalArgumentException("ECG window needs at least one sample");
+        }
+        if (highPass != null) {
+            highPass.prime(signal[offset]);
+        }
+        if (notch != null) {
+            // The high-pass has removed the offset the notch would otherwise start on
+            notch.prime(highPass != null ? 0 : signal[offset]);
+        }
+        filter(signal, offset, length);
+        if (length == outLength) {
+            System.arraycopy(signal, offset, out, outOffset, length);
+            return;
+        }
+        if (windowResampler == null || windowInputLength != length || windowOutputLength != outLength) {
+            windowResampler = new PolyphaseResampler(length, outLength);
+            windowInputLength = length;
+            windowOutputLength = outLength;
+        }
+        windowResampler.resample(signal, offset, length, out, outOffset);
+    }
+
+    /**
+     * {@link #prepareWindow(float[], int, int, float[], int, int)} to {@code model}'s input
+     * length, then normalized the way {@code model} normalizes its input.
+     */
+    public void prepareWindow(float[] signal, int offset, int length, EcgClassifier model, float[] out, int outOffset) {
+        prepareWindow(signal, offset, length, out, outOffset, model.getInputLength());
+        model.normalize(out, outOffset);
+    }
+
+    /** Clears the filter and resampler state, e.g. between recordings. */
+    public void reset() {
+        if (highPass != null) {
+            highPass.reset();
+        }
+        if (notch != null) {
+            notch.reset();
+        }
+        if (resampler != null) {
+            resampler.reset();
+        }
+    }
+
+    private void filter(float[] samples, int offset, int length) {
+        if (highPass != null) {
+            highPass.filter(samples, offset, length);
+        }
+        if (notch != null) {
+            notch.filter(samples, offset, length);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.samsunghealth;
+
+/**
+ * Producer of raw ECG samples, e.g. the tracker listener or {@link SimulatedEcgSource}.
+ * Writes into the pipeline's ring buffer from its own thread between {@link #start} and
+ * {@link #stop}; a stopped source can be started again.
+ */
+public interface EcgSampleSource {
+
+    int getSampleRate();
+
+    void start(SampleRingBuffer target);
+
+    void stop();
+}
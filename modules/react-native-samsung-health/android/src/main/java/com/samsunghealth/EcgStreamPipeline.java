@@ -0,0 +1,169 @@
+package com.samsunghealth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streaming ECG ingestion stage.
+ *
+ * The sensor listener thread pushes raw samples into a {@link SampleRingBuffer}; a dedicated
+ * consumer thread drains it into a reusable window and hands every full window to the
+ * {@link WindowListener}. An optional {@link SampleTap} sees every sample first, in arrival
+ * order, for per-sample stages such as beat detection. Neither side touches the JS thread or
+ * allocates per sample.
+ */
+public final class EcgStreamPipeline {
+
+    public interface WindowListener {
+        /**
+         * Called on the consumer thread. {@code window} is reused for the next window, so
+         * copy it if it has to outlive the call.
+         */
+        void onWindow(float[] window, long sequence);
+    }
+
+    public interface SampleTap {
+        /** Called on the consumer thread with each drained run of samples, before windowing. */
+        void onSamples(float[] samples, int offset, int length);
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final SampleRingBuffer ring;
+    private final float[] window;
+    private final WindowListener listener;
+    private volatile SampleTap tap;
+
+    private final AtomicLong windowsEmitted = new AtomicLong();
+    private final AtomicLong listenerErrors = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread consumer;
+
+    public EcgStreamPipeline(int ringCapacity, int windowSize, WindowListener listener) {
+        this.ring = new SampleRingBuffer(ringCapacity);
+        this.window = new float[windowSize];
+        this.listener = listener;
+    }
+
+    /** Producer-facing side of the pipeline; only one thread may write to it. */
+    public SampleRingBuffer getRing() {
+        return ring;
+    }
+
+    /** Installs a per-sample stage; set it before {@link #start()}. */
+    public void setSampleTap(SampleTap tap) {
+        this.tap = tap;
+    }
+
+    public int getWindowSize() {
+        return window.length;
+    }
+
+    /**
+     * Starts the consumer thread. If a previous consumer is still finishing (stopped from its
+     * own listener), this waits for it first: the ring has a single reader.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        Thread previous = consumer;
+        if (previous != null && previous != Thread.currentThread()) {
+            awaitExit(previous);
+        }
+        running = true;
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "ecg-window-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Stops the consumer and waits until it has exited, i.e. until the window or tap call in
+     * progress returns, so nothing reads the ring or calls the listener once this returns.
+     * Called from the consumer thread itself it cannot wait; the thread exits after the call.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = consumer;
+        LockSupport.unpark(thread);
+        if (thread != Thread.currentThread()) {
+            awaitExit(thread);
+            consumer = null;
+        }
+    }
+
+    // Joins even if interrupted, since a consumer left running would share the ring; the interrupt is kept
+    private static void awaitExit(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void consume() {
+        int filled = 0;
+        long sequence = 0;
+        while (running) {
+            int read = ring.drain(window, filled, window.length - filled);
+            if (read == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            SampleTap sampleTap = tap;
+            if (sampleTap != null) {
+                try {
+                    sampleTap.onSamples(window, filled, read);
+                } catch (RuntimeException e) {
+                    listenerErrors.incrementAndGet();
+                }
+            }
+            filled += read;
+            if (filled == window.length) {
+                try {
+                    listener.onWindow(window, sequence++);
+                    windowsEmitted.incrementAndGet();
+                } catch (RuntimeException e) {
+                    listenerErrors.incrementAndGet();
+                }
+                filled = 0;
+            }
+        }
+    }
+
+    public long getWindowsEmitted() {
+        return windowsEmitted.get();
+    }
+
+    public long getListenerErrors() {
+        return listenerErrors.get();
+    }
+
+    public long getOverflowCount() {
+        return ring.getOverflowCount();
+    }
+
+    public long getDroppedSamples() {
+        return ring.getDroppedSamples();
+    }
+}
@@ -0,0 +1,203 @@
+package com.samsunghealth;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histograms and counters of the hot paths, keyed by category and name: every
+ * {@code @ReactMethod} ({@link #METHOD}), sensor stream ({@link #STREAM}), bridge emission
+ * ({@link #BRIDGE}) and model inference ({@link #INFERENCE}).
+ *
+ * Timing is a pair of calls around the measured code:
+ * <pre>
+ *   long started = metrics.start(HealthMetrics.METHOD, "getTodayStepsData");
+ *   try { ... } finally { metrics.stop(HealthMetrics.METHOD, "getTodayStepsData", started); }
+ * </pre>
+ * Both are lock-free and allocate nothing once a name has been seen. While disabled,
+ * {@link #start} returns {@link #NOT_TIMED} without reading the clock or the registry and
+ * {@link #stop} returns at once, so instrumented code costs a volatile read.
+ *
+ * With a {@link Tracer} set, every timed call is also a trace section (e.g. Android
+ * {@code Trace}), opened and closed on the calling thread.
+ */
+public final class HealthMetrics {
+
+    public static final String METHOD = "method";
+    public static final String STREAM = "stream";
+    public static final String BRIDGE = "bridge";
+    public static final String INFERENCE = "inference";
+
+    /** Returned by {@link #start} while disabled; {@link #stop} ignores it. */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    public interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    public static final class Timer {
+        final String category;
+        final String name;
+        // Built once, so opening a trace section allocates nothing
+        final String sectionName;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Timer(String category, String name) {
+            this.category = category;
+            this.name = name;
+            this.sectionName = category + ":" + name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Timer>> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile Tracer tracer;
+
+    public HealthMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Null stops tracing. Set it while nothing is being timed, or one section in flight may be
+     * left open or closed twice, which trace viewers shrug off.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public boolean isTracing() {
+        return tracer != null;
+    }
+
+    /** The timer of {@code category}/{@code name}, created on first use. */
+    public Timer timer(String category, String name) {
+        ConcurrentHashMap<String, Timer> byName = timers.get(category);
+        if (byName == null) {
+            ConcurrentHashMap<String, Timer> created = new ConcurrentHashMap<>();
+            byName = timers.putIfAbsent(category, created);
+            if (byName == null) {
+                byName = created;
+            }
+        }
+        Timer timer = byName.get(name);
+        if (timer == null) {
+            Timer created = new Timer(category, name);
+            timer = byName.putIfAbsent(name, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    public long start(String category, String name) {
+        return enabled ? start(timer(category, name)) : NOT_TIMED;
+    }
+
+    public void stop(String category, String name, long started) {
+        if (started != NOT_TIMED) {
+            stop(timer(category, name), started);
+        }
+    }
+
+    /** Opens the timer's trace section and returns the start time, or {@link #NOT_TIMED}. */
+    public long start(Timer timer) {
+        if (!enabled) {
+            return NOT_TIMED;
+        }
+        Tracer current = tracer;
+        if (current != null) {
+            current.beginSection(timer.sectionName);
+        }
+        return System.nanoTime();
+    }
+
+    /** Records the time since {@code started} and closes the section {@link #start} opened. */
+    public void stop(Timer timer, long started) {
+        if (started == NOT_TIMED) {
+            return;
+        }
+        timer.histogram.recordNanos(System.nanoTime() - started);
+        Tracer current = tracer;
+        if (current != null) {
+            current.endSection();
+        }
+    }
+
+    /** The clock {@link #start} reads, for spans that begin on another thread; {@link #NOT_TIMED} while disabled. */
+    public long now() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /** Records a duration measured elsewhere, e.g. a batch job's elapsed time. */
+    public void record(String category, String name, long nanos) {
+        if (enabled) {
+            timer(category, name).histogram.recordNanos(nanos);
+        }
+    }
+
+    public void increment(String name, long delta) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    /** Timers by category, then name, both sorted; the histograms are live. */
+    public Map<String, Map<String, Timer>> getTimers() {
+        Map<String, Map<String, Timer>> snapshot = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentHashMap<String, Timer>> category : timers.entrySet()) {
+            snapshot.put(category.getKey(), new TreeMap<>(category.getValue()));
+        }
+        return snapshot;
+    }
+
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            snapshot.put(counter.getKey(), counter.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /** Clears every histogram and counter; names stay registered. */
+    public void reset() {
+        for (ConcurrentHashMap<String, Timer> byName : timers.values()) {
+            for (Timer timer : byName.values()) {
+                timer.histogram.reset();
+            }
+        }
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+    }
+}
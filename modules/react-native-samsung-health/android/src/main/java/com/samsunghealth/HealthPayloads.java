@@ -0,0 +1,424 @@
+package com.samsunghealth;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shapes every result and event the module sends to JS. Kept free of Android types (see
+ * {@link PayloadWriter}) so the same code runs under the JVM benchmarks.
+ */
+public final class HealthPayloads {
+
+    private static final String STATUS_COMPLETED = "MEASUREMENT_COMPLETED";
+
+    private HealthPayloads() {
+    }
+
+    // --- Historical results: {success, data: [...]} ---
+
+    public static <M, A> M heartRateSamples(PayloadWriter<M, A> w, SeriesSlice samples) {
+        A data = w.createArray();
+        for (int i = 0; i < samples.size(); i++) {
+            M point = w.createMap();
+            w.putDouble(point, "timestamp", samples.timestampAt(i));
+            w.putInt(point, "heartRate", Math.round(samples.valueAt(i)));
+            w.putString(point, "status", STATUS_COMPLETED);
+            w.pushMap(data, point);
+        }
+        return success(w, data);
+    }
+
+    public static <M, A> M stepsSamples(PayloadWriter<M, A> w, SeriesSlice samples) {
+        A data = w.createArray();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        for (int i = 0; i < samples.size(); i++) {
+            long time = samples.timestampAt(i);
+            M point = w.createMap();
+            w.putDouble(point, "timestamp", time);
+            w.putInt(point, "steps", Math.round(samples.valueAt(i)));
+            w.putString(point, "date", dateFormat.format(new Date(time)));
+            w.pushMap(data, point);
+        }
+        return success(w, data);
+    }
+
+    public static <M, A> M sleepSamples(PayloadWriter<M, A> w, SeriesSlice samples) {
+        A data = w.createArray();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        for (int i = 0; i < samples.size(); i++) {
+            long time = samples.timestampAt(i);
+            int sleepDuration = Math.round(samples.valueAt(i));
+            M point = w.createMap();
+            w.putDouble(point, "timestamp", time);
+            w.putInt(point, "sleepDuration", sleepDuration);
+            w.putString(point, "sleepQuality", sleepQuality(sleepDuration));
+            w.putString(point, "date", dateFormat.format(new Date(time)));
+            w.pushMap(data, point);
+        }
+        return success(w, data);
+    }
+
+    public static <M, A> M spo2Samples(PayloadWriter<M, A> w, SeriesSlice samples) {
+        A data = w.createArray();
+        for (int i = 0; i < samples.size(); i++) {
+            M point = w.createMap();
+            w.putDouble(point, "timestamp", samples.timestampAt(i));
+            w.putInt(point, "oxygenSaturation", Math.round(samples.valueAt(i)));
+            w.putString(point, "status", STATUS_COMPLETED);
+            w.pushMap(data, point);
+        }
+        return success(w, data);
+    }
+
+    // --- Today's readings ---
+
+    /** Latest step count of the day: {success, steps, timestamp}. */
+    public static <M, A> M todaySteps(PayloadWriter<M, A> w, SeriesSlice samples) {
+        int last = samples.size() - 1;
+        M result = w.createMap();
+        w.putBoolean(result, "success", true);
+        w.putInt(result, "steps", last >= 0 ? Math.round(samples.valueAt(last)) : 0);
+        w.putDouble(result, "timestamp", last >= 0 ? samples.timestampAt(last) : System.currentTimeMillis());
+        return result;
+    }
+
+    public static <M, A> M todaySpo2Samples(PayloadWriter<M, A> w, SeriesSlice samples) {
+        A data = w.createArray();
+        for (int i = 0; i < samples.size(); i++) {
+            M point = w.createMap();
+            w.putDouble(point, "timestamp", samples.timestampAt(i));
+            w.putInt(point, "spo2", Math.round(samples.valueAt(i)));
+            w.pushMap(data, point);
+        }
+        return success(w, data);
+    }
+
+    public static <M, A> M aggregatedSeries(PayloadWriter<M, A> w, String metric, long resolution,
+                                            RollupBuckets buckets) {
+        A data = w.createArray();
+        for (int i = 0; i < buckets.size(); i++) {
+            M bucket = w.createMap();
+            w.putDouble(bucket, "timestamp", buckets.startAt(i));
+            w.putDouble(bucket, "count", buckets.countAt(i));
+            w.putDouble(bucket, "min", buckets.minAt(i));
+            w.putDouble(bucket, "max", buckets.maxAt(i));
+            w.putDouble(bucket, "mean", buckets.meanAt(i));
+            w.putDouble(bucket, "variance", buckets.varianceAt(i));
+            w.pushMap(data, bucket);
+        }
+        M result = success(w, data);
+        w.putString(result, "metric", metric);
+        w.putDouble(result, "resolution", resolution);
+        return result;
+    }
+
+    /**
+     * Sleep stages or activity bouts overlapping [start, end): {@code data} in time order, open
+     * segments flagged {@code ongoing}, {@code totals} the minutes per label within the range,
+     * and {@code labelledUntil}, after which minutes are not labelled yet.
+     */
+    public static <M, A> M segments(PayloadWriter<M, A> w, String track, List<SegmentationEngine.Segment> segments,
+                                    long start, long end, long labelledUntil) {
+        A data = w.createArray();
+        Map<String, Double> totals = new LinkedHashMap<>();
+        for (SegmentationEngine.Segment segment : segments) {
+            M entry = w.createMap();
+            w.putDouble(entry, "start", segment.getStart());
+            w.putDouble(entry, "end", segment.getEnd());
+            w.putString(entry, "label", segment.getLabel());
+            w.putInt(entry, "minutes", segment.getMinutes());
+            putIfFinite(w, entry, "meanHeartRate", segment.getMeanHeartRate());
+            putIfFinite(w, entry, "meanRmssd", segment.getMeanRmssd());
+            putIfFinite(w, entry, "steps", segment.getSteps());
+            w.putBoolean(entry, "ongoing", segment.isOngoing());
+            w.pushMap(data, entry);
+
+            // Share of the segment's minutes that fall in the range
+            long span = segment.getEnd() - segment.getStart();
+            long inRange = Math.min(end, segment.getEnd()) - Math.max(start, segment.getStart());
+            Double total = totals.get(segment.getLabel());
+            totals.put(segment.getLabel(), (total != null ? total : 0) + (double) segment.getMinutes() * inRange / span);
+        }
+        M totalMap = w.createMap();
+        for (Map.Entry<String, Double> total : totals.entrySet()) {
+            w.putDouble(totalMap, total.getKey(), Math.round(total.getValue() * 10) / 10.0);
+        }
+        M result = success(w, data);
+        w.putString(result, "track", track);
+        w.putMap(result, "totals", totalMap);
+        w.putDouble(result, "labelledUntil", labelledUntil != Long.MIN_VALUE ? labelledUntil : -1);
+        return result;
+    }
+
+    // --- Columnar results (see ColumnarEncoder) ---
+
+    public static <M, A> M columnarSamples(PayloadWriter<M, A> w, String metric, SeriesSlice samples) {
+        String payload = new ColumnarEncoder(16 + samples.size() * 8)
+            .addTimestamps("timestamp", samples.timestamps(), samples.size())
+            .addRoundedInts("value", samples.values(), samples.size())
+            .finishBase64();
+        M result = columnar(w, samples.size(), payload);
+        w.putString(result, "metric", metric);
+        return result;
+    }
+
+    public static <M, A> M columnarBuckets(PayloadWriter<M, A> w, String metric, long resolution,
+                                           RollupBuckets buckets) {
+        int count = buckets.size();
+        long[] timestamps = new long[count];
+        int[] counts = new int[count];
+        float[] min = new float[count];
+        float[] max = new float[count];
+        double[] mean = new double[count];
+        double[] variance = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = buckets.startAt(i);
+            counts[i] = (int) Math.min(Integer.MAX_VALUE, buckets.countAt(i));
+            min[i] = buckets.minAt(i);
+            max[i] = buckets.maxAt(i);
+            mean[i] = buckets.meanAt(i);
+            variance[i] = buckets.varianceAt(i);
+        }
+        String payload = new ColumnarEncoder(64 + count * 40)
+            .addTimestamps("timestamp", timestamps, count)
+            .addInts("count", counts, count)
+            .addFloats("min", min, count)
+            .addFloats("max", max, count)
+            .addDoubles("mean", mean, count)
+            .addDoubles("variance", variance, count)
+            .finishBase64();
+        M result = columnar(w, count, payload);
+        w.putString(result, "metric", metric);
+        w.putDouble(result, "resolution", resolution);
+        return result;
+    }
+
+    /**
+     * A finished {@link EcgBatchClassifier.Job}: predicted class and its probability per window,
+     * plus one probability column per class when {@code includeProbabilities} is set.
+     */
+    public static <M, A> M ecgBatchResult(PayloadWriter<M, A> w, EcgBatchClassifier.Job job,
+                                          EcgBatchClassifier classifier, boolean includeProbabilities) {
+        int count = job.getCount();
+        int classCount = classifier.getClassCount();
+        int[] classes = job.getClasses();
+        float[] probabilities = job.getProbabilities();
+        float[] confidence = new float[count];
+        for (int i = 0; i < count; i++) {
+            confidence[i] = probabilities[i * classCount + classes[i]];
+        }
+        ColumnarEncoder encoder = new ColumnarEncoder(64 + count * (8 + (includeProbabilities ? 4 * classCount : 0)))
+            .addInts("predictedClass", classes, count)
+            .addFloats("confidence", confidence, count);
+        A classNames = w.createArray();
+        float[] column = includeProbabilities ? new float[count] : null;
+        for (int c = 0; c < classCount; c++) {
+            w.pushString(classNames, classifier.getClassName(c));
+            if (includeProbabilities) {
+                for (int i = 0; i < count; i++) {
+                    column[i] = probabilities[i * classCount + c];
+                }
+                encoder.addFloats("probability" + c, column, count);
+            }
+        }
+        M result = columnar(w, count, encoder.finishBase64());
+        w.putArray(result, "classNames", classNames);
+        w.putDouble(result, "elapsedMs", job.getElapsedNanos() / 1e6);
+        w.putInt(result, "parallelism", classifier.getParallelism());
+        return result;
+    }
+
+    // --- Metrics ---
+
+    /**
+     * Snapshot of {@link HealthMetrics}: {@code timers.<category>.<name>} with count and mean /
+     * p50 / p90 / p99 / max in milliseconds, and {@code counters.<name>}.
+     */
+    public static <M, A> M metrics(PayloadWriter<M, A> w, HealthMetrics metrics) {
+        M timers = w.createMap();
+        for (Map.Entry<String, Map<String, HealthMetrics.Timer>> category : metrics.getTimers().entrySet()) {
+            M byName = w.createMap();
+            for (Map.Entry<String, HealthMetrics.Timer> timer : category.getValue().entrySet()) {
+                LatencyHistogram histogram = timer.getValue().getHistogram();
+                long count = histogram.count();
+                if (count == 0) {
+                    continue;
+                }
+                M stats = w.createMap();
+                w.putDouble(stats, "count", count);
+                w.putDouble(stats, "meanMs", histogram.meanMicros() / 1000.0);
+                w.putDouble(stats, "p50Ms", histogram.percentileMicros(0.50) / 1000.0);
+                w.putDouble(stats, "p90Ms", histogram.percentileMicros(0.90) / 1000.0);
+                w.putDouble(stats, "p99Ms", histogram.percentileMicros(0.99) / 1000.0);
+                w.putDouble(stats, "maxMs", histogram.percentileMicros(1.0) / 1000.0);
+                w.putMap(byName, timer.getKey(), stats);
+            }
+            w.putMap(timers, category.getKey(), byName);
+        }
+        M counters = w.createMap();
+        for (Map.Entry<String, Long> counter : metrics.getCounters().entrySet()) {
+            w.putDouble(counters, counter.getKey(), counter.getValue());
+        }
+        M result = w.createMap();
+        w.putBoolean(result, "success", true);
+        w.putBoolean(result, "enabled", metrics.isEnabled());
+        w.putBoolean(result, "tracing", metrics.isTracing());
+        w.putMap(result, "timers", timers);
+        w.putMap(result, "counters", counters);
+        return result;
+    }
+
+    /**
+     * Startup progress: each phase's state, start and duration in ms from the module's
+     * construction, which itself came {@code constructedAfterProcessMs} after process start
+     * (-1 if unknown).
+     */
+    public static <M, A> M readiness(PayloadWriter<M, A> w, StartupTimeline timeline, boolean ready,
+                                     double constructedAfterProcessMs) {
+        A phases = w.createArray();
+        for (StartupTimeline.Phase phase : timeline.getPhases()) {
+            M entry = w.createMap();
+            w.putString(entry, "name", phase.getName());
+            w.putString(entry, "state", phase.getState());
+            w.putDouble(entry, "startMs", phase.getStartMillis());
+            w.putDouble(entry, "durationMs", phase.getDurationMillis());
+            if (phase.getError() != null) {
+                w.putString(entry, "error", phase.getError());
+            }
+            w.pushMap(phases, entry);
+        }
+        M result = w.createMap();
+        w.putBoolean(result, "success", true);
+        w.putBoolean(result, "ready", ready);
+        w.putDouble(result, "progress", timeline.getProgress());
+        w.putDouble(result, "uptimeMs", timeline.elapsedMillis());
+        w.putDouble(result, "constructedAfterProcessMs", constructedAfterProcessMs);
+        w.putArray(result, "phases", phases);
+        return result;
+    }
+
+    // --- Events ---
+
+    /** One heart-rate reading with its IBIs and the HRV of the engine's current window. */
+    public static <M, A> M heartRateEvent(PayloadWriter<M, A> w, long timestamp, int heartRate,
+                                          int[] ibis, int ibiCount, HrvEngine hrvEngine) {
+        M event = w.createMap();
+        w.putDouble(event, "timestamp", timestamp);
+        w.putInt(event, "heartRate", heartRate);
+        w.putString(event, "status", STATUS_COMPLETED);
+
+        A ibiList = w.createArray();
+        for (int i = 0; i < ibiCount; i++) {
+            w.pushInt(ibiList, ibis[i]);
+        }
+        w.putArray(event, "ibiList", ibiList);
+
+        M hrv = w.createMap();
+        w.putInt(hrv, "beats", hrvEngine.getBeatCount());
+        putIfFinite(w, hrv, "meanIbi", hrvEngine.getMeanIbi());
+        putIfFinite(w, hrv, "rmssd", hrvEngine.getRmssd());
+        putIfFinite(w, hrv, "sdnn", hrvEngine.getSdnn());
+        putIfFinite(w, hrv, "pnn50", hrvEngine.getPnn50());
+        putIfFinite(w, hrv, "lfPower", hrvEngine.getLfPower());
+        putIfFinite(w, hrv, "hfPower", hrvEngine.getHfPower());
+        putIfFinite(w, hrv, "lfHfRatio", hrvEngine.getLfHfRatio());
+        w.putMap(event, "hrv", hrv);
+        return event;
+    }
+
+    public static <M, A> M spo2Event(PayloadWriter<M, A> w, long timestamp, int spo2) {
+        M event = w.createMap();
+        w.putDouble(event, "timestamp", timestamp);
+        w.putInt(event, "spo2", spo2);
+        w.putString(event, "status", STATUS_COMPLETED);
+        return event;
+    }
+
+    public static <M, A> M alertEvent(PayloadWriter<M, A> w, AlertRule rule, long timestamp, float value,
+                                      long sinceTimestamp, boolean raised) {
+        M event = w.createMap();
+        w.putString(event, "ruleId", rule.getId());
+        w.putString(event, "stream", rule.getStream());
+        w.putString(event, "kind", rule.getKind().name().toLowerCase(Locale.US));
+        w.putString(event, "severity", rule.getSeverity());
+        w.putString(event, "state", raised ? "raised" : "resolved");
+        w.putDouble(event, "threshold", rule.getThreshold());
+        w.putDouble(event, "value", value);
+        w.putDouble(event, "timestamp", timestamp);
+        w.putDouble(event, "since", sinceTimestamp);
+        return event;
+    }
+
+    /** Classification of one beat; only the class probabilities cross the bridge, not the raw strip. */
+    public static <M, A> M ecgClassification(PayloadWriter<M, A> w, long timestamp, long sequence,
+                                             float rrMillis, float heartRate, float[] probabilities,
+                                             int predictedClass, String className) {
+        M event = w.createMap();
+        w.putDouble(event, "timestamp", timestamp);
+        w.putDouble(event, "sequence", sequence);
+        if (rrMillis > 0) {
+            w.putDouble(event, "rrInterval", rrMillis);
+            w.putDouble(event, "heartRate", heartRate);
+        }
+        A probabilityArray = w.createArray();
+        for (float probability : probabilities) {
+            w.pushDouble(probabilityArray, probability);
+        }
+        w.putString(event, "status", STATUS_COMPLETED);
+        w.putArray(event, "probabilities", probabilityArray);
+        w.putInt(event, "predictedClass", predictedClass);
+        w.putString(event, "className", className);
+        w.putDouble(event, "confidence", probabilities[predictedClass]);
+        return event;
+    }
+
+    /** Envelope of one coalesced batch (see {@link BridgeEventBatcher}). */
+    public static <M, A> M eventBatch(PayloadWriter<M, A> w, List<M> events, long sequence) {
+        A eventArray = w.createArray();
+        for (int i = 0; i < events.size(); i++) {
+            w.pushMap(eventArray, events.get(i));
+        }
+        M batch = w.createMap();
+        w.putArray(batch, "events", eventArray);
+        w.putInt(batch, "count", events.size());
+        w.putDouble(batch, "sequence", sequence);
+        return batch;
+    }
+
+    static String sleepQuality(int sleepDurationMinutes) {
+        if (sleepDurationMinutes < 360) {
+            return "poor";
+        } else if (sleepDurationMinutes < 420) {
+            return "fair";
+        } else if (sleepDurationMinutes < 480) {
+            return "good";
+        }
+        return "excellent";
+    }
+
+    private static <M, A> M success(PayloadWriter<M, A> w, A data) {
+        M result = w.createMap();
+        w.putBoolean(result, "success", true);
+        w.putArray(result, "data", data);
+        return result;
+    }
+
+    private static <M, A> M columnar(PayloadWriter<M, A> w, int count, String payload) {
+        M result = w.createMap();
+        w.putBoolean(result, "success", true);
+        w.putString(result, "format", "columnar");
+        w.putInt(result, "count", count);
+        w.putString(result, "payload", payload);
+        return result;
+    }
+
+    private static <M, A> void putIfFinite(PayloadWriter<M, A> w, M map, String key, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            w.putDouble(map, key, value);
+        }
+    }
+}
@@ -0,0 +1,622 @@
+package com.samsunghealth;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything the native module does for one wearer, without React Native or Android types:
+ * live sensor tracking, the ECG beat pipeline, the local time-series store with its
+ * historical backfill, aggregation, and sleep / activity segmentation of the live streams.
+ * Results come back as primitive columns ({@link SeriesSlice}, {@link RollupBuckets}) and
+ * live data through {@link Listener}; turning either into bridge payloads is the caller's
+ * job (see {@link HealthPayloads}).
+ *
+ * Sessions share a {@link SensorScheduler}, so one JVM can run many of them, e.g. simulated
+ * patients in a load test. Data sources are pluggable per metric; by default every metric is
+ * served by {@link SimulatedSensors} and ECG by {@link SimulatedEcgSource}.
+ */
+public final class HealthSession {
+
+    public static final String METRIC_HEART_RATE = "heartRate";
+    public static final String METRIC_STEPS = "steps";
+    public static final String METRIC_SLEEP = "sleep";
+    public static final String METRIC_SPO2 = "spo2";
+
+    /** Bucket limit when {@link #aggregate} picks the resolution itself. */
+    public static final int MAX_AUTO_BUCKETS = 1440;
+
+    public interface Listener {
+        /**
+         * A live reading, already stored. {@code hrv} includes the reading's beat intervals;
+         * it is locked for the duration of the call and must not be kept.
+         */
+        void onReading(String metric, SensorReading reading, HrvEngine hrv);
+
+        /** One classified beat; {@code probabilities} is reused after the call returns. */
+        void onEcgBeat(long timestamp, long sequence, float rrMillis, float heartRate,
+                       float[] probabilities, int predictedClass, String className);
+
+        void onEcgError(long timestamp, long sequence, Exception error);
+
+        /** An alert rule raised or resolved; see {@link AnomalyDetector.AlertListener}. */
+        void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised);
+
+        void onStoreError(IOException error);
+    }
+
+    private static final int ECG_RING_CAPACITY = 4096;
+    // The CNN was trained on MIT-BIH beats (180 samples at 360 Hz); the stream is resampled to match
+    public static final int ECG_MODEL_SAMPLE_RATE = 360;
+
+    private static final String STORE_FLUSH_TASK = "storeFlush";
+    private static final long STORE_FLUSH_INTERVAL_MS = 30_000;
+    private static final String SEGMENTS_DIRECTORY = "segments";
+    // Queries reaching further back (e.g. a start time of 0) only backfill this many days
+    static final int MAX_BACKFILL_DAYS = 365;
+
+    // ~5 minutes of beats, the usual short-term HRV window
+    private static final int HRV_WINDOW_BEATS = 300;
+    // HRV rules only see a window of at least ~1 minute of beats
+    private static final int MIN_HRV_ALERT_BEATS = 60;
+
+    private final String name;
+    private final SensorScheduler scheduler;
+    private final File storeDirectory;
+    private final Listener listener;
+    private final ConcurrentHashMap<String, SensorSource> sources = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SamplingPolicy> samplingPolicies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Tracker> trackers = new ConcurrentHashMap<>();
+    private final HrvEngine hrvEngine = new HrvEngine(HRV_WINDOW_BEATS);
+    private final Object backfillLock = new Object();
+    private final AnomalyDetector anomalyDetector;
+    private final HealthMetrics metrics;
+    private final HealthMetrics.Timer beatInference;
+
+    private TimeSeriesStore store;
+    private SegmentStore segmentStore;
+    private SegmentationEngine segmentation;
+
+    private EcgSampleSource ecgSource = new SimulatedEcgSource(SimulatedEcgSource.DEFAULT_SAMPLE_RATE);
+    private EcgStreamPipeline ecgPipeline;
+    private QrsDetector ecgDetector;
+    private float ecgHighPassHz = EcgPreprocessor.DEFAULT_HIGH_PASS_HZ;
+    private float ecgNotchHz = EcgPreprocessor.DEFAULT_NOTCH_HZ;
+
+    private volatile SessionRecorder recorder;
+
+    /**
+     * @param name           unique per scheduler; prefixes this session's task keys
+     * @param storeDirectory root of the session's {@link TimeSeriesStore}, opened on first use
+     */
+    public HealthSession(String name, SensorScheduler scheduler, File storeDirectory, Listener listener) {
+        this(name, scheduler, storeDirectory, listener, new HealthMetrics(false));
+    }
+
+    /** @param metrics where stream polls and beat inference are timed; may be shared by sessions */
+    public HealthSession(String name, SensorScheduler scheduler, File storeDirectory, Listener listener,
+                         HealthMetrics metrics) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.storeDirectory = storeDirectory;
+        this.listener = listener;
+        this.anomalyDetector = new AnomalyDetector(listener::onAlert);
+        this.metrics = metrics;
+        this.beatInference = metrics.timer(HealthMetrics.INFERENCE, "ecgBeat");
+        for (SensorSource source : SimulatedSensors.patient()) {
+            setSource(source);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public HealthMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Serves {@link SensorSource#getMetric()} from {@code source} from now on. */
+    public void setSource(SensorSource source) {
+        sources.put(source.getMetric(), source);
+    }
+
+    public SensorSource getSource(String metric) {
+        return sources.get(metric);
+    }
+
+    public boolean hasMetric(String metric) {
+        return metric != null && sources.containsKey(metric);
+    }
+
+    /** Alert rules evaluated on every live reading; none until set. */
+    public AnomalyDetector getAnomalyDetector() {
+        return anomalyDetector;
+    }
+
+    /** Takes effect on the next {@link #startEcg}. */
+    public synchronized void setEcgSource(EcgSampleSource source) {
+        this.ecgSource = source;
+    }
+
+    /**
+     * Baseline-wander high-pass and powerline notch of the ECG stream, 0 to leave either out.
+     * Takes effect on the next {@link #startEcg}.
+     */
+    public synchronized void setEcgFilters(float highPassHz, float notchHz) {
+        // Fail here rather than on the next start
+        new EcgPreprocessor(ecgSource.getSampleRate(), highPassHz, notchHz);
+        this.ecgHighPassHz = highPassHz;
+        this.ecgNotchHz = notchHz;
+    }
+
+    public synchronized float getEcgHighPassHz() {
+        return ecgHighPassHz;
+    }
+
+    public synchronized float getEcgNotchHz() {
+        return ecgNotchHz;
+    }
+
+    // --- Live tracking ---
+
+    /**
+     * Polls {@code metric} under {@code policy} from now on, including a tracker that is
+     * already running; null goes back to the source's fixed period.
+     */
+    public void setSamplingPolicy(String metric, SamplingPolicy policy) {
+        SensorSource source = requireSource(metric);
+        if (policy != null) {
+            samplingPolicies.put(metric, policy);
+        } else {
+            samplingPolicies.remove(metric);
+        }
+        Tracker tracker = trackers.get(metric);
+        if (tracker != null) {
+            synchronized (tracker) {
+                tracker.sampler.setPolicy(policy != null ? policy : SamplingPolicy.fixed(source.getPeriodMillis()));
+            }
+        }
+    }
+
+    /** The policy set for {@code metric}, or null when it is polled at the source's fixed period. */
+    public SamplingPolicy getSamplingPolicy(String metric) {
+        return samplingPolicies.get(metric);
+    }
+
+    /**
+     * Sampling counters of a periodic metric being tracked (see {@link AdaptiveSampler#getStats}),
+     * or null when it is not.
+     */
+    public double[] getSamplingStats(String metric) {
+        Tracker tracker = trackers.get(metric);
+        if (tracker == null) {
+            return null;
+        }
+        synchronized (tracker) {
+            return tracker.sampler.getStats(System.currentTimeMillis());
+        }
+    }
+
+    /** Starts live readings of {@code metric}; a repeated start replaces the running timer. */
+    public void startTracking(String metric) {
+        final SensorSource source = requireSource(metric);
+        if (METRIC_HEART_RATE.equals(metric)) {
+            synchronized (hrvEngine) {
+                hrvEngine.reset();
+            }
+        }
+        long delay = source.getInitialDelayMillis();
+        long period = source.getPeriodMillis();
+        if (period <= 0) {
+            final SensorReading reading = new SensorReading();
+            final HealthMetrics.Timer timer = metrics.timer(HealthMetrics.STREAM, metric);
+            retireTracker(metric);
+            scheduler.schedule(taskKey(metric), () -> poll(source, reading, timer), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+        SamplingPolicy policy = samplingPolicies.get(metric);
+        Tracker tracker = new Tracker(source, new AdaptiveSampler(
+            policy != null ? policy : SamplingPolicy.fixed(period), period, System.currentTimeMillis()));
+        retireTracker(metric);
+        trackers.put(metric, tracker);
+        tracker.due = System.currentTimeMillis() + delay;
+        scheduler.schedule(taskKey(metric), tracker, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean stopTracking(String metric) {
+        retireTracker(metric);
+        return scheduler.cancel(taskKey(metric));
+    }
+
+    public boolean isTracking(String metric) {
+        return scheduler.isScheduled(taskKey(metric));
+    }
+
+    /**
+     * Periodic polling as a chain of one-shot tasks, so every reading can move the next one.
+     * A retired tracker finishes its current reading but schedules nothing more.
+     */
+    private final class Tracker implements Runnable {
+        final SensorSource source;
+        final AdaptiveSampler sampler;
+        final SensorReading reading = new SensorReading();
+        final HealthMetrics.Timer timer;
+        long due;
+        boolean retired;
+
+        Tracker(SensorSource source, AdaptiveSampler sampler) {
+            this.source = source;
+            this.sampler = sampler;
+            this.timer = metrics.timer(HealthMetrics.STREAM, source.getMetric());
+        }
+
+        @Override
+        public void run() {
+            boolean read = poll(source, reading, timer);
+            synchronized (this) {
+                if (retired) {
+                    return;
+                }
+                long period = read ? sampler.onReading(reading.getValue()) : sampler.getPeriodMillis();
+                // Measured from when this reading was due, so a fixed period does not drift
+                long now = System.currentTimeMillis();
+                due = Math.max(now, due + period);
+                scheduler.schedule(taskKey(source.getMetric()), this, due - now, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void retireTracker(String metric) {
+        Tracker tracker = trackers.remove(metric);
+        if (tracker != null) {
+            synchronized (tracker) {
+                tracker.retired = true;
+            }
+        }
+    }
+
+    // One reading end to end: source, store, HRV, listener and alert rules, timed as the metric's stream
+    private boolean poll(SensorSource source, SensorReading reading, HealthMetrics.Timer timer) {
+        long started = metrics.start(timer);
+        try {
+            return pollTimed(source, reading);
+        } finally {
+            metrics.stop(timer, started);
+        }
+    }
+
+    private boolean pollTimed(SensorSource source, SensorReading reading) {
+        String metric = source.getMetric();
+        synchronized (source) {
+            if (!source.read(System.currentTimeMillis(), reading)) {
+                return false;
+            }
+        }
+        getStore().append(metric, reading.getTimestamp(), reading.getValue());
+        segment(metric, reading);
+        SessionRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.recordReading(metric, reading);
+        }
+
+        // HRV over the sliding window goes out with the reading, so JS never needs the IBI history
+        synchronized (hrvEngine) {
+            int[] intervals = reading.getIntervals();
+            for (int i = 0; i < reading.getIntervalCount(); i++) {
+                hrvEngine.addIbi(intervals[i]);
+            }
+            listener.onReading(metric, reading, hrvEngine);
+
+            long timestamp = reading.getTimestamp();
+            anomalyDetector.evaluate(metric, timestamp, reading.getValue());
+            if (METRIC_HEART_RATE.equals(metric) && hrvEngine.getBeatCount() >= MIN_HRV_ALERT_BEATS) {
+                anomalyDetector.evaluate(AlertRule.STREAM_HRV_RMSSD, timestamp, (float) hrvEngine.getRmssd());
+                anomalyDetector.evaluate(AlertRule.STREAM_HRV_SDNN, timestamp, (float) hrvEngine.getSdnn());
+            }
+        }
+        return true;
+    }
+
+    // Heart rate with its intervals and steps are what the sleep and activity segments are cut from
+    private void segment(String metric, SensorReading reading) {
+        boolean heartRate = METRIC_HEART_RATE.equals(metric);
+        if (!heartRate && !METRIC_STEPS.equals(metric)) {
+            return;
+        }
+        SegmentationEngine engine = getSegmentation();
+        synchronized (engine) {
+            if (heartRate) {
+                engine.addHeartRate(reading.getTimestamp(), reading.getValue(), reading.getIntervals(),
+                    reading.getIntervalCount());
+            } else {
+                engine.addSteps(reading.getTimestamp(), reading.getValue());
+            }
+        }
+    }
+
+    // --- ECG ---
+
+    /** Streams ECG from the current {@link EcgSampleSource}, classifying every detected beat. */
+    public synchronized void startEcg(final EcgClassifier engine) {
+        stopEcg();
+
+        // Consumer thread: clean and resample to the model's rate, find beats and classify each
+        // beat-aligned segment, emitting only the probabilities
+        final float[] probabilities = new float[engine.getClassCount()];
+        // Segments span inputLength - 1 intervals, so at the model's rate they are copied, not interpolated
+        float preRSeconds = engine.getInputLength() / 2 / (float) ECG_MODEL_SAMPLE_RATE;
+        float postRSeconds = (engine.getInputLength() - 1) / (float) ECG_MODEL_SAMPLE_RATE - preRSeconds;
+        ecgDetector = new QrsDetector(ECG_MODEL_SAMPLE_RATE, engine.getInputLength(),
+            preRSeconds, postRSeconds, new QrsDetector.BeatListener() {
+                private long sequence;
+
+                @Override
+                public void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate) {
+                    classifyBeat(engine, segment, sequence++, rrMillis, heartRate, probabilities);
+                }
+            });
+        ecgPipeline = new EcgStreamPipeline(ECG_RING_CAPACITY, engine.getInputLength(),
+            new EcgStreamPipeline.WindowListener() {
+                @Override
+                public void onWindow(float[] window, long sequence) {
+                    // Classification is per beat; windows only bound how much is drained at once
+                }
+            });
+        final int sampleRate = ecgSource.getSampleRate();
+        final EcgPreprocessor preprocessor = new EcgPreprocessor(sampleRate, ECG_MODEL_SAMPLE_RATE,
+            ecgHighPassHz, ecgNotchHz, ecgDetector);
+        ecgPipeline.setSampleTap(new EcgStreamPipeline.SampleTap() {
+            @Override
+            public void onSamples(float[] samples, int offset, int length) {
+                // Raw, before the preprocessor, so a replay can be cleaned with other settings
+                SessionRecorder recorder = HealthSession.this.recorder;
+                if (recorder != null) {
+                    recorder.recordSamples(SessionRecording.ECG_STREAM, sampleRate, System.currentTimeMillis(),
+                        samples, offset, length);
+                }
+                preprocessor.onSamples(samples, offset, length);
+            }
+        });
+        ecgPipeline.start();
+
+        // Producer thread: the tracker listener, or its stand-in
+        ecgSource.start(ecgPipeline.getRing());
+    }
+
+    /**
+     * Records every live reading and the raw ECG of the running and later streams into
+     * {@code recorder}, or stops recording when null. Closing the recorder is the caller's job.
+     */
+    public void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public SessionRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Stops the ECG stream. Returns its counters: windows emitted, ring overflows, dropped
+     * samples, beats detected and beats dropped; all zero when no stream was running.
+     */
+    public synchronized long[] stopEcg() {
+        long[] counters = new long[5];
+        if (ecgPipeline == null) {
+            return counters;
+        }
+        ecgSource.stop();
+        ecgPipeline.stop();
+        counters[0] = ecgPipeline.getWindowsEmitted();
+        counters[1] = ecgPipeline.getOverflowCount();
+        counters[2] = ecgPipeline.getDroppedSamples();
+        counters[3] = ecgDetector.getBeatsDetected();
+        counters[4] = ecgDetector.getBeatsDropped();
+        ecgPipeline = null;
+        ecgDetector = null;
+        return counters;
+    }
+
+    public synchronized boolean isEcgRunning() {
+        return ecgPipeline != null;
+    }
+
+    private void classifyBeat(EcgClassifier engine, float[] segment, long sequence,
+                              float rrMillis, float heartRate, float[] probabilities) {
+        try {
+            long started = metrics.start(beatInference);
+            int predictedClass;
+            try {
+                predictedClass = engine.classify(segment, 0, probabilities);
+            } finally {
+                metrics.stop(beatInference, started);
+            }
+            listener.onEcgBeat(System.currentTimeMillis(), sequence, rrMillis, heartRate, probabilities,
+                predictedClass, engine.getClassName(predictedClass));
+        } catch (Exception e) {
+            listener.onEcgError(System.currentTimeMillis(), sequence, e);
+        }
+    }
+
+    /** Stops every live stream of this session. */
+    public void stop() {
+        stopEcg();
+        for (String metric : sources.keySet()) {
+            stopTracking(metric);
+        }
+    }
+
+    /** Stops the session and writes out the store. */
+    public void close() {
+        stop();
+        scheduler.cancel(taskKey(STORE_FLUSH_TASK));
+        flush();
+    }
+
+    // --- Queries ---
+
+    /** Appends the samples of {@code metric} in [start, end) to {@code out}, backfilling unseen days first. */
+    public int query(String metric, long start, long end, SeriesSlice out) {
+        TimeSeriesStore store = getStore();
+        backfill(store, metric, start, end);
+        return store.query(metric, start, end, out);
+    }
+
+    /**
+     * Aggregates {@code metric} over [start, end) into {@code out}.
+     *
+     * @param resolutionMillis bucket width, a multiple of one minute, or <= 0 to pick minute,
+     *                         hour or day from the range
+     * @return the resolution used
+     */
+    public long aggregate(String metric, long start, long end, long resolutionMillis, RollupBuckets out) {
+        long resolution = resolutionMillis > 0
+            ? resolutionMillis
+            : TimeSeriesStore.autoResolution(start, end, MAX_AUTO_BUCKETS);
+        TimeSeriesStore store = getStore();
+        backfill(store, metric, start, end);
+        store.aggregate(metric, start, end, resolution, out);
+        return resolution;
+    }
+
+    /**
+     * Appends the segments of {@code track} ({@link SegmentationEngine#TRACK_ACTIVITY} or
+     * {@link SegmentationEngine#TRACK_SLEEP}) overlapping [start, end) to {@code out}: the stored
+     * ones, then those still open.
+     *
+     * @return end of the last labelled minute, {@link Long#MIN_VALUE} if none; the minutes
+     * after it are still waiting for their lookahead
+     */
+    public long segments(String track, long start, long end, List<SegmentationEngine.Segment> out) {
+        SegmentationEngine engine = getSegmentation();
+        synchronized (engine) {
+            segmentStore.query(track, start, end, out);
+            int stored = out.size();
+            engine.getOpenSegments(track, out);
+            for (int i = out.size() - 1; i >= stored; i--) {
+                SegmentationEngine.Segment segment = out.get(i);
+                if (segment.getEnd() <= start || segment.getStart() >= end) {
+                    out.remove(i);
+                }
+            }
+            return engine.getLabelledUntil();
+        }
+    }
+
+    /** Appends today's readings of {@code metric}, as its source reports them, to {@code out}. */
+    public void today(String metric, SeriesSlice out) {
+        SensorSource source = requireSource(metric);
+        synchronized (source) {
+            source.readToday(System.currentTimeMillis(), out);
+        }
+    }
+
+    public synchronized TimeSeriesStore getStore() {
+        if (store == null) {
+            store = new TimeSeriesStore(storeDirectory);
+            scheduler.scheduleAtFixedRate(taskKey(STORE_FLUSH_TASK), this::flush,
+                STORE_FLUSH_INTERVAL_MS, STORE_FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        return store;
+    }
+
+    // Opened on the first live reading or query, carrying on from the state of the last flush
+    private synchronized SegmentationEngine getSegmentation() {
+        if (segmentation == null) {
+            getStore();
+            final SegmentStore segments = new SegmentStore(new File(storeDirectory, SEGMENTS_DIRECTORY));
+            SegmentationEngine engine = new SegmentationEngine(segments::append);
+            try {
+                ByteBuffer state = segments.readState();
+                if (state != null) {
+                    engine.restoreState(state);
+                }
+            } catch (IOException e) {
+                listener.onStoreError(e);
+            }
+            segmentStore = segments;
+            segmentation = engine;
+        }
+        return segmentation;
+    }
+
+    public void flush() {
+        TimeSeriesStore current;
+        SegmentationEngine engine;
+        SegmentStore segments;
+        synchronized (this) {
+            current = store;
+            engine = segmentation;
+            segments = segmentStore;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush();
+        } catch (IOException e) {
+            listener.onStoreError(e);
+        }
+        if (engine == null) {
+            return;
+        }
+        ByteBuffer state;
+        synchronized (engine) {
+            engine.advance(System.currentTimeMillis());
+            state = engine.saveState();
+        }
+        try {
+            segments.flush(state);
+        } catch (IOException e) {
+            listener.onStoreError(e);
+        }
+    }
+
+    // Gerçek SDK verisi gelene kadar, depoda hiç kaydı olmayan geçmiş günleri kaynaktan bir kez doldur;
+    // bu günler simüle olarak işaretlenir, gerçek veri gelince silinip yerine yazılır
+    private void backfill(TimeSeriesStore store, String metric, long start, long end) {
+        SensorSource source = sources.get(metric);
+        if (source == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = Math.min(end - 1, now);
+        long first = Math.max(TimeSeriesStore.dayStart(start),
+            TimeSeriesStore.dayStart(now) - MAX_BACKFILL_DAYS * TimeSeriesStore.DAY_MILLIS);
+        SeriesSlice day = null;
+        // Concurrent queries must not fill the same day twice
+        synchronized (backfillLock) {
+            for (long dayStart = first; dayStart <= last; dayStart += TimeSeriesStore.DAY_MILLIS) {
+                // Days already filled, even with nothing, are not generated again
+                if (store.hasDay(metric, dayStart) || store.isSimulated(metric, dayStart)) {
+                    continue;
+                }
+                if (day == null) {
+                    day = new SeriesSlice(16);
+                } else {
+                    day.clear();
+                }
+                synchronized (source) {
+                    source.readDay(dayStart, now, day);
+                }
+                // Marked simulated, so the first real sample of the day replaces them
+                store.appendSimulatedDay(metric, dayStart, day);
+            }
+        }
+    }
+
+    private SensorSource requireSource(String metric) {
+        SensorSource source = metric != null ? sources.get(metric) : null;
+        if (source == null) {
+            throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+        return source;
+    }
+
+    private String taskKey(String task) {
+        return name + ":" + task;
+    }
+}
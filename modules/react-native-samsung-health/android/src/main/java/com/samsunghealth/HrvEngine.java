@@ -0,0 +1,314 @@
+package com.samsunghealth;
+
+/**
+ * Sliding-window heart rate variability over a stream of inter-beat intervals (IBI, ms).
+ *
+ * The last {@code windowBeats} intervals live in a circular buffer. RMSSD, pNN50 and SDNN are
+ * maintained incrementally: each new interval adds its terms and the evicted one subtracts
+ * its own, so every {@link #addIbi} is O(1). The running sums are rebuilt from the buffer
+ * once per window length to keep floating-point drift bounded.
+ *
+ * The LF (0.04-0.15 Hz) and HF (0.15-0.40 Hz) band powers come from a Lomb-Scargle
+ * periodogram, which works directly on the unevenly spaced beat times without resampling.
+ * It costs O(window x frequencies) and is only recomputed when asked for after new beats.
+ *
+ * Not thread-safe; callers serialize access.
+ */
+public final class HrvEngine {
+
+    public static final double MIN_IBI_MS = 300;
+    public static final double MAX_IBI_MS = 2000;
+
+    static final double LF_LOW_HZ = 0.04;
+    static final double LF_HIGH_HZ = 0.15;
+    static final double HF_HIGH_HZ = 0.40;
+    // Finer than 1 / window length, so the band sums resolve spectral peaks
+    static final double FREQUENCY_STEP_HZ = 0.001;
+    // The slowest LF cycle (25 s) needs about two periods of data
+    static final double MIN_SPECTRUM_SECONDS = 50;
+
+    private final int capacity;
+    private final double[] ibis;
+    private final double[] beatTimes; // seconds, end of each interval
+    private int head; // index of the oldest interval
+    private int count;
+    private double clock;
+
+    // Running statistics over the window
+    private double mean;
+    private double m2;
+    private double sumSquaredDiffs;
+    private int nn50;
+    private int sinceRebuild;
+    private long rejected;
+
+    // Spectrum (Lomb-Scargle), preallocated
+    private final int frequencyCount;
+    private final double[] spectrumTimes;
+    private final double[] spectrumValues;
+    private final double[] cosOmegaT;
+    private final double[] sinOmegaT;
+    private final double[] cosStepT;
+    private final double[] sinStepT;
+    private boolean spectrumDirty = true;
+    private double lfPower = Double.NaN;
+    private double hfPower = Double.NaN;
+
+    public HrvEngine(int windowBeats) {
+        if (windowBeats < 3) {
+            throw new IllegalArgumentException("windowBeats must be >= 3");
+        }
+        this.capacity = windowBeats;
+        this.ibis = new double[windowBeats];
+        this.beatTimes = new double[windowBeats];
+        this.spectrumTimes = new double[windowBeats];
+        this.spectrumValues = new double[windowBeats];
+        this.cosOmegaT = new double[windowBeats];
+        this.sinOmegaT = new double[windowBeats];
+        this.cosStepT = new double[windowBeats];
+        this.sinStepT = new double[windowBeats];
+        this.frequencyCount = (int) Math.round((HF_HIGH_HZ - LF_LOW_HZ) / FREQUENCY_STEP_HZ) + 1;
+    }
+
+    public void reset() {
+        head = 0;
+        count = 0;
+        clock = 0;
+        mean = 0;
+        m2 = 0;
+        sumSquaredDiffs = 0;
+        nn50 = 0;
+        sinceRebuild = 0;
+        spectrumDirty = true;
+        lfPower = Double.NaN;
+        hfPower = Double.NaN;
+    }
+
+    /**
+     * Adds one interval. Physiologically impossible values (artifacts, missed beats) are
+     * rejected and counted instead.
+     */
+    public boolean addIbi(double ibiMillis) {
+        if (!(ibiMillis >= MIN_IBI_MS && ibiMillis <= MAX_IBI_MS)) {
+            rejected++;
+            return false;
+        }
+        if (count == capacity) {
+            evictOldest();
+        }
+        if (count > 0) {
+            double diff = ibiMillis - ibis[index(count - 1)];
+            sumSquaredDiffs += diff * diff;
+            if (Math.abs(diff) > 50) {
+                nn50++;
+            }
+        }
+        clock += ibiMillis / 1000.0;
+        int slot = index(count);
+        ibis[slot] = ibiMillis;
+        beatTimes[slot] = clock;
+        count++;
+
+        double delta = ibiMillis - mean;
+        mean += delta / count;
+        m2 += delta * (ibiMillis - mean);
+
+        spectrumDirty = true;
+        if (++sinceRebuild >= capacity) {
+            rebuildStatistics();
+        }
+        return true;
+    }
+
+    private void evictOldest() {
+        double oldest = ibis[head];
+        double diff = ibis[index(1)] - oldest;
+        sumSquaredDiffs -= diff * diff;
+        if (Math.abs(diff) > 50) {
+            nn50--;
+        }
+        head = (head + 1) % capacity;
+        count--;
+        if (count == 0) {
+            mean = 0;
+            m2 = 0;
+            return;
+        }
+        // Welford in reverse
+        double delta = oldest - mean;
+        mean -= delta / count;
+        m2 -= delta * (oldest - mean);
+    }
+
+    private void rebuildStatistics() {
+        sinceRebuild = 0;
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += ibis[index(i)];
+        }
+        mean = count > 0 ? sum / count : 0;
+        m2 = 0;
+        sumSquaredDiffs = 0;
+        nn50 = 0;
+        for (int i = 0; i < count; i++) {
+            double ibi = ibis[index(i)];
+            m2 += (ibi - mean) * (ibi - mean);
+            if (i > 0) {
+                double diff = ibi - ibis[index(i - 1)];
+                sumSquaredDiffs += diff * diff;
+                if (Math.abs(diff) > 50) {
+                    nn50++;
+                }
+            }
+        }
+    }
+
+    private int index(int i) {
+        int slot = head + i;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+
+    public int getBeatCount() {
+        return count;
+    }
+
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    public double getMeanIbi() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /** Sample standard deviation of the intervals, ms. */
+    public double getSdnn() {
+        return count > 1 ? Math.sqrt(Math.max(0, m2) / (count - 1)) : Double.NaN;
+    }
+
+    /** Root mean square of successive differences, ms. */
+    public double getRmssd() {
+        return count > 1 ? Math.sqrt(Math.max(0, sumSquaredDiffs) / (count - 1)) : Double.NaN;
+    }
+
+    /** Percentage of successive differences above 50 ms. */
+    public double getPnn50() {
+        return count > 1 ? 100.0 * nn50 / (count - 1) : Double.NaN;
+    }
+
+    /** Seconds of signal currently in the window. */
+    public double getWindowSeconds() {
+        return count > 0 ? clock - beatTimes[head] + ibis[head] / 1000.0 : 0;
+    }
+
+    public double getLfPower() {
+        updateSpectrum();
+        return lfPower;
+    }
+
+    public double getHfPower() {
+        updateSpectrum();
+        return hfPower;
+    }
+
+    public double getLfHfRatio() {
+        updateSpectrum();
+        return hfPower > 0 ? lfPower / hfPower : Double.NaN;
+    }
+
+    private void updateSpectrum() {
+        if (!spectrumDirty) {
+            return;
+        }
+        spectrumDirty = false;
+        if (count < 3 || getWindowSeconds() < MIN_SPECTRUM_SECONDS) {
+            lfPower = Double.NaN;
+            hfPower = Double.NaN;
+            return;
+        }
+
+        double origin = beatTimes[head];
+        double variance = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = index(i);
+            spectrumTimes[i] = beatTimes[slot] - origin;
+            spectrumValues[i] = ibis[slot] - mean;
+            variance += spectrumValues[i] * spectrumValues[i];
+        }
+        variance /= count - 1;
+        if (variance <= 0) {
+            lfPower = 0;
+            hfPower = 0;
+            return;
+        }
+
+        // Walk the frequency grid with trigonometric recurrences (as in Numerical Recipes'
+        // period()), so each point costs a few multiplications per frequency instead of sin/cos
+        double omega = 2 * Math.PI * LF_LOW_HZ;
+        double omegaStep = 2 * Math.PI * FREQUENCY_STEP_HZ;
+        for (int i = 0; i < count; i++) {
+            double t = spectrumTimes[i];
+            cosOmegaT[i] = Math.cos(omega * t);
+            sinOmegaT[i] = Math.sin(omega * t);
+            cosStepT[i] = Math.cos(omegaStep * t);
+            sinStepT[i] = Math.sin(omegaStep * t);
+        }
+
+        double lf = 0;
+        double hf = 0;
+        for (int f = 0; f < frequencyCount; f++) {
+            double power = lombScargle(variance);
+            if (LF_LOW_HZ + f * FREQUENCY_STEP_HZ < LF_HIGH_HZ) {
+                lf += power;
+            } else {
+                hf += power;
+            }
+            for (int i = 0; i < count; i++) {
+                double c = cosOmegaT[i];
+                cosOmegaT[i] = c * cosStepT[i] - sinOmegaT[i] * sinStepT[i];
+                sinOmegaT[i] = sinOmegaT[i] * cosStepT[i] + c * sinStepT[i];
+            }
+        }
+        // Normalized periodogram back to a one-sided PSD (ms^2/Hz), integrated over each band
+        double scale = variance * 2 * getWindowSeconds() / count * FREQUENCY_STEP_HZ;
+        lfPower = lf * scale;
+        hfPower = hf * scale;
+    }
+
+    // Normalized Lomb-Scargle power at the frequency currently held in cosOmegaT / sinOmegaT
+    private double lombScargle(double variance) {
+        double sin2 = 0;
+        double cos2 = 0;
+        for (int i = 0; i < count; i++) {
+            double c = cosOmegaT[i];
+            double s = sinOmegaT[i];
+            sin2 += 2 * s * c;
+            cos2 += c * c - s * s;
+        }
+        // omega * tau, and the rotation by it
+        double phase = Math.atan2(sin2, cos2) / 2;
+        double cosPhase = Math.cos(phase);
+        double sinPhase = Math.sin(phase);
+
+        double yc = 0;
+        double ys = 0;
+        double cc = 0;
+        double ss = 0;
+        for (int i = 0; i < count; i++) {
+            // cos / sin of omega * (t - tau)
+            double c = cosOmegaT[i] * cosPhase + sinOmegaT[i] * sinPhase;
+            double s = sinOmegaT[i] * cosPhase - cosOmegaT[i] * sinPhase;
+            yc += spectrumValues[i] * c;
+            ys += spectrumValues[i] * s;
+            cc += c * c;
+            ss += s * s;
+        }
+        double power = 0;
+        if (cc > 0) {
+            power += yc * yc / cc;
+        }
+        if (ss > 0) {
+            power += ys * ys / ss;
+        }
+        return power / (2 * variance);
+    }
+}
@@ -0,0 +1,75 @@
+package com.samsunghealth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts {@link UploadQueue} chunks to one endpoint as gzip-encoded NDJSON.
+ *
+ * The chunk is sent as stored, so nothing is recompressed per attempt. X-First-Sequence and
+ * X-Record-Count let the server drop a chunk it has already seen (delivery is at least once).
+ * 2xx is delivered; 408, 429, 5xx and network errors are retried; any other status rejects
+ * the chunk.
+ */
+public final class HttpChunkUploader implements UploadQueue.Uploader {
+
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final URL url;
+
+    public HttpChunkUploader(String url) throws IOException {
+        this.url = new URL(url);
+        String protocol = this.url.getProtocol();
+        if (!"https".equals(protocol) && !"http".equals(protocol)) {
+            throw new IOException("Unsupported upload URL: " + url);
+        }
+    }
+
+    @Override
+    public UploadQueue.Result upload(byte[] gzipBody, long firstSequence, int count) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Content-Type", "application/x-ndjson");
+        connection.setRequestProperty("Content-Encoding", "gzip");
+        connection.setRequestProperty("X-First-Sequence", Long.toString(firstSequence));
+        connection.setRequestProperty("X-Record-Count", Integer.toString(count));
+        // Buffered rather than fixed-length streaming: headers and body leave in one write
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(gzipBody);
+        } finally {
+            out.close();
+        }
+        int status = connection.getResponseCode();
+        drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (status >= 200 && status < 300) {
+            return UploadQueue.Result.DELIVERED;
+        }
+        if (status == 408 || status == 429 || status >= 500) {
+            return UploadQueue.Result.RETRY;
+        }
+        return UploadQueue.Result.REJECTED;
+    }
+
+    // Reading the reply to the end lets the connection be reused by the next chunk of a drain
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.samsunghealth;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON writer for {@link MapPayloadWriter} payloads, e.g. upload records. In the JVM
+ * benchmarks it also stands in for the bridge turning a WritableMap into JS objects, which
+ * costs roughly one key/value write per entry.
+ */
+public final class JsonSerializer {
+
+    private JsonSerializer() {
+    }
+
+    public static String toJson(Object value) {
+        StringBuilder out = new StringBuilder(256);
+        write(out, value);
+        return out.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(out, entry.getKey());
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            List<Object> list = (List<Object>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                write(out, list.get(i));
+            }
+            out.append(']');
+        } else if (value instanceof Double || value instanceof Float) {
+            writeNumber(out, ((Number) value).doubleValue());
+        } else {
+            out.append(value);
+        }
+    }
+
+    // Integral values (timestamps, counts) as JS would print them rather than 1.76E12
+    private static void writeNumber(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c < 0x20) {
+                // Control characters must be escaped; upload records are newline-delimited
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,277 @@
+package com.samsunghealth;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal streaming JSON reader for the weight files in ai-models/.
+ *
+ * Nested numeric arrays are flattened straight into a {@link FloatTensor} instead of
+ * being boxed element by element, so a 100k-value kernel costs one float[] on the heap.
+ */
+final class JsonWeightsReader {
+
+    /** Row-major flattened numeric array together with its shape. */
+    static final class FloatTensor {
+        final float[] data;
+        final int[] shape;
+
+        FloatTensor(float[] data, int[] shape) {
+            this.data = data;
+            this.shape = shape;
+        }
+
+        int dim(int axis) {
+            return shape[axis];
+        }
+    }
+
+    private final Reader reader;
+    private final StringBuilder token = new StringBuilder(32);
+    private int peeked = -2;
+
+    // Numeric array state, reused while a single tensor is being parsed
+    private float[] values = new float[1024];
+    private int valueCount;
+    private final List<Integer> shape = new ArrayList<>();
+
+    private JsonWeightsReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    static Map<String, Object> readObject(Reader reader) throws IOException {
+        JsonWeightsReader json = new JsonWeightsReader(reader);
+        Object root = json.readValue();
+        if (!(root instanceof Map)) {
+            throw new IOException("Expected a JSON object at the document root");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) root;
+        return map;
+    }
+
+    private Object readValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return readMap();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expectLiteral("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber(c);
+                }
+                throw new IOException("Unexpected character '" + (char) c + "' in weights file");
+        }
+    }
+
+    private Map<String, Object> readMap() throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        int c = nextNonWhitespace();
+        if (c == '}') {
+            return map;
+        }
+        while (true) {
+            if (c != '"') {
+                throw new IOException("Expected object key in weights file");
+            }
+            String key = readString();
+            if (nextNonWhitespace() != ':') {
+                throw new IOException("Expected ':' after key " + key);
+            }
+            map.put(key, readValue());
+            c = nextNonWhitespace();
+            if (c == '}') {
+                return map;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or '}' after key " + key);
+            }
+            c = nextNonWhitespace();
+        }
+    }
+
+    private Object readArray() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '[' || c == '-' || (c >= '0' && c <= '9')) {
+            valueCount = 0;
+            shape.clear();
+            readNumericArray(0);
+            float[] data = new float[valueCount];
+            System.arraycopy(values, 0, data, 0, valueCount);
+            int[] dims = new int[shape.size()];
+            for (int i = 0; i < dims.length; i++) {
+                dims[i] = shape.get(i);
+            }
+            return new FloatTensor(data, dims);
+        }
+
+        List<Object> list = new ArrayList<>();
+        if (c == ']') {
+            read();
+            return list;
+        }
+        while (true) {
+            list.add(readValue());
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return list;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or ']' in array");
+            }
+        }
+    }
+
+    // Opening '[' of this level has already been consumed
+    private void readNumericArray(int depth) throws IOException {
+        if (shape.size() <= depth) {
+            shape.add(-1);
+        }
+        int length = 0;
+        while (true) {
+            int c = nextNonWhitespace();
+            if (c == ']' && length == 0) {
+                break;
+            }
+            if (c == '[') {
+                readNumericArray(depth + 1);
+            } else {
+                appendValue(readNumber(c).floatValue());
+            }
+            length++;
+            c = nextNonWhitespace();
+            if (c == ']') {
+                break;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or ']' in numeric array");
+            }
+        }
+        if (shape.get(depth) == -1) {
+            shape.set(depth, length);
+        } else if (shape.get(depth) != length) {
+            throw new IOException("Ragged numeric array at depth " + depth);
+        }
+    }
+
+    private void appendValue(float value) {
+        if (valueCount == values.length) {
+            float[] grown = new float[values.length * 2];
+            System.arraycopy(values, 0, grown, 0, valueCount);
+            values = grown;
+        }
+        values[valueCount++] = value;
+    }
+
+    private Double readNumber(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+') {
+                token.append((char) read());
+            } else {
+                break;
+            }
+        }
+        try {
+            return Double.valueOf(token.toString());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in weights file: " + token, e);
+        }
+    }
+
+    // Opening quote has already been consumed
+    private String readString() throws IOException {
+        token.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string in weights file");
+            }
+            if (c == '"') {
+                return token.toString();
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n': token.append('\n'); break;
+                    case 't': token.append('\t'); break;
+                    case 'r': token.append('\r'); break;
+                    case 'b': token.append('\b'); break;
+                    case 'f': token.append('\f'); break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            hex[i] = (char) read();
+                        }
+                        token.append((char) Integer.parseInt(new String(hex), 16));
+                        break;
+                    default: token.append((char) c); break;
+                }
+            } else {
+                token.append((char) c);
+            }
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw new IOException("Invalid literal in weights file");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        if (c == -1) {
+            throw new IOException("Unexpected end of weights file");
+        }
+        return c;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,75 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link PayloadWriter} over plain Java collections, for payloads that never cross the
+ * bridge (upload records, JVM tools) and as a stand-in for WritableMap / WritableArray.
+ */
+public final class MapPayloadWriter implements PayloadWriter<Map<String, Object>, List<Object>> {
+
+    public static final MapPayloadWriter INSTANCE = new MapPayloadWriter();
+
+    @Override
+    public Map<String, Object> createMap() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public List<Object> createArray() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void putBoolean(Map<String, Object> map, String key, boolean value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void putInt(Map<String, Object> map, String key, int value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void putDouble(Map<String, Object> map, String key, double value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void putString(Map<String, Object> map, String key, String value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void putMap(Map<String, Object> map, String key, Map<String, Object> value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void putArray(Map<String, Object> map, String key, List<Object> value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void pushInt(List<Object> array, int value) {
+        array.add(value);
+    }
+
+    @Override
+    public void pushDouble(List<Object> array, double value) {
+        array.add(value);
+    }
+
+    @Override
+    public void pushString(List<Object> array, String value) {
+        array.add(value);
+    }
+
+    @Override
+    public void pushMap(List<Object> array, Map<String, Object> value) {
+        array.add(value);
+    }
+}
@@ -0,0 +1,200 @@
+package com.samsunghealth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only view over a binary weight file produced by scripts/convert-weights-to-binary.py.
+ *
+ * The file is memory-mapped and every tensor is exposed as a read-only {@link FloatBuffer}
+ * slice of the mapping, so opening a model costs a header parse and no weight copies.
+ * Quantized models ({@link QuantizedEcgWeights}) add int8 kernels and int32 biases, read
+ * through {@link #bytes} and {@link #ints}.
+ */
+public final class MappedWeightFile {
+
+    private static final int MAGIC = 0x4257444D; // "MDWB" read little-endian
+    private static final int VERSION = 1;
+    static final int DTYPE_FLOAT32 = 0;
+    static final int DTYPE_INT8 = 1;
+    static final int DTYPE_INT32 = 2;
+
+    public static final class Tensor {
+        public final String name;
+        final int[] shape;
+        final int dtype;
+        final int offset;
+        final int count;
+
+        Tensor(String name, int[] shape, int dtype, int offset) {
+            this.name = name;
+            this.shape = shape;
+            this.dtype = dtype;
+            this.offset = offset;
+            int elements = 1;
+            for (int dim : shape) {
+                elements *= dim;
+            }
+            this.count = elements;
+        }
+
+        public int rank() {
+            return shape.length;
+        }
+
+        public int dim(int axis) {
+            return shape[axis];
+        }
+
+        int byteLength() {
+            return (dtype == DTYPE_INT8 ? 1 : 4) * count;
+        }
+    }
+
+    private final ByteBuffer mapped;
+    private final Map<String, Tensor> tensors;
+    private final Map<String, Object> metadata;
+
+    private MappedWeightFile(ByteBuffer mapped) throws IOException {
+        this.mapped = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        this.tensors = new LinkedHashMap<>();
+
+        ByteBuffer header = this.mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < 12 || header.getInt() != MAGIC) {
+            throw new IOException("Not a binary weight file");
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported weight file version " + version);
+        }
+        int tensorCount = header.getShort() & 0xFFFF;
+        int metadataLength = header.getInt();
+        // A truncated or corrupt file must fail as IOException, which callers fall back on
+        require(header, metadataLength);
+        this.metadata = metadataLength > 0
+            ? JsonWeightsReader.readObject(new StringReader(readUtf8(header, metadataLength)))
+            : new LinkedHashMap<String, Object>();
+
+        for (int i = 0; i < tensorCount; i++) {
+            require(header, 2);
+            int nameLength = header.getShort() & 0xFFFF;
+            require(header, nameLength + 2);
+            String name = readUtf8(header, nameLength);
+            int rank = header.get() & 0xFF;
+            int dtype = header.get() & 0xFF;
+            if (dtype != DTYPE_FLOAT32 && dtype != DTYPE_INT8 && dtype != DTYPE_INT32) {
+                throw new IOException("Unsupported dtype " + dtype + " for tensor " + name);
+            }
+            require(header, 4L * rank + 4);
+            int[] shape = new int[rank];
+            long elements = 1;
+            for (int d = 0; d < rank; d++) {
+                shape[d] = header.getInt();
+                elements *= shape[d];
+                if (shape[d] < 0 || elements > Integer.MAX_VALUE / 4) {
+                    throw new IOException("Tensor " + name + " has an invalid shape");
+                }
+            }
+            Tensor tensor = new Tensor(name, shape, dtype, header.getInt());
+            if (tensor.offset < 0 || (long) tensor.offset + tensor.byteLength() > this.mapped.capacity()) {
+                throw new IOException("Tensor " + name + " points outside the weight file");
+            }
+            tensors.put(name, tensor);
+        }
+    }
+
+    /** Maps a standalone weight file. */
+    public static MappedWeightFile map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return map(raf.getChannel(), 0, raf.length());
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps a region of a channel, e.g. an uncompressed APK asset opened through
+     * {@code AssetFileDescriptor}.
+     */
+    public static MappedWeightFile map(FileChannel channel, long offset, long length) throws IOException {
+        return new MappedWeightFile(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+    }
+
+    /** Wraps an in-memory copy of the file, for callers that cannot map. */
+    public static MappedWeightFile wrap(ByteBuffer buffer) throws IOException {
+        return new MappedWeightFile(buffer.asReadOnlyBuffer());
+    }
+
+    public boolean has(String name) {
+        return tensors.containsKey(name);
+    }
+
+    public Tensor tensor(String name) throws IOException {
+        Tensor tensor = tensors.get(name);
+        if (tensor == null) {
+            throw new IOException("Missing tensor '" + name + "' in weight file");
+        }
+        return tensor;
+    }
+
+    /** Read-only float view over a tensor's data, sharing the mapped memory. */
+    public FloatBuffer floats(Tensor tensor) throws IOException {
+        return view(tensor, DTYPE_FLOAT32).asFloatBuffer().asReadOnlyBuffer();
+    }
+
+    public FloatBuffer floats(String name) throws IOException {
+        return floats(tensor(name));
+    }
+
+    /** Read-only view over an int8 tensor, sharing the mapped memory. */
+    public ByteBuffer bytes(String name) throws IOException {
+        return view(tensor(name), DTYPE_INT8).asReadOnlyBuffer();
+    }
+
+    /** Read-only view over an int32 tensor, sharing the mapped memory. */
+    public IntBuffer ints(String name) throws IOException {
+        return view(tensor(name), DTYPE_INT32).asIntBuffer().asReadOnlyBuffer();
+    }
+
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+
+    public Iterable<Tensor> getTensors() {
+        return tensors.values();
+    }
+
+    private ByteBuffer view(Tensor tensor, int dtype) throws IOException {
+        if (tensor.dtype != dtype) {
+            throw new IOException("Tensor " + tensor.name + " has dtype " + tensor.dtype + ", expected " + dtype);
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.position(tensor.offset);
+        view.limit(tensor.offset + tensor.byteLength());
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void require(ByteBuffer header, long bytes) throws IOException {
+        if (bytes < 0 || header.remaining() < bytes) {
+            throw new IOException("Truncated weight file");
+        }
+    }
+
+    private static String readUtf8(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+}
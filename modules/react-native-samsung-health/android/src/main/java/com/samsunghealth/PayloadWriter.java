@@ -0,0 +1,38 @@
+package com.samsunghealth;
+
+/**
+ * Builds bridge payloads without tying the code that shapes them to React Native.
+ *
+ * {@link HealthPayloads} describes every result and event in terms of this interface; the
+ * module passes {@link ReactPayloadWriter}, while JVM tools and benchmarks pass plain Java
+ * collections.
+ *
+ * @param <M> map type, {@code WritableMap} on Android
+ * @param <A> array type, {@code WritableArray} on Android
+ */
+public interface PayloadWriter<M, A> {
+
+    M createMap();
+
+    A createArray();
+
+    void putBoolean(M map, String key, boolean value);
+
+    void putInt(M map, String key, int value);
+
+    void putDouble(M map, String key, double value);
+
+    void putString(M map, String key, String value);
+
+    void putMap(M map, String key, M value);
+
+    void putArray(M map, String key, A value);
+
+    void pushInt(A array, int value);
+
+    void pushDouble(A array, double value);
+
+    void pushString(A array, String value);
+
+    void pushMap(A array, M value);
+}
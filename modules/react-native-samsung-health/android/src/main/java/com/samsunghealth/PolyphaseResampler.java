@@ -0,0 +1,163 @@
+package com.samsunghealth;
+
+import java.util.Arrays;
+
+/**
+ * Rational sample-rate conversion by {@code up / down} with a polyphase FIR.
+ *
+ * The anti-aliasing low-pass is a Blackman-windowed sinc of {@code up * tapsPerPhase} taps at
+ * the upsampled rate, cut off just below the lower of the two Nyquist frequencies. It is
+ * stored split into its {@code up} phases, so each output sample is one {@code tapsPerPhase}
+ * dot product over the input instead of a pass over the zero-stuffed signal; each phase is
+ * scaled to unit DC gain.
+ *
+ * {@link #process} converts a stream run by run, keeping the last inputs in a small history,
+ * and delays it by about {@code tapsPerPhase / 2} input samples. {@link #resample} converts
+ * one finished buffer with the delay compensated and the edges held. Neither allocates. Not
+ * thread-safe.
+ */
+public final class PolyphaseResampler {
+
+    public static final int DEFAULT_TAPS_PER_PHASE = 16;
+
+    // Cutoff as a fraction of the lower Nyquist frequency, leaving room for the transition band
+    private static final double CUTOFF = 0.9;
+
+    private final int up;
+    private final int down;
+    private final int taps;
+    // Phase-major: phase p's taps are coefficients[p * taps ..], tap j weighting input n - j
+    private final float[] coefficients;
+    private final int delay;
+
+    private final float[] history;
+    private final int historyMask;
+    private long inputCount;
+    private long nextOutput;
+
+    public PolyphaseResampler(int inputRate, int outputRate) {
+        this(inputRate, outputRate, DEFAULT_TAPS_PER_PHASE);
+    }
+
+    public PolyphaseResampler(int inputRate, int outputRate, int tapsPerPhase) {
+        if (inputRate <= 0 || outputRate <= 0 || tapsPerPhase < 1) {
+            throw new IllegalArgumentException("Invalid resampling " + inputRate + " -> " + outputRate
+                + " with " + tapsPerPhase + " taps per phase");
+        }
+        int divisor = gcd(inputRate, outputRate);
+        this.up = outputRate / divisor;
+        this.down = inputRate / divisor;
+        this.taps = tapsPerPhase;
+
+        int length = up * taps;
+        this.delay = (length - 1) / 2;
+        double center = (length - 1) / 2.0;
+        double cutoff = CUTOFF * 0.5 / Math.max(up, down);
+        double[] prototype = new double[length];
+        for (int i = 0; i < length; i++) {
+            double t = i - center;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double phase = length > 1 ? 2 * Math.PI * i / (length - 1) : 0;
+            prototype[i] = sinc * (0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase));
+        }
+        this.coefficients = new float[length];
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            for (int j = 0; j < taps; j++) {
+                sum += prototype[p + j * up];
+            }
+            for (int j = 0; j < taps; j++) {
+                coefficients[p * taps + j] = (float) (prototype[p + j * up] / sum);
+            }
+        }
+
+        int size = Integer.highestOneBit(Math.max(2, taps - 1)) << 1;
+        this.history = new float[size];
+        this.historyMask = size - 1;
+    }
+
+    public int getUpFactor() {
+        return up;
+    }
+
+    public int getDownFactor() {
+        return down;
+    }
+
+    /** Most outputs {@link #process} can produce from {@code inputLength} inputs. */
+    public int maxOutputLength(int inputLength) {
+        return (int) (((long) inputLength * up + down - 1) / down) + 1;
+    }
+
+    /** Outputs {@link #resample} produces from {@code inputLength} inputs. */
+    public int outputLength(int inputLength) {
+        return (int) ((long) inputLength * up / down);
+    }
+
+    /**
+     * Converts the next {@code length} stream samples into {@code out} from {@code outOffset}
+     * and returns how many were written (at most {@link #maxOutputLength}). When downsampling,
+     * {@code out} may be {@code in} at the same offset.
+     */
+    public int process(float[] in, int offset, int length, float[] out, int outOffset) {
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            history[(int) (inputCount & historyMask)] = in[offset + i];
+            inputCount++;
+            // Every output whose newest input has now arrived
+            while (nextOutput / up < inputCount) {
+                long newest = nextOutput / up;
+                int row = (int) (nextOutput % up) * taps;
+                float sum = 0;
+                int count = (int) Math.min(taps, newest + 1);
+                for (int j = 0; j < count; j++) {
+                    sum += coefficients[row + j] * history[(int) ((newest - j) & historyMask)];
+                }
+                out[outOffset + written++] = sum;
+                nextOutput += down;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Converts {@code length} samples of a finished buffer into {@link #outputLength} samples,
+     * aligned with the input and holding its first and last sample beyond the edges. Leaves
+     * the stream state of {@link #process} alone.
+     */
+    public int resample(float[] in, int offset, int length, float[] out, int outOffset) {
+        if (length < 1) {
+            return 0;
+        }
+        int outLength = outputLength(length);
+        int last = length - 1;
+        for (int k = 0; k < outLength; k++) {
+            long u = (long) k * down + delay;
+            long newest = u / up;
+            int row = (int) (u % up) * taps;
+            float sum = 0;
+            for (int j = 0; j < taps; j++) {
+                long n = newest - j;
+                int index = n < 0 ? 0 : n > last ? last : (int) n;
+                sum += coefficients[row + j] * in[offset + index];
+            }
+            out[outOffset + k] = sum;
+        }
+        return outLength;
+    }
+
+    public void reset() {
+        Arrays.fill(history, 0);
+        inputCount = 0;
+        nextOutput = 0;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
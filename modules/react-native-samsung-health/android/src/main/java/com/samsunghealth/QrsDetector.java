@@ -0,0 +1,385 @@
+package com.samsunghealth;
+
+/**
+ * Streaming Pan-Tompkins QRS detector.
+ *
+ * Each sample goes through the classic chain: 5-15 Hz band-pass (two biquads), five-point
+ * derivative, squaring and a 150 ms moving-window integrator. Peaks of the integrated signal
+ * are classified against adaptive signal/noise thresholds, with a 200 ms refractory period,
+ * T-wave rejection by slope within 360 ms, and a search-back at half threshold when no beat
+ * was found for 166% of the average RR interval.
+ *
+ * For each detected beat the R peak is located in the raw signal, and once enough samples
+ * have arrived after it the listener receives a fixed-length, beat-aligned segment
+ * (linearly resampled to {@code segmentLength} points) together with the instantaneous
+ * heart rate. All state lives in preallocated primitive buffers; {@link #process} does not
+ * allocate. Not thread-safe: feed it from a single thread.
+ */
+public final class QrsDetector implements EcgStreamPipeline.SampleTap {
+
+    public interface BeatListener {
+        /**
+         * Called from {@link #process}. {@code segment} is reused for the next beat.
+         *
+         * @param rPeakSample index of the R peak in the input stream
+         * @param rrMillis    interval to the previous beat, or 0 for the first one
+         * @param heartRate   instantaneous heart rate (60000 / rrMillis), or 0 for the first beat
+         */
+        void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate);
+    }
+
+    private static final double REFRACTORY_SECONDS = 0.200;
+    private static final double T_WAVE_SECONDS = 0.360;
+    private static final double INTEGRATION_SECONDS = 0.150;
+    private static final double LEARNING_SECONDS = 2.0;
+    // How far before the integrator peak the R peak can lie (integrator width plus filter lag)
+    private static final double R_SEARCH_SECONDS = 0.250;
+    // Half the span around the band-passed peak searched for the R wave in the raw signal
+    private static final double QRS_HALF_WIDTH_SECONDS = 0.060;
+    private static final int RR_HISTORY = 8;
+    private static final int MAX_PENDING_BEATS = 8;
+
+    private final float sampleRate;
+    private final BeatListener listener;
+
+    // Band-pass: high-pass 5 Hz then low-pass 15 Hz, transposed direct form II
+    private final Biquad highPass;
+    private final Biquad lowPass;
+
+    // Derivative and integrator state
+    private final float[] derivativeHistory = new float[4];
+    private final float[] integratorWindow;
+    private int integratorIndex;
+    private double integratorSum;
+
+    // History of raw, band-passed and derivative samples for locating and cutting out beats
+    private final float[] rawHistory;
+    private final float[] bandHistory;
+    private final float[] slopeHistory;
+    private final int historyMask;
+    private long sampleCount;
+
+    // Integrator peak tracking
+    private float previousIntegrated;
+    private float candidatePeak;
+    private long candidateIndex = -1;
+    private boolean rising;
+
+    // Adaptive thresholds
+    private final int learningSamples;
+    private final int refractorySamples;
+    private final int tWaveSamples;
+    private final int rSearchSamples;
+    private float learningMax;
+    private double learningSum;
+    private double signalPeak;
+    private double noisePeak;
+    private double threshold1;
+    private double threshold2;
+
+    private long lastQrsIndex = -1;
+    private float lastQrsSlope;
+    private float searchBackPeak;
+    private long searchBackIndex = -1;
+
+    private final int[] rrHistory = new int[RR_HISTORY];
+    private int rrCount;
+    private int rrNext;
+    private long rrSum;
+    private long lastRPeak = -1;
+
+    // Beats waiting for their post-R samples
+    private final long[] pendingPeaks = new long[MAX_PENDING_BEATS];
+    private final float[] pendingRr = new float[MAX_PENDING_BEATS];
+    private int pendingHead;
+    private int pendingCount;
+
+    private final float[] segment;
+    private final int preSamples;
+    private final int postSamples;
+
+    private long beatsDetected;
+    private long beatsDropped;
+
+    /**
+     * @param sampleRate     input rate in Hz
+     * @param segmentLength  points per emitted beat segment
+     * @param preRSeconds    segment span before the R peak
+     * @param postRSeconds   segment span after the R peak
+     */
+    public QrsDetector(float sampleRate, int segmentLength, float preRSeconds, float postRSeconds,
+                       BeatListener listener) {
+        if (sampleRate <= 0 || segmentLength < 2) {
+            throw new IllegalArgumentException("Invalid sample rate or segment length");
+        }
+        this.sampleRate = sampleRate;
+        this.listener = listener;
+        this.highPass = Biquad.highPass(sampleRate, 5);
+        this.lowPass = Biquad.lowPass(sampleRate, 15);
+        this.integratorWindow = new float[Math.max(1, Math.round((float) INTEGRATION_SECONDS * sampleRate))];
+        this.learningSamples = Math.round((float) LEARNING_SECONDS * sampleRate);
+        this.refractorySamples = Math.round((float) REFRACTORY_SECONDS * sampleRate);
+        this.tWaveSamples = Math.round((float) T_WAVE_SECONDS * sampleRate);
+        this.rSearchSamples = Math.round((float) R_SEARCH_SECONDS * sampleRate);
+        this.preSamples = Math.round(preRSeconds * sampleRate);
+        this.postSamples = Math.round(postRSeconds * sampleRate);
+        this.segment = new float[segmentLength];
+
+        // Enough history for search-back, R search and the segment around the oldest pending beat
+        int needed = (int) (1.66 * 2.0 * sampleRate) + rSearchSamples + preSamples + postSamples;
+        int size = Integer.highestOneBit(Math.max(16, needed)) << 1;
+        this.rawHistory = new float[size];
+        this.bandHistory = new float[size];
+        this.slopeHistory = new float[size];
+        this.historyMask = size - 1;
+    }
+
+    @Override
+    public void onSamples(float[] samples, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            process(samples[offset + i]);
+        }
+    }
+
+    public void process(float raw) {
+        long n = sampleCount++;
+        int slot = (int) (n & historyMask);
+        rawHistory[slot] = raw;
+
+        float band = lowPass.filter(highPass.filter(raw));
+        bandHistory[slot] = band;
+
+        // y[n] = (2x[n] + x[n-1] - x[n-3] - 2x[n-4]) / 8, in units per second
+        float slope = (2 * band + derivativeHistory[0] - derivativeHistory[2] - 2 * derivativeHistory[3])
+            * sampleRate / 8f;
+        derivativeHistory[3] = derivativeHistory[2];
+        derivativeHistory[2] = derivativeHistory[1];
+        derivativeHistory[1] = derivativeHistory[0];
+        derivativeHistory[0] = band;
+        slopeHistory[slot] = slope;
+
+        float squared = slope * slope;
+        integratorSum += squared - integratorWindow[integratorIndex];
+        integratorWindow[integratorIndex] = squared;
+        if (++integratorIndex == integratorWindow.length) {
+            integratorIndex = 0;
+        }
+        float integrated = (float) Math.max(0, integratorSum / integratorWindow.length);
+
+        if (n < learningSamples) {
+            learn(integrated, n);
+        } else {
+            detectPeak(integrated, n);
+            searchBack(n);
+        }
+        previousIntegrated = integrated;
+        emitReadyBeats(n);
+    }
+
+    private void learn(float integrated, long n) {
+        learningMax = Math.max(learningMax, integrated);
+        learningSum += integrated;
+        if (n == learningSamples - 1) {
+            signalPeak = learningMax / 3.0;
+            noisePeak = learningSum / learningSamples / 2.0;
+            updateThresholds();
+        }
+    }
+
+    private void detectPeak(float integrated, long n) {
+        if (integrated > previousIntegrated) {
+            rising = true;
+            if (integrated > candidatePeak || candidateIndex < 0) {
+                candidatePeak = integrated;
+                candidateIndex = n;
+            }
+            return;
+        }
+        // A peak is confirmed once the integrator has fallen to half of it
+        if (!rising || candidateIndex < 0 || integrated > candidatePeak * 0.5f) {
+            return;
+        }
+        classifyPeak(candidatePeak, candidateIndex);
+        rising = false;
+        candidatePeak = 0;
+        candidateIndex = -1;
+    }
+
+    private void classifyPeak(float peak, long index) {
+        if (lastQrsIndex >= 0 && index - lastQrsIndex < refractorySamples) {
+            updateNoise(peak);
+            return;
+        }
+        if (peak < threshold1) {
+            updateNoise(peak);
+            if (peak > threshold2 && peak > searchBackPeak) {
+                searchBackPeak = peak;
+                searchBackIndex = index;
+            }
+            return;
+        }
+        float qrsSlope = maxSlope(index);
+        if (lastQrsIndex >= 0 && index - lastQrsIndex < tWaveSamples && qrsSlope < 0.5f * lastQrsSlope) {
+            // Slope too shallow for a QRS this soon after the last one: T wave
+            updateNoise(peak);
+            return;
+        }
+        signalPeak = 0.125 * peak + 0.875 * signalPeak;
+        acceptQrs(index, qrsSlope);
+    }
+
+    private void searchBack(long n) {
+        if (lastQrsIndex < 0 || rrCount == 0 || searchBackIndex < 0) {
+            return;
+        }
+        double averageRr = (double) rrSum / rrCount;
+        if (n - lastQrsIndex <= 1.66 * averageRr) {
+            return;
+        }
+        signalPeak = 0.25 * searchBackPeak + 0.75 * signalPeak;
+        acceptQrs(searchBackIndex, maxSlope(searchBackIndex));
+    }
+
+    private void acceptQrs(long index, float qrsSlope) {
+        lastQrsIndex = index;
+        lastQrsSlope = qrsSlope;
+        searchBackPeak = 0;
+        searchBackIndex = -1;
+        updateThresholds();
+
+        long rPeak = locateRPeak(index);
+        float rrMillis = 0;
+        if (lastRPeak >= 0 && rPeak > lastRPeak) {
+            int rr = (int) (rPeak - lastRPeak);
+            rrMillis = rr * 1000f / sampleRate;
+            if (rrCount == RR_HISTORY) {
+                rrSum -= rrHistory[rrNext];
+            } else {
+                rrCount++;
+            }
+            rrHistory[rrNext] = rr;
+            rrSum += rr;
+            rrNext = (rrNext + 1) % RR_HISTORY;
+        }
+        lastRPeak = rPeak;
+        beatsDetected++;
+
+        if (pendingCount == MAX_PENDING_BEATS) {
+            beatsDropped++;
+            return;
+        }
+        int slot = (pendingHead + pendingCount) % MAX_PENDING_BEATS;
+        pendingPeaks[slot] = rPeak;
+        pendingRr[slot] = rrMillis;
+        pendingCount++;
+    }
+
+    private void updateNoise(float peak) {
+        noisePeak = 0.125 * peak + 0.875 * noisePeak;
+        updateThresholds();
+    }
+
+    private void updateThresholds() {
+        threshold1 = noisePeak + 0.25 * (signalPeak - noisePeak);
+        threshold2 = 0.5 * threshold1;
+    }
+
+    // Steepest band-passed slope in the window leading up to an integrator peak
+    private float maxSlope(long integratorPeak) {
+        float max = 0;
+        long from = Math.max(0, Math.max(sampleCount - historyMask, integratorPeak - integratorWindow.length));
+        for (long i = from; i <= integratorPeak; i++) {
+            max = Math.max(max, Math.abs(slopeHistory[(int) (i & historyMask)]));
+        }
+        return max;
+    }
+
+    // Largest absolute band-passed excursion before the integrator peak, refined on the raw signal
+    private long locateRPeak(long integratorPeak) {
+        long from = Math.max(0, Math.max(sampleCount - historyMask, integratorPeak - rSearchSamples));
+        long best = integratorPeak;
+        float bestValue = -1;
+        for (long i = from; i <= integratorPeak; i++) {
+            float value = Math.abs(bandHistory[(int) (i & historyMask)]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+        // The band-pass shifts the peak and can favour a steep S wave over the R wave, so take the
+        // largest raw deflection from the local level across the whole complex around it
+        int refine = Math.max(1, Math.round((float) QRS_HALF_WIDTH_SECONDS * sampleRate));
+        long start = Math.max(from, best - refine);
+        long end = Math.min(sampleCount - 1, best + refine);
+        double sum = 0;
+        for (long i = start; i <= end; i++) {
+            sum += rawHistory[(int) (i & historyMask)];
+        }
+        float level = (float) (sum / (end - start + 1));
+        long refined = best;
+        float largest = -1;
+        for (long i = start; i <= end; i++) {
+            float deflection = Math.abs(rawHistory[(int) (i & historyMask)] - level);
+            if (deflection > largest) {
+                largest = deflection;
+                refined = i;
+            }
+        }
+        return refined;
+    }
+
+    private void emitReadyBeats(long n) {
+        while (pendingCount > 0) {
+            long rPeak = pendingPeaks[pendingHead];
+            if (n < rPeak + postSamples) {
+                return;
+            }
+            float rrMillis = pendingRr[pendingHead];
+            pendingHead = (pendingHead + 1) % MAX_PENDING_BEATS;
+            pendingCount--;
+            if (rPeak - preSamples < Math.max(0, sampleCount - historyMask)) {
+                // Start of the stream, or too far behind: not enough history for a full segment
+                beatsDropped++;
+                continue;
+            }
+            cutSegment(rPeak);
+            listener.onBeat(segment, rPeak, rrMillis, rrMillis > 0 ? 60000f / rrMillis : 0f);
+        }
+    }
+
+    private void cutSegment(long rPeak) {
+        int span = preSamples + postSamples;
+        long start = rPeak - preSamples;
+        float step = segment.length > 1 ? (float) span / (segment.length - 1) : 0;
+        for (int i = 0; i < segment.length; i++) {
+            float position = i * step;
+            int base = (int) position;
+            float fraction = position - base;
+            float a = rawHistory[(int) ((start + base) & historyMask)];
+            float b = base + 1 <= span ? rawHistory[(int) ((start + base + 1) & historyMask)] : a;
+            segment[i] = a + (b - a) * fraction;
+        }
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSegmentLength() {
+        return segment.length;
+    }
+
+    public long getBeatsDetected() {
+        return beatsDetected;
+    }
+
+    /** Beats detected but not emitted (no room in the pending queue, or not enough history). */
+    public long getBeatsDropped() {
+        return beatsDropped;
+    }
+
+    /** Mean of the last eight RR intervals converted to BPM, or 0 before two beats. */
+    public float getAverageHeartRate() {
+        return rrCount > 0 ? (float) (60.0 * sampleRate * rrCount / rrSum) : 0f;
+    }
+}
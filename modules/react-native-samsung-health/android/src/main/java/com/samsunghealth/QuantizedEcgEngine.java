@@ -0,0 +1,280 @@
+package com.samsunghealth;
+
+/**
+ * int8 counterpart of {@link EcgInferenceEngine} over {@link QuantizedEcgWeights}.
+ *
+ * The normalized input is quantized once; every Conv1D and Dense layer then multiplies int8
+ * activations by int8 kernels into int32 accumulators and requantizes to the next layer's
+ * int8 scale with ReLU fused, and max pooling runs on the int8 values directly. Only the
+ * output logits are dequantized, for the float softmax. Like the float engine it allocates
+ * nothing per call and is not thread-safe.
+ *
+ * Java bytecode has no int8 SIMD, so the accumulators are packed instead: two output channels
+ * share a long, low and high 32 bits, and one long multiply-add updates both. The sums are
+ * exact because neither lane can leave the int range (see {@link QuantizedEcgWeights}).
+ */
+public final class QuantizedEcgEngine implements EcgClassifier {
+
+    private final QuantizedEcgWeights weights;
+
+    private final float[] normalized;
+    private final byte[] input;
+    private final byte[] convScratch;
+    private final byte[] pingBuffer;
+    private final byte[] pongBuffer;
+    private final byte[] hiddenBuffer;
+    private final long[] accumulator;
+    private final float[] logits;
+    // Flattened conv features and hidden activations of one batch block, allocated on first use
+    private byte[] batchFeatures;
+    private byte[] batchHidden;
+    private long[] batchAccumulators;
+
+    public QuantizedEcgEngine(QuantizedEcgWeights weights) {
+        this.weights = weights;
+        this.normalized = new float[weights.inputLength];
+        this.input = new byte[weights.inputLength];
+
+        int maxConv = 0;
+        int maxPooled = 0;
+        int length = weights.inputLength;
+        for (QuantizedEcgWeights.Layer layer : weights.convLayers) {
+            int convLength = length - layer.kernelSize + 1;
+            int pooled = EcgModelWeights.pooledLength(convLength, weights.poolSize);
+            maxConv = Math.max(maxConv, convLength * layer.outputs);
+            maxPooled = Math.max(maxPooled, pooled * layer.outputs);
+            length = pooled;
+        }
+        this.convScratch = new byte[maxConv];
+        this.pingBuffer = new byte[maxPooled];
+        this.pongBuffer = new byte[maxPooled];
+        this.hiddenBuffer = new byte[weights.hidden.outputs];
+        int maxPairs = Math.max(weights.hidden.pairs, weights.output.pairs);
+        for (QuantizedEcgWeights.Layer layer : weights.convLayers) {
+            maxPairs = Math.max(maxPairs, layer.pairs);
+        }
+        this.accumulator = new long[maxPairs];
+        this.logits = new float[weights.output.outputs];
+    }
+
+    public QuantizedEcgWeights getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int getInputLength() {
+        return weights.inputLength;
+    }
+
+    @Override
+    public int getClassCount() {
+        return weights.getClassCount();
+    }
+
+    @Override
+    public String getClassName(int index) {
+        return weights.getClassName(index);
+    }
+
+    @Override
+    public QuantizedEcgEngine copy() {
+        return new QuantizedEcgEngine(weights);
+    }
+
+    @Override
+    public void normalize(float[] window, int offset) {
+        EcgInferenceEngine.normalize(weights.inputLength, weights.scalerMean, weights.scalerScale,
+            window, offset, window, offset);
+    }
+
+    @Override
+    public int classify(float[] signal, int offset, float[] probabilities) {
+        if (signal.length - offset < weights.inputLength) {
+            throw new IllegalArgumentException("ECG window needs " + weights.inputLength + " samples");
+        }
+        if (probabilities.length < logits.length) {
+            throw new IllegalArgumentException("Probability buffer needs " + logits.length + " slots");
+        }
+
+        byte[] features = convFeatures(signal, offset);
+        denseRelu(features, weights.hidden, accumulator, hiddenBuffer);
+        denseLogits(hiddenBuffer, weights.output, accumulator, logits);
+        return EcgInferenceEngine.softmax(logits, probabilities, 0);
+    }
+
+    @Override
+    public void classifyBatch(float[] windows, int first, int count, float[] probabilities, int[] classes) {
+        final int n = weights.inputLength;
+        final int classCount = logits.length;
+        if ((long) (first + count) * n > windows.length) {
+            throw new IllegalArgumentException("Batch needs " + (first + count) * n + " samples");
+        }
+        if ((long) (first + count) * classCount > probabilities.length || first + count > classes.length) {
+            throw new IllegalArgumentException("Result buffers need room for " + (first + count) + " windows");
+        }
+        final QuantizedEcgWeights.Layer hidden = weights.hidden;
+        final int flattened = hidden.window;
+        if (batchFeatures == null) {
+            batchFeatures = new byte[BATCH_BLOCK * flattened];
+            batchHidden = new byte[BATCH_BLOCK * hidden.outputs];
+            batchAccumulators = new long[BATCH_BLOCK * hidden.pairs];
+        }
+
+        for (int start = first; start < first + count; start += BATCH_BLOCK) {
+            int block = Math.min(BATCH_BLOCK, first + count - start);
+            for (int b = 0; b < block; b++) {
+                System.arraycopy(convFeatures(windows, (start + b) * n), 0, batchFeatures, b * flattened, flattened);
+            }
+            accumulateBlock(batchFeatures, block, hidden, batchAccumulators);
+            for (int b = 0; b < block; b++) {
+                System.arraycopy(batchAccumulators, b * hidden.pairs, accumulator, 0, hidden.pairs);
+                requantizeRelu(accumulator, hidden, batchHidden, b * hidden.outputs);
+            }
+            for (int b = 0; b < block; b++) {
+                System.arraycopy(batchHidden, b * hidden.outputs, hiddenBuffer, 0, hidden.outputs);
+                denseLogits(hiddenBuffer, weights.output, accumulator, logits);
+                classes[start + b] = EcgInferenceEngine.softmax(logits, probabilities, (start + b) * classCount);
+            }
+        }
+    }
+
+    // Normalization, input quantization and the Conv1D/MaxPool stages; returns the buffer holding the features
+    private byte[] convFeatures(float[] signal, int offset) {
+        EcgInferenceEngine.normalize(weights.inputLength, weights.scalerMean, weights.scalerScale,
+            signal, offset, normalized, 0);
+        quantizeInput(normalized, weights.getInputScale(), input);
+
+        byte[] current = input;
+        int length = weights.inputLength;
+        byte[] target = pingBuffer;
+        for (QuantizedEcgWeights.Layer layer : weights.convLayers) {
+            int convLength = conv1dRelu(current, length, layer, accumulator, convScratch);
+            length = maxPool(convScratch, convLength, layer.outputs, weights.poolSize, target);
+            current = target;
+            target = target == pingBuffer ? pongBuffer : pingBuffer;
+        }
+        return current;
+    }
+
+    static void quantizeInput(float[] values, float scale, byte[] out) {
+        float inv = 1f / scale;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) QuantizedEcgWeights.clamp(Math.round(values[i] * inv), QuantizedEcgWeights.QMAX);
+        }
+    }
+
+    /**
+     * Valid-padding int8 Conv1D with fused ReLU over a [length][inChannels] buffer. Same loop
+     * order as the float kernel, so zero activations (most of them after ReLU) skip a whole
+     * kernel row.
+     */
+    static int conv1dRelu(byte[] in, int length, QuantizedEcgWeights.Layer layer, long[] acc, byte[] out) {
+        final int outLength = length - layer.kernelSize + 1;
+        for (int t = 0; t < outLength; t++) {
+            // The receptive field of output t is the contiguous run of kernelSize input rows from t
+            accumulate(in, t * layer.inChannels, layer, acc);
+            requantizeRelu(acc, layer, out, t * layer.outputs);
+        }
+        return outLength;
+    }
+
+    static int maxPool(byte[] in, int length, int channels, int poolSize, byte[] out) {
+        int outLength = EcgModelWeights.pooledLength(length, poolSize);
+        for (int p = 0; p < outLength; p++) {
+            int start = p * poolSize;
+            int end = Math.min(start + poolSize, length);
+            int outBase = p * channels;
+            System.arraycopy(in, start * channels, out, outBase, channels);
+            for (int t = start + 1; t < end; t++) {
+                int inBase = t * channels;
+                for (int c = 0; c < channels; c++) {
+                    byte v = in[inBase + c];
+                    if (v > out[outBase + c]) {
+                        out[outBase + c] = v;
+                    }
+                }
+            }
+        }
+        return outLength;
+    }
+
+    static void denseRelu(byte[] in, QuantizedEcgWeights.Layer layer, long[] acc, byte[] out) {
+        accumulate(in, 0, layer, acc);
+        requantizeRelu(acc, layer, out, 0);
+    }
+
+    static void denseLogits(byte[] in, QuantizedEcgWeights.Layer layer, long[] acc, float[] out) {
+        accumulate(in, 0, layer, acc);
+        final int pairs = layer.pairs;
+        for (int p = 0; p < pairs; p++) {
+            int low = (int) acc[p];
+            out[p] = low * layer.dequantize[p];
+            if (p + pairs < layer.outputs) {
+                out[p + pairs] = (int) ((acc[p] - low) >> 32) * layer.dequantize[p + pairs];
+            }
+        }
+    }
+
+    // acc = bias + in[offset, offset + window) x kernel, two outputs per long
+    private static void accumulate(byte[] in, int offset, QuantizedEcgWeights.Layer layer, long[] acc) {
+        final int pairs = layer.pairs;
+        final int window = layer.window;
+        final long[] kernel = layer.packedKernel;
+        System.arraycopy(layer.packedBias, 0, acc, 0, pairs);
+        for (int i = 0; i < window; i++) {
+            final long x = in[offset + i];
+            if (x == 0) {
+                continue;
+            }
+            final int row = i * pairs;
+            for (int p = 0; p < pairs; p++) {
+                acc[p] += x * kernel[row + p];
+            }
+        }
+    }
+
+    // accumulate() over {@code block} input rows, each packed kernel row read once for the whole block
+    private static void accumulateBlock(byte[] in, int block, QuantizedEcgWeights.Layer layer, long[] acc) {
+        final int pairs = layer.pairs;
+        final int window = layer.window;
+        final long[] kernel = layer.packedKernel;
+        for (int b = 0; b < block; b++) {
+            System.arraycopy(layer.packedBias, 0, acc, b * pairs, pairs);
+        }
+        for (int i = 0; i < window; i++) {
+            final int row = i * pairs;
+            for (int b = 0; b < block; b++) {
+                final long x = in[b * window + i];
+                if (x == 0) {
+                    continue;
+                }
+                final int accBase = b * pairs;
+                for (int p = 0; p < pairs; p++) {
+                    acc[accBase + p] += x * kernel[row + p];
+                }
+            }
+        }
+    }
+
+    // Unpacks both lanes and requantizes them to int8 with ReLU
+    private static void requantizeRelu(long[] acc, QuantizedEcgWeights.Layer layer, byte[] out, int outBase) {
+        final int pairs = layer.pairs;
+        final float[] requantize = layer.requantize;
+        for (int p = 0; p < pairs; p++) {
+            int low = (int) acc[p];
+            out[outBase + p] = requantizeRelu(low, requantize[p]);
+            if (p + pairs < layer.outputs) {
+                out[outBase + p + pairs] = requantizeRelu((int) ((acc[p] - low) >> 32), requantize[p + pairs]);
+            }
+        }
+    }
+
+    // ReLU and rounding in one step: anything below half a step is zero
+    private static byte requantizeRelu(int accumulator, float multiplier) {
+        float value = accumulator * multiplier + 0.5f;
+        if (value < 1f) {
+            return 0;
+        }
+        return value >= QuantizedEcgWeights.QMAX ? (byte) QuantizedEcgWeights.QMAX : (byte) (int) value;
+    }
+}
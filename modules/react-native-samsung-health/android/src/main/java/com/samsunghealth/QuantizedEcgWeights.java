@@ -0,0 +1,478 @@
+package com.samsunghealth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Post-training int8 quantization of {@link EcgModelWeights}, run by {@link QuantizedEcgEngine}.
+ *
+ * Kernels are symmetric int8 with one scale per output channel; biases are int32 in the scale
+ * of their accumulator (input scale x channel scale). Activations are symmetric int8 with one
+ * scale per layer input, taken from the largest value the float model produces on calibration
+ * windows. The normalization scaler stays float.
+ *
+ * In the binary file each layer {@code weights/<layer>/} holds {@code kernel} (int8, in the
+ * float model's Keras layout), {@code kernel_scale} (float32 [outputs]), {@code bias} (int32
+ * [outputs]) and {@code input_scale} (float32 [1]). The kernels are copied to the heap on
+ * load; at about 100 KB that is cheaper than reading a mapped buffer in the inner loops.
+ */
+public final class QuantizedEcgWeights {
+
+    static final int QMAX = 127;
+    private static final int MAX_BIAS = 1 << 30;
+
+    private static final int MAGIC = 0x4257444D;
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 16;
+
+    /** A Conv1D (kernelSize > 0) or Dense (kernelSize 0) layer with int8 kernel. */
+    static final class Layer {
+        final String name;
+        final int kernelSize;
+        final int inChannels;
+        final int outputs;
+        // Kernel rows: kernelSize * inChannels, or the dense inputs
+        final int window;
+        final byte[] kernel;
+        final float[] kernelScale;
+        final int[] bias;
+        final float inputScale;
+        // Kernel and bias with outputs o and o + pairs packed in the low and high 32 bits of a long
+        final int pairs;
+        final long[] packedKernel;
+        final long[] packedBias;
+        // Accumulator -> real value, per output
+        final float[] dequantize;
+        // Accumulator -> next layer's int8 input, per output; set once the chain is known
+        float[] requantize;
+
+        Layer(String name, int kernelSize, int inChannels, int outputs, byte[] kernel, float[] kernelScale,
+              int[] bias, float inputScale) {
+            this.name = name;
+            this.kernelSize = kernelSize;
+            this.inChannels = inChannels;
+            this.outputs = outputs;
+            this.window = kernelSize > 0 ? kernelSize * inChannels : inChannels;
+            if (kernel.length != window * outputs || kernelScale.length != outputs || bias.length != outputs) {
+                throw new IllegalArgumentException("Quantized weights of " + name + " do not match declared shape");
+            }
+            if (!(inputScale > 0)) {
+                throw new IllegalArgumentException("Quantized layer " + name + " needs a positive input scale");
+            }
+            this.kernel = kernel;
+            this.kernelScale = kernelScale;
+            this.bias = bias;
+            this.inputScale = inputScale;
+            this.dequantize = new float[outputs];
+            for (int o = 0; o < outputs; o++) {
+                dequantize[o] = inputScale * kernelScale[o];
+            }
+
+            this.pairs = (outputs + 1) / 2;
+            this.packedKernel = new long[window * pairs];
+            this.packedBias = new long[pairs];
+            for (int p = 0; p < pairs; p++) {
+                int high = p + pairs;
+                packedBias[p] = pack(bias[p], high < outputs ? bias[high] : 0);
+                for (int i = 0; i < window; i++) {
+                    packedKernel[i * pairs + p] = pack(kernel[i * outputs + p], high < outputs ? kernel[i * outputs + high] : 0);
+                }
+            }
+        }
+
+        private static long pack(int low, int high) {
+            return low + ((long) high << 32);
+        }
+
+        void chainTo(float outputScale) {
+            requantize = new float[outputs];
+            for (int o = 0; o < outputs; o++) {
+                requantize[o] = dequantize[o] / outputScale;
+            }
+        }
+
+        boolean isConv() {
+            return kernelSize > 0;
+        }
+    }
+
+    public final int inputLength;
+    public final int poolSize;
+    final Layer[] convLayers;
+    final Layer hidden;
+    final Layer output;
+    final FloatBuffer scalerMean;
+    final FloatBuffer scalerScale;
+    final String[] classNames;
+
+    QuantizedEcgWeights(int inputLength, int poolSize, Layer[] convLayers, Layer hidden, Layer output,
+                        FloatBuffer scalerMean, FloatBuffer scalerScale, String[] classNames) {
+        this.inputLength = inputLength;
+        this.poolSize = poolSize;
+        this.convLayers = convLayers;
+        this.hidden = hidden;
+        this.output = output;
+        this.scalerMean = scalerMean;
+        this.scalerScale = scalerScale;
+        this.classNames = classNames;
+
+        Layer[] chain = layers();
+        int channels = 1;
+        int length = inputLength;
+        for (Layer layer : convLayers) {
+            if (layer.inChannels != channels) {
+                throw new IllegalArgumentException("Conv1D input channels do not chain: expected " + channels);
+            }
+            channels = layer.outputs;
+            length = EcgModelWeights.pooledLength(length - layer.kernelSize + 1, poolSize);
+        }
+        if (hidden.inChannels != length * channels || output.inChannels != hidden.outputs) {
+            throw new IllegalArgumentException("Dense layers do not chain from the convolutions");
+        }
+        for (int i = 0; i < chain.length - 1; i++) {
+            chain[i].chainTo(chain[i + 1].inputScale);
+        }
+    }
+
+    public int getClassCount() {
+        return output.outputs;
+    }
+
+    public String getClassName(int index) {
+        return index >= 0 && index < classNames.length ? classNames[index] : "Unknown";
+    }
+
+    /** Scale of the int8 input, i.e. the normalized value one quantization step stands for. */
+    public float getInputScale() {
+        return convLayers[0].inputScale;
+    }
+
+    Layer[] layers() {
+        Layer[] chain = new Layer[convLayers.length + 2];
+        System.arraycopy(convLayers, 0, chain, 0, convLayers.length);
+        chain[convLayers.length] = hidden;
+        chain[convLayers.length + 1] = output;
+        return chain;
+    }
+
+    // --- Calibration ---
+
+    /** Share of calibration activations kept unclipped by {@link #quantize(EcgModelWeights, List)}. */
+    public static final double DEFAULT_PERCENTILE = 99.99;
+    private static final int CALIBRATION_BINS = 2048;
+
+    private interface ActivationObserver {
+        void observe(int layer, float[] values, int count);
+    }
+
+    public static QuantizedEcgWeights quantize(EcgModelWeights weights, List<float[]> windows) {
+        return quantize(weights, windows, DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * Quantizes {@code weights}, calibrating activation ranges by running the float model over
+     * {@code windows} (raw beat windows of {@code weights.inputLength} samples, as the QRS
+     * detector hands them to the classifier). Each layer's input range is the
+     * {@code percentile} of its non-zero magnitudes, so a few outliers do not coarsen the
+     * scale for every other value.
+     */
+    public static QuantizedEcgWeights quantize(EcgModelWeights weights, List<float[]> windows, double percentile) {
+        if (windows.isEmpty()) {
+            throw new IllegalArgumentException("Calibration needs at least one ECG window");
+        }
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Calibration percentile must be in (0, 100]");
+        }
+        float[] ranges = calibrate(weights, windows, percentile);
+
+        Layer[] convs = new Layer[weights.convLayers.length];
+        for (int i = 0; i < convs.length; i++) {
+            EcgModelWeights.Conv1dLayer layer = weights.convLayers[i];
+            convs[i] = quantizeLayer(EcgModelWeights.CONV_LAYERS[i], layer.kernelSize, layer.inChannels,
+                layer.outChannels, layer.kernel, layer.bias, ranges[i]);
+        }
+        int hiddenIndex = convs.length;
+        Layer hidden = quantizeLayer(EcgModelWeights.HIDDEN_DENSE_LAYER, 0, weights.hidden.inputs,
+            weights.hidden.outputs, weights.hidden.kernel, weights.hidden.bias, ranges[hiddenIndex]);
+        Layer output = quantizeLayer(EcgModelWeights.OUTPUT_DENSE_LAYER, 0, weights.output.inputs,
+            weights.output.outputs, weights.output.kernel, weights.output.bias, ranges[hiddenIndex + 1]);
+        return new QuantizedEcgWeights(weights.inputLength, weights.poolSize, convs, hidden, output,
+            weights.scalerMean, weights.scalerScale, weights.classNames.clone());
+    }
+
+    // Range of the values entering each layer: two passes, one for the maximum, one for a histogram under it
+    private static float[] calibrate(EcgModelWeights weights, List<float[]> windows, double percentile) {
+        final int layers = weights.convLayers.length + 2;
+        final float[] max = new float[layers];
+        forward(weights, windows, new ActivationObserver() {
+            @Override
+            public void observe(int layer, float[] values, int count) {
+                for (int i = 0; i < count; i++) {
+                    max[layer] = Math.max(max[layer], Math.abs(values[i]));
+                }
+            }
+        });
+        final long[][] histograms = new long[layers][CALIBRATION_BINS];
+        forward(weights, windows, new ActivationObserver() {
+            @Override
+            public void observe(int layer, float[] values, int count) {
+                if (max[layer] == 0) {
+                    return;
+                }
+                float binsPerUnit = CALIBRATION_BINS / max[layer];
+                long[] histogram = histograms[layer];
+                for (int i = 0; i < count; i++) {
+                    float v = Math.abs(values[i]);
+                    if (v != 0) {
+                        histogram[Math.min(CALIBRATION_BINS - 1, (int) (v * binsPerUnit))]++;
+                    }
+                }
+            }
+        });
+
+        float[] ranges = new float[layers];
+        for (int layer = 0; layer < layers; layer++) {
+            long total = 0;
+            for (long count : histograms[layer]) {
+                total += count;
+            }
+            long keep = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            int bin = 0;
+            while (bin < CALIBRATION_BINS - 1 && seen + histograms[layer][bin] < keep) {
+                seen += histograms[layer][bin++];
+            }
+            ranges[layer] = max[layer] * (bin + 1) / CALIBRATION_BINS;
+            // A layer that never activates still needs a usable scale
+            if (!(ranges[layer] > 0)) {
+                ranges[layer] = 1f;
+            }
+        }
+        return ranges;
+    }
+
+    // Runs the float model, reporting the input of every layer: normalized input, pooled conv outputs, hidden output
+    private static void forward(EcgModelWeights weights, List<float[]> windows, ActivationObserver observer) {
+        int convCount = weights.convLayers.length;
+        int maxBuffer = weights.inputLength;
+        int length = weights.inputLength;
+        for (EcgModelWeights.Conv1dLayer layer : weights.convLayers) {
+            length -= layer.kernelSize - 1;
+            maxBuffer = Math.max(maxBuffer, length * layer.outChannels);
+            length = EcgModelWeights.pooledLength(length, weights.poolSize);
+        }
+        float[] input = new float[weights.inputLength];
+        float[] convScratch = new float[maxBuffer];
+        float[] ping = new float[maxBuffer];
+        float[] pong = new float[maxBuffer];
+        float[] hiddenBuffer = new float[weights.hidden.outputs];
+
+        for (float[] window : windows) {
+            EcgInferenceEngine.normalize(weights.inputLength, weights.scalerMean, weights.scalerScale,
+                window, 0, input, 0);
+            observer.observe(0, input, weights.inputLength);
+            float[] current = input;
+            float[] target = ping;
+            length = weights.inputLength;
+            for (int i = 0; i < convCount; i++) {
+                EcgModelWeights.Conv1dLayer layer = weights.convLayers[i];
+                int convLength = EcgInferenceEngine.conv1dRelu(current, length, layer, convScratch);
+                length = EcgInferenceEngine.maxPool(convScratch, convLength, layer.outChannels, weights.poolSize, target);
+                observer.observe(i + 1, target, length * layer.outChannels);
+                current = target;
+                target = target == ping ? pong : ping;
+            }
+            EcgInferenceEngine.denseLayer(current, weights.hidden, hiddenBuffer, true);
+            observer.observe(convCount + 1, hiddenBuffer, hiddenBuffer.length);
+        }
+    }
+
+    // Keras [window][outputs] kernel to int8 with one scale per output
+    private static Layer quantizeLayer(String name, int kernelSize, int inChannels, int outputs,
+                                       FloatBuffer kernel, FloatBuffer bias, float inputRange) {
+        int window = kernelSize > 0 ? kernelSize * inChannels : inChannels;
+        float inputScale = inputRange / QMAX;
+        float[] scales = new float[outputs];
+        for (int i = 0; i < window; i++) {
+            for (int o = 0; o < outputs; o++) {
+                scales[o] = Math.max(scales[o], Math.abs(kernel.get(i * outputs + o)));
+            }
+        }
+        byte[] quantized = new byte[window * outputs];
+        int[] quantizedBias = new int[outputs];
+        for (int o = 0; o < outputs; o++) {
+            scales[o] = scales[o] > 0 ? scales[o] / QMAX : 1f;
+            for (int i = 0; i < window; i++) {
+                quantized[i * outputs + o] = (byte) clamp(Math.round(kernel.get(i * outputs + o) / scales[o]), QMAX);
+            }
+            // Bounded so a packed accumulator lane (bias plus at most 1344 * 127 * 127) stays inside an int
+            quantizedBias[o] = clamp(Math.round(bias.get(o) / (inputScale * scales[o])), MAX_BIAS);
+        }
+        return new Layer(name, kernelSize, inChannels, outputs, quantized, scales, quantizedBias, inputScale);
+    }
+
+    static int clamp(int value, int max) {
+        return Math.max(-max, Math.min(max, value));
+    }
+
+    // --- Binary file ---
+
+    /** Builds the model from a quantized weight file; kernels are copied, the scaler stays mapped. */
+    public static QuantizedEcgWeights fromBinary(MappedWeightFile file) throws IOException {
+        Layer[] convs = new Layer[EcgModelWeights.CONV_LAYERS.length];
+        for (int i = 0; i < convs.length; i++) {
+            convs[i] = readLayer(file, EcgModelWeights.CONV_LAYERS[i], true);
+        }
+        Layer hidden = readLayer(file, EcgModelWeights.HIDDEN_DENSE_LAYER, false);
+        Layer output = readLayer(file, EcgModelWeights.OUTPUT_DENSE_LAYER, false);
+
+        FloatBuffer mean = null;
+        FloatBuffer scale = null;
+        if (file.has("scaler/mean") && file.has("scaler/scale")) {
+            mean = file.floats("scaler/mean");
+            scale = file.floats("scaler/scale");
+        }
+
+        Map<String, Object> metadata = file.getMetadata();
+        return new QuantizedEcgWeights(EcgModelWeights.inputLength(metadata), 2, convs, hidden, output, mean, scale,
+            EcgModelWeights.classNames(metadata, output.outputs));
+    }
+
+    private static Layer readLayer(MappedWeightFile file, String name, boolean conv) throws IOException {
+        String prefix = "weights/" + name + "/";
+        MappedWeightFile.Tensor kernel = file.tensor(prefix + "kernel");
+        if (kernel.rank() != (conv ? 3 : 2)) {
+            throw new IOException(kernel.name + " has rank " + kernel.rank() + ", expected " + (conv ? 3 : 2));
+        }
+        byte[] data = new byte[kernel.count];
+        file.bytes(kernel.name).get(data);
+        FloatBuffer scales = file.floats(prefix + "kernel_scale");
+        float[] kernelScale = new float[scales.capacity()];
+        scales.get(kernelScale);
+        IntBuffer biasBuffer = file.ints(prefix + "bias");
+        int[] bias = new int[biasBuffer.capacity()];
+        biasBuffer.get(bias);
+        float inputScale = file.floats(prefix + "input_scale").get(0);
+        try {
+            return conv
+                ? new Layer(name, kernel.dim(0), kernel.dim(1), kernel.dim(2), data, kernelScale, bias, inputScale)
+                : new Layer(name, 0, kernel.dim(0), kernel.dim(1), data, kernelScale, bias, inputScale);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the model in the {@link MappedWeightFile} format (int8 kernels, int32 biases,
+     * float32 scales and scaler), with {@code metadata} as its JSON header.
+     */
+    public void writeBinary(OutputStream out, Map<String, Object> metadata) throws IOException {
+        List<Object[]> tensors = new ArrayList<>();
+        for (Layer layer : layers()) {
+            String prefix = "weights/" + layer.name + "/";
+            int[] shape = layer.isConv()
+                ? new int[] {layer.kernelSize, layer.inChannels, layer.outputs}
+                : new int[] {layer.inChannels, layer.outputs};
+            tensors.add(new Object[] {prefix + "kernel", shape, layer.kernel});
+            tensors.add(new Object[] {prefix + "kernel_scale", new int[] {layer.outputs}, layer.kernelScale});
+            tensors.add(new Object[] {prefix + "bias", new int[] {layer.outputs}, layer.bias});
+            tensors.add(new Object[] {prefix + "input_scale", new int[] {1}, new float[] {layer.inputScale}});
+        }
+        if (scalerMean != null && scalerScale != null) {
+            tensors.add(new Object[] {"scaler/mean", new int[] {scalerMean.capacity()}, toArray(scalerMean)});
+            tensors.add(new Object[] {"scaler/scale", new int[] {scalerScale.capacity()}, toArray(scalerScale)});
+        }
+        Charset utf8 = Charset.forName("UTF-8");
+        byte[] metadataBytes = JsonSerializer.toJson(metadata).getBytes(utf8);
+
+        int headerSize = 4 + 2 + 2 + 4 + metadataBytes.length;
+        for (Object[] tensor : tensors) {
+            headerSize += 2 + ((String) tensor[0]).getBytes(utf8).length + 1 + 1 + 4 * ((int[]) tensor[1]).length + 4;
+        }
+        int[] offsets = new int[tensors.size()];
+        int offset = align(headerSize);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = offset;
+            offset = align(offset + byteLength(tensors.get(i)[2]));
+        }
+
+        ByteBuffer file = ByteBuffer.allocate(offset).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(MAGIC).putShort((short) VERSION).putShort((short) tensors.size()).putInt(metadataBytes.length);
+        file.put(metadataBytes);
+        for (int i = 0; i < offsets.length; i++) {
+            Object[] tensor = tensors.get(i);
+            byte[] name = ((String) tensor[0]).getBytes(utf8);
+            int[] shape = (int[]) tensor[1];
+            file.putShort((short) name.length).put(name);
+            file.put((byte) shape.length).put((byte) dtype(tensor[2]));
+            for (int dim : shape) {
+                file.putInt(dim);
+            }
+            file.putInt(offsets[i]);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            file.position(offsets[i]);
+            Object data = tensors.get(i)[2];
+            if (data instanceof byte[]) {
+                file.put((byte[]) data);
+            } else if (data instanceof int[]) {
+                file.asIntBuffer().put((int[]) data);
+            } else {
+                file.asFloatBuffer().put((float[]) data);
+            }
+        }
+        out.write(file.array());
+    }
+
+    private static int align(int offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int dtype(Object data) {
+        return data instanceof byte[] ? MappedWeightFile.DTYPE_INT8
+            : data instanceof int[] ? MappedWeightFile.DTYPE_INT32 : MappedWeightFile.DTYPE_FLOAT32;
+    }
+
+    private static int byteLength(Object data) {
+        return data instanceof byte[] ? ((byte[]) data).length
+            : data instanceof int[] ? 4 * ((int[]) data).length : 4 * ((float[]) data).length;
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] values = new float[buffer.capacity()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    /** Metadata block for {@link #writeBinary}: the float model's fields plus how it was quantized. */
+    public Map<String, Object> metadata(int calibrationWindows) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        List<Object> shape = new ArrayList<>();
+        shape.add(inputLength);
+        shape.add(1);
+        metadata.put("input_shape", shape);
+        metadata.put("output_classes", getClassCount());
+        metadata.put("model_type", "CNN");
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (int i = 0; i < classNames.length; i++) {
+            classes.put(String.valueOf(i), classNames[i]);
+        }
+        metadata.put("classes", classes);
+        Map<String, Object> quantization = new LinkedHashMap<>();
+        quantization.put("scheme", "int8 symmetric, per-channel kernels, per-tensor activations");
+        quantization.put("calibration_windows", calibrationWindows);
+        metadata.put("quantization", quantization);
+        return metadata;
+    }
+}
@@ -0,0 +1,74 @@
+package com.samsunghealth;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/** {@link PayloadWriter} backed by the bridge's native maps and arrays. */
+final class ReactPayloadWriter implements PayloadWriter<WritableMap, WritableArray> {
+
+    static final ReactPayloadWriter INSTANCE = new ReactPayloadWriter();
+
+    private ReactPayloadWriter() {
+    }
+
+    @Override
+    public WritableMap createMap() {
+        return Arguments.createMap();
+    }
+
+    @Override
+    public WritableArray createArray() {
+        return Arguments.createArray();
+    }
+
+    @Override
+    public void putBoolean(WritableMap map, String key, boolean value) {
+        map.putBoolean(key, value);
+    }
+
+    @Override
+    public void putInt(WritableMap map, String key, int value) {
+        map.putInt(key, value);
+    }
+
+    @Override
+    public void putDouble(WritableMap map, String key, double value) {
+        map.putDouble(key, value);
+    }
+
+    @Override
+    public void putString(WritableMap map, String key, String value) {
+        map.putString(key, value);
+    }
+
+    @Override
+    public void putMap(WritableMap map, String key, WritableMap value) {
+        map.putMap(key, value);
+    }
+
+    @Override
+    public void putArray(WritableMap map, String key, WritableArray value) {
+        map.putArray(key, value);
+    }
+
+    @Override
+    public void pushInt(WritableArray array, int value) {
+        array.pushInt(value);
+    }
+
+    @Override
+    public void pushDouble(WritableArray array, double value) {
+        array.pushDouble(value);
+    }
+
+    @Override
+    public void pushString(WritableArray array, String value) {
+        array.pushString(value);
+    }
+
+    @Override
+    public void pushMap(WritableArray array, WritableMap value) {
+        array.pushMap(value);
+    }
+}
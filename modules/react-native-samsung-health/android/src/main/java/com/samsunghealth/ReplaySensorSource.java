@@ -0,0 +1,93 @@
+package com.samsunghealth;
+
+import java.util.Arrays;
+
+/**
+ * {@link SensorSource} that plays back a recorded series, e.g. data exported from a real
+ * device, so simulated patients can run on realistic values.
+ *
+ * History and "today" requests are answered from the recording by timestamp. Live readings
+ * walk the recording in order, one sample per period, restamped with the current time; the
+ * source reports nothing once the recording is exhausted. Heart rate recordings carry no
+ * beat intervals, so each live heart rate reading gets the interval its rate implies.
+ */
+public final class ReplaySensorSource implements SensorSource {
+
+    private final String metric;
+    private final long[] timestamps;
+    private final float[] values;
+    private final long periodMillis;
+    private int next;
+
+    /** {@code recording} must be in time order; it is copied. */
+    public ReplaySensorSource(String metric, SeriesSlice recording, long periodMillis) {
+        this.metric = metric;
+        this.timestamps = Arrays.copyOf(recording.timestamps(), recording.size());
+        this.values = Arrays.copyOf(recording.values(), recording.size());
+        this.periodMillis = periodMillis;
+    }
+
+    @Override
+    public String getMetric() {
+        return metric;
+    }
+
+    @Override
+    public long getInitialDelayMillis() {
+        return periodMillis;
+    }
+
+    @Override
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    @Override
+    public synchronized boolean read(long now, SensorReading out) {
+        if (next >= values.length) {
+            return false;
+        }
+        float value = values[next++];
+        out.clear();
+        out.set(now, value);
+        if (HealthSession.METRIC_HEART_RATE.equals(metric) && value > 0) {
+            out.addInterval(Math.round(60_000f / value));
+        }
+        return true;
+    }
+
+    /** Restarts live playback from the first recorded sample. */
+    public synchronized void rewind() {
+        next = 0;
+    }
+
+    @Override
+    public void readToday(long now, SeriesSlice out) {
+        copyRange(TimeSeriesStore.dayStart(now), now + 1, out);
+    }
+
+    @Override
+    public void readDay(long dayStart, long now, SeriesSlice out) {
+        copyRange(dayStart, Math.min(dayStart + TimeSeriesStore.DAY_MILLIS, now + 1), out);
+    }
+
+    private void copyRange(long start, long end, SeriesSlice out) {
+        for (int i = lowerBound(start); i < timestamps.length && timestamps[i] < end; i++) {
+            out.add(timestamps[i], values[i]);
+        }
+    }
+
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,251 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches query results keyed by method and time range, so panels that re-query on every mount
+ * get the last result instead of a rebuild.
+ *
+ * Entries are evicted least-recently-used beyond {@code maxEntries} and expire after their
+ * metric's TTL. A new sample of a metric drops every entry of that metric whose range contains
+ * it ({@link #invalidate}), so a cached result never hides data the store already has.
+ * Concurrent requests for a key that is being computed wait for that computation instead of
+ * starting their own, and a computation overlapped by an invalidation is delivered to its
+ * waiters but not cached.
+ *
+ * Values are handed to every caller as they are, so they must be immutable or copied by the
+ * caller (the module converts its cached maps into a fresh WritableMap per promise).
+ */
+public final class ResultCache<V> {
+
+    public interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    public interface Callback<V> {
+        /** {@code cached} is true when the value came from the cache or another caller's computation. */
+        void onResult(V value, boolean cached);
+
+        void onError(Exception error);
+    }
+
+    /** TTL of metrics without one of their own. */
+    public static final long DEFAULT_TTL_MS = 30_000;
+
+    private static final class Cached<V> {
+        final String metric;
+        final long start;
+        final long end;
+        final V value;
+        final long expiresAt;
+
+        Cached(String metric, long start, long end, V value, long expiresAt) {
+            this.metric = metric;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class InFlight<V> {
+        final String metric;
+        final long start;
+        final long end;
+        final List<Callback<V>> waiters = new ArrayList<>();
+        boolean stale;
+
+        InFlight(String metric, long start, long end) {
+            this.metric = metric;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final LinkedHashMap<String, Cached<V>> entries;
+    private final HashMap<String, InFlight<V>> inFlight = new HashMap<>();
+    private final HashMap<String, Long> ttls = new HashMap<>();
+    private int maxEntries;
+    private boolean enabled = true;
+
+    // hits, misses, coalesced, invalidations, evictions
+    private final long[] counters = new long[5];
+
+    public ResultCache(int maxEntries) {
+        this.maxEntries = requirePositive(maxEntries);
+        // Access order, so the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<String, Cached<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached<V>> eldest) {
+                if (size() > ResultCache.this.maxEntries) {
+                    counters[4]++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Time a result of {@code metric} may be served for; 0 disables caching for it. */
+    public synchronized void setTtl(String metric, long ttlMillis) {
+        ttls.put(metric, Math.max(0, ttlMillis));
+    }
+
+    public synchronized long getTtl(String metric) {
+        Long ttl = ttls.get(metric);
+        return ttl != null ? ttl : DEFAULT_TTL_MS;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = requirePositive(maxEntries);
+        while (entries.size() > maxEntries) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            counters[4]++;
+        }
+    }
+
+    /** While disabled every request computes its own result; nothing is stored. */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Delivers the result of {@code method} over [{@code start}, {@code end}) of {@code metric}
+     * to {@code callback}: from the cache, from a computation already running for the same key,
+     * or by running {@code loader} on the calling thread. The callback runs on whichever thread
+     * produced the value, never under the cache's lock.
+     */
+    public void get(String method, String metric, long start, long end, Loader<V> loader, Callback<V> callback) {
+        String key = method + '|' + metric + '|' + start + '|' + end;
+        InFlight<V> computation;
+        Cached<V> hit = null;
+        synchronized (this) {
+            if (!enabled) {
+                computation = null;
+            } else {
+                Cached<V> entry = entries.get(key);
+                if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                    counters[0]++;
+                    hit = entry;
+                    computation = null;
+                } else {
+                    if (entry != null) {
+                        entries.remove(key);
+                    }
+                    InFlight<V> running = inFlight.get(key);
+                    if (running != null) {
+                        counters[2]++;
+                        running.waiters.add(callback);
+                        return;
+                    }
+                    counters[1]++;
+                    computation = new InFlight<>(metric, start, end);
+                    inFlight.put(key, computation);
+                }
+            }
+        }
+        if (hit != null) {
+            callback.onResult(hit.value, true);
+            return;
+        }
+
+        V value = null;
+        Exception error = null;
+        try {
+            value = loader.load();
+        } catch (Exception e) {
+            error = e;
+        }
+        if (computation == null) {
+            deliver(callback, value, error, false);
+            return;
+        }
+
+        List<Callback<V>> waiters;
+        synchronized (this) {
+            inFlight.remove(key);
+            long ttl = getTtl(metric);
+            if (error == null && !computation.stale && enabled && ttl > 0) {
+                entries.put(key, new Cached<>(metric, start, end, value, System.currentTimeMillis() + ttl));
+            }
+            waiters = computation.waiters;
+        }
+        // A throwing callback must not leave the others waiting forever
+        RuntimeException failure = null;
+        for (int i = -1; i < waiters.size(); i++) {
+            try {
+                deliver(i < 0 ? callback : waiters.get(i), value, error, i >= 0);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Drops the results of {@code metric} whose range contains {@code timestamp}. */
+    public void invalidate(String metric, long timestamp) {
+        invalidate(metric, timestamp, timestamp + 1);
+    }
+
+    /** Drops the results of {@code metric} whose range overlaps [{@code start}, {@code end}). */
+    public synchronized void invalidate(String metric, long start, long end) {
+        Iterator<Cached<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Cached<V> entry = it.next();
+            if (entry.metric.equals(metric) && entry.start < end && start < entry.end) {
+                it.remove();
+                counters[3]++;
+            }
+        }
+        for (InFlight<V> computation : inFlight.values()) {
+            if (computation.metric.equals(metric) && computation.start < end && start < computation.end) {
+                computation.stale = true;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        for (InFlight<V> computation : inFlight.values()) {
+            computation.stale = true;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Hits, misses, coalesced requests (served by another caller's computation), invalidations and evictions. */
+    public synchronized long[] getCounters() {
+        return counters.clone();
+    }
+
+    private static <V> void deliver(Callback<V> callback, V value, Exception error, boolean cached) {
+        if (error != null) {
+            callback.onError(error);
+        } else {
+            callback.onResult(value, cached);
+        }
+    }
+
+    private static int requirePositive(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A result cache needs room for at least one entry");
+        }
+        return maxEntries;
+    }
+}
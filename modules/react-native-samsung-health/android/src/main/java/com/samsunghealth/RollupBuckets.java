@@ -0,0 +1,117 @@
+package com.samsunghealth;
+
+/**
+ * Reusable result of an aggregated query: one row per non-empty bucket with count, min, max,
+ * mean and the sum of squared deviations from the mean (so variance and further merging stay
+ * exact). Rows are appended in time order; a row for the same bucket start as the last one is
+ * merged into it.
+ */
+public final class RollupBuckets {
+
+    private long[] starts;
+    private long[] counts;
+    private float[] min;
+    private float[] max;
+    private double[] mean;
+    private double[] m2;
+    private int size;
+
+    public RollupBuckets() {
+        this(64);
+    }
+
+    public RollupBuckets(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long startAt(int index) {
+        return starts[index];
+    }
+
+    public long countAt(int index) {
+        return counts[index];
+    }
+
+    public float minAt(int index) {
+        return min[index];
+    }
+
+    public float maxAt(int index) {
+        return max[index];
+    }
+
+    public double meanAt(int index) {
+        return mean[index];
+    }
+
+    /** Population variance of the bucket. */
+    public double varianceAt(int index) {
+        return counts[index] > 0 ? m2[index] / counts[index] : 0;
+    }
+
+    /** Adds a partial aggregate that starts at {@code start}; merges with the last row if it has the same start. */
+    void accumulate(long start, long count, float bucketMin, float bucketMax, double bucketMean, double bucketM2) {
+        if (count <= 0) {
+            return;
+        }
+        int last = size - 1;
+        if (last >= 0 && starts[last] == start) {
+            // Chan et al. pairwise combination of two Welford accumulators
+            long n = counts[last] + count;
+            double delta = bucketMean - mean[last];
+            mean[last] += delta * count / n;
+            m2[last] += bucketM2 + delta * delta * ((double) counts[last] * count / n);
+            counts[last] = n;
+            if (bucketMin < min[last]) {
+                min[last] = bucketMin;
+            }
+            if (bucketMax > max[last]) {
+                max[last] = bucketMax;
+            }
+            return;
+        }
+        if (size == starts.length) {
+            grow();
+        }
+        starts[size] = start;
+        counts[size] = count;
+        min[size] = bucketMin;
+        max[size] = bucketMax;
+        mean[size] = bucketMean;
+        m2[size] = bucketM2;
+        size++;
+    }
+
+    private void allocate(int capacity) {
+        starts = new long[capacity];
+        counts = new long[capacity];
+        min = new float[capacity];
+        max = new float[capacity];
+        mean = new double[capacity];
+        m2 = new double[capacity];
+    }
+
+    private void grow() {
+        long[] oldStarts = starts;
+        long[] oldCounts = counts;
+        float[] oldMin = min;
+        float[] oldMax = max;
+        double[] oldMean = mean;
+        double[] oldM2 = m2;
+        allocate(size * 2);
+        System.arraycopy(oldStarts, 0, starts, 0, size);
+        System.arraycopy(oldCounts, 0, counts, 0, size);
+        System.arraycopy(oldMin, 0, min, 0, size);
+        System.arraycopy(oldMax, 0, max, 0, size);
+        System.arraycopy(oldMean, 0, mean, 0, size);
+        System.arraycopy(oldM2, 0, m2, 0, size);
+    }
+}
@@ -0,0 +1,133 @@
+package com.samsunghealth;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer / single-consumer lock-free ring buffer of float samples.
+ *
+ * The producer (sensor listener thread) and the consumer (window assembler) only publish
+ * their own cursor with an ordered write and read the other side's cursor, so neither
+ * side ever blocks or allocates. When the buffer is full the newest samples are dropped
+ * and counted rather than overwriting data the consumer may be reading.
+ */
+public final class SampleRingBuffer {
+
+    private final float[] samples;
+    private final int mask;
+
+    // Next slot the consumer reads / the producer writes; both only ever grow
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Thread-local snapshots of the other side's cursor, refreshed only when needed
+    private long producerHeadCache;
+    private long consumerTailCache;
+
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedSamples = new AtomicLong();
+
+    public SampleRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.samples = new float[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    /** Producer side. Returns false and counts the drop if the buffer is full. */
+    public boolean offer(float sample) {
+        long t = tail.get();
+        if (t - producerHeadCache >= samples.length) {
+            producerHeadCache = head.get();
+            if (t - producerHeadCache >= samples.length) {
+                overflowCount.incrementAndGet();
+                droppedSamples.incrementAndGet();
+                return false;
+            }
+        }
+        samples[(int) t & mask] = sample;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Producer side bulk write. Writes as many samples as fit and drops the remainder.
+     *
+     * @return number of samples accepted
+     */
+    public int offer(float[] source, int offset, int length) {
+        long t = tail.get();
+        long free = samples.length - (t - producerHeadCache);
+        if (free < length) {
+            producerHeadCache = head.get();
+            free = samples.length - (t - producerHeadCache);
+        }
+        int accepted = (int) Math.min(free, length);
+        if (accepted < length) {
+            overflowCount.incrementAndGet();
+            droppedSamples.addAndGet(length - accepted);
+        }
+        if (accepted <= 0) {
+            return 0;
+        }
+        int start = (int) t & mask;
+        int firstPart = Math.min(accepted, samples.length - start);
+        System.arraycopy(source, offset, samples, start, firstPart);
+        if (firstPart < accepted) {
+            System.arraycopy(source, offset + firstPart, samples, 0, accepted - firstPart);
+        }
+        tail.lazySet(t + accepted);
+        return accepted;
+    }
+
+    /**
+     * Consumer side. Copies up to {@code maxLength} samples into {@code target}.
+     *
+     * @return number of samples copied, 0 when the buffer is empty
+     */
+    public int drain(float[] target, int offset, int maxLength) {
+        long h = head.get();
+        long available = consumerTailCache - h;
+        if (available < maxLength) {
+            consumerTailCache = tail.get();
+            available = consumerTailCache - h;
+        }
+        int count = (int) Math.min(available, maxLength);
+        if (count <= 0) {
+            return 0;
+        }
+        int start = (int) h & mask;
+        int firstPart = Math.min(count, samples.length - start);
+        System.arraycopy(samples, start, target, offset, firstPart);
+        if (firstPart < count) {
+            System.arraycopy(samples, 0, target, offset + firstPart, count - firstPart);
+        }
+        head.lazySet(h + count);
+        return count;
+    }
+
+    /** Approximate number of buffered samples; exact only when called by the consumer. */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, samples.length));
+    }
+
+    public long getWrittenCount() {
+        return tail.get();
+    }
+
+    /** Number of producer writes that found the buffer full. */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /** Total samples discarded because the buffer was full. */
+    public long getDroppedSamples() {
+        return droppedSamples.get();
+    }
+}
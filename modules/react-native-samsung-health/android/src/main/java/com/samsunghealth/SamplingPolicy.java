@@ -0,0 +1,86 @@
+package com.samsunghealth;
+
+import java.util.Locale;
+
+/**
+ * How fast {@link HealthSession} polls a tracked metric, between {@code minPeriodMillis} and
+ * {@code maxPeriodMillis}.
+ *
+ * A reading outside [{@code low}, {@code high}], or one that moves more than
+ * {@code changeThreshold} away from the smoothed recent level, drops the period to the
+ * minimum at once. After {@code stableReadings} unremarkable readings in a row the period
+ * grows by {@code backoffFactor}, up to the maximum. A stable patient is therefore polled
+ * rarely, and an abnormal reading is never more than {@code maxPeriodMillis} away from
+ * being seen.
+ */
+public final class SamplingPolicy {
+
+    /** Profile names accepted by {@link #forProfile}; the thresholds are heart rate in BPM. */
+    public static final String PROFILE_FIXED = "fixed";
+    public static final String PROFILE_BALANCED = "balanced";
+    public static final String PROFILE_CARDIAC = "cardiac";
+    public static final String PROFILE_ACTIVE = "active";
+
+    final String profile;
+    final long minPeriodMillis;
+    final long maxPeriodMillis;
+    final float low;
+    final float high;
+    final float changeThreshold;
+    final int stableReadings;
+    final float backoffFactor;
+
+    public SamplingPolicy(String profile, long minPeriodMillis, long maxPeriodMillis, float low, float high,
+                          float changeThreshold, int stableReadings, float backoffFactor) {
+        if (minPeriodMillis < 1 || maxPeriodMillis < minPeriodMillis) {
+            throw new IllegalArgumentException("maxPeriodMs must be >= minPeriodMs >= 1");
+        }
+        if (!(low <= high) || !(changeThreshold > 0) || stableReadings < 1 || !(backoffFactor >= 1)) {
+            throw new IllegalArgumentException("Need low <= high, changeThreshold > 0, stableReadings >= 1, backoffFactor >= 1");
+        }
+        this.profile = profile;
+        this.minPeriodMillis = minPeriodMillis;
+        this.maxPeriodMillis = maxPeriodMillis;
+        this.low = low;
+        this.high = high;
+        this.changeThreshold = changeThreshold;
+        this.stableReadings = stableReadings;
+        this.backoffFactor = backoffFactor;
+    }
+
+    /** Polls every {@code periodMillis}, whatever the readings. */
+    public static SamplingPolicy fixed(long periodMillis) {
+        return new SamplingPolicy(PROFILE_FIXED, periodMillis, periodMillis,
+            Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, 1, 1);
+    }
+
+    /**
+     * Heart rate presets: "balanced" (1-30 s, 50-110 BPM) for everyday wear, "cardiac"
+     * (1-10 s, 55-100 BPM, backs off slowly) for patients under closer watch, and "active"
+     * (2-30 s, 40-160 BPM) for exercise, where fast swings are expected.
+     */
+    public static SamplingPolicy forProfile(String profile) {
+        switch (profile.toLowerCase(Locale.US)) {
+            case PROFILE_BALANCED:
+                return new SamplingPolicy(PROFILE_BALANCED, 1_000, 30_000, 50, 110, 12, 6, 2);
+            case PROFILE_CARDIAC:
+                return new SamplingPolicy(PROFILE_CARDIAC, 1_000, 10_000, 55, 100, 8, 10, 1.5f);
+            case PROFILE_ACTIVE:
+                return new SamplingPolicy(PROFILE_ACTIVE, 2_000, 30_000, 40, 160, 25, 4, 2);
+            default:
+                throw new IllegalArgumentException("Unknown sampling profile: " + profile);
+        }
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public long getMinPeriodMillis() {
+        return minPeriodMillis;
+    }
+
+    public long getMaxPeriodMillis() {
+        return maxPeriodMillis;
+    }
+}
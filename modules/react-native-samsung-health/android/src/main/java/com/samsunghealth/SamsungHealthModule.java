@@ -2,30 +2,116 @@ package com.samsunghealth;
 
 import androidx.annotation.NonNull;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class SamsungHealthModule extends ReactContextBaseJavaModule {
     private static final String MODULE_NAME = "SamsungHealthModule";
     private static final String TAG = "SamsungHealthModule";
+    private static final String EKG_WEIGHTS_ASSET = "ekg_weights.bin";
+    // int8 quantization of the same model (jvm :core:quantizeEcgModel); opt-in, and only shipped
+    // when the app builds with -PsamsungHealth.int8EcgModel=true
+    private static final String EKG_INT8_WEIGHTS_ASSET = "ekg_weights_int8.bin";
+    private static final String ECG_ENGINE_FLOAT = "float";
+    private static final String ECG_ENGINE_INT8 = "int8";
     
     private ReactApplicationContext reactContext;
     private boolean isSDKAvailable = false;
-    private boolean isServiceConnected = false;
+    private volatile boolean isServiceConnected = false;
+
+    // Shared weights; engines keep scratch buffers, so every caller that classifies uses its own copy()
+    private EcgClassifier ecgEngine;
+    private EcgClassifier int8EcgEngine;
+    // Engine of the live stream, set by configureEcgFilters({engine}); float unless the app opts in
+    private volatile boolean liveEcgInt8;
+
+    // Whole-recording classification (e.g. a Holter day) on the big cores, created on first use
+    private EcgBatchClassifier ecgBatchClassifier;
+    private EcgBatchClassifier int8EcgBatchClassifier;
+    private final ConcurrentHashMap<String, EcgBatchClassifier.Job> ecgBatches = new ConcurrentHashMap<>();
+
+    // Sensor timers, historical queries and event flushing all run here, never on the caller's looper
+    private static final int SCHEDULER_THREADS = 2;
+
+    private SensorScheduler scheduler;
+
+    // Latency of every @ReactMethod, stream, bridge emission and inference; see getMetrics()
+    private final HealthMetrics metrics = new HealthMetrics(true);
+    private BridgeEventBatcher<WritableMap> eventBatcher;
+
+    // Tracking, ECG and the on-device store; this module only adapts it to the bridge
+    private static final String SESSION_NAME = "device";
+    private static final String STORE_DIRECTORY = "health-store";
+
+    private HealthSession session;
+
+    // The constructor runs during app start, so the scheduler, batcher and session above are
+    // created on first use (see ensureRuntime()) and the model and today's results are warmed
+    // in the background once JS has drawn its first frame (see warmUp())
+    private static final String PHASE_CONSTRUCT = "construct";
+    private static final String PHASE_RUNTIME = "runtime";
+    private static final String PHASE_SERVICE = "service";
+    private static final String PHASE_FIRST_FRAME = "firstFrame";
+    private static final String PHASE_HISTORY = "history";
+    private static final String PHASE_MODEL = "model";
+
+    private final StartupTimeline startup = new StartupTimeline(PHASE_CONSTRUCT, PHASE_RUNTIME, PHASE_SERVICE,
+        PHASE_FIRST_FRAME, PHASE_HISTORY, PHASE_MODEL);
+    private final long constructedAfterProcessMillis;
+    private final Object runtimeLock = new Object();
+    private volatile boolean runtimeStarted;
+
+    // Durable outbound copy of the live events, set once JS configures an upload endpoint
+    private static final String UPLOAD_DIRECTORY = "upload-queue";
+
+    private volatile UploadQueue uploadQueue;
+
+    // Today and historical query results, so screens that re-query on every mount skip the rebuild
+    private static final int RESULT_CACHE_ENTRIES = 64;
+
+    private final ResultCache<Map<String, Object>> resultCache = new ResultCache<>(RESULT_CACHE_ENTRIES);
+
+    // Session recordings for replay in soak tests and regression runs; see startRecording()
+    private static final String RECORDING_DIRECTORY = "recordings";
+    private static final String RECORDING_EXTENSION = ".mdsr";
+
+    private SessionRecorder recorder;
+    private File recordingFile;
+    private SessionReplay replay;
 
     public SamsungHealthModule(ReactApplicationContext reactContext) {
         super(reactContext);
+        startup.begin(PHASE_CONSTRUCT);
         this.reactContext = reactContext;
-        checkSDKAvailability();
+        this.constructedAfterProcessMillis = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        startup.end(PHASE_CONSTRUCT);
     }
 
     @NonNull
@@ -34,6 +120,92 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         return MODULE_NAME;
     }
 
+    private HealthSession session() {
+        ensureRuntime();
+        return session;
+    }
+
+    private SensorScheduler scheduler() {
+        ensureRuntime();
+        return scheduler;
+    }
+
+    private BridgeEventBatcher<WritableMap> eventBatcher() {
+        ensureRuntime();
+        return eventBatcher;
+    }
+
+    // Threads, the session and its sources, on the first call that needs them
+    private void ensureRuntime() {
+        if (runtimeStarted) {
+            return;
+        }
+        synchronized (runtimeLock) {
+            if (runtimeStarted) {
+                return;
+            }
+            startup.begin(PHASE_RUNTIME);
+            startRuntime();
+            runtimeStarted = true;
+            startup.end(PHASE_RUNTIME);
+        }
+    }
+
+    private void startRuntime() {
+        this.scheduler = new SensorScheduler(SCHEDULER_THREADS, "samsung-health", new SensorScheduler.ErrorListener() {
+            @Override
+            public void onTaskError(String key, Throwable error) {
+                Log.e(TAG, "Background task " + key + " failed", error);
+                metrics.increment("taskErrors", 1);
+            }
+        });
+        this.eventBatcher = new BridgeEventBatcher<>(scheduler.executor(), new BridgeEventBatcher.Sink<WritableMap>() {
+            @Override
+            public void emitBatch(String stream, List<WritableMap> events, long sequence) {
+                emitEventBatch(stream, events, sequence);
+            }
+        }, BridgeEventBatcher.StreamPolicy.immediate());
+        this.session = new HealthSession(SESSION_NAME, scheduler,
+            new File(reactContext.getFilesDir(), STORE_DIRECTORY), new SessionEvents(), metrics);
+        configureDefaultEventPolicies();
+        // Stable heart rate is polled less and less often; abnormal or fast-moving readings snap back to 1 s
+        session.setSamplingPolicy(HealthSession.METRIC_HEART_RATE,
+            SamplingPolicy.forProfile(SamplingPolicy.PROFILE_BALANCED));
+        // Evaluated natively on every reading, so they fire while the JS runtime is suspended
+        session.getAnomalyDetector().setRules(AlertRule.defaults());
+        configureDefaultCacheTtls();
+    }
+
+    @Override
+    public void invalidate() {
+        if (runtimeStarted) {
+            session.stop();
+            eventBatcher.flushAll();
+            scheduler.shutdown();
+            session.close();
+        }
+        closeUploadQueue();
+        closeRecorder();
+        closeEcgBatchClassifier();
+        super.invalidate();
+    }
+
+    private void configureDefaultEventPolicies() {
+        // Continuous streams are coalesced; one-off readings and errors go out immediately
+        eventBatcher.setPolicy("onEcgData", new BridgeEventBatcher.StreamPolicy(
+            4, 1000, 32, BridgeEventBatcher.OverflowPolicy.DROP_OLDEST, 1, 4));
+        eventBatcher.setPolicy("onHeartRateData", new BridgeEventBatcher.StreamPolicy(
+            5, 1000, 60, BridgeEventBatcher.OverflowPolicy.DOWNSAMPLE, 2, 4));
+    }
+
+    private void configureDefaultCacheTtls() {
+        // Live readings invalidate their ranges anyway; the TTL bounds how stale a result can get otherwise
+        resultCache.setTtl(HealthSession.METRIC_HEART_RATE, 10_000);
+        resultCache.setTtl(HealthSession.METRIC_STEPS, 30_000);
+        resultCache.setTtl(HealthSession.METRIC_SPO2, 60_000);
+        resultCache.setTtl(HealthSession.METRIC_SLEEP, 300_000);
+    }
+
     private void checkSDKAvailability() {
         try {
             // Samsung Health SDK sınıflarının varlığını kontrol et
@@ -45,9 +217,124 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * Starts the work deferred from startup on a background thread: today's heart rate, steps
+     * and SpO2 into the result cache (opening the store), then the EKG model mapped and run
+     * once. Call it after the first frame; resolves at once, and getReadiness() reports
+     * progress. Repeated calls are harmless.
+     */
+    @ReactMethod
+    public void warmUp(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "warmUp");
+        try {
+            startup.mark(PHASE_FIRST_FRAME);
+            // One task, so the other scheduler thread stays free for the first screen's own calls
+            scheduler().execute("warmUp", () -> {
+                warmUpHistory();
+                warmUpModel();
+            });
+
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", true);
+            result.putString("message", "Warm-up started");
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start warm-up", e);
+            promise.reject("STARTUP_ERROR", "Failed to start warm-up: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "warmUp", started);
+        }
+    }
+
+    /**
+     * Startup phases (construct, runtime, service, firstFrame, history, model) with their
+     * state and timings; ready once history and model have finished. Not itself timed.
+     */
+    @ReactMethod
+    public void getReadiness(Promise promise) {
+        try {
+            promise.resolve(HealthPayloads.readiness(ReactPayloadWriter.INSTANCE, startup,
+                startup.isFinished(PHASE_HISTORY, PHASE_MODEL), constructedAfterProcessMillis));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to get readiness", e);
+            promise.reject("STARTUP_ERROR", "Failed to get readiness: " + e.getMessage());
+        }
+    }
+
+    private void warmUpHistory() {
+        if (!startup.begin(PHASE_HISTORY)) {
+            return;
+        }
+        long dayStart = TimeSeriesStore.dayStart(System.currentTimeMillis());
+        long dayEnd = dayStart + TimeSeriesStore.DAY_MILLIS;
+        // Same keys as the today queries, so the first screen's calls are cache hits
+        Exception failure = warmCache("getTodayHeartRateData", HealthSession.METRIC_HEART_RATE, dayStart, dayEnd,
+            this::loadTodayHeartRateData);
+        if (failure == null) {
+            failure = warmCache("getTodayStepsData", HealthSession.METRIC_STEPS, dayStart, dayEnd,
+                this::loadTodayStepsData);
+        }
+        if (failure == null) {
+            failure = warmCache("getTodaySpo2Data", HealthSession.METRIC_SPO2, dayStart, dayEnd,
+                this::loadTodaySpo2Data);
+        }
+        if (failure == null) {
+            startup.end(PHASE_HISTORY);
+        } else {
+            Log.e(TAG, "Failed to warm today's results", failure);
+            startup.fail(PHASE_HISTORY, failure);
+        }
+    }
+
+    // Null once cached, or when another caller is already computing it
+    private Exception warmCache(String method, String metric, long start, long end,
+                                ResultCache.Loader<Map<String, Object>> loader) {
+        final Exception[] failure = new Exception[1];
+        resultCache.get(method, metric, start, end, loader, new ResultCache.Callback<Map<String, Object>>() {
+            @Override
+            public void onResult(Map<String, Object> value, boolean cached) {
+            }
+
+            @Override
+            public void onError(Exception error) {
+                failure[0] = error;
+            }
+        });
+        return failure[0];
+    }
+
+    private void warmUpModel() {
+        if (!startup.begin(PHASE_MODEL)) {
+            return;
+        }
+        try {
+            // A copy shares the mapped weights, so this still warms them, without racing a live ECG stream
+            EcgClassifier engine = getEcgEngine().copy();
+            // One inference pages the mapped weights in and compiles the kernels before the first real beat
+            engine.classify(new float[engine.getInputLength()], 0, new float[engine.getClassCount()]);
+            startup.end(PHASE_MODEL);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to warm up EKG model", e);
+            startup.fail(PHASE_MODEL, e);
+        }
+    }
+
     @ReactMethod
     public void connectService(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "connectService");
         try {
+            // Bound on the first connect rather than at module creation
+            if (startup.begin(PHASE_SERVICE)) {
+                try {
+                    checkSDKAvailability();
+                    ensureRuntime();
+                    startup.end(PHASE_SERVICE);
+                } catch (RuntimeException e) {
+                    startup.fail(PHASE_SERVICE, e);
+                    throw e;
+                }
+            }
+
             if (!isSDKAvailable) {
                 // SDK yoksa bile bağlantıyı simüle et
                 Log.w(TAG, "Samsung Health SDK not available, using simulation mode");
@@ -79,13 +366,17 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
             result.putBoolean("success", true);
             result.putString("message", "Samsung Health SDK connected (fallback mode)");
             promise.resolve(result);
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "connectService", started);
         }
     }
 
     @ReactMethod
     public void disconnectService(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "disconnectService");
         try {
             isServiceConnected = false;
+            session().stop();
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -94,11 +385,14 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to disconnect from Samsung Health service", e);
             promise.reject("DISCONNECTION_ERROR", "Failed to disconnect from Samsung Health service: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "disconnectService", started);
         }
     }
 
     @ReactMethod
     public void getCapabilities(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "getCapabilities");
         try {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
@@ -117,11 +411,14 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to get capabilities", e);
             promise.reject("CAPABILITIES_ERROR", "Failed to get capabilities: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "getCapabilities", started);
         }
     }
 
     @ReactMethod
     public void startEcgMeasurement(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "startEcgMeasurement");
         try {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
@@ -131,21 +428,7 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
             // Simulate ECG measurement start
             Log.d(TAG, "Starting ECG measurement...");
             
-            // Simulate ECG data after 2 seconds
-            new android.os.Handler().postDelayed(() -> {
-                WritableMap ecgData = Arguments.createMap();
-                ecgData.putDouble("timestamp", System.currentTimeMillis());
-                ecgData.putString("status", "MEASUREMENT_COMPLETED");
-                
-                // Simulate ECG waveform data
-                WritableArray ecgArray = Arguments.createArray();
-                for (int i = 0; i < 100; i++) {
-                    ecgArray.pushInt((int)(Math.sin(i * 0.1) * 100 + Math.random() * 20));
-                }
-                ecgData.putArray("ecgData", ecgArray);
-                
-                sendEvent("onEcgData", ecgData);
-            }, 2000);
+            session().startEcg(getEcgEngine(liveEcgInt8).copy());
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -154,26 +437,225 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to start ECG measurement", e);
             promise.reject("ECG_ERROR", "Failed to start ECG measurement: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "startEcgMeasurement", started);
         }
     }
 
     @ReactMethod
     public void stopEcgMeasurement(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "stopEcgMeasurement");
         try {
             Log.d(TAG, "Stopping ECG measurement...");
+            long[] counters = session().stopEcg();
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
             result.putString("message", "ECG measurement stopped successfully");
+            result.putDouble("windowsEmitted", counters[0]);
+            result.putDouble("overflowCount", counters[1]);
+            result.putDouble("droppedSamples", counters[2]);
+            result.putDouble("beatsDetected", counters[3]);
+            result.putDouble("beatsDropped", counters[4]);
             promise.resolve(result);
         } catch (Exception e) {
             Log.e(TAG, "Failed to stop ECG measurement", e);
             promise.reject("ECG_ERROR", "Failed to stop ECG measurement: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "stopEcgMeasurement", started);
+        }
+    }
+
+    /**
+     * Options: highPassHz (baseline wander) and notchHz (powerline, 50 or 60), 0 to turn
+     * either off, and engine ('float', the default, or 'int8' when the app ships the
+     * quantized model). Applies from the next startEcgMeasurement().
+     */
+    @ReactMethod
+    public void configureEcgFilters(ReadableMap options, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "configureEcgFilters");
+        try {
+            float highPassHz = options.hasKey("highPassHz")
+                ? (float) options.getDouble("highPassHz") : session().getEcgHighPassHz();
+            float notchHz = options.hasKey("notchHz") ? (float) options.getDouble("notchHz") : session().getEcgNotchHz();
+            boolean int8 = options.hasKey("engine") ? isInt8Engine(options.getString("engine")) : liveEcgInt8;
+            if (int8) {
+                // Fail here rather than at the next start when the quantized model was not shipped
+                getEcgEngine(true);
+            }
+            session().setEcgFilters(highPassHz, notchHz);
+            liveEcgInt8 = int8;
+
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", true);
+            result.putString("message", "ECG filters set to high-pass " + highPassHz + " Hz, notch " + notchHz
+                + " Hz, " + (int8 ? ECG_ENGINE_INT8 : ECG_ENGINE_FLOAT) + " engine");
+            promise.resolve(result);
+        } catch (IllegalArgumentException e) {
+            promise.reject("ECG_FILTER_ERROR", e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to configure ECG filters", e);
+            promise.reject("ECG_FILTER_ERROR", "Failed to configure ECG filters: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "configureEcgFilters", started);
+        }
+    }
+
+    /**
+     * Turns raw ECG into model input: {@code signalBase64} is float32 little-endian samples at
+     * {@code sampleRate}, cut into windows of options.windowLength samples (default: one
+     * window). Each window is filtered like the live stream (options.highPassHz / notchHz
+     * override the configured filters), resampled to the model's input length and, unless
+     * options.normalize is false, normalized with the model's scaler. Resolves with the
+     * windows back to back in the same encoding; unnormalized, they are ready for
+     * classifyEcgBatch(), which normalizes by itself.
+     */
+    @ReactMethod
+    public void preprocessEcg(final String signalBase64, final double sampleRate, final ReadableMap options,
+                              final Promise promise) {
+        execute("preprocessEcg", () -> {
+            try {
+                EcgClassifier engine = getEcgEngine();
+                float[] signal = decodeFloats(signalBase64);
+                int windowLength = options != null && options.hasKey("windowLength")
+                    ? options.getInt("windowLength") : signal.length;
+                if (windowLength < 1 || signal.length == 0 || signal.length % windowLength != 0) {
+                    throw new IllegalArgumentException("ECG signal must hold whole windows of " + windowLength
+                        + " samples, got " + signal.length + " samples");
+                }
+                float highPassHz = options != null && options.hasKey("highPassHz")
+                    ? (float) options.getDouble("highPassHz") : session().getEcgHighPassHz();
+                float notchHz = options != null && options.hasKey("notchHz")
+                    ? (float) options.getDouble("notchHz") : session().getEcgNotchHz();
+                boolean normalize = options == null || !options.hasKey("normalize") || options.getBoolean("normalize");
+
+                // One preprocessor for every window, so the filters and resampler are built once
+                EcgPreprocessor preprocessor = new EcgPreprocessor((int) Math.round(sampleRate), highPassHz, notchHz);
+                int inputLength = engine.getInputLength();
+                int count = signal.length / windowLength;
+                float[] windows = new float[count * inputLength];
+                for (int i = 0; i < count; i++) {
+                    if (normalize) {
+                        preprocessor.prepareWindow(signal, i * windowLength, windowLength, engine, windows, i * inputLength);
+                    } else {
+                        preprocessor.prepareWindow(signal, i * windowLength, windowLength, windows, i * inputLength,
+                            inputLength);
+                    }
+                }
+
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("success", true);
+                result.putString("windows", encodeFloats(windows));
+                result.putInt("windowCount", count);
+                result.putInt("inputLength", inputLength);
+                promise.resolve(result);
+            } catch (IllegalArgumentException e) {
+                promise.reject("ECG_PREPROCESS_ERROR", e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to preprocess ECG", e);
+                promise.reject("ECG_PREPROCESS_ERROR", "Failed to preprocess ECG: " + e.getMessage());
+            }
+        });
+    }
+
+    // Float32 little-endian, the layout of a JS Float32Array's buffer
+    private static float[] decodeFloats(String base64) {
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(base64)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] values = new float[bytes.remaining() / 4];
+        bytes.asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static String encodeFloats(float[] values) {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values);
+        return Base64.getEncoder().encodeToString(bytes.array());
+    }
+
+    /**
+     * Classifies a whole recording of beat windows: {@code windowsBase64} is float32
+     * little-endian samples, windows of the model's input length back to back. A new batch
+     * under a running batch's id cancels the old one. options.engine picks 'int8' over the
+     * default 'float' model, as in configureEcgFilters().
+     */
+    @ReactMethod
+    public void classifyEcgBatch(final String batchId, final String windowsBase64, final ReadableMap options,
+                                 final Promise promise) {
+        execute("classifyEcgBatch", () -> submitEcgBatch(batchId, windowsBase64, options, promise));
+    }
+
+    private void submitEcgBatch(final String batchId, String windowsBase64, ReadableMap options, final Promise promise) {
+        try {
+            final EcgBatchClassifier classifier = getEcgBatchClassifier(options != null && options.hasKey("engine")
+                && isInt8Engine(options.getString("engine")));
+            final boolean includeProbabilities = options != null && options.hasKey("includeProbabilities")
+                && options.getBoolean("includeProbabilities");
+            float[] windows = decodeFloats(windowsBase64);
+            int inputLength = classifier.getInputLength();
+            if (windows.length == 0 || windows.length % inputLength != 0) {
+                throw new IllegalArgumentException("ECG batch must hold whole windows of " + inputLength
+                    + " samples, got " + windows.length + " samples");
+            }
+
+            Log.d(TAG, "Classifying ECG batch " + batchId + ": " + windows.length / inputLength + " windows on "
+                + classifier.getParallelism() + " threads");
+            EcgBatchClassifier.Job job = classifier.submit(windows, windows.length / inputLength,
+                done -> finishEcgBatch(batchId, done, classifier, includeProbabilities, promise));
+            EcgBatchClassifier.Job previous = ecgBatches.put(batchId, job);
+            if (previous != null) {
+                previous.cancel();
+            }
+            if (job.isDone()) {
+                ecgBatches.remove(batchId, job);
+            }
+        } catch (IllegalArgumentException e) {
+            promise.reject("ECG_BATCH_ERROR", e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to classify ECG batch", e);
+            promise.reject("ECG_BATCH_ERROR", "Failed to classify ECG batch: " + e.getMessage());
+        }
+    }
+
+    private void finishEcgBatch(String batchId, EcgBatchClassifier.Job job, EcgBatchClassifier classifier,
+                                boolean includeProbabilities, Promise promise) {
+        ecgBatches.remove(batchId, job);
+        metrics.record(HealthMetrics.INFERENCE, "ecgBatch", job.getElapsedNanos());
+        metrics.increment("ecgBatchWindows", job.getCompleted());
+        if (job.getError() != null) {
+            Log.e(TAG, "ECG batch " + batchId + " failed", job.getError());
+            promise.reject("ECG_BATCH_ERROR", "Failed to classify ECG batch: " + job.getError().getMessage());
+        } else if (job.isCancelled()) {
+            promise.reject("ECG_BATCH_CANCELLED", "ECG batch " + batchId + " cancelled after "
+                + job.getCompleted() + " of " + job.getCount() + " windows");
+        } else {
+            promise.resolve(HealthPayloads.ecgBatchResult(ReactPayloadWriter.INSTANCE, job, classifier,
+                includeProbabilities));
+            Log.d(TAG, "ECG batch " + batchId + " classified in " + job.getElapsedNanos() / 1_000_000 + " ms");
+        }
+    }
+
+    /** Stops a running batch at its next block, e.g. when the screen showing it closes. */
+    @ReactMethod
+    public void cancelEcgBatch(String batchId, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "cancelEcgBatch");
+        try {
+            EcgBatchClassifier.Job job = ecgBatches.remove(batchId);
+            if (job != null) {
+                job.cancel();
+            }
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", true);
+            result.putBoolean("cancelled", job != null);
+            result.putString("message", job != null ? "ECG batch " + batchId + " cancelled" : "No running ECG batch " + batchId);
+            promise.resolve(result);
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "cancelEcgBatch", started);
         }
     }
 
     @ReactMethod
     public void startSpo2Measurement(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "startSpo2Measurement");
         try {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
@@ -183,15 +665,8 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
             // Simulate SpO2 measurement start
             Log.d(TAG, "Starting SpO2 measurement...");
             
-            // Simulate SpO2 data after 3 seconds
-            new android.os.Handler().postDelayed(() -> {
-                WritableMap spo2Data = Arguments.createMap();
-                spo2Data.putDouble("timestamp", System.currentTimeMillis());
-                spo2Data.putInt("spo2", 98); // Simulate SpO2 value
-                spo2Data.putString("status", "MEASUREMENT_COMPLETED");
-                
-                sendEvent("onSpo2Data", spo2Data);
-            }, 3000);
+            // The (simulated) measurement reports once, after a few seconds
+            session().startTracking(HealthSession.METRIC_SPO2);
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -200,13 +675,17 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to start SpO2 measurement", e);
             promise.reject("SPO2_ERROR", "Failed to start SpO2 measurement: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "startSpo2Measurement", started);
         }
     }
 
     @ReactMethod
     public void stopSpo2Measurement(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "stopSpo2Measurement");
         try {
             Log.d(TAG, "Stopping SpO2 measurement...");
+            session().stopTracking(HealthSession.METRIC_SPO2);
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -215,11 +694,14 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to stop SpO2 measurement", e);
             promise.reject("SPO2_ERROR", "Failed to stop SpO2 measurement: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "stopSpo2Measurement", started);
         }
     }
 
     @ReactMethod
     public void startHeartRateTracking(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "startHeartRateTracking");
         try {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
@@ -229,8 +711,8 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
             // Simulate heart rate tracking start
             Log.d(TAG, "Starting heart rate tracking...");
             
-            // Simulate heart rate data every 5 seconds
-            simulateHeartRateData();
+            // Heart rate every 1-30 s under its sampling policy; a repeated start replaces the running timer and resets HRV
+            session().startTracking(HealthSession.METRIC_HEART_RATE);
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -239,13 +721,17 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to start heart rate tracking", e);
             promise.reject("HEART_RATE_ERROR", "Failed to start heart rate tracking: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "startHeartRateTracking", started);
         }
     }
 
     @ReactMethod
     public void stopHeartRateTracking(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "stopHeartRateTracking");
         try {
             Log.d(TAG, "Stopping heart rate tracking...");
+            session().stopTracking(HealthSession.METRIC_HEART_RATE);
             
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
@@ -254,11 +740,14 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to stop heart rate tracking", e);
             promise.reject("HEART_RATE_ERROR", "Failed to stop heart rate tracking: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "stopHeartRateTracking", started);
         }
     }
 
     @ReactMethod
     public void setUserProfile(double weight, double height, int age, int gender, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "setUserProfile");
         try {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
@@ -274,288 +763,1083 @@ public class SamsungHealthModule extends ReactContextBaseJavaModule {
         } catch (Exception e) {
             Log.e(TAG, "Failed to set user profile", e);
             promise.reject("PROFILE_ERROR", "Failed to set user profile: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "setUserProfile", started);
         }
     }
 
+    /**
+     * Sets how often a tracked metric is polled: a profile ("balanced", "cardiac", "active" or
+     * "fixed") with optional overrides, applied to a running tracker at once.
+     */
     @ReactMethod
-    public void getHistoricalHeartRateData(double startTime, double endTime, Promise promise) {
+    public void configureSampling(String metric, ReadableMap options, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "configureSampling");
         try {
-            if (!isServiceConnected) {
-                promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            if (!session().hasMetric(metric)) {
+                promise.reject("SAMPLING_CONFIG_ERROR", "Unknown metric: " + metric);
                 return;
             }
+            String profile = options.hasKey("profile") ? options.getString("profile") : SamplingPolicy.PROFILE_BALANCED;
+            SamplingPolicy base = SamplingPolicy.PROFILE_FIXED.equals(profile)
+                ? SamplingPolicy.fixed(options.hasKey("periodMs")
+                    ? (long) options.getDouble("periodMs") : session().getSource(metric).getPeriodMillis())
+                : SamplingPolicy.forProfile(profile);
+            SamplingPolicy policy = new SamplingPolicy(base.profile,
+                options.hasKey("minPeriodMs") ? (long) options.getDouble("minPeriodMs") : base.minPeriodMillis,
+                options.hasKey("maxPeriodMs") ? (long) options.getDouble("maxPeriodMs") : base.maxPeriodMillis,
+                options.hasKey("low") ? (float) options.getDouble("low") : base.low,
+                options.hasKey("high") ? (float) options.getDouble("high") : base.high,
+                options.hasKey("changeThreshold") ? (float) options.getDouble("changeThreshold") : base.changeThreshold,
+                options.hasKey("stableReadings") ? options.getInt("stableReadings") : base.stableReadings,
+                options.hasKey("backoffFactor") ? (float) options.getDouble("backoffFactor") : base.backoffFactor);
+            session().setSamplingPolicy(metric, policy);
 
-            Log.d(TAG, "Getting historical heart rate data from " + startTime + " to " + endTime);
-            
-            // Simulate historical heart rate data
-            WritableArray heartRateArray = Arguments.createArray();
-            long start = (long) startTime;
-            long end = (long) endTime;
-            long dayInMillis = 24 * 60 * 60 * 1000;
-            
-            for (long time = start; time < end; time += dayInMillis) {
-                // Generate 3-5 measurements per day
-                int measurementsPerDay = 3 + (int)(Math.random() * 3);
-                for (int i = 0; i < measurementsPerDay; i++) {
-                    WritableMap heartRateData = Arguments.createMap();
-                    heartRateData.putDouble("timestamp", time + (i * 4 * 60 * 60 * 1000)); // Every 4 hours
-                    heartRateData.putInt("heartRate", 65 + (int)(Math.random() * 30)); // 65-95 BPM
-                    heartRateData.putString("status", "MEASUREMENT_COMPLETED");
-                    heartRateArray.pushMap(heartRateData);
-                }
-            }
-            
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", heartRateArray);
+            result.putString("message", "Sampling for " + metric + " set to " + policy.getProfile());
             promise.resolve(result);
+        } catch (IllegalArgumentException e) {
+            promise.reject("SAMPLING_CONFIG_ERROR", e.getMessage());
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get historical heart rate data", e);
-            promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical heart rate data: " + e.getMessage());
+            Log.e(TAG, "Failed to configure sampling", e);
+            promise.reject("SAMPLING_CONFIG_ERROR", "Failed to configure sampling: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "configureSampling", started);
         }
     }
 
+    /** Effective polling rate of every tracked periodic metric, next to its nominal rate. */
     @ReactMethod
-    public void getHistoricalStepsData(double startTime, double endTime, Promise promise) {
+    public void getSamplingRates(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "getSamplingRates");
         try {
-            if (!isServiceConnected) {
-                promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
-                return;
+            WritableMap rates = Arguments.createMap();
+            for (String metric : new String[] {HealthSession.METRIC_HEART_RATE, HealthSession.METRIC_SPO2,
+                    HealthSession.METRIC_STEPS, HealthSession.METRIC_SLEEP}) {
+                double[] stats = session().getSamplingStats(metric);
+                if (stats == null) {
+                    continue;
+                }
+                SamplingPolicy policy = session().getSamplingPolicy(metric);
+                WritableMap rate = Arguments.createMap();
+                rate.putString("profile", policy != null ? policy.getProfile() : SamplingPolicy.PROFILE_FIXED);
+                rate.putDouble("currentPeriodMs", stats[0]);
+                rate.putDouble("nominalPeriodMs", stats[1]);
+                rate.putDouble("readingsPerMinute", stats[2]);
+                rate.putDouble("nominalReadingsPerMinute", 60_000.0 / stats[1]);
+                rate.putDouble("readings", stats[3]);
+                rate.putDouble("abnormalReadings", stats[4]);
+                rate.putDouble("rapidChanges", stats[5]);
+                rates.putMap(metric, rate);
             }
 
-            Log.d(TAG, "Getting historical steps data from " + startTime + " to " + endTime);
-            
-            // Simulate historical steps data
-            WritableArray stepsArray = Arguments.createArray();
-            long start = (long) startTime;
-            long end = (long) endTime;
-            long dayInMillis = 24 * 60 * 60 * 1000;
-            
-            for (long time = start; time < end; time += dayInMillis) {
-                WritableMap stepsData = Arguments.createMap();
-                stepsData.putDouble("timestamp", time);
-                
-                // Weekend vs weekday logic
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTimeInMillis(time);
-                int dayOfWeek = cal.get(java.util.Calendar.DAY_OF_WEEK);
-                boolean isWeekend = (dayOfWeek == java.util.Calendar.SATURDAY || dayOfWeek == java.util.Calendar.SUNDAY);
-                
-                int steps = isWeekend ? 
-                    5000 + (int)(Math.random() * 4000) : // Weekend: 5000-9000 steps
-                    7000 + (int)(Math.random() * 6000);  // Weekday: 7000-13000 steps
-                
-                stepsData.putInt("steps", steps);
-                stepsData.putString("date", new java.text.SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date(time)));
-                stepsArray.pushMap(stepsData);
-            }
-            
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", stepsArray);
+            result.putMap("data", rates);
             promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get historical steps data", e);
-            promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical steps data: " + e.getMessage());
+            Log.e(TAG, "Failed to get sampling rates", e);
+            promise.reject("SAMPLING_ERROR", "Failed to get sampling rates: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "getSamplingRates", started);
         }
     }
 
     @ReactMethod
-    public void getHistoricalSleepData(double startTime, double endTime, Promise promise) {
-        try {
+    public void getHistoricalHeartRateData(final double startTime, final double endTime, final Promise promise) {
+        execute("getHistoricalHeartRateData", () -> queryHistoricalHeartRateData(startTime, endTime, promise));
+    }
+
+    private void queryHistoricalHeartRateData(double startTime, double endTime, final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting historical heart rate data from " + startTime + " to " + endTime);
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        resolveCached("getHistoricalHeartRateData", HealthSession.METRIC_HEART_RATE, start, end, promise,
+            () -> HealthPayloads.heartRateSamples(MapPayloadWriter.INSTANCE, queryHealthStore(HealthSession.METRIC_HEART_RATE, start, end)),
+            e -> {
+                Log.e(TAG, "Failed to get historical heart rate data", e);
+                promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical heart rate data: " + e.getMessage());
+            });
+    }
+
+    @ReactMethod
+    public void getHistoricalStepsData(final double startTime, final double endTime, final Promise promise) {
+        execute("getHistoricalStepsData", () -> queryHistoricalStepsData(startTime, endTime, promise));
+    }
+
+    private void queryHistoricalStepsData(double startTime, double endTime, final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting historical steps data from " + startTime + " to " + endTime);
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        resolveCached("getHistoricalStepsData", HealthSession.METRIC_STEPS, start, end, promise,
+            () -> HealthPayloads.stepsSamples(MapPayloadWriter.INSTANCE, queryHealthStore(HealthSession.METRIC_STEPS, start, end)),
+            e -> {
+                Log.e(TAG, "Failed to get historical steps data", e);
+                promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical steps data: " + e.getMessage());
+            });
+    }
+
+    @ReactMethod
+    public void getHistoricalSleepData(final double startTime, final double endTime, final Promise promise) {
+        execute("getHistoricalSleepData", () -> queryHistoricalSleepData(startTime, endTime, promise));
+    }
+
+    private void queryHistoricalSleepData(double startTime, double endTime, final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting historical sleep data from " + startTime + " to " + endTime);
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        resolveCached("getHistoricalSleepData", HealthSession.METRIC_SLEEP, start, end, promise,
+            () -> HealthPayloads.sleepSamples(MapPayloadWriter.INSTANCE, queryHealthStore(HealthSession.METRIC_SLEEP, start, end)),
+            e -> {
+                Log.e(TAG, "Failed to get historical sleep data", e);
+                promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical sleep data: " + e.getMessage());
+            });
+    }
+
+    @ReactMethod
+    public void getHistoricalSpo2Data(final double startTime, final double endTime, final Promise promise) {
+        execute("getHistoricalSpo2Data", () -> queryHistoricalSpo2Data(startTime, endTime, promise));
+    }
+
+    private void queryHistoricalSpo2Data(double startTime, double endTime, final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting historical SpO2 data from " + startTime + " to " + endTime);
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        resolveCached("getHistoricalSpo2Data", HealthSession.METRIC_SPO2, start, end, promise,
+            () -> HealthPayloads.spo2Samples(MapPayloadWriter.INSTANCE, queryHealthStore(HealthSession.METRIC_SPO2, start, end)),
+            e -> {
+                Log.e(TAG, "Failed to get historical SpO2 data", e);
+                promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical SpO2 data: " + e.getMessage());
+            });
+    }
+
+    @ReactMethod
+    public void getAggregatedSeries(final String metric, final double startTime, final double endTime,
+                                    final double resolution, final Promise promise) {
+        execute("getAggregatedSeries", () -> queryAggregatedSeries(metric, startTime, endTime, resolution, false, promise));
+    }
+
+    @ReactMethod
+    public void getAggregatedSeriesColumnar(final String metric, final double startTime, final double endTime,
+                                            final double resolution, final Promise promise) {
+        execute("getAggregatedSeriesColumnar", () -> queryAggregatedSeries(metric, startTime, endTime, resolution, true, promise));
+    }
+
+    // resolution: bucket width in ms (multiple of one minute), or <= 0 to pick minute/hour/day from the range
+    private void queryAggregatedSeries(final String metric, double startTime, double endTime, final double resolution,
+                                       final boolean columnar, final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (!session().hasMetric(metric)) {
+            promise.reject("AGGREGATION_ERROR", "Unknown metric: " + metric);
+            return;
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        // Same range at another resolution or encoding is another result
+        String method = (columnar ? "getAggregatedSeriesColumnar/" : "getAggregatedSeries/") + (long) resolution;
+        resolveCached(method, metric, start, end, promise, () -> {
+            RollupBuckets buckets = new RollupBuckets();
+            long resolutionMillis = session().aggregate(metric, start, end, (long) resolution, buckets);
+            return columnar
+                ? HealthPayloads.columnarBuckets(MapPayloadWriter.INSTANCE, metric, resolutionMillis, buckets)
+                : HealthPayloads.aggregatedSeries(MapPayloadWriter.INSTANCE, metric, resolutionMillis, buckets);
+        }, e -> {
+            if (e instanceof IllegalArgumentException) {
+                promise.reject("AGGREGATION_ERROR", e.getMessage());
+                return;
+            }
+            Log.e(TAG, "Failed to get aggregated series", e);
+            promise.reject("AGGREGATION_ERROR", "Failed to get aggregated series: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Raw samples of one stored metric as a single columnar blob (see {@link ColumnarEncoder})
+     * instead of one map per sample: columns "timestamp" (delta varint) and "value" (int32).
+     */
+    @ReactMethod
+    public void getHistoricalSeriesColumnar(final String metric, final double startTime, final double endTime,
+                                            final Promise promise) {
+        execute("getHistoricalSeriesColumnar", () -> queryHistoricalSeriesColumnar(metric, startTime, endTime, promise));
+    }
+
+    private void queryHistoricalSeriesColumnar(final String metric, double startTime, double endTime,
+                                               final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
+            return;
+        }
+        if (!session().hasMetric(metric)) {
+            promise.reject("HISTORICAL_DATA_ERROR", "Unknown metric: " + metric);
+            return;
+        }
+
+        final long start = (long) startTime;
+        final long end = (long) endTime;
+        resolveCached("getHistoricalSeriesColumnar", metric, start, end, promise,
+            () -> HealthPayloads.columnarSamples(MapPayloadWriter.INSTANCE, metric, queryHealthStore(metric, start, end)),
+            e -> {
+                Log.e(TAG, "Failed to get columnar historical data", e);
+                promise.reject("HISTORICAL_DATA_ERROR", "Failed to get columnar historical data: " + e.getMessage());
+            });
+    }
+
+    /**
+     * Sleep stages ("sleep") or activity bouts ("activity") overlapping the range, as segmented
+     * natively from the live heart rate, HRV and step streams and stored as they end; nothing
+     * is derived from raw samples per call.
+     */
+    @ReactMethod
+    public void getSegments(final String track, final double startTime, final double endTime, final Promise promise) {
+        execute("getSegments", () -> {
             if (!isServiceConnected) {
                 promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
                 return;
             }
+            try {
+                long start = (long) startTime;
+                long end = (long) endTime;
+                List<SegmentationEngine.Segment> segments = new ArrayList<>();
+                long labelledUntil = session().segments(track, start, end, segments);
+                promise.resolve(Arguments.makeNativeMap(
+                    HealthPayloads.segments(MapPayloadWriter.INSTANCE, track, segments, start, end, labelledUntil)));
+            } catch (IllegalArgumentException e) {
+                promise.reject("SEGMENTATION_ERROR", e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to get segments", e);
+                promise.reject("SEGMENTATION_ERROR", "Failed to get segments: " + e.getMessage());
+            }
+        });
+    }
 
-            Log.d(TAG, "Getting historical sleep data from " + startTime + " to " + endTime);
-            
-            // Simulate historical sleep data
-            WritableArray sleepArray = Arguments.createArray();
-            long start = (long) startTime;
-            long end = (long) endTime;
-            long dayInMillis = 24 * 60 * 60 * 1000;
-            String[] qualities = {"poor", "fair", "good", "excellent"};
-            
-            for (long time = start; time < end; time += dayInMillis) {
-                WritableMap sleepData = Arguments.createMap();
-                sleepData.putDouble("timestamp", time);
-                sleepData.putInt("sleepDuration", 300 + (int)(Math.random() * 240)); // 5-9 hours in minutes
-                sleepData.putString("sleepQuality", qualities[(int)(Math.random() * qualities.length)]);
-                sleepData.putString("date", new java.text.SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date(time)));
-                sleepArray.pushMap(sleepData);
+    private SeriesSlice queryHealthStore(String metric, long start, long end) {
+        SeriesSlice samples = new SeriesSlice();
+        session().query(metric, start, end, samples);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Health store returned " + samples.size() + " " + metric + " samples");
+        }
+        return samples;
+    }
+
+    // Günlük veri çekme fonksiyonları
+    @ReactMethod
+    public void getTodayHeartRateData(final Promise promise) {
+        execute("getTodayHeartRateData", () -> queryTodayHeartRateData(promise));
+    }
+
+    private void queryTodayHeartRateData(final Promise promise) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting today's heart rate data...");
+        }
+
+        // Bugünün verilerini kaynaktan al - bağlantı durumuna bakma
+        long dayStart = TimeSeriesStore.dayStart(System.currentTimeMillis());
+        resolveCached("getTodayHeartRateData", HealthSession.METRIC_HEART_RATE, dayStart,
+            dayStart + TimeSeriesStore.DAY_MILLIS, promise, this::loadTodayHeartRateData, e -> {
+                Log.e(TAG, "Failed to get today's heart rate data", e);
+                // Hata durumunda bile boş veri döndür
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("success", true);
+                result.putArray("data", Arguments.createArray());
+                promise.resolve(result);
+            });
+    }
+
+    private Map<String, Object> loadTodayHeartRateData() {
+        SeriesSlice samples = new SeriesSlice(16);
+        session().today(HealthSession.METRIC_HEART_RATE, samples);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Today's heart rate data generated: " + samples.size() + " entries");
+        }
+        return HealthPayloads.heartRateSamples(MapPayloadWriter.INSTANCE, samples);
+    }
+
+    @ReactMethod
+    public void getTodayStepsData(final Promise promise) {
+        execute("getTodayStepsData", () -> queryTodayStepsData(promise));
+    }
+
+    private void queryTodayStepsData(final Promise promise) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Getting today's steps data...");
+        }
+
+        // Bugünün adım verilerini kaynaktan al - bağlantı durumuna bakma
+        long dayStart = TimeSeriesStore.dayStart(System.currentTimeMillis());
+        resolveCached("getTodayStepsData", HealthSession.METRIC_STEPS, dayStart,
+            dayStart + TimeSeriesStore.DAY_MILLIS, promise, this::loadTodayStepsData, e -> {
+                Log.e(TAG, "Failed to get today's steps data", e);
+                // Hata durumunda bile varsayılan veri döndür
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("success", true);
+                result.putInt("steps", 0);
+                result.putDouble("timestamp", System.currentTimeMillis());
+                promise.resolve(result);
+            });
+    }
+
+    private Map<String, Object> loadTodayStepsData() {
+        SeriesSlice samples = new SeriesSlice(4);
+        session().today(HealthSession.METRIC_STEPS, samples);
+        Map<String, Object> result = HealthPayloads.todaySteps(MapPayloadWriter.INSTANCE, samples);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Today's steps data generated: " + result.get("steps") + " steps");
+        }
+        return result;
+    }
+
+    @ReactMethod
+    public void getTodaySpo2Data(final Promise promise) {
+        execute("getTodaySpo2Data", () -> queryTodaySpo2Data(promise));
+    }
+
+    private void queryTodaySpo2Data(final Promise promise) {
+        if (!isServiceConnected) {
+            promise.reject("SERVICE_ERROR", "Samsung Health service not connected");
+            return;
+        }
+
+        // Bugünün SpO2 ölçümleri
+        long dayStart = TimeSeriesStore.dayStart(System.currentTimeMillis());
+        resolveCached("getTodaySpo2Data", HealthSession.METRIC_SPO2, dayStart,
+            dayStart + TimeSeriesStore.DAY_MILLIS, promise, this::loadTodaySpo2Data, e -> {
+                Log.e(TAG, "Failed to get today's SpO2 data", e);
+                promise.reject("DATA_ERROR", "Failed to get today's SpO2 data: " + e.getMessage());
+            });
+    }
+
+    private Map<String, Object> loadTodaySpo2Data() {
+        SeriesSlice samples = new SeriesSlice(4);
+        session().today(HealthSession.METRIC_SPO2, samples);
+        return HealthPayloads.todaySpo2Samples(MapPayloadWriter.INSTANCE, samples);
+    }
+
+    private interface QueryFailure {
+        void onFailure(Exception error);
+    }
+
+    // Today and historical results come from the result cache; identical calls in flight share one computation
+    private void resolveCached(String method, String metric, long start, long end, final Promise promise,
+                               ResultCache.Loader<Map<String, Object>> loader, final QueryFailure failure) {
+        resultCache.get(method, metric, start, end, loader, new ResultCache.Callback<Map<String, Object>>() {
+            @Override
+            public void onResult(Map<String, Object> value, boolean cached) {
+                metrics.increment(cached ? "resultCacheHits" : "resultCacheMisses", 1);
+                // A WritableMap is consumed by the bridge, so every promise gets its own copy
+                promise.resolve(Arguments.makeNativeMap(value));
             }
-            
+
+            @Override
+            public void onError(Exception error) {
+                failure.onFailure(error);
+            }
+        });
+    }
+
+    // Off-thread half of a @ReactMethod, timed from the call to the end of the task, which is what JS waits for
+    private void execute(final String method, final Runnable task) {
+        final long called = metrics.now();
+        scheduler().execute(method, () -> {
+            HealthMetrics.Timer timer = metrics.timer(HealthMetrics.METHOD, method);
+            long started = metrics.start(timer);
+            try {
+                task.run();
+            } finally {
+                if (started != HealthMetrics.NOT_TIMED) {
+                    metrics.stop(timer, called != HealthMetrics.NOT_TIMED ? called : started);
+                }
+            }
+        });
+    }
+
+    private static boolean isInt8Engine(String engine) {
+        if (ECG_ENGINE_INT8.equals(engine)) {
+            return true;
+        }
+        if (!ECG_ENGINE_FLOAT.equals(engine)) {
+            throw new IllegalArgumentException("Unknown ECG engine " + engine + "; expected "
+                + ECG_ENGINE_FLOAT + " or " + ECG_ENGINE_INT8);
+        }
+        return false;
+    }
+
+    /** The float model, which classifies unless a caller asks for int8. */
+    private EcgClassifier getEcgEngine() throws IOException {
+        return getEcgEngine(false);
+    }
+
+    private synchronized EcgClassifier getEcgEngine(boolean int8) throws IOException {
+        if (int8 ? int8EcgEngine != null : ecgEngine != null) {
+            return int8 ? int8EcgEngine : ecgEngine;
+        }
+        long started = System.currentTimeMillis();
+        String asset = int8 ? EKG_INT8_WEIGHTS_ASSET : EKG_WEIGHTS_ASSET;
+        MappedWeightFile file = mapAsset(asset);
+        if (file == null) {
+            throw new IOException("EKG model asset " + asset + " is missing"
+                + (int8 ? "; build the app with -PsamsungHealth.int8EcgModel=true to ship it" : ""));
+        }
+        if (int8) {
+            int8EcgEngine = new QuantizedEcgEngine(QuantizedEcgWeights.fromBinary(file));
+        } else {
+            ecgEngine = new EcgInferenceEngine(EcgModelWeights.fromBinary(file));
+        }
+        Log.d(TAG, "EKG model (" + (int8 ? ECG_ENGINE_INT8 : ECG_ENGINE_FLOAT) + ") mapped in "
+            + (System.currentTimeMillis() - started) + " ms");
+        return int8 ? int8EcgEngine : ecgEngine;
+    }
+
+    private synchronized EcgBatchClassifier getEcgBatchClassifier(boolean int8) throws IOException {
+        if (int8) {
+            if (int8EcgBatchClassifier == null) {
+                int8EcgBatchClassifier = new EcgBatchClassifier(getEcgEngine(true));
+            }
+            return int8EcgBatchClassifier;
+        }
+        if (ecgBatchClassifier == null) {
+            ecgBatchClassifier = new EcgBatchClassifier(getEcgEngine(false));
+        }
+        return ecgBatchClassifier;
+    }
+
+    private synchronized void closeEcgBatchClassifier() {
+        if (ecgBatchClassifier != null) {
+            ecgBatchClassifier.close();
+            ecgBatchClassifier = null;
+        }
+        if (int8EcgBatchClassifier != null) {
+            int8EcgBatchClassifier.close();
+            int8EcgBatchClassifier = null;
+        }
+    }
+
+    /** Maps an asset straight out of the APK, where it is stored uncompressed; null when not shipped. */
+    private MappedWeightFile mapAsset(String name) throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = reactContext.getAssets().openFd(name);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            FileInputStream in = fd.createInputStream();
+            return MappedWeightFile.map(in.getChannel(), fd.getStartOffset(), fd.getLength());
+        } finally {
+            fd.close();
+        }
+    }
+
+    /**
+     * Latency percentiles per category and name (method, stream, bridge, inference) and the
+     * counters. Not itself timed, so polling it does not show up in the snapshot.
+     */
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            promise.resolve(HealthPayloads.metrics(ReactPayloadWriter.INSTANCE, metrics));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to get metrics", e);
+            promise.reject("METRICS_ERROR", "Failed to get metrics: " + e.getMessage());
+        }
+    }
+
+    /** Options: enabled, tracing (Android Trace sections for every timed call), reset. */
+    @ReactMethod
+    public void configureMetrics(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("enabled")) {
+                metrics.setEnabled(options.getBoolean("enabled"));
+            }
+            if (options.hasKey("tracing")) {
+                metrics.setTracer(options.getBoolean("tracing") ? AndroidTracer.INSTANCE : null);
+            }
+            if (options.hasKey("reset") && options.getBoolean("reset")) {
+                metrics.reset();
+            }
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", sleepArray);
+            result.putString("message", "Metrics " + (metrics.isEnabled() ? "enabled" : "disabled")
+                + (metrics.isTracing() ? " with tracing" : ""));
             promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get historical sleep data", e);
-            promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical sleep data: " + e.getMessage());
+            Log.e(TAG, "Failed to configure metrics", e);
+            promise.reject("METRICS_ERROR", "Failed to configure metrics: " + e.getMessage());
         }
     }
 
+    /**
+     * Options: enabled, maxEntries, ttlMs ({ metric: milliseconds }, 0 stops caching that
+     * metric), clear. Resolves with the cache's size and counters.
+     */
     @ReactMethod
-    public void getHistoricalSpo2Data(double startTime, double endTime, Promise promise) {
+    public void configureResultCache(ReadableMap options, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "configureResultCache");
         try {
-            if (!isServiceConnected) {
-                promise.reject("SERVICE_ERROR", "Health Tracking Service not connected. Please call connectService() first.");
-                return;
+            if (options.hasKey("enabled")) {
+                resultCache.setEnabled(options.getBoolean("enabled"));
             }
-
-            Log.d(TAG, "Getting historical SpO2 data from " + startTime + " to " + endTime);
-            
-            // Simulate historical SpO2 data
-            WritableArray spo2Array = Arguments.createArray();
-            long start = (long) startTime;
-            long end = (long) endTime;
-            long dayInMillis = 24 * 60 * 60 * 1000;
-            
-            for (long time = start; time < end; time += dayInMillis) {
-                // Generate 1-2 measurements per day
-                int measurementsPerDay = 1 + (int)(Math.random() * 2);
-                for (int i = 0; i < measurementsPerDay; i++) {
-                    WritableMap spo2Data = Arguments.createMap();
-                    spo2Data.putDouble("timestamp", time + (i * 8 * 60 * 60 * 1000)); // Every 8 hours
-                    spo2Data.putInt("oxygenSaturation", 95 + (int)(Math.random() * 5)); // 95-99%
-                    spo2Data.putString("status", "MEASUREMENT_COMPLETED");
-                    spo2Array.pushMap(spo2Data);
+            if (options.hasKey("maxEntries")) {
+                resultCache.setMaxEntries(options.getInt("maxEntries"));
+            }
+            if (options.hasKey("ttlMs")) {
+                for (Map.Entry<String, Object> ttl : options.getMap("ttlMs").toHashMap().entrySet()) {
+                    resultCache.setTtl(ttl.getKey(), ((Number) ttl.getValue()).longValue());
                 }
             }
-            
+            if (options.hasKey("clear") && options.getBoolean("clear")) {
+                resultCache.clear();
+            }
+
+            long[] counters = resultCache.getCounters();
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", spo2Array);
+            result.putInt("size", resultCache.size());
+            result.putDouble("hits", counters[0]);
+            result.putDouble("misses", counters[1]);
+            result.putDouble("coalesced", counters[2]);
+            result.putDouble("invalidations", counters[3]);
+            result.putDouble("evictions", counters[4]);
             promise.resolve(result);
+        } catch (IllegalArgumentException e) {
+            promise.reject("CACHE_ERROR", e.getMessage());
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get historical SpO2 data", e);
-            promise.reject("HISTORICAL_DATA_ERROR", "Failed to get historical SpO2 data: " + e.getMessage());
+            Log.e(TAG, "Failed to configure result cache", e);
+            promise.reject("CACHE_ERROR", "Failed to configure result cache: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "configureResultCache", started);
         }
     }
 
-    private void simulateHeartRateData() {
-        new android.os.Handler().postDelayed(() -> {
-            if (isServiceConnected) {
-                WritableMap heartRateData = Arguments.createMap();
-                heartRateData.putDouble("timestamp", System.currentTimeMillis());
-                heartRateData.putInt("heartRate", 72 + (int)(Math.random() * 20)); // 72-92 BPM
-                heartRateData.putString("status", "MEASUREMENT_COMPLETED");
-                
-                // Simulate IBI data
-                WritableArray ibiArray = Arguments.createArray();
-                for (int i = 0; i < 10; i++) {
-                    ibiArray.pushInt(800 + (int)(Math.random() * 200)); // 800-1000ms intervals
-                }
-                heartRateData.putArray("ibiList", ibiArray);
-                
-                sendEvent("onHeartRateData", heartRateData);
-                
-                // Continue simulating data
-                simulateHeartRateData();
+    @ReactMethod
+    public void configureEventStream(String eventName, ReadableMap options, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "configureEventStream");
+        try {
+            int maxBatchSize = options.hasKey("maxBatchSize") ? options.getInt("maxBatchSize") : 1;
+            long maxDelayMs = options.hasKey("maxDelayMs") ? (long) options.getDouble("maxDelayMs") : 0;
+            int maxPending = options.hasKey("maxPending") ? options.getInt("maxPending") : Math.max(64, maxBatchSize);
+            int downsampleFactor = options.hasKey("downsampleFactor") ? options.getInt("downsampleFactor") : 2;
+            int maxInFlight = options.hasKey("maxInFlight") ? options.getInt("maxInFlight") : 4;
+            BridgeEventBatcher.OverflowPolicy overflow = options.hasKey("overflowPolicy")
+                ? BridgeEventBatcher.OverflowPolicy.valueOf(options.getString("overflowPolicy").toUpperCase(Locale.US))
+                : BridgeEventBatcher.OverflowPolicy.DROP_OLDEST;
+
+            eventBatcher().setPolicy(eventName, new BridgeEventBatcher.StreamPolicy(
+                maxBatchSize, maxDelayMs, maxPending, overflow, downsampleFactor, maxInFlight));
+
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", true);
+            result.putString("message", "Event stream " + eventName + " configured");
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to configure event stream", e);
+            promise.reject("EVENT_CONFIG_ERROR", "Failed to configure event stream: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "configureEventStream", started);
+        }
+    }
+
+    @ReactMethod
+    public void acknowledgeEventBatch(String eventName, double sequence) {
+        long started = metrics.start(HealthMetrics.METHOD, "acknowledgeEventBatch");
+        try {
+            eventBatcher().acknowledge(eventName, (long) sequence);
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "acknowledgeEventBatch", started);
+        }
+    }
+
+    // NativeEventEmitter calls these as JS listeners come and go. Batches sent while nobody
+    // listened are never acknowledged, so the stream's in-flight state starts over.
+    @ReactMethod
+    public void addListener(String eventName) {
+        eventBatcher().resetAcknowledgements(eventName);
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+        // Only a count is given, not which events lost their listeners
+        eventBatcher().resetAcknowledgements(null);
+    }
+
+    @ReactMethod
+    public void getEventStats(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "getEventStats");
+        try {
+            WritableMap streams = Arguments.createMap();
+            for (Map.Entry<String, long[]> entry : eventBatcher().getStats().entrySet()) {
+                long[] counters = entry.getValue();
+                WritableMap stream = Arguments.createMap();
+                stream.putDouble("received", counters[0]);
+                stream.putDouble("emitted", counters[1]);
+                stream.putDouble("coalesced", counters[2]);
+                stream.putDouble("dropped", counters[3]);
+                stream.putDouble("batches", counters[4]);
+                stream.putDouble("pending", counters[5]);
+                streams.putMap(entry.getKey(), stream);
             }
-        }, 5000);
+
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", true);
+            result.putMap("data", streams);
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to get event stats", e);
+            promise.reject("EVENT_STATS_ERROR", "Failed to get event stats: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "getEventStats", started);
+        }
     }
 
-    // Günlük veri çekme fonksiyonları
+    /**
+     * Starts copying onHeartRateData / onSpo2Data / onEcgData events into the on-disk upload
+     * queue and draining it to {@code options.url}. Records queued by an earlier process are
+     * sent as well.
+     */
     @ReactMethod
-    public void getTodayHeartRateData(Promise promise) {
+    public void configureUploads(final ReadableMap options, final Promise promise) {
+        execute("configureUploads", () -> openUploadQueue(options, promise));
+    }
+
+    private void openUploadQueue(ReadableMap options, Promise promise) {
         try {
-            Log.d(TAG, "Getting today's heart rate data...");
-            
-            // Bugünün verilerini simüle et - bağlantı durumuna bakma
-            WritableArray dataArray = Arguments.createArray();
-            long now = System.currentTimeMillis();
-            long todayStart = now - (now % (24 * 60 * 60 * 1000));
-            
-            // Son 24 saatte her 2 saatte bir veri noktası
-            for (int i = 0; i < 12; i++) {
-                WritableMap dataPoint = Arguments.createMap();
-                dataPoint.putDouble("timestamp", todayStart + (i * 2 * 60 * 60 * 1000));
-                dataPoint.putInt("heartRate", 70 + (int)(Math.random() * 30)); // 70-100 bpm
-                dataPoint.putString("status", "MEASUREMENT_COMPLETED");
-                dataArray.pushMap(dataPoint);
+            if (!options.hasKey("url")) {
+                promise.reject("UPLOAD_CONFIG_ERROR", "An upload url is required");
+                return;
             }
-            
+            UploadQueue.Policy policy = UploadQueue.Policy.defaults();
+            if (options.hasKey("maxBatchRecords") || options.hasKey("maxBatchDelayMs")) {
+                policy = policy.withBatching(
+                    options.hasKey("maxBatchRecords") ? options.getInt("maxBatchRecords") : policy.maxBatchRecords,
+                    options.hasKey("maxBatchDelayMs") ? (long) options.getDouble("maxBatchDelayMs") : policy.maxBatchDelayMillis);
+            }
+            HttpChunkUploader uploader = new HttpChunkUploader(options.getString("url"));
+
+            // One queue per directory; a second configure call reopens it with the new settings
+            synchronized (this) {
+                closeUploadQueue();
+                uploadQueue = new UploadQueue(new File(reactContext.getFilesDir(), UPLOAD_DIRECTORY), policy,
+                    uploader, scheduler().executor());
+                uploadQueue.flush();
+            }
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", dataArray);
+            result.putString("message", "Uploads configured");
             promise.resolve(result);
-            
-            Log.d(TAG, "Today's heart rate data generated: " + dataArray.size() + " entries");
-            
+        } catch (IllegalArgumentException e) {
+            promise.reject("UPLOAD_CONFIG_ERROR", e.getMessage());
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get today's heart rate data", e);
-            // Hata durumunda bile boş veri döndür
+            Log.e(TAG, "Failed to configure uploads", e);
+            promise.reject("UPLOAD_CONFIG_ERROR", "Failed to configure uploads: " + e.getMessage());
+        }
+    }
+
+    /** Seals the records waiting for a full batch and uploads everything queued now. */
+    @ReactMethod
+    public void flushUploads(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "flushUploads");
+        try {
+            UploadQueue queue = uploadQueue;
+            if (queue == null) {
+                promise.reject("UPLOAD_ERROR", "Uploads not configured. Please call configureUploads() first.");
+                return;
+            }
+            queue.flush();
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", Arguments.createArray());
+            result.putString("message", "Upload started");
             promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to flush uploads", e);
+            promise.reject("UPLOAD_ERROR", "Failed to flush uploads: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "flushUploads", started);
         }
     }
 
     @ReactMethod
-    public void getTodayStepsData(Promise promise) {
+    public void getUploadQueueStats(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "getUploadQueueStats");
         try {
-            Log.d(TAG, "Getting today's steps data...");
-            
-            // Bugünün adım verilerini simüle et - bağlantı durumuna bakma
-            int todaySteps = 5000 + (int)(Math.random() * 5000); // 5000-10000 adım
+            UploadQueue queue = uploadQueue;
+            if (queue == null) {
+                promise.reject("UPLOAD_ERROR", "Uploads not configured. Please call configureUploads() first.");
+                return;
+            }
+            long[] counters = queue.getStats();
+
+            WritableMap stats = Arguments.createMap();
+            stats.putDouble("pendingRecords", counters[0] + counters[1]);
+            stats.putDouble("diskBytes", counters[2]);
+            stats.putDouble("deliveredRecords", counters[3]);
+            stats.putDouble("deliveredChunks", counters[4]);
+            stats.putDouble("rejectedRecords", counters[5]);
+            stats.putDouble("droppedRecords", counters[6]);
+            stats.putDouble("failedAttempts", counters[7]);
+            stats.putDouble("consecutiveFailures", counters[8]);
+            stats.putDouble("nextRetryAt", counters[9]);
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putInt("steps", todaySteps);
-            result.putDouble("timestamp", System.currentTimeMillis());
+            result.putMap("data", stats);
             promise.resolve(result);
-            
-            Log.d(TAG, "Today's steps data generated: " + todaySteps + " steps");
-            
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get today's steps data", e);
-            // Hata durumunda bile varsayılan veri döndür
+            Log.e(TAG, "Failed to get upload queue stats", e);
+            promise.reject("UPLOAD_ERROR", "Failed to get upload queue stats: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "getUploadQueueStats", started);
+        }
+    }
+
+    private synchronized void closeUploadQueue() {
+        UploadQueue queue = uploadQueue;
+        uploadQueue = null;
+        if (queue != null) {
+            try {
+                queue.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close upload queue", e);
+            }
+        }
+    }
+
+    private void queueUpload(String stream, Map<String, Object> record) {
+        UploadQueue queue = uploadQueue;
+        if (queue == null) {
+            return;
+        }
+        MapPayloadWriter.INSTANCE.putString(record, "stream", stream);
+        try {
+            queue.enqueue(JsonSerializer.toJson(record));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to queue " + stream + " for upload", e);
+        }
+    }
+
+    /**
+     * Replaces the native alert rules. Each rule: {id, stream, kind, threshold} plus, by kind,
+     * alpha, target, slack, and optionally sustainMs, cooldownMs and severity.
+     */
+    @ReactMethod
+    public void configureAlertRules(ReadableArray rules, Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "configureAlertRules");
+        try {
+            List<AlertRule> parsed = new ArrayList<>();
+            for (int i = 0; i < rules.size(); i++) {
+                ReadableMap rule = rules.getMap(i);
+                parsed.add(new AlertRule(
+                    rule.getString("id"),
+                    rule.getString("stream"),
+                    AlertRule.parseKind(rule.getString("kind")),
+                    (float) rule.getDouble("threshold"),
+                    rule.hasKey("alpha") ? (float) rule.getDouble("alpha") : 0.05f,
+                    rule.hasKey("target") ? (float) rule.getDouble("target") : Float.NaN,
+                    rule.hasKey("slack") ? (float) rule.getDouble("slack") : 0,
+                    rule.hasKey("sustainMs") ? (long) rule.getDouble("sustainMs") : 0,
+                    rule.hasKey("cooldownMs") ? (long) rule.getDouble("cooldownMs") : 10 * 60_000,
+                    rule.hasKey("severity") ? rule.getString("severity") : AlertRule.SEVERITY_WARNING));
+            }
+            session().getAnomalyDetector().setRules(parsed);
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putInt("steps", 0);
-            result.putDouble("timestamp", System.currentTimeMillis());
+            result.putString("message", parsed.size() + " alert rules configured");
             promise.resolve(result);
+        } catch (IllegalArgumentException e) {
+            promise.reject("ALERT_CONFIG_ERROR", e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to configure alert rules", e);
+            promise.reject("ALERT_CONFIG_ERROR", "Failed to configure alert rules: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "configureAlertRules", started);
         }
     }
 
+    /**
+     * Records every live reading and the raw ECG into recordings/{@code name}.mdsr under the
+     * app's files directory, replacing an earlier recording of that name, until stopRecording().
+     */
+    @ReactMethod
+    public void startRecording(final String name, final Promise promise) {
+        execute("startRecording", () -> {
+            try {
+                File file = recordingFile(name);
+                synchronized (this) {
+                    closeRecorder();
+                    recorder = SessionRecorder.create(file);
+                    recordingFile = file;
+                    session().setRecorder(recorder);
+                }
+
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("success", true);
+                result.putString("message", "Recording to " + file.getName());
+                result.putString("path", file.getAbsolutePath());
+                promise.resolve(result);
+            } catch (IllegalArgumentException e) {
+                promise.reject("RECORDING_ERROR", e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to start recording", e);
+                promise.reject("RECORDING_ERROR", "Failed to start recording: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Closes the running recording. Resolves with its path, size and record count. */
     @ReactMethod
-    public void getTodaySpo2Data(Promise promise) {
+    public void stopRecording(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "stopRecording");
         try {
-            if (!isServiceConnected) {
-                promise.reject("SERVICE_ERROR", "Samsung Health service not connected");
+            SessionRecorder stopped;
+            File file;
+            synchronized (this) {
+                stopped = recorder;
+                file = recordingFile;
+                closeRecorder();
+            }
+            if (stopped == null) {
+                promise.reject("RECORDING_ERROR", "No recording running. Please call startRecording() first.");
                 return;
             }
 
-            // Bugünün SpO2 verilerini simüle et
-            WritableArray dataArray = Arguments.createArray();
-            long now = System.currentTimeMillis();
-            
-            // Bugün için birkaç ölçüm
-            for (int i = 0; i < 3; i++) {
-                WritableMap dataPoint = Arguments.createMap();
-                dataPoint.putDouble("timestamp", now - (i * 4 * 60 * 60 * 1000)); // Her 4 saatte bir
-                dataPoint.putInt("spo2", 96 + (int)(Math.random() * 3)); // 96-98%
-                dataArray.pushMap(dataPoint);
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("success", stopped.getError() == null);
+            result.putString("message", stopped.getError() == null
+                ? "Recording stopped" : "Recording stopped early: " + stopped.getError().getMessage());
+            result.putString("path", file.getAbsolutePath());
+            result.putDouble("bytes", stopped.getBytesWritten());
+            result.putDouble("records", stopped.getRecordCount());
+            promise.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to stop recording", e);
+            promise.reject("RECORDING_ERROR", "Failed to stop recording: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "stopRecording", started);
+        }
+    }
+
+    /**
+     * Serves the recorded metrics and ECG of recordings/{@code name}.mdsr instead of the
+     * sensors, at {@code speed} times real time (0: as fast as the pipeline takes them). Takes
+     * effect from the next startHeartRateTracking() / startEcgMeasurement(); live events and
+     * alerts then fire as they did when recorded.
+     */
+    @ReactMethod
+    public void startReplay(final String name, final double speed, final Promise promise) {
+        execute("startReplay", () -> {
+            try {
+                File file = recordingFile(name);
+                if (!file.isFile()) {
+                    throw new IllegalArgumentException("No recording named " + name);
+                }
+                SessionRecording recording = SessionRecording.read(file);
+                SessionReplay started = new SessionReplay(recording, speed);
+                synchronized (this) {
+                    replay = started;
+                    started.install(session());
+                }
+
+                WritableArray streams = Arguments.createArray();
+                for (String stream : recording.getStreamNames()) {
+                    streams.pushString(stream);
+                }
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("success", true);
+                result.putString("message", "Replaying " + file.getName()
+                    + (recording.isTruncated() ? " (cut off at the end)" : ""));
+                result.putArray("streams", streams);
+                result.putDouble("durationMs", recording.getDurationMillis());
+                promise.resolve(result);
+            } catch (IllegalArgumentException e) {
+                promise.reject("REPLAY_ERROR", e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to start replay", e);
+                promise.reject("REPLAY_ERROR", "Failed to start replay: " + e.getMessage());
             }
-            
+        });
+    }
+
+    /** Goes back to the live sources from the next start of each stream. */
+    @ReactMethod
+    public void stopReplay(Promise promise) {
+        long started = metrics.start(HealthMetrics.METHOD, "stopReplay");
+        try {
+            boolean finished;
+            synchronized (this) {
+                if (replay == null) {
+                    promise.reject("REPLAY_ERROR", "No replay running. Please call startReplay() first.");
+                    return;
+                }
+                finished = replay.isFinished();
+                replay = null;
+                for (SensorSource source : SimulatedSensors.patient()) {
+                    session().setSource(source);
+                }
+                session().setEcgSource(new SimulatedEcgSource(SimulatedEcgSource.DEFAULT_SAMPLE_RATE));
+            }
+
             WritableMap result = Arguments.createMap();
             result.putBoolean("success", true);
-            result.putArray("data", dataArray);
+            result.putString("message", "Replay stopped");
+            result.putBoolean("finished", finished);
             promise.resolve(result);
-            
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get today's SpO2 data", e);
-            promise.reject("DATA_ERROR", "Failed to get today's SpO2 data: " + e.getMessage());
+            Log.e(TAG, "Failed to stop replay", e);
+            promise.reject("REPLAY_ERROR", "Failed to stop replay: " + e.getMessage());
+        } finally {
+            metrics.stop(HealthMetrics.METHOD, "stopReplay", started);
+        }
+    }
+
+    // Names are plain file names, so JS cannot reach outside the recordings directory
+    private File recordingFile(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9._-]{1,64}") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid recording name " + name);
+        }
+        return new File(new File(reactContext.getFilesDir(), RECORDING_DIRECTORY), name + RECORDING_EXTENSION);
+    }
+
+    private synchronized void closeRecorder() {
+        SessionRecorder current = recorder;
+        recorder = null;
+        recordingFile = null;
+        if (current != null) {
+            session().setRecorder(null);
+            try {
+                current.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close recording", e);
+            }
+        }
+    }
+
+    // Live data from the session, shaped for JS and queued on the event batcher (and for upload)
+    private final class SessionEvents implements HealthSession.Listener {
+        @Override
+        public void onReading(String metric, SensorReading reading, HrvEngine hrv) {
+            // Already stored, so every cached result over its timestamp is out of date
+            resultCache.invalidate(metric, reading.getTimestamp());
+            if (!isServiceConnected) {
+                return;
+            }
+            if (HealthSession.METRIC_HEART_RATE.equals(metric)) {
+                sendEvent("onHeartRateData", HealthPayloads.heartRateEvent(ReactPayloadWriter.INSTANCE,
+                    reading.getTimestamp(), Math.round(reading.getValue()), reading.getIntervals(),
+                    reading.getIntervalCount(), hrv));
+                if (uploadQueue != null) {
+                    queueUpload("onHeartRateData", HealthPayloads.heartRateEvent(MapPayloadWriter.INSTANCE,
+                        reading.getTimestamp(), Math.round(reading.getValue()), reading.getIntervals(),
+                        reading.getIntervalCount(), hrv));
+                }
+            } else if (HealthSession.METRIC_SPO2.equals(metric)) {
+                sendEvent("onSpo2Data", HealthPayloads.spo2Event(ReactPayloadWriter.INSTANCE,
+                    reading.getTimestamp(), Math.round(reading.getValue())));
+                if (uploadQueue != null) {
+                    queueUpload("onSpo2Data", HealthPayloads.spo2Event(MapPayloadWriter.INSTANCE,
+                        reading.getTimestamp(), Math.round(reading.getValue())));
+                }
+            }
+        }
+
+        @Override
+        public void onEcgBeat(long timestamp, long sequence, float rrMillis, float heartRate,
+                              float[] probabilities, int predictedClass, String className) {
+            sendEvent("onEcgData", HealthPayloads.ecgClassification(ReactPayloadWriter.INSTANCE,
+                timestamp, sequence, rrMillis, heartRate, probabilities, predictedClass, className));
+            if (uploadQueue != null) {
+                queueUpload("onEcgData", HealthPayloads.ecgClassification(MapPayloadWriter.INSTANCE,
+                    timestamp, sequence, rrMillis, heartRate, probabilities, predictedClass, className));
+            }
+        }
+
+        @Override
+        public void onEcgError(long timestamp, long sequence, Exception error) {
+            Log.e(TAG, "ECG classification failed", error);
+            metrics.increment("ecgErrors", 1);
+            WritableMap ecgData = Arguments.createMap();
+            ecgData.putDouble("timestamp", timestamp);
+            ecgData.putDouble("sequence", sequence);
+            ecgData.putString("error", "ECG classification failed: " + error.getMessage());
+            sendEvent("onEcgError", ecgData);
+        }
+
+        @Override
+        public void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised) {
+            Log.w(TAG, "Alert " + rule.getId() + (raised ? " raised" : " resolved") + " at " + value);
+            sendEvent("onHealthAlert", HealthPayloads.alertEvent(ReactPayloadWriter.INSTANCE,
+                rule, timestamp, value, sinceTimestamp, raised));
+            UploadQueue queue = uploadQueue;
+            if (queue != null) {
+                queueUpload("onHealthAlert", HealthPayloads.alertEvent(MapPayloadWriter.INSTANCE,
+                    rule, timestamp, value, sinceTimestamp, raised));
+                // Alerts do not wait for a full batch
+                try {
+                    queue.flush();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to flush upload queue", e);
+                }
+            }
+        }
+
+        @Override
+        public void onStoreError(IOException error) {
+            Log.e(TAG, "Failed to flush health store", error);
         }
     }
 
     private void sendEvent(String eventName, WritableMap params) {
-        if (reactContext.hasActiveCatalystInstance()) {
-            reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit(eventName, params);
+        eventBatcher().submit(eventName, params);
+    }
+
+    // Runs on the event scheduler; one bridge call per batch
+    private void emitEventBatch(String eventName, List<WritableMap> events, long sequence) {
+        long started = metrics.start(HealthMetrics.BRIDGE, eventName);
+        try {
+            WritableMap batch = HealthPayloads.eventBatch(ReactPayloadWriter.INSTANCE, events, sequence);
+
+            if (reactContext.hasActiveCatalystInstance()) {
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(eventName, batch);
+            }
+        } finally {
+            metrics.stop(HealthMetrics.BRIDGE, eventName, started);
         }
+        metrics.increment("bridgeEvents", events.size());
     }
 } 
\ No newline at end of file
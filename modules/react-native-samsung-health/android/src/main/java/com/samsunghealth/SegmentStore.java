@@ -0,0 +1,300 @@
+package com.samsunghealth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The segments {@link SegmentationEngine} has ended, on disk, so a range query returns the
+ * precomputed intervals instead of deriving them again from the raw streams.
+ *
+ * Layout: {@code <root>/<track>.segs}, an 8-byte header (magic, version) and then fixed-size
+ * records in time order (start, end, label, minutes, mean heart rate, mean RMSSD, steps), and
+ * {@code <root>/state.bin}, the engine's state as of the last {@link #flush}. A track is read
+ * into memory the first time it is touched; a query binary-searches the first segment ending
+ * after the range start. New segments are served at once and appended to disk on flush.
+ */
+public final class SegmentStore {
+
+    private static final int MAGIC = 0x53474553; // "SEGS" read little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 36;
+    private static final String TRACK_SUFFIX = ".segs";
+    private static final String STATE_FILE = "state.bin";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private final File root;
+    private final Map<String, TrackSegments> tracks = new HashMap<>();
+    private final Object flushLock = new Object();
+
+    private static final class TrackSegments {
+        final List<SegmentationEngine.Segment> segments = new ArrayList<>();
+        // Index of the first segment not yet on disk
+        int written;
+    }
+
+    public SegmentStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Adds an ended segment. One that starts before the last stored segment ends, i.e. a
+     * segment emitted again by an engine resumed from an older state, is ignored.
+     */
+    public synchronized boolean append(SegmentationEngine.Segment segment) {
+        TrackSegments track = track(segment.getTrack());
+        List<SegmentationEngine.Segment> segments = track.segments;
+        if (!segments.isEmpty() && segment.getStart() < segments.get(segments.size() - 1).getEnd()) {
+            return false;
+        }
+        segments.add(segment);
+        return true;
+    }
+
+    /**
+     * Appends the segments of {@code track} overlapping [start, end) to {@code out}, in time order.
+     *
+     * @return number of segments added
+     */
+    public synchronized int query(String track, long start, long end, List<SegmentationEngine.Segment> out) {
+        List<SegmentationEngine.Segment> segments = track(track).segments;
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).getEnd() <= start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int added = 0;
+        for (int i = low; i < segments.size() && segments.get(i).getStart() < end; i++) {
+            out.add(segments.get(i));
+            added++;
+        }
+        return added;
+    }
+
+    public synchronized int size(String track) {
+        return track(track).segments.size();
+    }
+
+    /** The engine state saved by the last flush, or null if there is none. */
+    public ByteBuffer readState() throws IOException {
+        File file = new File(root, STATE_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        return readFully(file);
+    }
+
+    /**
+     * Appends every new segment to its track file, then replaces the saved engine state with
+     * {@code state}. Segments a failed write left off disk are written by the next flush, and
+     * the state is only replaced once every segment it has ended is on disk.
+     */
+    public void flush(ByteBuffer state) throws IOException {
+        // One flush at a time: a rollback must not rewind past another flush's writes, nor two share state.bin.tmp
+        synchronized (flushLock) {
+            Map<String, List<SegmentationEngine.Segment>> writes = new HashMap<>();
+            Map<String, Integer> firstUnwritten = new HashMap<>();
+            synchronized (this) {
+                for (Map.Entry<String, TrackSegments> entry : tracks.entrySet()) {
+                    TrackSegments track = entry.getValue();
+                    if (track.written < track.segments.size()) {
+                        writes.put(entry.getKey(), new ArrayList<>(track.segments.subList(track.written, track.segments.size())));
+                        firstUnwritten.put(entry.getKey(), track.written);
+                        track.written = track.segments.size();
+                    }
+                }
+            }
+            IOException failure = null;
+            if (!root.isDirectory() && !root.mkdirs()) {
+                failure = new IOException("Cannot create " + root);
+            }
+            for (Map.Entry<String, List<SegmentationEngine.Segment>> write : writes.entrySet()) {
+                if (root.isDirectory()) {
+                    try {
+                        appendToFile(trackFile(write.getKey()), write.getValue());
+                        continue;
+                    } catch (IOException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                }
+                // Still in memory; the next flush writes them again
+                synchronized (this) {
+                    TrackSegments track = tracks.get(write.getKey());
+                    track.written = firstUnwritten.get(write.getKey());
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (state != null) {
+                // Written whole and renamed over the old one, so a crash leaves one or the other
+                File temp = new File(root, STATE_FILE + ".tmp");
+                RandomAccessFile file = new RandomAccessFile(temp, "rw");
+                try {
+                    file.setLength(0);
+                    FileChannel channel = file.getChannel();
+                    ByteBuffer data = state.duplicate();
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                } finally {
+                    file.close();
+                }
+                if (!temp.renameTo(new File(root, STATE_FILE))) {
+                    throw new IOException("Cannot replace " + STATE_FILE + " in " + root);
+                }
+            }
+        }
+    }
+
+    private static void appendToFile(File target, List<SegmentationEngine.Segment> segments) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + segments.size() * RECORD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        RandomAccessFile file = new RandomAccessFile(target, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size == 0) {
+                data.putInt(MAGIC).putInt(VERSION);
+            }
+            for (SegmentationEngine.Segment segment : segments) {
+                encode(segment, data);
+            }
+            data.flip();
+            channel.position(size);
+            try {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            } catch (IOException e) {
+                // Cut off a partial write so the retry appends whole records after the last good one
+                try {
+                    channel.truncate(size);
+                } catch (IOException ignored) {
+                    // Loading drops the torn tail instead
+                }
+                throw e;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private TrackSegments track(String name) {
+        TrackSegments track = tracks.get(name);
+        if (track == null) {
+            // Also rejects unknown tracks before they reach the file system
+            String[] labels = SegmentationEngine.labels(name);
+            track = new TrackSegments();
+            File file = trackFile(name);
+            if (file.isFile()) {
+                try {
+                    load(name, labels.length, file, track.segments);
+                } catch (IOException e) {
+                    // An unreadable track starts over rather than failing every query
+                    track.segments.clear();
+                }
+            }
+            track.written = track.segments.size();
+            tracks.put(name, track);
+        }
+        return track;
+    }
+
+    private static void load(String track, int labelCount, File file, List<SegmentationEngine.Segment> out)
+        throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean quarantine = false;
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // read fully
+            }
+            data.flip();
+            if (data.remaining() >= HEADER_BYTES && data.getInt() == MAGIC && data.getInt() == VERSION) {
+                long valid = HEADER_BYTES;
+                while (data.remaining() >= RECORD_BYTES) {
+                    SegmentationEngine.Segment segment = decode(track, data);
+                    if (segment.getLabelIndex() < 0 || segment.getLabelIndex() >= labelCount) {
+                        break;
+                    }
+                    out.add(segment);
+                    valid += RECORD_BYTES;
+                }
+                if (valid < channel.size()) {
+                    // Drop a record torn by process death so later appends stay aligned
+                    channel.truncate(valid);
+                }
+            } else {
+                // No readable header: keep the bytes for inspection instead of truncating them away
+                quarantine = channel.size() > 0;
+            }
+        } finally {
+            raf.close();
+        }
+        if (quarantine) {
+            // Moved aside, so the track starts a fresh file instead of appending after bytes that can't be read
+            File corrupt = new File(file.getPath() + CORRUPT_SUFFIX);
+            if (!file.renameTo(corrupt)) {
+                throw new IOException("Cannot move unreadable track " + file + " aside");
+            }
+            throw new IOException("Unreadable track header in " + file + ", moved to " + corrupt.getName());
+        }
+    }
+
+    private static void encode(SegmentationEngine.Segment segment, ByteBuffer out) {
+        out.putLong(segment.getStart());
+        out.putLong(segment.getEnd());
+        out.putInt(segment.getLabelIndex());
+        out.putInt(segment.getMinutes());
+        out.putFloat(segment.getMeanHeartRate());
+        out.putFloat(segment.getMeanRmssd());
+        out.putFloat(segment.getSteps());
+    }
+
+    private static SegmentationEngine.Segment decode(String track, ByteBuffer in) {
+        long start = in.getLong();
+        long end = in.getLong();
+        int label = in.getInt();
+        int minutes = in.getInt();
+        float heartRate = in.getFloat();
+        float rmssd = in.getFloat();
+        float steps = in.getFloat();
+        return new SegmentationEngine.Segment(track, label, start, end, minutes, heartRate, rmssd, steps, false);
+    }
+
+    private static ByteBuffer readFully(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // read fully
+            }
+            data.flip();
+            return data;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private File trackFile(String track) {
+        return new File(root, track + TRACK_SUFFIX);
+    }
+}
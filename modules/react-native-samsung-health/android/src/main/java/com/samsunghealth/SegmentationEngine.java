@@ -0,0 +1,766 @@
+package com.samsunghealth;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Splits the live heart rate (with its beat intervals) and step streams into activity bouts
+ * and sleep stages, incrementally as readings arrive.
+ *
+ * Readings are binned into one-minute epochs: mean heart rate, RMSSD of the minute's beat
+ * intervals and steps. An epoch is labelled once the {@link #LOOKAHEAD_MINUTES} epochs after
+ * it are in, so sleep onset (a still stretch at a lowered heart rate) and waking (a sustained
+ * active stretch) land on the minute they began and no emitted segment is ever revised.
+ * Awake minutes are labelled by step cadence, or by heart rate over the resting level when
+ * there is no step stream. Sleep minutes are labelled against the night's heart rate level
+ * and how much it moves from minute to minute: low and steady is deep, raised and irregular
+ * is REM, anything else light. A new label must hold for a few minutes before it starts a
+ * segment, so one odd minute does not split a bout.
+ *
+ * Two tracks come out: {@link #TRACK_ACTIVITY}, where each sleep period is one "asleep"
+ * segment, and {@link #TRACK_SLEEP}, the stages within sleep periods. The state is constant
+ * in size (the lookahead ring, running baselines and each track's open segment; under 1 KB
+ * saved) and survives a restart through {@link #saveState()} / {@link #restoreState}. These
+ * are heuristics from heart rate and movement, not a validated sleep stager. Not thread-safe.
+ */
+public final class SegmentationEngine {
+
+    public static final String TRACK_ACTIVITY = "activity";
+    public static final String TRACK_SLEEP = "sleep";
+
+    public static final long MINUTE_MILLIS = 60_000;
+
+    /** Epochs that must follow a minute before it is labelled, i.e. how far segments lag. */
+    public static final int LOOKAHEAD_MINUTES = 20;
+
+    static final String[] ACTIVITY_LABELS = {"sedentary", "light", "moderate", "vigorous", "asleep"};
+    static final String[] SLEEP_LABELS = {"awake", "light", "deep", "rem"};
+
+    private static final int SEDENTARY = 0;
+    private static final int LIGHT_ACTIVITY = 1;
+    private static final int MODERATE = 2;
+    private static final int VIGOROUS = 3;
+    private static final int ASLEEP = 4;
+
+    private static final int AWAKE = 0;
+    private static final int LIGHT_SLEEP = 1;
+    private static final int DEEP = 2;
+    private static final int REM = 3;
+
+    // Still epochs in a row that begin a sleep period, and active ones that end it
+    private static final int SLEEP_ONSET_MINUTES = 20;
+    private static final int WAKE_MINUTES = 10;
+    // Longer without data ends every open segment
+    private static final long MAX_GAP_MILLIS = 15 * MINUTE_MILLIS;
+    // A minute is closed this long after it ends even if no later reading has come
+    private static final long BIN_GRACE_MILLIS = 10_000;
+    private static final int MIN_ACTIVITY_MINUTES = 3;
+    private static final int MIN_STAGE_MINUTES = 3;
+
+    // Steps per minute
+    private static final float STILL_STEPS = 5;
+    private static final float LIGHT_CADENCE = 20;
+    private static final float MODERATE_CADENCE = 100;
+    private static final float VIGOROUS_CADENCE = 130;
+
+    // Heart rate against the resting level, for minutes without steps
+    private static final float STILL_HR_RATIO = 1.05f;
+    private static final float LIGHT_HR_RATIO = 1.15f;
+    private static final float MODERATE_HR_RATIO = 1.35f;
+    private static final float VIGOROUS_HR_RATIO = 1.6f;
+    // Mean of a still stretch against the resting level for it to be sleep
+    private static final float SLEEP_HR_RATIO = 0.97f;
+
+    // Heart rate against the night's level
+    private static final float AWAKE_HR_RATIO = 1.15f;
+    private static final float DEEP_HR_RATIO = 0.97f;
+    private static final float REM_HR_RATIO = 1.03f;
+    // Mean minute-to-minute heart rate change, bpm, over the next few epochs
+    private static final int HR_CHANGE_MINUTES = 5;
+    private static final float STEADY_HR_CHANGE = 1.5f;
+    private static final float IRREGULAR_HR_CHANGE = 2.5f;
+
+    // Resting heart rate follows this percentile of sedentary minutes, moving at most this much
+    // a minute, so neither workouts nor a first reading taken asleep throw it off for long
+    private static final float RESTING_PERCENTILE = 0.2f;
+    private static final float RESTING_STEP_BPM = 0.5f;
+    private static final float NIGHT_ALPHA = 1 / 60f;
+
+    private static final int STATE_VERSION = 1;
+    private static final int RING_SIZE = LOOKAHEAD_MINUTES + 1;
+    private static final long NONE = Long.MIN_VALUE;
+
+    /** Receives each segment once it has ended; it will not change again. */
+    public interface SegmentListener {
+        void onSegment(Segment segment);
+    }
+
+    /** A run of minutes with one label. Means and steps are NaN when that data was missing. */
+    public static final class Segment {
+        private final String track;
+        private final int label;
+        private final long start;
+        private final long end;
+        private final int minutes;
+        private final float meanHeartRate;
+        private final float meanRmssd;
+        private final float steps;
+        private final boolean ongoing;
+
+        Segment(String track, int label, long start, long end, int minutes, float meanHeartRate,
+                float meanRmssd, float steps, boolean ongoing) {
+            this.track = track;
+            this.label = label;
+            this.start = start;
+            this.end = end;
+            this.minutes = minutes;
+            this.meanHeartRate = meanHeartRate;
+            this.meanRmssd = meanRmssd;
+            this.steps = steps;
+            this.ongoing = ongoing;
+        }
+
+        public String getTrack() {
+            return track;
+        }
+
+        public String getLabel() {
+            return labels(track)[label];
+        }
+
+        int getLabelIndex() {
+            return label;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        /** End of the segment's last minute. */
+        public long getEnd() {
+            return end;
+        }
+
+        /** Minutes with data; less than the span when the stream had gaps. */
+        public int getMinutes() {
+            return minutes;
+        }
+
+        public float getMeanHeartRate() {
+            return meanHeartRate;
+        }
+
+        public float getMeanRmssd() {
+            return meanRmssd;
+        }
+
+        public float getSteps() {
+            return steps;
+        }
+
+        /** Whether the segment is still open and may grow or be relabelled. */
+        public boolean isOngoing() {
+            return ongoing;
+        }
+    }
+
+    /** Labels of {@code track}, by index. */
+    static String[] labels(String track) {
+        if (TRACK_ACTIVITY.equals(track)) {
+            return ACTIVITY_LABELS;
+        }
+        if (TRACK_SLEEP.equals(track)) {
+            return SLEEP_LABELS;
+        }
+        throw new IllegalArgumentException("Unknown segment track: " + track);
+    }
+
+    // Running totals of the minutes of one segment in the making
+    private static final class Run {
+        int label = -1;
+        long start;
+        long end;
+        int minutes;
+        double heartRateSum;
+        int heartRateCount;
+        double rmssdSum;
+        int rmssdCount;
+        double steps;
+        int stepMinutes;
+
+        void clear() {
+            label = -1;
+            minutes = 0;
+            heartRateSum = 0;
+            heartRateCount = 0;
+            rmssdSum = 0;
+            rmssdCount = 0;
+            steps = 0;
+            stepMinutes = 0;
+        }
+
+        void add(long minute, float heartRate, float rmssd, float minuteSteps) {
+            if (minutes == 0) {
+                start = minute;
+            }
+            end = minute + MINUTE_MILLIS;
+            minutes++;
+            if (!Float.isNaN(heartRate)) {
+                heartRateSum += heartRate;
+                heartRateCount++;
+            }
+            if (!Float.isNaN(rmssd)) {
+                rmssdSum += rmssd;
+                rmssdCount++;
+            }
+            if (!Float.isNaN(minuteSteps)) {
+                steps += minuteSteps;
+                stepMinutes++;
+            }
+        }
+
+        // Appends a run that follows this one
+        void merge(Run next) {
+            end = next.end;
+            minutes += next.minutes;
+            heartRateSum += next.heartRateSum;
+            heartRateCount += next.heartRateCount;
+            rmssdSum += next.rmssdSum;
+            rmssdCount += next.rmssdCount;
+            steps += next.steps;
+            stepMinutes += next.stepMinutes;
+        }
+
+        Segment toSegment(String track, boolean ongoing) {
+            return new Segment(track, label, start, end, minutes,
+                heartRateCount > 0 ? (float) (heartRateSum / heartRateCount) : Float.NaN,
+                rmssdCount > 0 ? (float) (rmssdSum / rmssdCount) : Float.NaN,
+                stepMinutes > 0 ? (float) steps : Float.NaN, ongoing);
+        }
+
+        void write(ByteBuffer out) {
+            out.putInt(label).putLong(start).putLong(end).putInt(minutes)
+                .putDouble(heartRateSum).putInt(heartRateCount)
+                .putDouble(rmssdSum).putInt(rmssdCount)
+                .putDouble(steps).putInt(stepMinutes);
+        }
+
+        void read(ByteBuffer in) {
+            label = in.getInt();
+            start = in.getLong();
+            end = in.getLong();
+            minutes = in.getInt();
+            heartRateSum = in.getDouble();
+            heartRateCount = in.getInt();
+            rmssdSum = in.getDouble();
+            rmssdCount = in.getInt();
+            steps = in.getDouble();
+            stepMinutes = in.getInt();
+        }
+    }
+
+    /**
+     * One output track. A minute with another label than the open segment's starts a
+     * candidate; the candidate becomes the new segment once it has lasted the minimum, and is
+     * folded back into the open segment otherwise.
+     */
+    private final class Track {
+        final String name;
+        final int minMinutes;
+        Run current = new Run();
+        Run candidate = new Run();
+
+        Track(String name, int minMinutes) {
+            this.name = name;
+            this.minMinutes = minMinutes;
+        }
+
+        void add(int label, long minute, float heartRate, float rmssd, float steps) {
+            if (current.minutes == 0) {
+                current.label = label;
+                current.add(minute, heartRate, rmssd, steps);
+                return;
+            }
+            if (label == current.label) {
+                if (candidate.minutes > 0) {
+                    current.merge(candidate);
+                    candidate.clear();
+                }
+                current.add(minute, heartRate, rmssd, steps);
+                return;
+            }
+            if (candidate.minutes > 0 && candidate.label != label) {
+                current.merge(candidate);
+                candidate.clear();
+            }
+            candidate.label = label;
+            candidate.add(minute, heartRate, rmssd, steps);
+            if (candidate.minutes >= minMinutes) {
+                listener.onSegment(current.toSegment(name, false));
+                Run ended = current;
+                current = candidate;
+                candidate = ended;
+                candidate.clear();
+            }
+        }
+
+        // Ends the open segment; the next minute starts a new one whatever its label
+        void split() {
+            if (candidate.minutes > 0) {
+                current.merge(candidate);
+                candidate.clear();
+            }
+            if (current.minutes > 0) {
+                listener.onSegment(current.toSegment(name, false));
+            }
+            current.clear();
+        }
+
+        void open(List<Segment> out) {
+            if (current.minutes > 0) {
+                out.add(current.toSegment(name, true));
+            }
+            if (candidate.minutes > 0) {
+                out.add(candidate.toSegment(name, true));
+            }
+        }
+    }
+
+    private final SegmentListener listener;
+    private final Track activity = new Track(TRACK_ACTIVITY, MIN_ACTIVITY_MINUTES);
+    private final Track sleep = new Track(TRACK_SLEEP, MIN_STAGE_MINUTES);
+
+    // The minute being binned
+    private long binStart = NONE;
+    private double binHeartRateSum;
+    private int binHeartRateCount;
+    private double binSquaredDiffs;
+    private int binDiffs;
+    private float binSteps;
+    private float lastIbi;
+    // Once a step stream has been seen, minutes without steps had none
+    private boolean stepsSeen;
+
+    // Closed epochs waiting for their lookahead, oldest at ringHead
+    private final long[] ringStart = new long[RING_SIZE];
+    private final float[] ringHeartRate = new float[RING_SIZE];
+    private final float[] ringRmssd = new float[RING_SIZE];
+    private final float[] ringSteps = new float[RING_SIZE];
+    private int ringHead;
+    private int ringCount;
+    private long lastEpochStart = NONE;
+    private long labelledUntil = NONE;
+
+    private float restingHeartRate = Float.NaN;
+    private boolean asleep;
+    private float nightHeartRate = Float.NaN;
+    private float nightRmssd = Float.NaN;
+
+    public SegmentationEngine(SegmentListener listener) {
+        this.listener = listener;
+    }
+
+    /** A heart rate reading and the beat intervals (ms) behind it. */
+    public void addHeartRate(long timestamp, float heartRate, int[] intervals, int intervalCount) {
+        if (!bin(timestamp)) {
+            return;
+        }
+        if (heartRate > 0) {
+            binHeartRateSum += heartRate;
+            binHeartRateCount++;
+        }
+        for (int i = 0; i < intervalCount; i++) {
+            float ibi = intervals[i];
+            if (ibi < HrvEngine.MIN_IBI_MS || ibi > HrvEngine.MAX_IBI_MS) {
+                lastIbi = 0;
+                continue;
+            }
+            if (lastIbi > 0) {
+                float diff = ibi - lastIbi;
+                binSquaredDiffs += diff * diff;
+                binDiffs++;
+            }
+            lastIbi = ibi;
+        }
+    }
+
+    /** Steps taken since the previous step reading. */
+    public void addSteps(long timestamp, float steps) {
+        if (!bin(timestamp)) {
+            return;
+        }
+        stepsSeen = true;
+        if (steps > 0) {
+            binSteps += steps;
+        }
+    }
+
+    /** Closes the current minute once it is over, in case no later reading comes to close it. */
+    public void advance(long now) {
+        if (binStart != NONE && now >= binStart + MINUTE_MILLIS + BIN_GRACE_MILLIS) {
+            closeBin();
+        }
+    }
+
+    /** Appends the open (not yet final) segments of {@code track} to {@code out}. */
+    public void getOpenSegments(String track, List<Segment> out) {
+        labels(track);
+        (TRACK_SLEEP.equals(track) ? sleep : activity).open(out);
+    }
+
+    /** End of the last labelled minute, or {@link Long#MIN_VALUE} before the first. */
+    public long getLabelledUntil() {
+        return labelledUntil;
+    }
+
+    public boolean isAsleep() {
+        return asleep;
+    }
+
+    /** Resting heart rate the awake minutes are measured against; NaN until known. */
+    public float getRestingHeartRate() {
+        return restingHeartRate;
+    }
+
+    // --- Binning ---
+
+    // Moves to the minute of timestamp; false for a reading older than a closed minute
+    private boolean bin(long timestamp) {
+        long minute = Math.floorDiv(timestamp, MINUTE_MILLIS) * MINUTE_MILLIS;
+        if (lastEpochStart != NONE && minute <= lastEpochStart) {
+            return false;
+        }
+        if (binStart != NONE && minute < binStart) {
+            return false;
+        }
+        if (binStart != NONE && minute > binStart) {
+            closeBin();
+        }
+        if (binStart == NONE) {
+            binStart = minute;
+        }
+        return true;
+    }
+
+    private void closeBin() {
+        long minute = binStart;
+        float heartRate = binHeartRateCount > 0 ? (float) (binHeartRateSum / binHeartRateCount) : Float.NaN;
+        float rmssd = binDiffs > 0 ? (float) Math.sqrt(binSquaredDiffs / binDiffs) : Float.NaN;
+        float steps = stepsSeen ? binSteps : Float.NaN;
+        binStart = NONE;
+        binHeartRateSum = 0;
+        binHeartRateCount = 0;
+        binSquaredDiffs = 0;
+        binDiffs = 0;
+        binSteps = 0;
+        if (Float.isNaN(heartRate) && Float.isNaN(steps)) {
+            return;
+        }
+        addEpoch(minute, heartRate, rmssd, steps);
+    }
+
+    private void addEpoch(long minute, float heartRate, float rmssd, float steps) {
+        if (lastEpochStart != NONE && minute - lastEpochStart > MAX_GAP_MILLIS) {
+            // Whatever is waiting is labelled on what lookahead there is, then everything open ends
+            while (ringCount > 0) {
+                labelOldest();
+            }
+            activity.split();
+            sleep.split();
+            asleep = false;
+            lastIbi = 0;
+        }
+        lastEpochStart = minute;
+        int slot = (ringHead + ringCount) % RING_SIZE;
+        ringStart[slot] = minute;
+        ringHeartRate[slot] = heartRate;
+        ringRmssd[slot] = rmssd;
+        ringSteps[slot] = steps;
+        ringCount++;
+        if (ringCount == RING_SIZE) {
+            labelOldest();
+        }
+    }
+
+    // --- Labelling ---
+
+    private int slot(int index) {
+        return (ringHead + index) % RING_SIZE;
+    }
+
+    private void labelOldest() {
+        int slot = ringHead;
+        long minute = ringStart[slot];
+        float heartRate = ringHeartRate[slot];
+        float rmssd = ringRmssd[slot];
+        float steps = ringSteps[slot];
+
+        if (!asleep && sleepStartsHere()) {
+            asleep = true;
+            activity.split();
+        } else if (asleep && wakeStartsHere()) {
+            asleep = false;
+            activity.split();
+            sleep.split();
+        }
+
+        if (asleep) {
+            int stage = stage(heartRate, rmssd, steps);
+            activity.add(ASLEEP, minute, heartRate, rmssd, steps);
+            sleep.add(stage, minute, heartRate, rmssd, steps);
+            if (stage != AWAKE && !Float.isNaN(heartRate)) {
+                nightHeartRate += NIGHT_ALPHA * (heartRate - nightHeartRate);
+            }
+            if (stage != AWAKE && !Float.isNaN(rmssd)) {
+                nightRmssd = Float.isNaN(nightRmssd) ? rmssd : nightRmssd + NIGHT_ALPHA * (rmssd - nightRmssd);
+            }
+        } else {
+            int label = activityLabel(heartRate, steps);
+            activity.add(label, minute, heartRate, rmssd, steps);
+            if (Float.isNaN(restingHeartRate)) {
+                restingHeartRate = heartRate;
+            } else if (label == SEDENTARY && !Float.isNaN(heartRate)) {
+                restingHeartRate += heartRate > restingHeartRate
+                    ? RESTING_STEP_BPM * RESTING_PERCENTILE
+                    : -RESTING_STEP_BPM * (1 - RESTING_PERCENTILE);
+            }
+        }
+
+        labelledUntil = minute + MINUTE_MILLIS;
+        ringHead = (ringHead + 1) % RING_SIZE;
+        ringCount--;
+    }
+
+    // Still epochs from the oldest on, within about the onset span and at a lowered heart rate
+    private boolean sleepStartsHere() {
+        if (ringCount < SLEEP_ONSET_MINUTES || Float.isNaN(restingHeartRate)) {
+            return false;
+        }
+        // Sleep starts at the first lowered minute, not at the still minutes leading up to it
+        float onset = ringHeartRate[slot(0)];
+        if (!Float.isNaN(onset) && onset > restingHeartRate * SLEEP_HR_RATIO) {
+            return false;
+        }
+        long first = ringStart[slot(0)];
+        if (ringStart[slot(SLEEP_ONSET_MINUTES - 1)] - first > (SLEEP_ONSET_MINUTES + 5) * MINUTE_MILLIS) {
+            return false;
+        }
+        double heartRateSum = 0;
+        int heartRates = 0;
+        double rmssdSum = 0;
+        int rmssds = 0;
+        for (int i = 0; i < SLEEP_ONSET_MINUTES; i++) {
+            if (!isStill(i)) {
+                return false;
+            }
+            float heartRate = ringHeartRate[slot(i)];
+            if (!Float.isNaN(heartRate)) {
+                heartRateSum += heartRate;
+                heartRates++;
+            }
+            float rmssd = ringRmssd[slot(i)];
+            if (!Float.isNaN(rmssd)) {
+                rmssdSum += rmssd;
+                rmssds++;
+            }
+        }
+        // Steps alone cannot tell sleep from sitting still
+        if (heartRates < SLEEP_ONSET_MINUTES / 2) {
+            return false;
+        }
+        float mean = (float) (heartRateSum / heartRates);
+        if (mean > restingHeartRate * SLEEP_HR_RATIO) {
+            return false;
+        }
+        nightHeartRate = mean;
+        nightRmssd = rmssds > 0 ? (float) (rmssdSum / rmssds) : Float.NaN;
+        return true;
+    }
+
+    private boolean wakeStartsHere() {
+        if (ringCount < WAKE_MINUTES) {
+            return false;
+        }
+        for (int i = 0; i < WAKE_MINUTES; i++) {
+            if (isStill(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Few steps, if there is a step stream, and heart rate not raised over the level of the current state
+    private boolean isStill(int index) {
+        int slot = slot(index);
+        float steps = ringSteps[slot];
+        if (!Float.isNaN(steps) && steps >= STILL_STEPS) {
+            return false;
+        }
+        float heartRate = ringHeartRate[slot];
+        float level = asleep ? nightHeartRate * AWAKE_HR_RATIO : restingHeartRate * STILL_HR_RATIO;
+        return Float.isNaN(heartRate) || Float.isNaN(level) || heartRate <= level;
+    }
+
+    private int activityLabel(float heartRate, float steps) {
+        if (!Float.isNaN(steps)) {
+            if (steps >= VIGOROUS_CADENCE) {
+                return VIGOROUS;
+            } else if (steps >= MODERATE_CADENCE) {
+                return MODERATE;
+            } else if (steps >= LIGHT_CADENCE) {
+                return LIGHT_ACTIVITY;
+            }
+            return SEDENTARY;
+        }
+        if (Float.isNaN(heartRate) || Float.isNaN(restingHeartRate)) {
+            return SEDENTARY;
+        }
+        float ratio = heartRate / restingHeartRate;
+        if (ratio >= VIGOROUS_HR_RATIO) {
+            return VIGOROUS;
+        } else if (ratio >= MODERATE_HR_RATIO) {
+            return MODERATE;
+        } else if (ratio >= LIGHT_HR_RATIO) {
+            return LIGHT_ACTIVITY;
+        }
+        return SEDENTARY;
+    }
+
+    private int stage(float heartRate, float rmssd, float steps) {
+        if (!Float.isNaN(steps) && steps >= STILL_STEPS) {
+            return AWAKE;
+        }
+        if (Float.isNaN(heartRate)) {
+            return LIGHT_SLEEP;
+        }
+        if (heartRate > nightHeartRate * AWAKE_HR_RATIO) {
+            return AWAKE;
+        }
+        float change = heartRateChange();
+        if (heartRate <= nightHeartRate * DEEP_HR_RATIO && (Float.isNaN(change) || change < STEADY_HR_CHANGE)
+            && (Float.isNaN(rmssd) || Float.isNaN(nightRmssd) || rmssd >= nightRmssd)) {
+            return DEEP;
+        }
+        if (heartRate >= nightHeartRate * REM_HR_RATIO && !Float.isNaN(change) && change >= IRREGULAR_HR_CHANGE) {
+            return REM;
+        }
+        return LIGHT_SLEEP;
+    }
+
+    // Mean absolute heart rate change between consecutive epochs, from the oldest on
+    private float heartRateChange() {
+        double sum = 0;
+        int pairs = 0;
+        int count = Math.min(ringCount, HR_CHANGE_MINUTES);
+        for (int i = 1; i < count; i++) {
+            float previous = ringHeartRate[slot(i - 1)];
+            float heartRate = ringHeartRate[slot(i)];
+            if (!Float.isNaN(previous) && !Float.isNaN(heartRate)) {
+                sum += Math.abs(heartRate - previous);
+                pairs++;
+            }
+        }
+        return pairs > 0 ? (float) (sum / pairs) : Float.NaN;
+    }
+
+    // --- State ---
+
+    /** Everything needed to carry on after a restart. */
+    public ByteBuffer saveState() {
+        ByteBuffer out = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(STATE_VERSION);
+        out.putLong(binStart).putDouble(binHeartRateSum).putInt(binHeartRateCount)
+            .putDouble(binSquaredDiffs).putInt(binDiffs).putFloat(binSteps).putFloat(lastIbi)
+            .put((byte) (stepsSeen ? 1 : 0));
+        out.putInt(ringCount);
+        for (int i = 0; i < ringCount; i++) {
+            int slot = slot(i);
+            out.putLong(ringStart[slot]).putFloat(ringHeartRate[slot]).putFloat(ringRmssd[slot])
+                .putFloat(ringSteps[slot]);
+        }
+        out.putLong(lastEpochStart).putLong(labelledUntil);
+        out.putFloat(restingHeartRate).put((byte) (asleep ? 1 : 0)).putFloat(nightHeartRate).putFloat(nightRmssd);
+        for (Track track : new Track[] {activity, sleep}) {
+            track.current.write(out);
+            track.candidate.write(out);
+        }
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Resumes from {@link #saveState()}. Returns false, leaving the engine as it was, when
+     * the state is from another version or cut short.
+     */
+    public boolean restoreState(ByteBuffer in) {
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != STATE_VERSION) {
+                return false;
+            }
+            long savedBinStart = in.getLong();
+            double savedHeartRateSum = in.getDouble();
+            int savedHeartRateCount = in.getInt();
+            double savedSquaredDiffs = in.getDouble();
+            int savedDiffs = in.getInt();
+            float savedSteps = in.getFloat();
+            float savedIbi = in.getFloat();
+            boolean savedStepsSeen = in.get() != 0;
+            int savedCount = in.getInt();
+            if (savedCount < 0 || savedCount >= RING_SIZE) {
+                return false;
+            }
+            long[] starts = new long[RING_SIZE];
+            float[] heartRates = new float[RING_SIZE];
+            float[] rmssds = new float[RING_SIZE];
+            float[] steps = new float[RING_SIZE];
+            for (int i = 0; i < savedCount; i++) {
+                starts[i] = in.getLong();
+                heartRates[i] = in.getFloat();
+                rmssds[i] = in.getFloat();
+                steps[i] = in.getFloat();
+            }
+            long savedLastEpoch = in.getLong();
+            long savedLabelledUntil = in.getLong();
+            float savedResting = in.getFloat();
+            boolean savedAsleep = in.get() != 0;
+            float savedNightHeartRate = in.getFloat();
+            float savedNightRmssd = in.getFloat();
+            Run[] runs = new Run[4];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = new Run();
+                runs[i].read(in);
+            }
+
+            binStart = savedBinStart;
+            binHeartRateSum = savedHeartRateSum;
+            binHeartRateCount = savedHeartRateCount;
+            binSquaredDiffs = savedSquaredDiffs;
+            binDiffs = savedDiffs;
+            binSteps = savedSteps;
+            lastIbi = savedIbi;
+            stepsSeen = savedStepsSeen;
+            System.arraycopy(starts, 0, ringStart, 0, RING_SIZE);
+            System.arraycopy(heartRates, 0, ringHeartRate, 0, RING_SIZE);
+            System.arraycopy(rmssds, 0, ringRmssd, 0, RING_SIZE);
+            System.arraycopy(steps, 0, ringSteps, 0, RING_SIZE);
+            ringHead = 0;
+            ringCount = savedCount;
+            lastEpochStart = savedLastEpoch;
+            labelledUntil = savedLabelledUntil;
+            restingHeartRate = savedResting;
+            asleep = savedAsleep;
+            nightHeartRate = savedNightHeartRate;
+            nightRmssd = savedNightRmssd;
+            activity.current = runs[0];
+            activity.candidate = runs[1];
+            sleep.current = runs[2];
+            sleep.candidate = runs[3];
+            return true;
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+}
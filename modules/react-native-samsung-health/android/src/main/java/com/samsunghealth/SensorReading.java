@@ -0,0 +1,52 @@
+package com.samsunghealth;
+
+/**
+ * One live reading handed out by a {@link SensorSource}: a timestamp, a value and, for
+ * heart rate, the inter-beat intervals measured since the previous reading. Owned by the
+ * caller and refilled on every read, so polling a source does not allocate.
+ */
+public final class SensorReading {
+
+    private long timestamp;
+    private float value;
+    private int[] intervals = new int[16];
+    private int intervalCount;
+
+    public void clear() {
+        timestamp = 0;
+        value = 0;
+        intervalCount = 0;
+    }
+
+    public void set(long timestamp, float value) {
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    /** Appends one inter-beat interval, ms. */
+    public void addInterval(int intervalMillis) {
+        if (intervalCount == intervals.length) {
+            int[] grown = new int[intervals.length * 2];
+            System.arraycopy(intervals, 0, grown, 0, intervalCount);
+            intervals = grown;
+        }
+        intervals[intervalCount++] = intervalMillis;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    /** Backing interval array; only the first {@link #getIntervalCount()} entries are valid. */
+    public int[] getIntervals() {
+        return intervals;
+    }
+
+    public int getIntervalCount() {
+        return intervalCount;
+    }
+}
@@ -0,0 +1,120 @@
+package com.samsunghealth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns every timer and background task of the module.
+ *
+ * Work runs on a small, fixed pool of daemon threads instead of whatever looper happened to
+ * call into the module. Recurring sensor work is registered under a key (one per start/stop
+ * pair), so a stop call cancels exactly the task its start created and a second start
+ * replaces rather than duplicates it.
+ */
+public final class SensorScheduler {
+
+    public interface ErrorListener {
+        void onTaskError(String key, Throwable error);
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, ScheduledFuture<?>> tasks = new ConcurrentHashMap<>();
+    private final ErrorListener errorListener;
+    private final AtomicLong failures = new AtomicLong();
+
+    public SensorScheduler(int threads, final String threadPrefix, ErrorListener errorListener) {
+        this.errorListener = errorListener;
+        this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadPrefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Cancelled sensor timers should not linger in the queue until their delay expires
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /** Underlying executor, for components that schedule their own one-off work. */
+    public ScheduledExecutorService executor() {
+        return executor;
+    }
+
+    /** Runs one-off work (e.g. a historical query) off the calling thread. */
+    public void execute(String name, Runnable task) {
+        executor.execute(guard(name, task));
+    }
+
+    /** Schedules a one-shot task under {@code key}, replacing any task already registered there. */
+    public void schedule(String key, Runnable task, long delay, TimeUnit unit) {
+        register(key, executor.schedule(guard(key, task), delay, unit));
+    }
+
+    /** Schedules a recurring task under {@code key}, replacing any task already registered there. */
+    public void scheduleAtFixedRate(String key, Runnable task, long initialDelay, long period, TimeUnit unit) {
+        register(key, executor.scheduleAtFixedRate(guard(key, task), initialDelay, period, unit));
+    }
+
+    public boolean cancel(String key) {
+        ScheduledFuture<?> future = tasks.remove(key);
+        if (future == null) {
+            return false;
+        }
+        future.cancel(false);
+        return true;
+    }
+
+    public boolean isScheduled(String key) {
+        ScheduledFuture<?> future = tasks.get(key);
+        return future != null && !future.isDone();
+    }
+
+    public void cancelAll() {
+        for (String key : tasks.keySet()) {
+            cancel(key);
+        }
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdown();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    private void register(String key, ScheduledFuture<?> future) {
+        ScheduledFuture<?> previous = tasks.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    // A throwing periodic task would otherwise be silently descheduled by the executor
+    private Runnable guard(final String key, final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    failures.incrementAndGet();
+                    if (errorListener != null) {
+                        errorListener.onTaskError(key, t);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.samsunghealth;
+
+/**
+ * Where one metric's data comes from: the Samsung Health tracker, a simulator
+ * ({@link SimulatedSensors}) or a recording ({@link ReplaySensorSource}).
+ *
+ * A source serves three kinds of requests, all driven by {@link HealthSession}: periodic live
+ * readings while the metric is being tracked, the readings of the current day for the
+ * "today" queries, and whole past days the local store has never seen. Implementations are
+ * called from scheduler threads, one call at a time per source.
+ */
+public interface SensorSource {
+
+    /** Metric the readings are stored under, e.g. {@link HealthSession#METRIC_HEART_RATE}. */
+    String getMetric();
+
+    /** Delay before the first live reading after tracking starts, ms. */
+    long getInitialDelayMillis();
+
+    /** Interval between live readings, ms, or 0 for a single reading per start. */
+    long getPeriodMillis();
+
+    /**
+     * Fills {@code out} with the live reading due at {@code now}. Returns false when the source
+     * has nothing to report (no live stream, or a recording that ran out).
+     */
+    boolean read(long now, SensorReading out);
+
+    /** Appends the readings of the current day up to {@code now} to {@code out}. */
+    void readToday(long now, SeriesSlice out);
+
+    /**
+     * Appends the readings of the UTC day starting at {@code dayStart} to {@code out}, in time
+     * order and none later than {@code now}. Called once per day missing from the store.
+     */
+    void readDay(long dayStart, long now, SeriesSlice out);
+}
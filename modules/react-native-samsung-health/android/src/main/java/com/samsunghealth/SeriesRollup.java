@@ -0,0 +1,163 @@
+package com.samsunghealth;
+
+import java.util.TreeMap;
+
+/**
+ * Incremental minute / hour / day summaries of one metric, updated on every appended sample.
+ *
+ * Each UTC day owns fixed-size bucket columns (1 day, 24 hours, 1440 minutes), so samples that
+ * arrive out of order, e.g. a backfilled day, land in their bucket directly. Minute buckets
+ * are only kept for the most recent {@link #MINUTE_RETENTION_DAYS} days; older minute-level
+ * queries are answered from the raw segment instead, which is about as fast and keeps a year
+ * of history from costing megabytes of duplicated columns.
+ */
+final class SeriesRollup {
+
+    static final long MINUTE_MILLIS = 60_000L;
+    static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    static final int MINUTE_RETENTION_DAYS = 7;
+
+    private static final class Level {
+        final int[] count;
+        final float[] min;
+        final float[] max;
+        final double[] mean;
+        final double[] m2;
+
+        Level(int buckets) {
+            count = new int[buckets];
+            min = new float[buckets];
+            max = new float[buckets];
+            mean = new double[buckets];
+            m2 = new double[buckets];
+        }
+
+        void add(int bucket, float value) {
+            int n = ++count[bucket];
+            if (n == 1) {
+                min[bucket] = value;
+                max[bucket] = value;
+                mean[bucket] = value;
+                m2[bucket] = 0;
+                return;
+            }
+            if (value < min[bucket]) {
+                min[bucket] = value;
+            }
+            if (value > max[bucket]) {
+                max[bucket] = value;
+            }
+            // Welford
+            double delta = value - mean[bucket];
+            mean[bucket] += delta / n;
+            m2[bucket] += delta * (value - mean[bucket]);
+        }
+    }
+
+    private static final class DayRollup {
+        final Level day = new Level(1);
+        final Level hours = new Level(24);
+        Level minutes;
+    }
+
+    private final TreeMap<Long, DayRollup> days = new TreeMap<>();
+    private long newestDay = Long.MIN_VALUE;
+
+    void add(long timestamp, float value) {
+        long dayStart = TimeSeriesStore.dayStart(timestamp);
+        DayRollup rollup = days.get(dayStart);
+        if (rollup == null) {
+            rollup = new DayRollup();
+            days.put(dayStart, rollup);
+        }
+        if (dayStart > newestDay) {
+            newestDay = dayStart;
+            evictMinutes();
+        }
+        if (rollup.minutes == null && retainsMinutes(dayStart)) {
+            rollup.minutes = new Level((int) (TimeSeriesStore.DAY_MILLIS / MINUTE_MILLIS));
+        }
+        long offset = timestamp - dayStart;
+        rollup.day.add(0, value);
+        rollup.hours.add((int) (offset / HOUR_MILLIS), value);
+        if (rollup.minutes != null) {
+            rollup.minutes.add((int) (offset / MINUTE_MILLIS), value);
+        }
+    }
+
+    /** Forgets every sample of the UTC day starting at {@code dayStart}. */
+    void removeDay(long dayStart) {
+        days.remove(dayStart);
+    }
+
+    /**
+     * Emits the buckets of one day that start in [start, end) into {@code out}, re-bucketed to
+     * {@code resolution}. Returns false when minute buckets were requested but are no longer
+     * retained for that day.
+     */
+    boolean emitDay(long dayStart, long levelMillis, long start, long end, long resolution, RollupBuckets out) {
+        DayRollup rollup = days.get(dayStart);
+        if (rollup == null) {
+            return true;
+        }
+        Level level;
+        if (levelMillis == TimeSeriesStore.DAY_MILLIS) {
+            level = rollup.day;
+        } else if (levelMillis == HOUR_MILLIS) {
+            level = rollup.hours;
+        } else {
+            level = rollup.minutes;
+            if (level == null) {
+                return false;
+            }
+        }
+        int first = (int) Math.max(0, ceilDiv(start - dayStart, levelMillis));
+        int last = (int) Math.min(level.count.length, ceilDiv(end - dayStart, levelMillis));
+        for (int i = first; i < last; i++) {
+            if (level.count[i] == 0) {
+                continue;
+            }
+            long bucketStart = dayStart + i * levelMillis;
+            out.accumulate(Math.floorDiv(bucketStart, resolution) * resolution, level.count[i],
+                level.min[i], level.max[i], level.mean[i], level.m2[i]);
+        }
+        return true;
+    }
+
+    /** Widest stored level whose buckets tile {@code resolution} exactly. */
+    static long levelFor(long resolution) {
+        if (resolution % TimeSeriesStore.DAY_MILLIS == 0) {
+            return TimeSeriesStore.DAY_MILLIS;
+        } else if (resolution % HOUR_MILLIS == 0) {
+            return HOUR_MILLIS;
+        } else if (resolution > 0 && resolution % MINUTE_MILLIS == 0) {
+            return MINUTE_MILLIS;
+        }
+        throw new IllegalArgumentException("Resolution must be a positive multiple of one minute: " + resolution);
+    }
+
+    /** Finest of minute, hour and day that covers {@code span} in at most {@code maxBuckets} buckets. */
+    static long resolutionFor(long span, int maxBuckets) {
+        if (span <= MINUTE_MILLIS * maxBuckets) {
+            return MINUTE_MILLIS;
+        } else if (span <= HOUR_MILLIS * maxBuckets) {
+            return HOUR_MILLIS;
+        }
+        return TimeSeriesStore.DAY_MILLIS;
+    }
+
+    private boolean retainsMinutes(long dayStart) {
+        return dayStart > newestDay - MINUTE_RETENTION_DAYS * TimeSeriesStore.DAY_MILLIS;
+    }
+
+    private void evictMinutes() {
+        long cutoff = newestDay - MINUTE_RETENTION_DAYS * TimeSeriesStore.DAY_MILLIS;
+        for (DayRollup rollup : days.headMap(cutoff, true).values()) {
+            rollup.minutes = null;
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+}
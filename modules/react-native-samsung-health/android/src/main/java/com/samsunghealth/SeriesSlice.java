@@ -0,0 +1,73 @@
+package com.samsunghealth;
+
+/**
+ * Reusable result of a time-range query: parallel primitive columns of timestamps and
+ * values. Grows as needed and is meant to be cleared and refilled rather than reallocated.
+ */
+public final class SeriesSlice {
+
+    private long[] timestamps;
+    private float[] values;
+    private int count;
+
+    public SeriesSlice() {
+        this(256);
+    }
+
+    public SeriesSlice(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void add(long timestamp, float value) {
+        if (count == timestamps.length) {
+            grow(count + 1);
+        }
+        timestamps[count] = timestamp;
+        values[count] = value;
+        count++;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            grow(capacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, timestamps.length * 2);
+        long[] newTimestamps = new long[capacity];
+        float[] newValues = new float[capacity];
+        System.arraycopy(timestamps, 0, newTimestamps, 0, count);
+        System.arraycopy(values, 0, newValues, 0, count);
+        timestamps = newTimestamps;
+        values = newValues;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    public float valueAt(int index) {
+        return values[index];
+    }
+
+    /** Backing timestamp column; only the first {@link #size()} entries are valid. */
+    public long[] timestamps() {
+        return timestamps;
+    }
+
+    /** Backing value column; only the first {@link #size()} entries are valid. */
+    public float[] values() {
+        return values;
+    }
+}
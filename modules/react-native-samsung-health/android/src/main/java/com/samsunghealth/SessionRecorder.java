@@ -0,0 +1,224 @@
+package com.samsunghealth;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Writes a {@link SessionRecording}: every live reading and raw ECG run a {@link HealthSession}
+ * sees, in arrival order, so a session can be replayed exactly (see {@link SessionReplay}).
+ *
+ * Records are encoded into one reusable buffer and written through a buffered stream, so a
+ * reading costs a few dozen bytes and no allocation. Streams are declared on their first
+ * record. Safe to call from the scheduler and ECG threads at once. A write failure stops the
+ * recording instead of failing the caller; see {@link #getError()}.
+ */
+public final class SessionRecorder implements Closeable {
+
+    private static final int MAX_STREAMS = 256;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private final OutputStream out;
+    private final HashMap<String, Integer> streamIds = new HashMap<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private int[] lastBits = new int[8];
+    private long lastTimestamp;
+    private long bytesWritten;
+    private long records;
+    private IOException error;
+    private boolean closed;
+
+    public SessionRecorder(OutputStream out, long startMillis) throws IOException {
+        this.out = out;
+        this.lastTimestamp = startMillis;
+        buffer.putInt(SessionRecording.MAGIC);
+        buffer.putShort((short) SessionRecording.VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(startMillis);
+        write();
+    }
+
+    /** Records into {@code file}, replacing it. */
+    public static SessionRecorder create(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            return new SessionRecorder(out, System.currentTimeMillis());
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /** Records a live reading of {@code metric}, with its beat intervals. */
+    public synchronized void recordReading(String metric, SensorReading reading) {
+        if (closed) {
+            return;
+        }
+        int id = streamId(metric, SessionRecording.KIND_READINGS, 0);
+        if (id < 0) {
+            return;
+        }
+        int intervalCount = reading.getIntervalCount();
+        ensure(2 + MAX_VARINT_BYTES + 4 + MAX_VARINT_BYTES * (1 + intervalCount));
+        buffer.put(SessionRecording.TYPE_READING);
+        buffer.put((byte) id);
+        putTimestamp(reading.getTimestamp());
+        buffer.putFloat(reading.getValue());
+        putVarint(intervalCount);
+        int[] intervals = reading.getIntervals();
+        for (int i = 0; i < intervalCount; i++) {
+            putVarint(intervals[i]);
+        }
+        write();
+        records++;
+    }
+
+    /** Records a run of raw samples of {@code stream}, e.g. ECG, received at {@code timestamp}. */
+    public synchronized void recordSamples(String stream, int sampleRate, long timestamp,
+                                           float[] samples, int offset, int length) {
+        if (closed || length <= 0) {
+            return;
+        }
+        int id = streamId(stream, SessionRecording.KIND_SAMPLES, sampleRate);
+        if (id < 0) {
+            return;
+        }
+        ensure(2 + MAX_VARINT_BYTES * (2 + length));
+        buffer.put(SessionRecording.TYPE_SAMPLES);
+        buffer.put((byte) id);
+        putTimestamp(timestamp);
+        putVarint(length);
+        int bits = lastBits[id];
+        for (int i = offset; i < offset + length; i++) {
+            int next = Float.floatToRawIntBits(samples[i]);
+            putVarint(next ^ bits);
+            bits = next;
+        }
+        lastBits[id] = bits;
+        write();
+        records++;
+    }
+
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Readings and sample runs recorded. */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /** The write failure that stopped the recording, or null. */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    // Declares the stream on first use; -1 once the id space is used up
+    private int streamId(String name, byte kind, int sampleRate) {
+        Integer id = streamIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (streamIds.size() == MAX_STREAMS) {
+            return -1;
+        }
+        int next = streamIds.size();
+        streamIds.put(name, next);
+        if (next == lastBits.length) {
+            int[] grown = new int[next * 2];
+            System.arraycopy(lastBits, 0, grown, 0, next);
+            lastBits = grown;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ensure(3 + 2 * MAX_VARINT_BYTES + bytes.length);
+        buffer.put(SessionRecording.TYPE_STREAM);
+        buffer.put((byte) next);
+        buffer.put(kind);
+        putVarint(sampleRate);
+        putVarint(bytes.length);
+        buffer.put(bytes);
+        write();
+        return next;
+    }
+
+    private void putTimestamp(long timestamp) {
+        // Gaps beyond ~12 days are clamped; the reader's clock then stays where this one is
+        int delta = (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, timestamp - lastTimestamp));
+        lastTimestamp += delta;
+        putVarint((delta << 1) ^ (delta >> 31));
+    }
+
+    private void putVarint(int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private void write() {
+        int length = buffer.position();
+        buffer.clear();
+        if (error != null) {
+            return;
+        }
+        try {
+            out.write(buffer.array(), 0, length);
+            bytesWritten += length;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        error = e;
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+    }
+}
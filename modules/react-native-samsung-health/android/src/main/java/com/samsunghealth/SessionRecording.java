@@ -0,0 +1,303 @@
+package com.samsunghealth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded sensor session, read back into memory for {@link SessionReplay}.
+ *
+ * The file, written by {@link SessionRecorder}, is a 16-byte header (magic, version, start
+ * time) followed by records in arrival order, each a type byte and a stream id:
+ * <ul>
+ *   <li>stream: kind (readings or samples), sample rate and name, before the stream's first data;</li>
+ *   <li>reading: time delta, float32 value and the beat intervals (HR+IBI, SpO2, steps, ...);</li>
+ *   <li>samples: time delta and a run of raw samples (ECG), each stored as the varint of its
+ *       float bits XOR the previous sample's, which keeps smooth signals to 2-3 bytes a
+ *       sample while replaying bit-exact.</li>
+ * </ul>
+ * Time deltas are zigzag varints in ms against the previous record, since threads may
+ * record slightly out of order. A torn record at the tail (e.g. the app was killed) ends
+ * the recording without an error.
+ */
+public final class SessionRecording {
+
+    static final int MAGIC = 0x5253444D; // "MDSR" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    static final byte TYPE_STREAM = 1;
+    static final byte TYPE_READING = 2;
+    static final byte TYPE_SAMPLES = 3;
+
+    static final byte KIND_READINGS = 0;
+    static final byte KIND_SAMPLES = 1;
+
+    /** Name of the raw ECG stream {@link HealthSession} records. */
+    public static final String ECG_STREAM = "ecg";
+
+    /** One recorded stream: timestamped readings, or runs of samples at a fixed rate. */
+    public static final class Stream {
+        final String name;
+        final boolean samples;
+        final int sampleRate;
+
+        // Readings, or for sample streams one entry per recorded run
+        long[] timestamps = new long[64];
+        float[] values = new float[64];
+        // Reading i's intervals are intervals[intervalStarts[i] .. intervalStarts[i + 1]); run i's samples likewise
+        int[] intervalStarts = new int[65];
+        int[] intervals = new int[64];
+        float[] sampleData = new float[0];
+        int count;
+        int lastBits;
+
+        Stream(String name, boolean samples, int sampleRate) {
+            this.name = name;
+            this.samples = samples;
+            this.sampleRate = sampleRate;
+            if (samples) {
+                sampleData = new float[1024];
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isSamples() {
+            return samples;
+        }
+
+        /** Samples per second of a sample stream, 0 for readings. */
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        /** Readings, or recorded runs of a sample stream. */
+        public int size() {
+            return count;
+        }
+
+        public long timestampAt(int index) {
+            return timestamps[index];
+        }
+
+        public float valueAt(int index) {
+            return values[index];
+        }
+
+        /** Reading {@code index}'s intervals are {@link #intervals()} from here to {@link #intervalsEnd}. */
+        public int intervalsStart(int index) {
+            return intervalStarts[index];
+        }
+
+        public int intervalsEnd(int index) {
+            return intervalStarts[index + 1];
+        }
+
+        public int[] intervals() {
+            return intervals;
+        }
+
+        /** All samples of a sample stream, back to back; run i starts at {@link #intervalsStart}(i). */
+        public float[] samples() {
+            return sampleData;
+        }
+
+        public int sampleCount() {
+            return intervalStarts[count];
+        }
+
+        /** Time from the first to the last entry, ms. */
+        public long getDurationMillis() {
+            return count == 0 ? 0 : timestamps[count - 1] - timestamps[0];
+        }
+
+        void add(long timestamp, float value) {
+            if (count == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+                intervalStarts = Arrays.copyOf(intervalStarts, count * 2 + 1);
+            }
+            timestamps[count] = timestamp;
+            values[count] = value;
+            count++;
+            intervalStarts[count] = intervalStarts[count - 1];
+        }
+
+        void addInterval(int interval) {
+            int end = intervalStarts[count];
+            if (end == intervals.length) {
+                intervals = Arrays.copyOf(intervals, end * 2);
+            }
+            intervals[end] = interval;
+            intervalStarts[count] = end + 1;
+        }
+
+        void addSample(float sample) {
+            int end = intervalStarts[count];
+            if (end == sampleData.length) {
+                sampleData = Arrays.copyOf(sampleData, end * 2);
+            }
+            sampleData[end] = sample;
+            intervalStarts[count] = end + 1;
+        }
+    }
+
+    private final long startMillis;
+    private final Map<String, Stream> streams;
+    private final boolean truncated;
+
+    private SessionRecording(long startMillis, Map<String, Stream> streams, boolean truncated) {
+        this.startMillis = startMillis;
+        this.streams = streams;
+        this.truncated = truncated;
+    }
+
+    public static SessionRecording read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static SessionRecording read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            bytes.write(chunk, 0, read);
+        }
+        return decode(ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    static SessionRecording decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+        int version = in.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported session recording version " + version);
+        }
+        in.getShort();
+        long startMillis = in.getLong();
+
+        Stream[] byId = new Stream[256];
+        Map<String, Stream> streams = new LinkedHashMap<>();
+        long timestamp = startMillis;
+        boolean truncated = false;
+        // Undo state for a record cut off by the end of the file
+        Stream current = null;
+        int currentCount = 0;
+        int currentBits = 0;
+        try {
+            while (in.hasRemaining()) {
+                current = null;
+                int type = in.get();
+                int id = in.get() & 0xFF;
+                if (type == TYPE_STREAM) {
+                    boolean samples = in.get() == KIND_SAMPLES;
+                    int sampleRate = readVarint(in);
+                    byte[] name = new byte[readVarint(in)];
+                    in.get(name);
+                    Stream stream = new Stream(new String(name, StandardCharsets.UTF_8), samples, sampleRate);
+                    byId[id] = stream;
+                    streams.put(stream.name, stream);
+                    continue;
+                }
+                Stream stream = byId[id];
+                if (stream == null || (type != TYPE_READING && type != TYPE_SAMPLES)) {
+                    throw new IOException("Corrupt session recording: record type " + type + " on stream " + id);
+                }
+                current = stream;
+                currentCount = stream.count;
+                currentBits = stream.lastBits;
+                timestamp += zigzagDecode(readVarint(in));
+                if (type == TYPE_READING) {
+                    float value = in.getFloat();
+                    int intervalCount = readVarint(in);
+                    stream.add(timestamp, value);
+                    for (int i = 0; i < intervalCount; i++) {
+                        stream.addInterval(readVarint(in));
+                    }
+                } else {
+                    int sampleCount = readVarint(in);
+                    stream.add(timestamp, 0);
+                    int bits = stream.lastBits;
+                    for (int i = 0; i < sampleCount; i++) {
+                        bits ^= readVarint(in);
+                        stream.addSample(Float.intBitsToFloat(bits));
+                    }
+                    stream.lastBits = bits;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // Torn tail: drop the partial record
+            truncated = true;
+            if (current != null) {
+                current.count = currentCount;
+                current.lastBits = currentBits;
+            }
+        }
+        return new SessionRecording(startMillis, streams, truncated);
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /** Whether the file ended inside a record, i.e. the recorder was not closed. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public List<String> getStreamNames() {
+        return Collections.unmodifiableList(new ArrayList<>(streams.keySet()));
+    }
+
+    /** The stream called {@code name}, or null. */
+    public Stream getStream(String name) {
+        return streams.get(name);
+    }
+
+    /** Time from the start of the recording to its last entry, ms. */
+    public long getDurationMillis() {
+        long end = startMillis;
+        for (Stream stream : streams.values()) {
+            if (stream.count > 0) {
+                end = Math.max(end, stream.timestamps[stream.count - 1]);
+            }
+        }
+        return end - startMillis;
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static long zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,293 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link SessionRecording} back through a {@link HealthSession}: a {@link SensorSource}
+ * per recorded metric and an {@link EcgSampleSource} for the raw ECG, all on one clock.
+ *
+ * At a speed of 1 the streams come back with their recorded timing; at N they run N times
+ * faster, each poll handing over every reading that has come due (the latest value, with the
+ * beat intervals of all of them). {@link #AS_FAST_AS_POSSIBLE} drops the clock: metrics are
+ * polled every millisecond and get one recorded reading per poll, and ECG is written as fast
+ * as the pipeline drains it, never overflowing its ring, so every reading and sample arrives
+ * in order and two replays of a file classify the same beats.
+ *
+ * Readings keep their recorded spacing, shifted so the recording starts when the replay does,
+ * so HRV windows and alert durations match the original session. The clock starts with the
+ * first source that is read or started.
+ */
+public final class SessionReplay {
+
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int ECG_BATCH_MILLIS = 20;
+    private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final SessionRecording recording;
+    private final double speed;
+    private final List<ReplayedSource> sources = new ArrayList<>();
+    private final ReplayedEcgSource ecgSource;
+
+    private long startedNanos = -1;
+    private long startedMillis;
+
+    /** @param speed playback rate, e.g. 1 or 10, or {@link #AS_FAST_AS_POSSIBLE} */
+    public SessionReplay(SessionRecording recording, double speed) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("Invalid replay speed " + speed);
+        }
+        this.recording = recording;
+        this.speed = speed;
+        ReplayedEcgSource ecg = null;
+        for (String name : recording.getStreamNames()) {
+            SessionRecording.Stream stream = recording.getStream(name);
+            if (!stream.isSamples()) {
+                sources.add(new ReplayedSource(stream));
+            } else if (SessionRecording.ECG_STREAM.equals(name) && stream.getSampleRate() > 0) {
+                ecg = new ReplayedEcgSource(stream);
+            }
+        }
+        this.ecgSource = ecg;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public SessionRecording getRecording() {
+        return recording;
+    }
+
+    /** Metrics with recorded readings. */
+    public List<String> getMetrics() {
+        List<String> metrics = new ArrayList<>();
+        for (ReplayedSource source : sources) {
+            metrics.add(source.getMetric());
+        }
+        return metrics;
+    }
+
+    /** The replay of {@code metric}'s readings, or null if none were recorded. */
+    public SensorSource source(String metric) {
+        for (ReplayedSource source : sources) {
+            if (source.getMetric().equals(metric)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /** The replay of the raw ECG, or null if none was recorded. */
+    public EcgSampleSource ecgSource() {
+        return ecgSource;
+    }
+
+    /**
+     * Serves every recorded metric the session knows, and the ECG if recorded, from this
+     * replay. Takes effect on the next start of each stream.
+     */
+    public void install(HealthSession session) {
+        for (ReplayedSource source : sources) {
+            if (session.hasMetric(source.getMetric())) {
+                session.setSource(source);
+            }
+        }
+        if (ecgSource != null) {
+            session.setEcgSource(ecgSource);
+        }
+    }
+
+    /** Whether every recorded reading and sample has been handed over (and the ECG ring drained). */
+    public boolean isFinished() {
+        for (ReplayedSource source : sources) {
+            if (!source.isFinished()) {
+                return false;
+            }
+        }
+        return ecgSource == null || ecgSource.isFinished();
+    }
+
+    // Recorded time, relative to the recording's start, that has come due
+    private synchronized long dueMillis() {
+        if (startedNanos < 0) {
+            start();
+        }
+        if (speed == AS_FAST_AS_POSSIBLE) {
+            return Long.MAX_VALUE;
+        }
+        return (long) ((System.nanoTime() - startedNanos) / 1e6 * speed);
+    }
+
+    private synchronized long shift() {
+        if (startedNanos < 0) {
+            start();
+        }
+        return startedMillis - recording.getStartMillis();
+    }
+
+    private void start() {
+        startedNanos = System.nanoTime();
+        startedMillis = System.currentTimeMillis();
+    }
+
+    private final class ReplayedSource implements SensorSource {
+        private final SessionRecording.Stream stream;
+        private final long periodMillis;
+        private int next;
+
+        ReplayedSource(SessionRecording.Stream stream) {
+            this.stream = stream;
+            long recordedPeriod = stream.size() > 1 ? stream.getDurationMillis() / (stream.size() - 1) : 1000;
+            this.periodMillis = speed == AS_FAST_AS_POSSIBLE ? 1 : Math.max(1, Math.round(recordedPeriod / speed));
+        }
+
+        @Override
+        public String getMetric() {
+            return stream.getName();
+        }
+
+        @Override
+        public long getInitialDelayMillis() {
+            return speed == AS_FAST_AS_POSSIBLE ? 0 : periodMillis;
+        }
+
+        @Override
+        public long getPeriodMillis() {
+            return periodMillis;
+        }
+
+        @Override
+        public synchronized boolean read(long now, SensorReading out) {
+            if (next >= stream.size()) {
+                return false;
+            }
+            long due = dueMillis();
+            long start = recording.getStartMillis();
+            if (stream.timestampAt(next) - start > due) {
+                return false;
+            }
+            out.clear();
+            int[] intervals = stream.intervals();
+            int last;
+            do {
+                last = next++;
+                for (int i = stream.intervalsStart(last); i < stream.intervalsEnd(last); i++) {
+                    out.addInterval(intervals[i]);
+                }
+            } while (speed != AS_FAST_AS_POSSIBLE && next < stream.size() && stream.timestampAt(next) - start <= due);
+            out.set(stream.timestampAt(last) + shift(), stream.valueAt(last));
+            return true;
+        }
+
+        @Override
+        public synchronized void readToday(long now, SeriesSlice out) {
+            // What has been replayed so far, as the store holds it
+            long shift = shift();
+            long dayStart = TimeSeriesStore.dayStart(now);
+            for (int i = 0; i < next; i++) {
+                long timestamp = stream.timestampAt(i) + shift;
+                if (timestamp >= dayStart && timestamp <= now) {
+                    out.add(timestamp, stream.valueAt(i));
+                }
+            }
+        }
+
+        @Override
+        public void readDay(long dayStart, long now, SeriesSlice out) {
+            // A replay has no history from before it started
+        }
+
+        synchronized boolean isFinished() {
+            return next >= stream.size();
+        }
+    }
+
+    private final class ReplayedEcgSource implements EcgSampleSource {
+        private final SessionRecording.Stream stream;
+        private final float[] samples;
+        private final int batch;
+        private volatile boolean running;
+        private volatile int position;
+        private volatile SampleRingBuffer target;
+        private Thread thread;
+
+        ReplayedEcgSource(SessionRecording.Stream stream) {
+            this.stream = stream;
+            this.samples = stream.samples();
+            this.batch = Math.max(1, stream.getSampleRate() * ECG_BATCH_MILLIS / 1000);
+        }
+
+        @Override
+        public int getSampleRate() {
+            return stream.getSampleRate();
+        }
+
+        @Override
+        public synchronized void start(final SampleRingBuffer target) {
+            if (running) {
+                return;
+            }
+            running = true;
+            this.target = target;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    produce(target);
+                }
+            }, "ecg-replay");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (!running) {
+                return;
+            }
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+
+        boolean isFinished() {
+            SampleRingBuffer ring = target;
+            return position >= stream.sampleCount() && (ring == null || ring.size() == 0);
+        }
+
+        private void produce(SampleRingBuffer target) {
+            int total = stream.sampleCount();
+            // Samples are paced by their index; recorded run times only reflect delivery jitter
+            long firstDue = dueMillis();
+            int base = position;
+            // A batch must fit the ring, or a full-speed replay would wait for room forever
+            int maxLength = Math.min(batch, target.capacity());
+            while (running && position < total) {
+                int length = Math.min(maxLength, total - position);
+                if (speed == AS_FAST_AS_POSSIBLE) {
+                    if (target.capacity() - target.size() < length) {
+                        LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+                        continue;
+                    }
+                } else {
+                    long due = (long) ((position + length - base) * 1000.0 / stream.getSampleRate());
+                    long wait = due - (dueMillis() - firstDue);
+                    if (wait > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(1, (long) (wait / speed))));
+                        continue;
+                    }
+                }
+                target.offer(samples, position, length);
+                position += length;
+            }
+        }
+    }
+}
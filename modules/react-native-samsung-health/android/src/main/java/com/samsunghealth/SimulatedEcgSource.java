@@ -0,0 +1,114 @@
+package com.samsunghealth;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stands in for the ECG tracker listener while the Samsung Health SDK is simulated.
+ *
+ * Delivers a synthetic PQRST waveform at {@code sampleRate} Hz in small bursts, the way the
+ * tracker hands over batches of data points, writing straight into a {@link SampleRingBuffer}
+ * from its own thread.
+ */
+public final class SimulatedEcgSource implements EcgSampleSource {
+
+    public static final int DEFAULT_SAMPLE_RATE = 500;
+    private static final int BATCH_MILLIS = 20;
+
+    private final int sampleRate;
+    private final float[] batch;
+    private final Random random = new Random();
+
+    private volatile boolean running;
+    private Thread thread;
+    private long sampleIndex;
+    private double beatPhase;
+    private double beatsPerSecond = 72 / 60.0;
+
+    public SimulatedEcgSource(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.batch = new float[Math.max(1, sampleRate * BATCH_MILLIS / 1000)];
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public synchronized void start(final SampleRingBuffer target) {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                produce(target);
+            }
+        }, "ecg-tracker-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void produce(SampleRingBuffer target) {
+        long batchNanos = TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS);
+        long next = System.nanoTime();
+        while (running) {
+            fill(batch, 0, batch.length);
+            target.offer(batch, 0, batch.length);
+            next += batchNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /** Generates the next {@code length} samples of the synthetic waveform, e.g. for offline replay. */
+    public void fill(float[] target, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = nextSample();
+        }
+    }
+
+    private float nextSample() {
+        beatPhase += beatsPerSecond / sampleRate;
+        if (beatPhase >= 1.0) {
+            beatPhase -= 1.0;
+            // Small beat-to-beat variation, 65-80 BPM
+            beatsPerSecond = (65 + random.nextInt(16)) / 60.0;
+        }
+        double p = beatPhase;
+        double value = 0.12 * gaussian(p, 0.18, 0.025)    // P wave
+            - 0.10 * gaussian(p, 0.285, 0.008)            // Q
+            + 1.00 * gaussian(p, 0.30, 0.010)             // R
+            - 0.18 * gaussian(p, 0.315, 0.009)            // S
+            + 0.30 * gaussian(p, 0.55, 0.045);            // T wave
+        value += 0.05 * Math.sin(2 * Math.PI * 0.3 * sampleIndex / sampleRate); // baseline wander
+        value += (random.nextFloat() - 0.5f) * 0.03;
+        sampleIndex++;
+        return (float) (value * 1000); // microvolts
+    }
+
+    private static double gaussian(double x, double mean, double width) {
+        double d = (x - mean) / width;
+        return Math.exp(-0.5 * d * d);
+    }
+}
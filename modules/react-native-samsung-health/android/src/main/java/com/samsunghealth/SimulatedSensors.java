@@ -0,0 +1,222 @@
+package com.samsunghealth;
+
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Simulated {@link SensorSource}s that stand in for the Samsung Health tracker and its daily
+ * summaries until the real SDK is wired in. Each source owns its random generator, so a
+ * seeded set of sources reproduces the same patient across runs and many simulated patients
+ * do not contend on {@link Math#random()}.
+ */
+public final class SimulatedSensors {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+
+    private SimulatedSensors() {
+    }
+
+    /** Heart rate, SpO2, steps and sleep sources for one simulated patient. */
+    public static SensorSource[] patient(long seed) {
+        return new SensorSource[] {
+            new HeartRate(seed, HeartRate.DEFAULT_PERIOD_MILLIS),
+            new Spo2(seed + 1),
+            new Steps(seed + 2),
+            new Sleep(seed + 3)
+        };
+    }
+
+    public static SensorSource[] patient() {
+        return patient(new Random().nextLong());
+    }
+
+    private abstract static class Simulated implements SensorSource {
+        final Random random;
+
+        Simulated(long seed) {
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public long getInitialDelayMillis() {
+            return 0;
+        }
+
+        @Override
+        public long getPeriodMillis() {
+            return 0;
+        }
+
+        // Daily summaries only; there is no live stream to track
+        @Override
+        public boolean read(long now, SensorReading out) {
+            return false;
+        }
+    }
+
+    /**
+     * A reading every few seconds with the beat intervals behind it. The rate wanders slowly
+     * around a resting level, like a wearer at rest, rather than jumping between readings.
+     */
+    public static final class HeartRate extends Simulated {
+        public static final long DEFAULT_PERIOD_MILLIS = 5000;
+        private static final float RESTING_BPM = 82;
+        private static final int MAX_INTERVALS_PER_READING = 64;
+
+        private final long periodMillis;
+        private float level = RESTING_BPM;
+        private long lastRead;
+
+        public HeartRate(long seed, long periodMillis) {
+            super(seed);
+            this.periodMillis = periodMillis;
+        }
+
+        @Override
+        public String getMetric() {
+            return HealthSession.METRIC_HEART_RATE;
+        }
+
+        @Override
+        public long getInitialDelayMillis() {
+            return periodMillis;
+        }
+
+        @Override
+        public long getPeriodMillis() {
+            return periodMillis;
+        }
+
+        @Override
+        public boolean read(long now, SensorReading out) {
+            out.clear();
+            level += 0.2f * (RESTING_BPM - level) + (float) random.nextGaussian() * 1.5f;
+            level = Math.max(72, Math.min(92, level)); // 72-92 BPM
+            int bpm = Math.round(level);
+            out.set(now, bpm);
+            // The beats since the previous reading, however long ago that was
+            long elapsed = lastRead > 0 ? now - lastRead : periodMillis;
+            lastRead = now;
+            int beats = (int) Math.max(1, Math.min(MAX_INTERVALS_PER_READING, elapsed * bpm / 60_000));
+            for (int i = 0; i < beats; i++) {
+                out.addInterval(60_000 / bpm - 40 + random.nextInt(80));
+            }
+            return true;
+        }
+
+        @Override
+        public void readToday(long now, SeriesSlice out) {
+            // Son 24 saatte her 2 saatte bir veri noktası
+            long todayStart = TimeSeriesStore.dayStart(now);
+            for (int i = 0; i < 12; i++) {
+                out.add(todayStart + i * 2 * HOUR_MILLIS, 70 + random.nextInt(30)); // 70-100 bpm
+            }
+        }
+
+        @Override
+        public void readDay(long dayStart, long now, SeriesSlice out) {
+            // Generate 3-5 measurements per day, every 4 hours
+            int measurementsPerDay = 3 + random.nextInt(3);
+            for (int i = 0; i < measurementsPerDay && dayStart + i * 4 * HOUR_MILLIS <= now; i++) {
+                out.add(dayStart + i * 4 * HOUR_MILLIS, 65 + random.nextInt(30)); // 65-95 BPM
+            }
+        }
+    }
+
+    /** One spot measurement a few seconds after it is started. */
+    public static final class Spo2 extends Simulated {
+        private static final long MEASUREMENT_MILLIS = 3000;
+
+        public Spo2(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public String getMetric() {
+            return HealthSession.METRIC_SPO2;
+        }
+
+        @Override
+        public long getInitialDelayMillis() {
+            return MEASUREMENT_MILLIS;
+        }
+
+        @Override
+        public boolean read(long now, SensorReading out) {
+            out.clear();
+            out.set(now, 98);
+            return true;
+        }
+
+        @Override
+        public void readToday(long now, SeriesSlice out) {
+            // Bugün için birkaç ölçüm, her 4 saatte bir
+            for (int i = 0; i < 3; i++) {
+                out.add(now - i * 4 * HOUR_MILLIS, 96 + random.nextInt(3)); // 96-98%
+            }
+        }
+
+        @Override
+        public void readDay(long dayStart, long now, SeriesSlice out) {
+            // Generate 1-2 measurements per day, every 8 hours
+            int measurementsPerDay = 1 + random.nextInt(2);
+            for (int i = 0; i < measurementsPerDay && dayStart + i * 8 * HOUR_MILLIS <= now; i++) {
+                out.add(dayStart + i * 8 * HOUR_MILLIS, 95 + random.nextInt(5)); // 95-99%
+            }
+        }
+    }
+
+    /** Daily step totals. */
+    public static final class Steps extends Simulated {
+
+        public Steps(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public String getMetric() {
+            return HealthSession.METRIC_STEPS;
+        }
+
+        @Override
+        public void readToday(long now, SeriesSlice out) {
+            out.add(now, 5000 + random.nextInt(5000)); // 5000-10000 adım
+        }
+
+        @Override
+        public void readDay(long dayStart, long now, SeriesSlice out) {
+            // Weekend vs weekday logic
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(dayStart);
+            int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+            boolean isWeekend = dayOfWeek == Calendar.SATURDAY || dayOfWeek == Calendar.SUNDAY;
+            int steps = isWeekend
+                ? 5000 + random.nextInt(4000)  // Weekend: 5000-9000 steps
+                : 7000 + random.nextInt(6000); // Weekday: 7000-13000 steps
+            out.add(dayStart, steps);
+        }
+    }
+
+    /** Nightly sleep duration, minutes. */
+    public static final class Sleep extends Simulated {
+
+        public Sleep(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public String getMetric() {
+            return HealthSession.METRIC_SLEEP;
+        }
+
+        // Last night is reported with the day's summary, not during the day
+        @Override
+        public void readToday(long now, SeriesSlice out) {
+        }
+
+        @Override
+        public void readDay(long dayStart, long now, SeriesSlice out) {
+            out.add(dayStart, 300 + random.nextInt(240)); // 5-9 hours in minutes
+        }
+    }
+}
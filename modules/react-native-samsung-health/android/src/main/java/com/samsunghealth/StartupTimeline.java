@@ -0,0 +1,163 @@
+package com.samsunghealth;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * When each startup phase of the module ran and how long it took, measured from the module's
+ * construction, so cold start can be broken down and the deferred phases tracked.
+ *
+ * Phases are declared up front, in the order they are expected, and move from pending to
+ * running to ready or failed; a phase can also be marked as a single instant (e.g. the
+ * first frame). Thread-safe.
+ */
+public final class StartupTimeline {
+
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String READY = "ready";
+    public static final String FAILED = "failed";
+
+    /** A snapshot of one phase; times in ms from the timeline's origin, -1 when not reached. */
+    public static final class Phase {
+        private final String name;
+        private String state = PENDING;
+        private double startMillis = -1;
+        private double endMillis = -1;
+        private String error;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        Phase(Phase phase) {
+            this.name = phase.name;
+            this.state = phase.state;
+            this.startMillis = phase.startMillis;
+            this.endMillis = phase.endMillis;
+            this.error = phase.error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public double getStartMillis() {
+            return startMillis;
+        }
+
+        public double getEndMillis() {
+            return endMillis;
+        }
+
+        /** Time the phase took, or -1 until it has finished. */
+        public double getDurationMillis() {
+            return endMillis < 0 ? -1 : endMillis - startMillis;
+        }
+
+        /** Why the phase failed, or null. */
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final long originNanos;
+    private final LinkedHashMap<String, Phase> phases = new LinkedHashMap<>();
+
+    public StartupTimeline(String... phases) {
+        this.originNanos = System.nanoTime();
+        for (String phase : phases) {
+            this.phases.put(phase, new Phase(phase));
+        }
+    }
+
+    /** Starts {@code phase}; returns false if it has already been started, so it runs once. */
+    public synchronized boolean begin(String phase) {
+        Phase p = phase(phase);
+        if (!PENDING.equals(p.state)) {
+            return false;
+        }
+        p.state = RUNNING;
+        p.startMillis = elapsedMillis();
+        return true;
+    }
+
+    public synchronized void end(String phase) {
+        Phase p = phase(phase);
+        p.state = READY;
+        p.endMillis = elapsedMillis();
+        if (p.startMillis < 0) {
+            p.startMillis = p.endMillis;
+        }
+    }
+
+    public synchronized void fail(String phase, Throwable error) {
+        Phase p = phase(phase);
+        p.state = FAILED;
+        p.endMillis = elapsedMillis();
+        if (p.startMillis < 0) {
+            p.startMillis = p.endMillis;
+        }
+        p.error = String.valueOf(error.getMessage());
+    }
+
+    /** Records {@code phase} as an instant, the first time only. */
+    public synchronized void mark(String phase) {
+        if (PENDING.equals(phase(phase).state)) {
+            end(phase);
+        }
+    }
+
+    public synchronized String getState(String phase) {
+        return phase(phase).state;
+    }
+
+    /** Whether each of {@code phases} has finished, ready or failed. */
+    public synchronized boolean isFinished(String... phases) {
+        for (String phase : phases) {
+            String state = phase(phase).state;
+            if (PENDING.equals(state) || RUNNING.equals(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Fraction of the phases that have finished, ready or failed. */
+    public synchronized float getProgress() {
+        int finished = 0;
+        for (Phase p : phases.values()) {
+            if (READY.equals(p.state) || FAILED.equals(p.state)) {
+                finished++;
+            }
+        }
+        return phases.isEmpty() ? 1 : finished / (float) phases.size();
+    }
+
+    /** Every phase, in declaration order. */
+    public synchronized List<Phase> getPhases() {
+        List<Phase> snapshot = new ArrayList<>(phases.size());
+        for (Phase p : phases.values()) {
+            snapshot.add(new Phase(p));
+        }
+        return snapshot;
+    }
+
+    /** Milliseconds since the timeline was created. */
+    public double elapsedMillis() {
+        return (System.nanoTime() - originNanos) / 1e6;
+    }
+
+    private Phase phase(String name) {
+        Phase p = phases.get(name);
+        if (p == null) {
+            throw new IllegalArgumentException("Unknown startup phase " + name);
+        }
+        return p;
+    }
+}
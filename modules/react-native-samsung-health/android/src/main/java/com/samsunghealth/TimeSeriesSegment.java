@@ -0,0 +1,182 @@
+package com.samsunghealth;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One day of one metric: delta-encoded timestamps and a primitive value column.
+ *
+ * Timestamps are stored as the gap in milliseconds to the previous sample (the first one
+ * relative to the start of the day). Every {@link #INDEX_STRIDE}th sample also records its
+ * absolute offset in a sparse index, so a range lookup is a binary search over the index
+ * followed by a short sequential scan of the deltas.
+ *
+ * The on-disk form is a small header followed by (varint delta, float32 value) records, which
+ * is exactly what {@link #encodeRecord} appends and {@link #decode} reads back.
+ */
+final class TimeSeriesSegment {
+
+    static final int INDEX_STRIDE = 64;
+    static final int MAGIC = 0x5354444D; // "MDTS" read little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int MAX_RECORD_BYTES = 5 + 4;
+
+    final long dayStart;
+
+    private int[] deltas = new int[INDEX_STRIDE];
+    private float[] values = new float[INDEX_STRIDE];
+    private int count;
+    private int lastOffset = -1;
+
+    private int[] indexOffsets = new int[4];
+    private int indexCount;
+
+    TimeSeriesSegment(long dayStart) {
+        this.dayStart = dayStart;
+    }
+
+    int size() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return count == 0 ? dayStart : dayStart + indexOffsets[0];
+    }
+
+    long lastTimestamp() {
+        return dayStart + lastOffset;
+    }
+
+    /** Appends a sample; returns false if it would go back in time within this segment. */
+    boolean append(long timestamp, float value) {
+        long offset = timestamp - dayStart;
+        if (offset < 0 || offset >= TimeSeriesStore.DAY_MILLIS || offset < lastOffset) {
+            return false;
+        }
+        int off = (int) offset;
+        if (count == deltas.length) {
+            int capacity = count * 2;
+            int[] newDeltas = new int[capacity];
+            float[] newValues = new float[capacity];
+            System.arraycopy(deltas, 0, newDeltas, 0, count);
+            System.arraycopy(values, 0, newValues, 0, count);
+            deltas = newDeltas;
+            values = newValues;
+        }
+        deltas[count] = count == 0 ? off : off - lastOffset;
+        values[count] = value;
+        if (count % INDEX_STRIDE == 0) {
+            if (indexCount == indexOffsets.length) {
+                int[] newIndex = new int[indexCount * 2];
+                System.arraycopy(indexOffsets, 0, newIndex, 0, indexCount);
+                indexOffsets = newIndex;
+            }
+            indexOffsets[indexCount++] = off;
+        }
+        count++;
+        lastOffset = off;
+        return true;
+    }
+
+    /** Appends every sample in [start, end) to {@code out}; returns how many were added. */
+    int scan(long start, long end, SeriesSlice out) {
+        if (count == 0 || end <= firstTimestamp() || start > lastTimestamp()) {
+            return 0;
+        }
+        long startOffset = Math.max(0, start - dayStart);
+        long endOffset = end - dayStart;
+
+        // Last index block whose first sample lies strictly before the range start
+        int lo = 0;
+        int hi = indexCount - 1;
+        int block = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexOffsets[mid] < startOffset) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int i = block * INDEX_STRIDE;
+        long offset = indexOffsets[block];
+        int added = 0;
+        while (true) {
+            if (offset >= endOffset) {
+                break;
+            }
+            if (offset >= startOffset) {
+                out.add(dayStart + offset, values[i]);
+                added++;
+            }
+            if (++i >= count) {
+                break;
+            }
+            offset += deltas[i];
+        }
+        return added;
+    }
+
+    // --- On-disk encoding ---
+
+    static void encodeHeader(ByteBuffer out, long dayStart) {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putLong(dayStart);
+    }
+
+    /** Encodes the most recently appended sample as an on-disk record. */
+    void encodeLastRecord(ByteBuffer out) {
+        int last = count - 1;
+        encodeRecord(out, deltas[last], values[last]);
+    }
+
+    static void encodeRecord(ByteBuffer out, int delta, float value) {
+        int v = delta;
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+        out.putFloat(value);
+    }
+
+    /**
+     * Decodes a segment file. Returns the number of bytes of complete records read, so a
+     * torn write at the tail can be truncated away by the caller.
+     */
+    static int decode(ByteBuffer in, TimeSeriesSegment[] result) {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            result[0] = null;
+            return 0;
+        }
+        TimeSeriesSegment segment = new TimeSeriesSegment(in.getLong());
+        int valid = in.position();
+        long offset = -1;
+        while (in.hasRemaining()) {
+            int delta = 0;
+            int shift = 0;
+            boolean complete = false;
+            while (in.hasRemaining() && shift < 35) {
+                int b = in.get() & 0xFF;
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+                if ((b & 0x80) == 0) {
+                    complete = true;
+                    break;
+                }
+            }
+            if (!complete || in.remaining() < 4) {
+                break;
+            }
+            float value = in.getFloat();
+            offset = offset < 0 ? delta : offset + delta;
+            segment.append(segment.dayStart + offset, value);
+            valid = in.position();
+        }
+        result[0] = segment;
+        return valid;
+    }
+}
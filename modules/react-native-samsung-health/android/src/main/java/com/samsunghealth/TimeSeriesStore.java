@@ -0,0 +1,484 @@
+package com.samsunghealth;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only on-device store for health samples, one segment file per metric per UTC day.
+ *
+ * Layout: {@code <root>/<metric>/<epochDay>.seg}. Segments are loaded lazily the first time a
+ * metric is touched and kept in memory as {@link TimeSeriesSegment}s; new samples are appended
+ * in memory immediately and written to disk on {@link #flush()}. A range query finds the
+ * covered days in a sorted map and lets each segment binary-search its sparse index.
+ *
+ * Every metric also keeps a {@link SeriesRollup} that is updated on append, so
+ * {@link #aggregate} costs one step per bucket instead of one per raw sample.
+ *
+ * Days filled in by {@link #appendSimulatedDay} carry an {@code <epochDay>.sim} marker, even
+ * when they hold no samples. The first real sample for such a day discards the simulated ones.
+ */
+public final class TimeSeriesStore {
+
+    public static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final String SIMULATED_SUFFIX = ".sim";
+
+    private final File root;
+    private final ConcurrentHashMap<String, MetricSeries> metrics = new ConcurrentHashMap<>();
+
+    private final class MetricSeries {
+        final File directory;
+        final TreeMap<Long, TimeSeriesSegment> segments = new TreeMap<>();
+        final SeriesRollup rollup = new SeriesRollup();
+        // Segments with records not yet on disk, and those records
+        final Map<Long, ByteBuffer> pendingWrites = new TreeMap<>();
+        final TreeSet<Long> simulatedDays = new TreeSet<>();
+        // Simulated days whose files flush removes, and new ones it marks; removals go first
+        final TreeSet<Long> pendingDiscards = new TreeSet<>();
+        final TreeSet<Long> pendingMarkers = new TreeSet<>();
+        long sampleCount;
+        long rejected;
+        boolean loaded;
+
+        MetricSeries(String name) {
+            this.directory = new File(root, name);
+        }
+
+        void ensureLoaded() {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            TimeSeriesSegment[] decoded = new TimeSeriesSegment[1];
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SIMULATED_SUFFIX)) {
+                    try {
+                        long epochDay = Long.parseLong(name.substring(0, name.length() - SIMULATED_SUFFIX.length()));
+                        simulatedDays.add(epochDay * DAY_MILLIS);
+                    } catch (NumberFormatException e) {
+                        // not a marker this store wrote
+                    }
+                    continue;
+                }
+                if (!name.endsWith(SEGMENT_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    loadSegment(file, decoded);
+                    if (decoded[0] != null) {
+                        segments.put(decoded[0].dayStart, decoded[0]);
+                        sampleCount += decoded[0].size();
+                    }
+                } catch (IOException e) {
+                    // A corrupt day is skipped rather than failing the whole metric
+                    rejected++;
+                }
+            }
+            // Newest day first, so days outside the minute retention never allocate minute buckets
+            SeriesSlice samples = new SeriesSlice(1024);
+            for (TimeSeriesSegment segment : segments.descendingMap().values()) {
+                samples.clear();
+                segment.scan(segment.dayStart, segment.dayStart + DAY_MILLIS, samples);
+                for (int i = 0; i < samples.size(); i++) {
+                    rollup.add(samples.timestampAt(i), samples.valueAt(i));
+                }
+            }
+        }
+    }
+
+    public TimeSeriesStore(File root) {
+        this.root = root;
+    }
+
+    public static long dayStart(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS) * DAY_MILLIS;
+    }
+
+    /**
+     * Appends one sample. Samples must not go back in time within a day; such samples are
+     * rejected and counted.
+     */
+    public boolean append(String metric, long timestamp, float value) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            long day = dayStart(timestamp);
+            if (series.simulatedDays.contains(day)) {
+                discardSimulatedDay(series, day);
+            }
+            return appendLocked(series, day, timestamp, value);
+        }
+    }
+
+    /**
+     * Fills the UTC day starting at {@code dayStart} with generated samples, standing in for
+     * real data that is not available (yet), and marks it simulated, even when {@code samples}
+     * is empty. Does nothing when the day already has samples or was filled before.
+     *
+     * @return false when the day was already covered
+     */
+    public boolean appendSimulatedDay(String metric, long dayStart, SeriesSlice samples) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            TimeSeriesSegment existing = series.segments.get(dayStart);
+            if (series.simulatedDays.contains(dayStart) || (existing != null && existing.size() > 0)) {
+                return false;
+            }
+            series.simulatedDays.add(dayStart);
+            series.pendingMarkers.add(dayStart);
+            for (int i = 0; i < samples.size(); i++) {
+                long timestamp = samples.timestampAt(i);
+                if (dayStart(timestamp) == dayStart) {
+                    appendLocked(series, dayStart, timestamp, samples.valueAt(i));
+                } else {
+                    series.rejected++;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Whether the UTC day starting at {@code dayStart} was filled by {@link #appendSimulatedDay}. */
+    public boolean isSimulated(String metric, long dayStart) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            return series.simulatedDays.contains(dayStart);
+        }
+    }
+
+    // Called with the series lock held: forgets a simulated day, and has flush delete its files
+    private static void discardSimulatedDay(MetricSeries series, long day) {
+        series.simulatedDays.remove(day);
+        TimeSeriesSegment segment = series.segments.remove(day);
+        if (segment != null) {
+            series.sampleCount -= segment.size();
+        }
+        series.rollup.removeDay(day);
+        series.pendingWrites.remove(day);
+        if (!series.pendingMarkers.remove(day)) {
+            series.pendingDiscards.add(day);
+        }
+    }
+
+    // Called with the series lock held
+    private static boolean appendLocked(MetricSeries series, long day, long timestamp, float value) {
+        TimeSeriesSegment segment = series.segments.get(day);
+        boolean created = false;
+        if (segment == null) {
+            segment = new TimeSeriesSegment(day);
+            series.segments.put(day, segment);
+            created = true;
+        }
+        if (!segment.append(timestamp, value)) {
+            series.rejected++;
+            return false;
+        }
+        series.sampleCount++;
+        series.rollup.add(timestamp, value);
+
+        ByteBuffer pending = series.pendingWrites.get(day);
+        if (pending == null) {
+            pending = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+            if (created) {
+                TimeSeriesSegment.encodeHeader(pending, day);
+            }
+            series.pendingWrites.put(day, pending);
+        } else if (pending.remaining() < TimeSeriesSegment.MAX_RECORD_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+            series.pendingWrites.put(day, pending);
+        }
+        segment.encodeLastRecord(pending);
+        return true;
+    }
+
+    /**
+     * Appends every sample of {@code metric} in [start, end) to {@code out}, in time order.
+     *
+     * @return number of samples added
+     */
+    public int query(String metric, long start, long end, SeriesSlice out) {
+        if (end <= start) {
+            return 0;
+        }
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            int added = 0;
+            for (TimeSeriesSegment segment : series.segments.subMap(dayStart(start), true, end, false).values()) {
+                added += segment.scan(start, end, out);
+            }
+            return added;
+        }
+    }
+
+    /**
+     * Summarizes {@code metric} into buckets of {@code resolutionMillis} (a multiple of one
+     * minute), aligned to the epoch. The range is widened to whole buckets. Buckets are served
+     * from the widest precomputed rollup that tiles the resolution.
+     *
+     * @return number of non-empty buckets in {@code out}
+     */
+    public int aggregate(String metric, long start, long end, long resolutionMillis, RollupBuckets out) {
+        long level = SeriesRollup.levelFor(resolutionMillis);
+        long alignedStart = Math.floorDiv(start, resolutionMillis) * resolutionMillis;
+        long alignedEnd = -Math.floorDiv(-end, resolutionMillis) * resolutionMillis;
+        int before = out.size();
+        if (alignedEnd <= alignedStart) {
+            return 0;
+        }
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            SeriesSlice raw = null;
+            for (TimeSeriesSegment segment : series.segments.subMap(dayStart(alignedStart), true, alignedEnd, false).values()) {
+                if (series.rollup.emitDay(segment.dayStart, level, alignedStart, alignedEnd, resolutionMillis, out)) {
+                    continue;
+                }
+                // Minute buckets for this day have been evicted; roll up the raw samples instead
+                if (raw == null) {
+                    raw = new SeriesSlice(1024);
+                }
+                raw.clear();
+                segment.scan(alignedStart, alignedEnd, raw);
+                for (int i = 0; i < raw.size(); i++) {
+                    float value = raw.valueAt(i);
+                    out.accumulate(Math.floorDiv(raw.timestampAt(i), resolutionMillis) * resolutionMillis,
+                        1, value, value, value, 0);
+                }
+            }
+        }
+        return out.size() - before;
+    }
+
+    /** Resolution {@link #aggregate} should use to cover [start, end) in at most {@code maxBuckets} buckets. */
+    public static long autoResolution(long start, long end, int maxBuckets) {
+        return SeriesRollup.resolutionFor(Math.max(0, end - start), maxBuckets);
+    }
+
+    /** Whether any sample of {@code metric} exists in the UTC day starting at {@code dayStart}. */
+    public boolean hasDay(String metric, long dayStart) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            TimeSeriesSegment segment = series.segments.get(dayStart);
+            return segment != null && segment.size() > 0;
+        }
+    }
+
+    public long getSampleCount(String metric) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            series.ensureLoaded();
+            return series.sampleCount;
+        }
+    }
+
+    public long getRejectedCount(String metric) {
+        MetricSeries series = series(metric);
+        synchronized (series) {
+            return series.rejected;
+        }
+    }
+
+    /**
+     * Writes every buffered record to its segment file. Records whose write fails stay
+     * buffered, ahead of any appended since, for the next flush. Files of discarded simulated
+     * days are deleted, and new simulated days marked, before any record of that day is written.
+     */
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (MetricSeries series : metrics.values()) {
+            List<Map.Entry<Long, ByteBuffer>> writes;
+            List<Long> discards;
+            List<Long> markers;
+            synchronized (series) {
+                if (series.pendingWrites.isEmpty() && series.pendingDiscards.isEmpty()
+                        && series.pendingMarkers.isEmpty()) {
+                    continue;
+                }
+                writes = new ArrayList<>(series.pendingWrites.entrySet());
+                discards = new ArrayList<>(series.pendingDiscards);
+                markers = new ArrayList<>(series.pendingMarkers);
+                series.pendingWrites.clear();
+                series.pendingDiscards.clear();
+                series.pendingMarkers.clear();
+            }
+            for (Map.Entry<Long, ByteBuffer> write : writes) {
+                write.getValue().flip();
+            }
+            List<Map.Entry<Long, ByteBuffer>> unwritten = new ArrayList<>();
+            List<Long> failedDiscards = new ArrayList<>();
+            List<Long> failedMarkers = new ArrayList<>();
+            if (!series.directory.isDirectory() && !series.directory.mkdirs()) {
+                failure = new IOException("Cannot create " + series.directory);
+                unwritten = writes;
+                failedDiscards = discards;
+                failedMarkers = markers;
+            } else {
+                for (Long day : discards) {
+                    // Segment first: a marker left without one still reads as an empty simulated day
+                    File segment = segmentFile(series, day);
+                    File marker = markerFile(series, day);
+                    if ((segment.exists() && !segment.delete()) || (marker.exists() && !marker.delete())) {
+                        failure = new IOException("Cannot remove simulated day " + segment);
+                        failedDiscards.add(day);
+                    }
+                }
+                for (Long day : markers) {
+                    try {
+                        File marker = markerFile(series, day);
+                        if (!marker.createNewFile() && !marker.isFile()) {
+                            throw new IOException("Cannot create " + marker);
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                        failedMarkers.add(day);
+                    }
+                }
+                for (Map.Entry<Long, ByteBuffer> write : writes) {
+                    // Never append to a day whose old file is still there, nor write a simulated day unmarked
+                    if (failedDiscards.contains(write.getKey()) || failedMarkers.contains(write.getKey())) {
+                        unwritten.add(write);
+                        continue;
+                    }
+                    try {
+                        appendToFile(segmentFile(series, write.getKey()), write.getValue());
+                    } catch (IOException e) {
+                        failure = e;
+                        unwritten.add(write);
+                    }
+                }
+            }
+            if (!unwritten.isEmpty() || !failedDiscards.isEmpty() || !failedMarkers.isEmpty()) {
+                synchronized (series) {
+                    for (Map.Entry<Long, ByteBuffer> write : unwritten) {
+                        // Records of a simulated day discarded since are dropped with it
+                        if (!series.pendingDiscards.contains(write.getKey())) {
+                            requeue(series, write.getKey(), write.getValue());
+                        }
+                    }
+                    series.pendingDiscards.addAll(failedDiscards);
+                    for (Long day : failedMarkers) {
+                        if (series.simulatedDays.contains(day)) {
+                            series.pendingMarkers.add(day);
+                        }
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Writes the flipped buffer at the end of the file, or leaves the file as it was
+    private static void appendToFile(File target, ByteBuffer data) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(target, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            channel.position(size);
+            try {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            } catch (IOException e) {
+                // Cut off a partial write so the retry appends whole records after the last good one
+                try {
+                    channel.truncate(size);
+                } catch (IOException ignored) {
+                    // Loading drops the torn tail instead
+                }
+                throw e;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    // Called with the series lock held: puts unwritten (flipped) records back ahead of newer ones for the same day
+    private static void requeue(MetricSeries series, long day, ByteBuffer unwritten) {
+        unwritten.rewind();
+        ByteBuffer newer = series.pendingWrites.get(day);
+        int bytes = unwritten.remaining() + (newer == null ? 0 : newer.position());
+        ByteBuffer merged = ByteBuffer.allocate(Math.max(1024, 2 * bytes)).order(ByteOrder.LITTLE_ENDIAN);
+        merged.put(unwritten);
+        if (newer != null) {
+            newer.flip();
+            merged.put(newer);
+        }
+        series.pendingWrites.put(day, merged);
+    }
+
+    private File segmentFile(MetricSeries series, long dayStart) {
+        return new File(series.directory, Math.floorDiv(dayStart, DAY_MILLIS) + SEGMENT_SUFFIX);
+    }
+
+    private File markerFile(MetricSeries series, long dayStart) {
+        return new File(series.directory, Math.floorDiv(dayStart, DAY_MILLIS) + SIMULATED_SUFFIX);
+    }
+
+    private static void loadSegment(File file, TimeSeriesSegment[] decoded) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean quarantine = false;
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // read fully
+            }
+            data.flip();
+            int valid = TimeSeriesSegment.decode(data, decoded);
+            if (decoded[0] == null) {
+                // No readable header: keep the bytes for inspection instead of truncating them away
+                quarantine = channel.size() > 0;
+            } else if (valid < channel.size()) {
+                // Drop a record torn by process death so later appends stay aligned
+                channel.truncate(valid);
+            }
+        } finally {
+            raf.close();
+        }
+        if (quarantine) {
+            // Moved aside, so the day starts a fresh file instead of appending after bytes that can't be read
+            File corrupt = new File(file.getPath() + CORRUPT_SUFFIX);
+            if (!file.renameTo(corrupt)) {
+                throw new IOException("Cannot move unreadable segment " + file + " aside");
+            }
+            throw new IOException("Unreadable segment header in " + file + ", moved to " + corrupt.getName());
+        }
+    }
+
+    private MetricSeries series(String metric) {
+        MetricSeries series = metrics.get(metric);
+        if (series == null) {
+            MetricSeries created = new MetricSeries(metric);
+            series = metrics.putIfAbsent(metric, created);
+            if (series == null) {
+                series = created;
+            }
+        }
+        return series;
+    }
+}
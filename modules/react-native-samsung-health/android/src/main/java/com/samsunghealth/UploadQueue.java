@@ -0,0 +1,733 @@
+package com.samsunghealth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Durable outbound queue for readings that have to reach a server even if the app is killed.
+ *
+ * Records (one JSON line each) are first appended to a staging journal, so an accepted record
+ * survives process death. Once {@code maxBatchRecords} are staged, or the oldest has waited
+ * {@code maxBatchDelayMillis}, they are sealed into one gzip chunk at the tail of an
+ * append-only segment log and the journal is emptied. A single drain worker sends chunks
+ * oldest first, back to back, so the radio wakes once per batch instead of once per reading.
+ * Uploads block on the network, so the worker and its retries run on the queue's own thread;
+ * the shared executor only runs the short seal timer.
+ * A failed upload is retried with exponential backoff and jitter; the read cursor only moves
+ * past a chunk once the server has taken it, so delivery is at least once.
+ *
+ * Layout under {@code <root>}:
+ * <pre>
+ *   staging.journal   [u32 length][u32 crc][u64 sequence][record]...
+ *   &lt;firstSeq&gt;.log    [u32 length][u32 crc][u64 firstSequence][u32 count][gzip ndjson]...
+ *   cursor            [u64 segment][u64 offset] of the next chunk to send
+ * </pre>
+ * Torn tails from a crash are truncated on open. Segments the cursor has passed are deleted,
+ * and when the log outgrows {@code maxQueueBytes} the oldest segments are dropped and counted.
+ */
+public final class UploadQueue implements Closeable {
+
+    public enum Result {
+        DELIVERED,
+        /** Transient failure (offline, timeout, 5xx); the chunk is sent again after a backoff. */
+        RETRY,
+        /** The server refused the chunk for good; it is dropped and counted. */
+        REJECTED
+    }
+
+    public interface Uploader {
+        /**
+         * Sends one chunk: {@code gzipBody} is the gzip of {@code count} newline-separated
+         * records, numbered from {@code firstSequence}. An IOException counts as RETRY.
+         */
+        Result upload(byte[] gzipBody, long firstSequence, int count) throws IOException;
+    }
+
+    public static final class Policy {
+        final int maxBatchRecords;
+        final long maxBatchDelayMillis;
+        final long segmentBytes;
+        final long maxQueueBytes;
+        final long minBackoffMillis;
+        final long maxBackoffMillis;
+
+        public Policy(int maxBatchRecords, long maxBatchDelayMillis, long segmentBytes, long maxQueueBytes,
+                      long minBackoffMillis, long maxBackoffMillis) {
+            if (maxBatchRecords < 1 || segmentBytes < 1 || maxQueueBytes < segmentBytes) {
+                throw new IllegalArgumentException("maxQueueBytes must be >= segmentBytes >= 1, maxBatchRecords >= 1");
+            }
+            this.maxBatchRecords = maxBatchRecords;
+            this.maxBatchDelayMillis = Math.max(0, maxBatchDelayMillis);
+            this.segmentBytes = segmentBytes;
+            this.maxQueueBytes = maxQueueBytes;
+            this.minBackoffMillis = Math.max(1, minBackoffMillis);
+            this.maxBackoffMillis = Math.max(this.minBackoffMillis, maxBackoffMillis);
+        }
+
+        /** 256 records or one minute per chunk, 1 MB segments, 32 MB on disk, 5 s to 15 min backoff. */
+        public static Policy defaults() {
+            return new Policy(256, 60_000, 1 << 20, 32L << 20, 5_000, 15 * 60_000);
+        }
+
+        public Policy withBatching(int maxBatchRecords, long maxBatchDelayMillis) {
+            return new Policy(maxBatchRecords, maxBatchDelayMillis, segmentBytes, maxQueueBytes,
+                minBackoffMillis, maxBackoffMillis);
+        }
+    }
+
+    private static final String JOURNAL_FILE = "staging.journal";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int CHUNK_HEADER_BYTES = 20;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+
+    private static final class Segment {
+        final long id;
+        final File file;
+        long bytes;
+
+        Segment(long id, File file, long bytes) {
+            this.id = id;
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Chunk {
+        final long segmentId;
+        final long endOffset;
+        final long firstSequence;
+        final int count;
+        final byte[] body; // null when the chunk is unreadable
+
+        Chunk(long segmentId, long endOffset, long firstSequence, int count, byte[] body) {
+            this.segmentId = segmentId;
+            this.endOffset = endOffset;
+            this.firstSequence = firstSequence;
+            this.count = count;
+            this.body = body;
+        }
+    }
+
+    private final File root;
+    private final Policy policy;
+    private final Uploader uploader;
+    // Seal timer; uploads and their retries run on the queue's own thread
+    private final ScheduledExecutorService timers;
+    private final ScheduledThreadPoolExecutor uploads;
+    private final Random jitter = new Random();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel journal;
+    private FileChannel tail;
+    private long cursorSegment;
+    private long cursorOffset;
+    private long nextSequence;
+
+    // Journaled records not yet sealed into a chunk
+    private final List<byte[]> staged = new ArrayList<>();
+    private long stagedFirstSequence;
+    private final ByteBuffer journalHeader = ByteBuffer.allocate(JOURNAL_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private ScheduledFuture<?> sealTimer;
+
+    private boolean draining;
+    private ScheduledFuture<?> retryTimer;
+    private int consecutiveFailures;
+    private long nextRetryAt;
+    private boolean closed;
+
+    private long pendingRecords;
+    private long deliveredRecords;
+    private long deliveredChunks;
+    private long rejectedRecords;
+    private long droppedRecords;
+    private long failedAttempts;
+
+    /**
+     * Opens (or creates) the queue in {@code root} and recovers whatever a previous process left.
+     * {@code timers} runs the seal timer only; it must not block.
+     */
+    public UploadQueue(File root, Policy policy, Uploader uploader, ScheduledExecutorService timers) throws IOException {
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Cannot create " + root);
+        }
+        this.root = root;
+        this.policy = policy;
+        this.uploader = uploader;
+        this.timers = timers;
+        // Threads start with the first upload; recovery below may already request one
+        this.uploads = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "upload-queue-drain");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        uploads.setRemoveOnCancelPolicy(true);
+        uploads.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        File[] files = root.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(id, new Segment(id, file, file.length()));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        readCursor();
+        recoverTail();
+        pendingRecords = countPendingRecords();
+
+        RandomAccessFile journalFile = new RandomAccessFile(new File(root, JOURNAL_FILE), "rw");
+        journal = journalFile.getChannel();
+        synchronized (this) {
+            recoverJournal();
+        }
+    }
+
+    /**
+     * Durably queues one record. Returns once the record is in the journal; it is uploaded
+     * with the next sealed chunk.
+     */
+    public synchronized void enqueue(String record) throws IOException {
+        if (closed) {
+            throw new IOException("Upload queue is closed");
+        }
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_RECORD_BYTES || record.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Records must be single lines of at most " + MAX_RECORD_BYTES + " bytes");
+        }
+        long sequence = nextSequence + staged.size();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        journalHeader.clear();
+        journalHeader.putInt(bytes.length).putInt((int) crc.getValue()).putLong(sequence).flip();
+        // Page cache is enough to survive process death; fsync is paid once per chunk on seal
+        ByteBuffer[] frame = {journalHeader, ByteBuffer.wrap(bytes)};
+        while (frame[1].hasRemaining()) {
+            journal.write(frame);
+        }
+        if (staged.isEmpty()) {
+            stagedFirstSequence = sequence;
+        }
+        staged.add(bytes);
+
+        if (staged.size() >= policy.maxBatchRecords) {
+            seal();
+            requestDrain(false);
+        } else if (staged.size() == 1) {
+            sealTimer = timers.schedule(this::sealIfDue, policy.maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Seals whatever is staged and starts draining now, skipping any backoff in progress. */
+    public synchronized void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        seal();
+        requestDrain(true);
+    }
+
+    /**
+     * Counters: [0] records waiting in the log, [1] staged records, [2] bytes on disk,
+     * [3] delivered records, [4] delivered chunks, [5] rejected records, [6] dropped records
+     * (disk cap or corruption), [7] failed attempts, [8] consecutive failures, [9] next retry
+     * time (epoch ms, 0 when none is pending).
+     */
+    public synchronized long[] getStats() {
+        long bytes = journalSize();
+        for (Segment segment : segments.values()) {
+            bytes += segment.bytes;
+        }
+        return new long[] {pendingRecords, staged.size(), bytes, deliveredRecords, deliveredChunks,
+            rejectedRecords, droppedRecords, failedAttempts, consecutiveFailures,
+            retryTimer != null ? nextRetryAt : 0};
+    }
+
+    /** Stops timers and closes files. Staged records stay in the journal for the next open. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (sealTimer != null) {
+            sealTimer.cancel(false);
+        }
+        if (retryTimer != null) {
+            retryTimer.cancel(false);
+        }
+        // An upload in progress finishes on its own and then sees the queue closed
+        uploads.shutdown();
+        try {
+            journal.close();
+        } finally {
+            if (tail != null) {
+                tail.close();
+            }
+        }
+    }
+
+    private void sealIfDue() {
+        synchronized (this) {
+            if (closed || staged.isEmpty()) {
+                return;
+            }
+            try {
+                seal();
+            } catch (IOException e) {
+                // Records are still in the journal; the next enqueue or flush tries again
+                sealTimer = timers.schedule(this::sealIfDue, policy.minBackoffMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            requestDrain(false);
+        }
+    }
+
+    // Moves the staged records into one chunk at the tail of the log, then empties the journal
+    private void seal() throws IOException {
+        if (staged.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(4096);
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192);
+        for (int i = 0; i < staged.size(); i++) {
+            if (i > 0) {
+                gzip.write('\n');
+            }
+            gzip.write(staged.get(i));
+        }
+        gzip.close();
+        byte[] body = compressed.toByteArray();
+        crc.reset();
+        crc.update(body, 0, body.length);
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(body.length).putInt((int) crc.getValue()).putLong(stagedFirstSequence).putInt(staged.size()).flip();
+
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.bytes >= policy.segmentBytes) {
+            segment = openSegment(stagedFirstSequence);
+        } else if (tail == null) {
+            tail = new RandomAccessFile(segment.file, "rw").getChannel();
+        }
+        ByteBuffer[] frame = {header, ByteBuffer.wrap(body)};
+        tail.position(segment.bytes);
+        while (frame[1].hasRemaining()) {
+            tail.write(frame);
+        }
+        tail.force(false);
+        segment.bytes += CHUNK_HEADER_BYTES + body.length;
+
+        pendingRecords += staged.size();
+        nextSequence = stagedFirstSequence + staged.size();
+        staged.clear();
+        journal.truncate(0);
+        if (sealTimer != null) {
+            sealTimer.cancel(false);
+            sealTimer = null;
+        }
+        enforceDiskCap();
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        if (tail != null) {
+            tail.close();
+        }
+        File file = new File(root, String.format(Locale.US, "%020d%s", firstSequence, SEGMENT_SUFFIX));
+        tail = new RandomAccessFile(file, "rw").getChannel();
+        tail.truncate(0);
+        Segment segment = new Segment(firstSequence, file, 0);
+        segments.put(firstSequence, segment);
+        return segment;
+    }
+
+    // Oldest data goes first when the device has been offline for too long
+    private void enforceDiskCap() throws IOException {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.bytes;
+        }
+        while (bytes > policy.maxQueueBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.id >= cursorSegment) {
+                long dropped = countRecords(oldest, oldest.id == cursorSegment ? cursorOffset : 0);
+                droppedRecords += dropped;
+                pendingRecords -= dropped;
+                writeCursor(segments.higherKey(oldest.id), 0);
+            }
+            bytes -= oldest.bytes;
+            deleteSegment(oldest);
+        }
+    }
+
+    private void requestDrain(boolean now) {
+        if (closed) {
+            return;
+        }
+        if (retryTimer != null) {
+            if (!now) {
+                return;
+            }
+            if (!retryTimer.cancel(false)) {
+                return; // already running
+            }
+            retryTimer = null;
+        } else if (draining) {
+            return;
+        }
+        draining = true;
+        uploads.execute(this::drain);
+    }
+
+    // Single worker: reads a chunk under the lock, uploads without it, then moves the cursor
+    private void drain() {
+        while (true) {
+            Chunk chunk;
+            synchronized (this) {
+                retryTimer = null;
+                if (closed) {
+                    draining = false;
+                    return;
+                }
+                try {
+                    chunk = nextChunk();
+                } catch (IOException e) {
+                    scheduleRetry();
+                    return;
+                }
+                if (chunk == null) {
+                    draining = false;
+                    return;
+                }
+                if (chunk.body == null) {
+                    // Corrupt chunk: skip the rest of its segment
+                    dropUnreadable(chunk);
+                    continue;
+                }
+            }
+
+            Result result;
+            try {
+                result = uploader.upload(chunk.body, chunk.firstSequence, chunk.count);
+            } catch (IOException | RuntimeException e) {
+                result = Result.RETRY;
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    draining = false;
+                    return;
+                }
+                if (result == Result.RETRY) {
+                    scheduleRetry();
+                    return;
+                }
+                consecutiveFailures = 0;
+                if (result == Result.DELIVERED) {
+                    deliveredRecords += chunk.count;
+                    deliveredChunks++;
+                } else {
+                    rejectedRecords += chunk.count;
+                }
+                if (chunk.segmentId < cursorSegment || !segments.containsKey(chunk.segmentId)) {
+                    continue; // the disk cap dropped its segment (and counted it) during the upload
+                }
+                pendingRecords -= chunk.count;
+                try {
+                    writeCursor(chunk.segmentId, chunk.endOffset);
+                } catch (IOException e) {
+                    // The chunk may be sent again after a restart; the server sees its sequence twice
+                }
+            }
+        }
+    }
+
+    private void scheduleRetry() {
+        failedAttempts++;
+        consecutiveFailures++;
+        long backoff = policy.minBackoffMillis << Math.min(consecutiveFailures - 1, 20);
+        backoff = Math.min(policy.maxBackoffMillis, backoff);
+        // Full jitter over the upper half, so devices that went offline together do not retry together
+        long delay = backoff / 2 + (long) (jitter.nextDouble() * (backoff / 2));
+        nextRetryAt = System.currentTimeMillis() + delay;
+        retryTimer = uploads.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // The chunk at the cursor, moving the cursor over (and deleting) segments that are done
+    private Chunk nextChunk() throws IOException {
+        while (true) {
+            Segment segment = segments.get(cursorSegment);
+            if (segment == null) {
+                Map.Entry<Long, Segment> first = segments.ceilingEntry(cursorSegment);
+                if (first == null) {
+                    return null;
+                }
+                writeCursor(first.getKey(), 0);
+                continue;
+            }
+            if (cursorOffset < segment.bytes) {
+                return readChunk(segment, cursorOffset);
+            }
+            if (segment == segments.lastEntry().getValue()) {
+                return null;
+            }
+            Segment next = segments.higherEntry(segment.id).getValue();
+            writeCursor(next.id, 0);
+            deleteSegment(segment);
+        }
+    }
+
+    private Chunk readChunk(Segment segment, long offset) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segment.file, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, header, offset)) {
+                return new Chunk(segment.id, segment.bytes, 0, 0, null);
+            }
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            long firstSequence = header.getLong(8);
+            int count = header.getInt(16);
+            if (length < 0 || length > MAX_CHUNK_BYTES || offset + CHUNK_HEADER_BYTES + length > segment.bytes) {
+                return new Chunk(segment.id, segment.bytes, firstSequence, 0, null);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            if (!readFully(channel, body, offset + CHUNK_HEADER_BYTES)) {
+                return new Chunk(segment.id, segment.bytes, firstSequence, 0, null);
+            }
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return new Chunk(segment.id, segment.bytes, firstSequence, 0, null);
+            }
+            return new Chunk(segment.id, offset + CHUNK_HEADER_BYTES + length, firstSequence, count, body.array());
+        } finally {
+            file.close();
+        }
+    }
+
+    private void dropUnreadable(Chunk chunk) {
+        Segment segment = segments.get(chunk.segmentId);
+        long lost = countRecords(segment, cursorOffset);
+        droppedRecords += lost;
+        pendingRecords -= lost;
+        try {
+            writeCursor(chunk.segmentId, chunk.endOffset);
+        } catch (IOException e) {
+            // Kept in memory; the next cursor write persists it
+        }
+    }
+
+    // Records in the chunks of a segment from offset on; stops at the first bad header
+    private long countRecords(Segment segment, long offset) {
+        long records = 0;
+        try {
+            RandomAccessFile file = new RandomAccessFile(segment.file, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                while (offset + CHUNK_HEADER_BYTES <= segment.bytes && readFully(channel, header, offset)) {
+                    int length = header.getInt(0);
+                    if (length < 0 || length > MAX_CHUNK_BYTES) {
+                        break;
+                    }
+                    records += header.getInt(16);
+                    offset += CHUNK_HEADER_BYTES + length;
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            // Count what was readable
+        }
+        return records;
+    }
+
+    private long countPendingRecords() {
+        long records = 0;
+        for (Segment segment : segments.tailMap(cursorSegment, true).values()) {
+            records += countRecords(segment, segment.id == cursorSegment ? cursorOffset : 0);
+        }
+        return records;
+    }
+
+    // Never called for the newest segment, whose name carries the next sequence across restarts
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        if (!segment.file.delete() && segment.file.exists()) {
+            throw new IOException("Cannot delete " + segment.file);
+        }
+    }
+
+    private void readCursor() {
+        File file = new File(root, CURSOR_FILE);
+        cursorSegment = segments.isEmpty() ? 0 : segments.firstKey();
+        cursorOffset = 0;
+        if (!file.isFile() || file.length() != 16) {
+            return;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                long segment = raf.readLong();
+                long offset = raf.readLong();
+                if (segments.containsKey(segment) && offset >= 0) {
+                    cursorSegment = segment;
+                    cursorOffset = offset;
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            // Start from the oldest segment; the server sees some sequences twice
+        }
+    }
+
+    // Written beside and renamed over the old cursor, so a crash leaves one or the other
+    private void writeCursor(long segment, long offset) throws IOException {
+        cursorSegment = segment;
+        cursorOffset = offset;
+        File temp = new File(root, CURSOR_FILE + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            raf.setLength(0);
+            raf.writeLong(segment);
+            raf.writeLong(offset);
+        } finally {
+            raf.close();
+        }
+        if (!temp.renameTo(new File(root, CURSOR_FILE))) {
+            throw new IOException("Cannot replace " + CURSOR_FILE);
+        }
+    }
+
+    // Truncates a chunk torn by process death off the newest segment, and learns the next sequence
+    private void recoverTail() throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Segment segment = segments.lastEntry().getValue();
+        nextSequence = segment.id;
+        long valid = 0;
+        RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (readFully(channel, header, valid)) {
+                int length = header.getInt(0);
+                if (length < 0 || length > MAX_CHUNK_BYTES || valid + CHUNK_HEADER_BYTES + length > segment.bytes) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                if (!readFully(channel, body, valid + CHUNK_HEADER_BYTES)) {
+                    break;
+                }
+                crc.reset();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    break;
+                }
+                nextSequence = header.getLong(8) + header.getInt(16);
+                valid += CHUNK_HEADER_BYTES + length;
+            }
+            if (valid < segment.bytes) {
+                channel.truncate(valid);
+                segment.bytes = valid;
+            }
+        } finally {
+            file.close();
+        }
+        if (cursorSegment == segment.id && cursorOffset > valid) {
+            cursorOffset = valid;
+        }
+    }
+
+    // Re-stages journaled records that never made it into a chunk and seals them right away
+    private void recoverJournal() throws IOException {
+        long size = journal.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (readFully(journal, header, position)) {
+            int length = header.getInt(0);
+            if (length < 0 || length > MAX_RECORD_BYTES || position + JOURNAL_HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            if (!readFully(journal, record, position + JOURNAL_HEADER_BYTES)) {
+                break;
+            }
+            crc.reset();
+            crc.update(record.array(), 0, length);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            long sequence = header.getLong(8);
+            // Records below nextSequence were sealed before the journal could be emptied
+            if (sequence >= nextSequence) {
+                if (staged.isEmpty()) {
+                    stagedFirstSequence = sequence;
+                }
+                staged.add(record.array());
+            }
+            position += JOURNAL_HEADER_BYTES + length;
+        }
+        if (staged.isEmpty()) {
+            journal.truncate(0);
+        } else {
+            seal();
+            requestDrain(false);
+        }
+    }
+
+    private long journalSize() {
+        try {
+            return closed ? 0 : journal.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+}
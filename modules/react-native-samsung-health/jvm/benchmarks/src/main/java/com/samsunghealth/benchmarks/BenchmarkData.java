@@ -0,0 +1,48 @@
+package com.samsunghealth.benchmarks;
+
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.QuantizedEcgEngine;
+import com.samsunghealth.QuantizedEcgWeights;
+import com.samsunghealth.SimulatedEcgSource;
+
+import java.io.File;
+import java.io.IOException;
+
+/** Fixtures shared by the benchmarks: the shipped EKG model and synthetic ECG strips. */
+final class BenchmarkData {
+
+    static final int ECG_SAMPLE_RATE = SimulatedEcgSource.DEFAULT_SAMPLE_RATE;
+
+    private BenchmarkData() {
+    }
+
+    /** ai-models/ directory of the repository; set by the Gradle task. */
+    static File aiModelsDir() {
+        String dir = System.getProperty("samsunghealth.aiModels", "../../../ai-models");
+        return new File(dir);
+    }
+
+    static File ekgWeightsFile() {
+        return new File(aiModelsDir(), "ekg_weights.bin");
+    }
+
+    static File ekgInt8WeightsFile() {
+        return new File(aiModelsDir(), "ekg_weights_int8.bin");
+    }
+
+    static EcgInferenceEngine loadEngine() throws IOException {
+        return new EcgInferenceEngine(EcgModelWeights.fromBinary(MappedWeightFile.map(ekgWeightsFile())));
+    }
+
+    static QuantizedEcgEngine loadQuantizedEngine() throws IOException {
+        return new QuantizedEcgEngine(QuantizedEcgWeights.fromBinary(MappedWeightFile.map(ekgInt8WeightsFile())));
+    }
+
+    static float[] ecgStrip(int seconds) {
+        float[] strip = new float[seconds * ECG_SAMPLE_RATE];
+        new SimulatedEcgSource(ECG_SAMPLE_RATE).fill(strip, 0, strip.length);
+        return strip;
+    }
+}
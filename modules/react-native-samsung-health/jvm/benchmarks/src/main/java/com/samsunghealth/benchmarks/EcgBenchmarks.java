@@ -0,0 +1,179 @@
+package com.samsunghealth.benchmarks;
+
+import com.samsunghealth.EcgBatchClassifier;
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.QrsDetector;
+import com.samsunghealth.QuantizedEcgEngine;
+import com.samsunghealth.QuantizedEcgWeights;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECG path of the native layer: model inference on one beat (float and int8), a full
+ * streaming window (QRS detection, segmentation and classification of every beat) as the
+ * pipeline runs it, and a recording-sized batch classified beat by beat, in blocks, and in
+ * parallel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EcgBenchmarks {
+
+    // One pipeline window: two seconds at the simulated 500 Hz
+    private static final int WINDOW_SECONDS = 2;
+    // About four minutes of beats; a Holter day is ~400 of these
+    private static final int BATCH_WINDOWS = 256;
+
+    private EcgInferenceEngine engine;
+    private QuantizedEcgEngine quantizedEngine;
+    private float[] beat;
+    private float[] probabilities;
+    private float[] strip;
+    private int stripOffset;
+    private int windowSamples;
+    private QrsDetector detector;
+    private Blackhole blackhole;
+    private float[] batch;
+    private float[] batchProbabilities;
+    private int[] batchClasses;
+    private EcgBatchClassifier batchClassifier;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        this.blackhole = blackhole;
+        engine = BenchmarkData.loadEngine();
+        quantizedEngine = BenchmarkData.loadQuantizedEngine();
+        probabilities = new float[engine.getClassCount()];
+        strip = BenchmarkData.ecgStrip(60);
+        windowSamples = WINDOW_SECONDS * BenchmarkData.ECG_SAMPLE_RATE;
+
+        detector = new QrsDetector(BenchmarkData.ECG_SAMPLE_RATE, engine.getInputLength(), 0.25f, 0.25f,
+            new QrsDetector.BeatListener() {
+                @Override
+                public void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate) {
+                    EcgBenchmarks.this.blackhole.consume(engine.classify(segment, 0, probabilities));
+                }
+            });
+        // Let the adaptive thresholds learn before anything is measured
+        detector.onSamples(strip, 0, strip.length);
+
+        // A segment the detector would hand to the model
+        final float[][] captured = new float[1][];
+        QrsDetector capture = new QrsDetector(BenchmarkData.ECG_SAMPLE_RATE, engine.getInputLength(), 0.25f, 0.25f,
+            new QrsDetector.BeatListener() {
+                @Override
+                public void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate) {
+                    captured[0] = segment.clone();
+                }
+            });
+        capture.onSamples(strip, 0, strip.length);
+        beat = captured[0] != null ? captured[0] : new float[engine.getInputLength()];
+
+        // Windows back to back, cut from the strip at staggered offsets
+        int n = engine.getInputLength();
+        batch = new float[BATCH_WINDOWS * n];
+        for (int i = 0; i < BATCH_WINDOWS; i++) {
+            System.arraycopy(strip, (i * 97) % (strip.length - n), batch, i * n, n);
+        }
+        batchProbabilities = new float[BATCH_WINDOWS * engine.getClassCount()];
+        batchClasses = new int[BATCH_WINDOWS];
+        batchClassifier = new EcgBatchClassifier(quantizedEngine);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchClassifier.close();
+    }
+
+    @Benchmark
+    public int classifyBeat() {
+        return engine.classify(beat, 0, probabilities);
+    }
+
+    @Benchmark
+    public int classifyBeatInt8() {
+        return quantizedEngine.classify(beat, 0, probabilities);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] classifyBatchPerBeat() {
+        int n = engine.getInputLength();
+        for (int i = 0; i < BATCH_WINDOWS; i++) {
+            batchClasses[i] = engine.classify(batch, i * n, probabilities);
+        }
+        return batchClasses;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] classifyBatchBlocked() {
+        engine.classifyBatch(batch, 0, BATCH_WINDOWS, batchProbabilities, batchClasses);
+        return batchClasses;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] classifyBatchPerBeatInt8() {
+        int n = quantizedEngine.getInputLength();
+        for (int i = 0; i < BATCH_WINDOWS; i++) {
+            batchClasses[i] = quantizedEngine.classify(batch, i * n, probabilities);
+        }
+        return batchClasses;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] classifyBatchBlockedInt8() {
+        quantizedEngine.classifyBatch(batch, 0, BATCH_WINDOWS, batchProbabilities, batchClasses);
+        return batchClasses;
+    }
+
+    /** Blocked int8 over a work-stealing pool sized to the big cores. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int[] classifyBatchParallelInt8() throws InterruptedException {
+        return batchClassifier.submit(batch, BATCH_WINDOWS, null).await();
+    }
+
+    @Benchmark
+    public long processWindow() {
+        if (stripOffset + windowSamples > strip.length) {
+            stripOffset = 0;
+        }
+        detector.onSamples(strip, stripOffset, windowSamples);
+        stripOffset += windowSamples;
+        return detector.getBeatsDetected();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public EcgModelWeights loadMappedWeights() throws IOException {
+        return EcgModelWeights.fromBinary(MappedWeightFile.map(BenchmarkData.ekgWeightsFile()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QuantizedEcgWeights loadMappedInt8Weights() throws IOException {
+        return QuantizedEcgWeights.fromBinary(MappedWeightFile.map(BenchmarkData.ekgInt8WeightsFile()));
+    }
+}
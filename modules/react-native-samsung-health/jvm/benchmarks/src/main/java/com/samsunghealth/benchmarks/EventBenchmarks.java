@@ -0,0 +1,87 @@
+package com.samsunghealth.benchmarks;
+
+import com.samsunghealth.HealthPayloads;
+import com.samsunghealth.HrvEngine;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.MapPayloadWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Live events: building the heart-rate and ECG payloads and a coalesced bridge batch. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBenchmarks {
+
+    private static final long TIMESTAMP = 1_760_000_000_000L;
+
+    @Param({"16", "64"})
+    public int batchSize;
+
+    private HrvEngine hrvEngine;
+    private int[] ibis;
+    private float[] probabilities;
+    private List<Map<String, Object>> events;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        hrvEngine = new HrvEngine(300);
+        for (int i = 0; i < 300; i++) {
+            hrvEngine.addIbi(800 + 60 * Math.sin(i * 0.3) + random.nextGaussian() * 20);
+        }
+        ibis = new int[] {812, 798, 805, 790};
+        probabilities = new float[] {0.91f, 0.03f, 0.02f, 0.03f, 0.01f};
+        events = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            events.add(ecgEvent(i));
+        }
+    }
+
+    private Map<String, Object> ecgEvent(long seq) {
+        return HealthPayloads.ecgClassification(MapPayloadWriter.INSTANCE, TIMESTAMP + seq, seq,
+            812f, 73.9f, probabilities, 0, "Normal");
+    }
+
+    @Benchmark
+    public Map<String, Object> heartRateEvent() {
+        // A new beat invalidates the spectrum, as it does on the device
+        hrvEngine.addIbi(ibis[(int) (sequence++ & 3)]);
+        return HealthPayloads.heartRateEvent(MapPayloadWriter.INSTANCE, TIMESTAMP, 74, ibis, ibis.length, hrvEngine);
+    }
+
+    @Benchmark
+    public Map<String, Object> ecgEvent() {
+        return ecgEvent(sequence++);
+    }
+
+    @Benchmark
+    public String ecgEventJson() {
+        return JsonSerializer.toJson(ecgEvent(sequence++));
+    }
+
+    @Benchmark
+    public String eventBatchJson() {
+        return JsonSerializer.toJson(HealthPayloads.eventBatch(MapPayloadWriter.INSTANCE, events, sequence++));
+    }
+}
@@ -0,0 +1,122 @@
+package com.samsunghealth.benchmarks;
+
+import com.samsunghealth.HealthPayloads;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.MapPayloadWriter;
+import com.samsunghealth.RollupBuckets;
+import com.samsunghealth.SeriesSlice;
+import com.samsunghealth.TimeSeriesStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historical-range results: querying the store and shaping the promise payload, row-per-map
+ * versus columnar, for ranges of minute-level heart rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmarks {
+
+    private static final String METRIC = "heartRate";
+    private static final long END = TimeSeriesStore.dayStart(1_760_000_000_000L);
+
+    @Param({"1", "7", "30"})
+    public int days;
+
+    private File root;
+    private TimeSeriesStore store;
+    private long start;
+    private SeriesSlice slice;
+    private RollupBuckets buckets;
+    private long resolution;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("health-store-bench").toFile();
+        store = new TimeSeriesStore(root);
+        start = END - days * TimeSeriesStore.DAY_MILLIS;
+        Random random = new Random(42);
+        for (long t = start; t < END; t += 60_000L) {
+            store.append(METRIC, t, 60 + random.nextInt(40));
+        }
+        store.flush();
+        slice = new SeriesSlice();
+        buckets = new RollupBuckets();
+        resolution = TimeSeriesStore.autoResolution(start, END, 1440);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] metrics = root.listFiles();
+        if (metrics != null) {
+            for (File metric : metrics) {
+                File[] segments = metric.listFiles();
+                if (segments != null) {
+                    for (File segment : segments) {
+                        segment.delete();
+                    }
+                }
+                metric.delete();
+            }
+        }
+        root.delete();
+    }
+
+    @Benchmark
+    public int queryRange() {
+        return store.query(METRIC, start, END, slice);
+    }
+
+    @Benchmark
+    public Map<String, Object> rowPayload() {
+        store.query(METRIC, start, END, slice);
+        return HealthPayloads.heartRateSamples(MapPayloadWriter.INSTANCE, slice);
+    }
+
+    @Benchmark
+    public String rowPayloadJson() {
+        store.query(METRIC, start, END, slice);
+        return JsonSerializer.toJson(HealthPayloads.heartRateSamples(MapPayloadWriter.INSTANCE, slice));
+    }
+
+    @Benchmark
+    public Map<String, Object> columnarPayload() {
+        store.query(METRIC, start, END, slice);
+        return HealthPayloads.columnarSamples(MapPayloadWriter.INSTANCE, METRIC, slice);
+    }
+
+    @Benchmark
+    public Map<String, Object> aggregatedPayload() {
+        store.aggregate(METRIC, start, END, resolution, buckets);
+        return HealthPayloads.aggregatedSeries(MapPayloadWriter.INSTANCE, METRIC, resolution, buckets);
+    }
+
+    @Benchmark
+    public Map<String, Object> aggregatedColumnarPayload() {
+        store.aggregate(METRIC, start, END, resolution, buckets);
+        return HealthPayloads.columnarBuckets(MapPayloadWriter.INSTANCE, METRIC, resolution, buckets);
+    }
+}
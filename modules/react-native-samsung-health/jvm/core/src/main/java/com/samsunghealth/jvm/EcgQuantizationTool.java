@@ -0,0 +1,261 @@
+package com.samsunghealth.jvm;
+
+import com.samsunghealth.EcgClassifier;
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.EcgPreprocessor;
+import com.samsunghealth.HealthSession;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.QrsDetector;
+import com.samsunghealth.QuantizedEcgEngine;
+import com.samsunghealth.QuantizedEcgWeights;
+import com.samsunghealth.SimulatedEcgSource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Calibrates and writes the int8 EKG model, then prints a parity report against the float
+ * model on windows it was not calibrated on.
+ *
+ * Arguments: {@code floatWeights.bin output.bin [windows.csv|-] [percentile]}. The CSV holds one
+ * recorded beat window per line, the model's input length of samples, optionally followed by
+ * the true class (any row longer than the input has its last value taken as the label, as in
+ * the MIT-BIH CSV exports). With {@code -} the windows are beats the QRS detector finds in
+ * {@link LabeledEcgSimulation}'s strip, cleaned and resampled the way live classification does
+ * it, and labeled with the morphology each beat was drawn with; the strip is seeded, so the
+ * shipped {@code ekg_weights_int8.bin} comes out byte for byte the same on every run. Even
+ * windows calibrate, odd ones are evaluated, and the report breaks agreement down by label.
+ */
+public final class EcgQuantizationTool {
+
+    private static final int SIMULATED_SECONDS = 900;
+    static final long SIMULATION_SEED = 20_240_310L;
+    // A detected beat takes the label of the annotated R peak within this distance
+    private static final double LABEL_TOLERANCE_SECONDS = 0.075;
+
+    private EcgQuantizationTool() {
+    }
+
+    static final class Windows {
+        final List<float[]> samples = new ArrayList<>();
+        final List<Integer> labels = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: EcgQuantizationTool floatWeights.bin output.bin [windows.csv|-] [percentile]");
+            System.exit(2);
+        }
+        File floatFile = new File(args[0]);
+        File output = new File(args[1]);
+        String source = args.length > 2 ? args[2] : "-";
+        double percentile = args.length > 3 ? Double.parseDouble(args[3]) : QuantizedEcgWeights.DEFAULT_PERCENTILE;
+
+        EcgModelWeights weights = EcgModelWeights.fromBinary(MappedWeightFile.map(floatFile));
+        Windows all = "-".equals(source) ? simulatedWindows(weights.inputLength, SIMULATION_SEED)
+            : readCsv(new File(source), weights.inputLength);
+        Windows calibration = new Windows();
+        Windows evaluation = new Windows();
+        for (int i = 0; i < all.samples.size(); i++) {
+            Windows target = i % 2 == 0 ? calibration : evaluation;
+            target.samples.add(all.samples.get(i));
+            target.labels.add(all.labels.get(i));
+        }
+        if (calibration.samples.isEmpty() || evaluation.samples.isEmpty()) {
+            throw new IOException("Need at least two windows, found " + all.samples.size());
+        }
+
+        long started = System.nanoTime();
+        OutputStream out = new FileOutputStream(output);
+        try {
+            quantize(weights, calibration.samples, percentile, out);
+        } finally {
+            out.close();
+        }
+        // Report on what was written, read back the way the module loads it
+        QuantizedEcgWeights written = QuantizedEcgWeights.fromBinary(MappedWeightFile.map(output));
+        System.out.printf(Locale.US, "Calibrated on %d windows (%s, %.2f percentile) in %.1f s%n",
+            calibration.samples.size(), "-".equals(source) ? "simulated, seed " + SIMULATION_SEED : source, percentile,
+            (System.nanoTime() - started) / 1e9);
+        System.out.printf(Locale.US, "Model file: %d -> %d bytes (%.1f%%) at %s%n", floatFile.length(),
+            output.length(), 100.0 * output.length() / floatFile.length(), output.getPath());
+
+        report(new EcgInferenceEngine(weights), new QuantizedEcgEngine(written), evaluation);
+    }
+
+    /** Calibrates on {@code windows} and writes the int8 model; the same windows give the same bytes. */
+    static void quantize(EcgModelWeights weights, List<float[]> windows, double percentile, OutputStream out)
+            throws IOException {
+        QuantizedEcgWeights quantized = QuantizedEcgWeights.quantize(weights, windows, percentile);
+        quantized.writeBinary(out, quantized.metadata(windows.size()));
+    }
+
+    private static void report(EcgInferenceEngine reference, QuantizedEcgEngine quantized, Windows evaluation) {
+        int classes = reference.getClassCount();
+        float[] expected = new float[classes];
+        float[] actual = new float[classes];
+        int[][] confusion = new int[classes][classes];
+        int agreed = 0;
+        int labeled = 0;
+        int floatCorrect = 0;
+        int int8Correct = 0;
+        // Per true label: windows, float/int8 agreement, float correct, int8 correct
+        int[][] byLabel = new int[classes][4];
+        double totalDelta = 0;
+        double maxDelta = 0;
+        for (int i = 0; i < evaluation.samples.size(); i++) {
+            float[] window = evaluation.samples.get(i);
+            int floatClass = reference.classify(window, 0, expected);
+            int int8Class = quantized.classify(window, 0, actual);
+            confusion[floatClass][int8Class]++;
+            if (floatClass == int8Class) {
+                agreed++;
+            }
+            for (int c = 0; c < classes; c++) {
+                double delta = Math.abs(expected[c] - actual[c]);
+                totalDelta += delta;
+                maxDelta = Math.max(maxDelta, delta);
+            }
+            int label = evaluation.labels.get(i);
+            if (label >= 0) {
+                labeled++;
+                floatCorrect += floatClass == label ? 1 : 0;
+                int8Correct += int8Class == label ? 1 : 0;
+                if (label < classes) {
+                    byLabel[label][0]++;
+                    byLabel[label][1] += floatClass == int8Class ? 1 : 0;
+                    byLabel[label][2] += floatClass == label ? 1 : 0;
+                    byLabel[label][3] += int8Class == label ? 1 : 0;
+                }
+            }
+        }
+
+        int n = evaluation.samples.size();
+        System.out.printf(Locale.US, "Parity on %d held-out windows%n", n);
+        System.out.printf(Locale.US, "  top-1 agreement with float: %.2f%% (%d/%d)%n", 100.0 * agreed / n, agreed, n);
+        System.out.printf(Locale.US, "  probability delta: mean %.4f, max %.4f%n", totalDelta / (n * (double) classes), maxDelta);
+        if (labeled > 0) {
+            double floatAccuracy = 100.0 * floatCorrect / labeled;
+            double int8Accuracy = 100.0 * int8Correct / labeled;
+            System.out.printf(Locale.US, "  accuracy on %d labeled windows: float %.2f%%, int8 %.2f%%, delta %+.2f points%n",
+                labeled, floatAccuracy, int8Accuracy, int8Accuracy - floatAccuracy);
+            System.out.println("  by label:          windows  agree  float ok  int8 ok");
+            for (int c = 0; c < classes; c++) {
+                if (byLabel[c][0] > 0) {
+                    System.out.printf(Locale.US, "    %-16s %7d %6.1f%% %8.1f%% %7.1f%%%n", reference.getClassName(c),
+                        byLabel[c][0], 100.0 * byLabel[c][1] / byLabel[c][0], 100.0 * byLabel[c][2] / byLabel[c][0],
+                        100.0 * byLabel[c][3] / byLabel[c][0]);
+                }
+            }
+        } else {
+            System.out.println("  no labels: accuracy delta is measured against the float model (the agreement above)");
+        }
+        System.out.println("  float class -> int8 class:");
+        for (int f = 0; f < classes; f++) {
+            StringBuilder row = new StringBuilder(String.format(Locale.US, "    %-16s", reference.getClassName(f)));
+            for (int q = 0; q < classes; q++) {
+                row.append(String.format(Locale.US, "%7d", confusion[f][q]));
+            }
+            System.out.println(row);
+        }
+
+        // A rough single-thread figure; the benchmarks module has the JMH numbers
+        float[] beat = evaluation.samples.get(0);
+        for (int round = 0; round < 3; round++) {
+            long floatNanos = time(reference, beat, expected);
+            long int8Nanos = time(quantized, beat, actual);
+            if (round == 2) {
+                System.out.printf(Locale.US, "Per beat: float %.1f us, int8 %.1f us (%.2fx)%n",
+                    floatNanos / 1e3, int8Nanos / 1e3, floatNanos / (double) int8Nanos);
+            }
+        }
+    }
+
+    private static long time(EcgClassifier engine, float[] beat, float[] probabilities) {
+        int iterations = 2000;
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            engine.classify(beat, 0, probabilities);
+        }
+        return (System.nanoTime() - started) / iterations;
+    }
+
+    // Beat windows as HealthSession classifies them: cleaned, resampled to the model's rate, QRS-aligned
+    static Windows simulatedWindows(int inputLength, long seed) {
+        final Windows windows = new Windows();
+        final LabeledEcgSimulation.Strip strip = LabeledEcgSimulation.generate(
+            SimulatedEcgSource.DEFAULT_SAMPLE_RATE, SIMULATED_SECONDS, seed);
+        final int modelRate = HealthSession.ECG_MODEL_SAMPLE_RATE;
+        final double toStripSamples = strip.sampleRate / (double) modelRate;
+        final long tolerance = Math.round(LABEL_TOLERANCE_SECONDS * strip.sampleRate);
+        float preRSeconds = inputLength / 2 / (float) modelRate;
+        float postRSeconds = (inputLength - 1) / (float) modelRate - preRSeconds;
+        QrsDetector detector = new QrsDetector(modelRate, inputLength, preRSeconds, postRSeconds,
+            new QrsDetector.BeatListener() {
+                private int next;
+
+                @Override
+                public void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate) {
+                    long peak = Math.round(rPeakSample * toStripSamples);
+                    while (next < strip.rPeaks.length && strip.rPeaks[next] < peak - tolerance) {
+                        next++;
+                    }
+                    // A beat matching no annotation has no trustworthy label; leave it out
+                    if (next < strip.rPeaks.length && strip.rPeaks[next] <= peak + tolerance) {
+                        windows.samples.add(segment.clone());
+                        windows.labels.add(strip.labels[next++]);
+                    }
+                }
+            });
+        EcgPreprocessor preprocessor = new EcgPreprocessor(strip.sampleRate, modelRate,
+            EcgPreprocessor.DEFAULT_HIGH_PASS_HZ, EcgPreprocessor.DEFAULT_NOTCH_HZ, detector);
+        preprocessor.onSamples(strip.samples, 0, strip.samples.length);
+        return windows;
+    }
+
+    private static Windows readCsv(File file, int inputLength) throws IOException {
+        Windows windows = new Windows();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("[,;\\s]+");
+                if (fields.length < inputLength) {
+                    throw new IOException(file + ":" + lineNumber + ": " + fields.length + " values, need " + inputLength);
+                }
+                float[] window = new float[inputLength];
+                try {
+                    for (int i = 0; i < inputLength; i++) {
+                        window[i] = Float.parseFloat(fields[i]);
+                    }
+                    windows.labels.add(fields.length > inputLength
+                        ? (int) Float.parseFloat(fields[fields.length - 1]) : -1);
+                } catch (NumberFormatException e) {
+                    if (lineNumber == 1) {
+                        // Header row
+                        continue;
+                    }
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+                }
+                windows.samples.add(window);
+            }
+        } finally {
+            reader.close();
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,135 @@
+package com.samsunghealth.jvm;
+
+import java.util.Random;
+
+/**
+ * Synthetic ECG with a known class for every beat, for calibrating and checking the EKG model
+ * where no recorded, annotated ECG is at hand.
+ *
+ * Beats follow the model's five classes: normal sinus beats shaped like
+ * {@link com.samsunghealth.SimulatedEcgSource}'s, premature supraventricular beats (early,
+ * abnormal P, narrow QRS), premature ventricular beats (no P, wide QRS, inverted T and a
+ * compensatory pause), fusion beats halfway between normal and ventricular, and paced beats
+ * (pacing spike, wide QRS) for "Unknown". The strip is in microvolts like the simulated
+ * tracker, with baseline wander and noise, and the same seed always gives the same strip.
+ * The labels say which morphology was drawn, not what a cardiologist would call it.
+ */
+final class LabeledEcgSimulation {
+
+    static final int NORMAL = 0;
+    static final int SUPRAVENTRICULAR = 1;
+    static final int VENTRICULAR = 2;
+    static final int FUSION = 3;
+    static final int PACED = 4;
+
+    // (offset from R in seconds, amplitude mV, width seconds)
+    private static final double[][] NORMAL_BEAT = {
+        {-0.100, 0.12, 0.021}, {-0.0125, -0.10, 0.0066}, {0.0, 1.00, 0.0083},
+        {0.0125, -0.18, 0.0075}, {0.208, 0.30, 0.037}};
+    private static final double[][] SUPRAVENTRICULAR_BEAT = {
+        {-0.085, -0.10, 0.018}, {-0.0125, -0.10, 0.0066}, {0.0, 0.95, 0.0083},
+        {0.0125, -0.18, 0.0075}, {0.200, 0.28, 0.037}};
+    private static final double[][] VENTRICULAR_BEAT = {
+        {-0.035, -0.20, 0.020}, {0.0, 1.20, 0.028}, {0.070, -0.50, 0.030}, {0.290, -0.40, 0.070}};
+    private static final double[][] PACED_BEAT = {
+        {-0.040, 2.00, 0.002}, {0.0, 0.90, 0.030}, {0.075, -0.45, 0.032}, {0.300, -0.30, 0.070}};
+
+    static final class Strip {
+        final int sampleRate;
+        final float[] samples;
+        /** R peak of every beat, in samples. */
+        final long[] rPeaks;
+        final int[] labels;
+
+        Strip(int sampleRate, float[] samples, long[] rPeaks, int[] labels) {
+            this.sampleRate = sampleRate;
+            this.samples = samples;
+            this.rPeaks = rPeaks;
+            this.labels = labels;
+        }
+    }
+
+    private LabeledEcgSimulation() {
+    }
+
+    /** About half the beats are normal, the rest split evenly over the other four classes. */
+    static Strip generate(int sampleRate, int seconds, long seed) {
+        Random random = new Random(seed);
+        int capacity = seconds * 2 + 2;
+        double[] times = new double[capacity];
+        int[] labels = new int[capacity];
+        int beats = 0;
+        double t = 1.0;
+        int previous = NORMAL;
+        while (t < seconds - 1.0 && beats < capacity) {
+            int label = random.nextInt(8);
+            label = label < 4 ? NORMAL : label - 3;
+            // Ectopics follow a normal beat, as isolated premature beats do
+            if (previous != NORMAL && label != PACED) {
+                label = NORMAL;
+            }
+            // 65-80 BPM, as the simulated tracker
+            double sinusRr = 60.0 / (65 + random.nextInt(16));
+            double rr = sinusRr;
+            if (label == SUPRAVENTRICULAR || label == VENTRICULAR) {
+                rr *= 0.62;
+            } else if (label == FUSION) {
+                rr *= 0.95;
+            }
+            if (previous == VENTRICULAR) {
+                // Compensatory pause: the sinus rhythm carries on underneath
+                rr = sinusRr * 1.38;
+            }
+            t += rr;
+            times[beats] = t;
+            labels[beats] = label;
+            beats++;
+            previous = label;
+        }
+
+        float[] samples = new float[seconds * sampleRate];
+        long[] rPeaks = new long[beats];
+        int first = 0;
+        for (int k = 0; k < samples.length; k++) {
+            double ts = k / (double) sampleRate;
+            double value = 0.05 * Math.sin(2 * Math.PI * 0.3 * ts) + (random.nextFloat() - 0.5f) * 0.03;
+            while (first < beats && times[first] < ts - 0.6) {
+                first++;
+            }
+            for (int b = first; b < beats && times[b] <= ts + 0.6; b++) {
+                value += beat(labels[b], ts - times[b]);
+            }
+            samples[k] = (float) (value * 1000);
+        }
+        for (int b = 0; b < beats; b++) {
+            rPeaks[b] = Math.round(times[b] * sampleRate);
+        }
+        int[] trimmed = new int[beats];
+        System.arraycopy(labels, 0, trimmed, 0, beats);
+        return new Strip(sampleRate, samples, rPeaks, trimmed);
+    }
+
+    private static double beat(int label, double dt) {
+        switch (label) {
+            case SUPRAVENTRICULAR:
+                return sum(SUPRAVENTRICULAR_BEAT, dt);
+            case VENTRICULAR:
+                return sum(VENTRICULAR_BEAT, dt);
+            case FUSION:
+                return 0.5 * (sum(NORMAL_BEAT, dt) + sum(VENTRICULAR_BEAT, dt));
+            case PACED:
+                return sum(PACED_BEAT, dt);
+            default:
+                return sum(NORMAL_BEAT, dt);
+        }
+    }
+
+    private static double sum(double[][] waves, double dt) {
+        double value = 0;
+        for (double[] wave : waves) {
+            double d = (dt - wave[0]) / wave[2];
+            value += wave[1] * Math.exp(-0.5 * d * d);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,207 @@
+package com.samsunghealth.jvm;
+
+import com.samsunghealth.AlertRule;
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.HealthPayloads;
+import com.samsunghealth.HealthSession;
+import com.samsunghealth.HrvEngine;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.MapPayloadWriter;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.RollupBuckets;
+import com.samsunghealth.SensorReading;
+import com.samsunghealth.SensorScheduler;
+import com.samsunghealth.SensorSource;
+import com.samsunghealth.SeriesSlice;
+import com.samsunghealth.SimulatedSensors;
+import com.samsunghealth.TimeSeriesStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many simulated patients through the real pipeline in one JVM: each patient is a
+ * {@link HealthSession} with its own store, heart rate tracking and a 500 Hz ECG stream
+ * classified beat by beat, all sharing one scheduler. After the live phase every patient
+ * answers the historical queries the app makes, and a summary is printed.
+ *
+ * Arguments: {@code [patients] [seconds] [heartRatePeriodMillis]}. The EKG model is read from
+ * the directory in the {@code samsunghealth.aiModels} system property.
+ */
+public final class PatientSimulation {
+
+    private static final long DAY_MILLIS = TimeSeriesStore.DAY_MILLIS;
+
+    private PatientSimulation() {
+    }
+
+    /** Counts what one session emits, building the same payloads the module would. */
+    private static final class Patient implements HealthSession.Listener {
+        final AtomicLong readings = new AtomicLong();
+        final AtomicLong beats = new AtomicLong();
+        final AtomicLong ecgErrors = new AtomicLong();
+        final AtomicLong alerts = new AtomicLong();
+        final AtomicLong payloadBytes = new AtomicLong();
+        HealthSession session;
+
+        @Override
+        public void onReading(String metric, SensorReading reading, HrvEngine hrv) {
+            readings.incrementAndGet();
+            payloadBytes.addAndGet(JsonSerializer.toJson(HealthPayloads.heartRateEvent(MapPayloadWriter.INSTANCE,
+                reading.getTimestamp(), Math.round(reading.getValue()), reading.getIntervals(),
+                reading.getIntervalCount(), hrv)).length());
+        }
+
+        @Override
+        public void onEcgBeat(long timestamp, long sequence, float rrMillis, float heartRate,
+                              float[] probabilities, int predictedClass, String className) {
+            beats.incrementAndGet();
+            payloadBytes.addAndGet(JsonSerializer.toJson(HealthPayloads.ecgClassification(MapPayloadWriter.INSTANCE,
+                timestamp, sequence, rrMillis, heartRate, probabilities, predictedClass, className)).length());
+        }
+
+        @Override
+        public void onEcgError(long timestamp, long sequence, Exception error) {
+            ecgErrors.incrementAndGet();
+        }
+
+        @Override
+        public void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised) {
+            if (raised) {
+                alerts.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onStoreError(IOException error) {
+            System.err.println(session.getName() + ": store flush failed: " + error);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long heartRatePeriod = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        File models = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+        EcgModelWeights weights = EcgModelWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights.bin")));
+        File root = Files.createTempDirectory("patient-simulation").toFile();
+        final AtomicLong taskErrors = new AtomicLong();
+        SensorScheduler scheduler = new SensorScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()),
+            "patients", new SensorScheduler.ErrorListener() {
+                @Override
+                public void onTaskError(String key, Throwable error) {
+                    if (taskErrors.incrementAndGet() <= 10) {
+                        System.err.println("Task " + key + " failed: " + error);
+                    }
+                }
+            });
+
+        Patient[] patients = new Patient[patientCount];
+        long[][] ecgCounters = new long[patientCount][];
+        try {
+            for (int i = 0; i < patientCount; i++) {
+                Patient patient = new Patient();
+                HealthSession session = new HealthSession("patient-" + i, scheduler, new File(root, "patient-" + i), patient);
+                for (SensorSource source : SimulatedSensors.patient(i * 31L)) {
+                    session.setSource(source);
+                }
+                session.setSource(new SimulatedSensors.HeartRate(i * 31L, heartRatePeriod));
+                session.getAnomalyDetector().setRules(AlertRule.defaults());
+                patient.session = session;
+                patients[i] = patient;
+            }
+
+            System.out.printf(Locale.US, "Streaming %d patients for %d s%n", patientCount, seconds);
+            for (Patient patient : patients) {
+                patient.session.startTracking(HealthSession.METRIC_HEART_RATE);
+                // One engine per stream; the mapped weights are shared
+                patient.session.startEcg(new EcgInferenceEngine(weights));
+            }
+            Thread.sleep(seconds * 1000L);
+            for (int i = 0; i < patientCount; i++) {
+                patients[i].session.stopTracking(HealthSession.METRIC_HEART_RATE);
+                ecgCounters[i] = patients[i].session.stopEcg();
+            }
+
+            // Historical phase: a month of day buckets, a day of raw heart rate, today's summary
+            long now = System.currentTimeMillis();
+            long[] queryNanos = new long[patientCount];
+            SeriesSlice slice = new SeriesSlice();
+            RollupBuckets buckets = new RollupBuckets();
+            for (int i = 0; i < patientCount; i++) {
+                HealthSession session = patients[i].session;
+                long started = System.nanoTime();
+                for (String metric : new String[] {HealthSession.METRIC_HEART_RATE, HealthSession.METRIC_STEPS,
+                        HealthSession.METRIC_SLEEP, HealthSession.METRIC_SPO2}) {
+                    long resolution = session.aggregate(metric, now - 30 * DAY_MILLIS, now, 0, buckets);
+                    JsonSerializer.toJson(HealthPayloads.aggregatedSeries(MapPayloadWriter.INSTANCE, metric, resolution, buckets));
+                }
+                slice.clear();
+                session.query(HealthSession.METRIC_HEART_RATE, now - DAY_MILLIS, now, slice);
+                JsonSerializer.toJson(HealthPayloads.heartRateSamples(MapPayloadWriter.INSTANCE, slice));
+                slice.clear();
+                session.today(HealthSession.METRIC_STEPS, slice);
+                JsonSerializer.toJson(HealthPayloads.todaySteps(MapPayloadWriter.INSTANCE, slice));
+                queryNanos[i] = System.nanoTime() - started;
+            }
+
+            report(patients, ecgCounters, queryNanos, seconds, taskErrors.get());
+        } finally {
+            for (Patient patient : patients) {
+                if (patient != null) {
+                    patient.session.close();
+                }
+            }
+            scheduler.shutdown();
+            delete(root);
+        }
+    }
+
+    private static void report(Patient[] patients, long[][] ecgCounters, long[] queryNanos, int seconds, long taskErrors) {
+        long readings = 0;
+        long beats = 0;
+        long ecgErrors = 0;
+        long alerts = 0;
+        long payloadBytes = 0;
+        long beatsDropped = 0;
+        long droppedSamples = 0;
+        for (int i = 0; i < patients.length; i++) {
+            readings += patients[i].readings.get();
+            beats += patients[i].beats.get();
+            ecgErrors += patients[i].ecgErrors.get();
+            alerts += patients[i].alerts.get();
+            payloadBytes += patients[i].payloadBytes.get();
+            droppedSamples += ecgCounters[i][2];
+            beatsDropped += ecgCounters[i][4];
+        }
+        long[] sorted = queryNanos.clone();
+        Arrays.sort(sorted);
+
+        System.out.printf(Locale.US, "Heart rate readings: %d (%.1f/s)%n", readings, readings / (double) seconds);
+        System.out.printf(Locale.US, "ECG beats classified: %d (%.1f/s), errors %d, beats dropped %d, samples dropped %d%n",
+            beats, beats / (double) seconds, ecgErrors, beatsDropped, droppedSamples);
+        System.out.printf(Locale.US, "Event payloads: %.1f KB of JSON%n", payloadBytes / 1024.0);
+        System.out.printf(Locale.US, "Alerts raised: %d%n", alerts);
+        if (sorted.length > 0) {
+            System.out.printf(Locale.US, "Historical queries per patient: p50 %.2f ms, max %.2f ms%n",
+                sorted[sorted.length / 2] / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.printf(Locale.US, "Scheduler task failures: %d%n", taskErrors);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
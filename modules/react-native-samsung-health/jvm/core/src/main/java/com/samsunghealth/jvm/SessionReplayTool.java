@@ -0,0 +1,223 @@
+package com.samsunghealth.jvm;
+
+import com.samsunghealth.AlertRule;
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.HealthSession;
+import com.samsunghealth.HrvEngine;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.SensorReading;
+import com.samsunghealth.SensorScheduler;
+import com.samsunghealth.SessionRecorder;
+import com.samsunghealth.SessionRecording;
+import com.samsunghealth.SessionReplay;
+import com.samsunghealth.SimulatedEcgSource;
+import com.samsunghealth.SimulatedSensors;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a session recording through {@link HealthSession} as fast as the pipeline takes it,
+ * several times, and checks every run produced the same readings, beats and alerts. Run it on
+ * a recording pulled off a device (startRecording()) to pin a regression, or without one on a
+ * synthetic recording of a simulated patient as a soak test.
+ *
+ * Arguments: {@code [recording.mdsr|-] [minutes] [runs]}; minutes only sizes the synthetic
+ * recording. The EKG model is read from the directory in the {@code samsunghealth.aiModels}
+ * system property.
+ */
+public final class SessionReplayTool {
+
+    private static final long HEART_RATE_PERIOD_MILLIS = 1000;
+    private static final int ECG_RUN_MILLIS = 20;
+    private static final long SYNTHETIC_SEED = 7;
+    // The consumer may still be classifying the last drained run once the ring is empty
+    private static final long DRAIN_MILLIS = 200;
+
+    private SessionReplayTool() {
+    }
+
+    /** Digests what a replay emits, leaving out wall-clock times, which differ run to run. */
+    private static final class Run implements HealthSession.Listener {
+        final AtomicLong readings = new AtomicLong();
+        final AtomicLong beats = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong alerts = new AtomicLong();
+        long readingDigest = 17;
+        long beatDigest = 17;
+
+        @Override
+        public synchronized void onReading(String metric, SensorReading reading, HrvEngine hrv) {
+            readings.incrementAndGet();
+            readingDigest = 31 * readingDigest + metric.hashCode();
+            readingDigest = 31 * readingDigest + Float.floatToIntBits(reading.getValue());
+            readingDigest = 31 * readingDigest + Double.doubleToLongBits(hrv.getRmssd());
+        }
+
+        @Override
+        public synchronized void onEcgBeat(long timestamp, long sequence, float rrMillis, float heartRate,
+                                           float[] probabilities, int predictedClass, String className) {
+            beats.incrementAndGet();
+            beatDigest = 31 * beatDigest + sequence;
+            beatDigest = 31 * beatDigest + predictedClass;
+            beatDigest = 31 * beatDigest + Float.floatToIntBits(rrMillis);
+        }
+
+        @Override
+        public void onEcgError(long timestamp, long sequence, Exception error) {
+            errors.incrementAndGet();
+        }
+
+        @Override
+        public void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised) {
+            if (raised) {
+                alerts.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onStoreError(IOException error) {
+            errors.incrementAndGet();
+        }
+
+        synchronized String digest() {
+            return String.format(Locale.US, "%016x/%016x", readingDigest, beatDigest);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "-";
+        int minutes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        File models = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+        EcgModelWeights weights = EcgModelWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights.bin")));
+        File root = Files.createTempDirectory("session-replay").toFile();
+        SensorScheduler scheduler = new SensorScheduler(2, "replay", new SensorScheduler.ErrorListener() {
+            @Override
+            public void onTaskError(String key, Throwable error) {
+                System.err.println("Task " + key + " failed: " + error);
+            }
+        });
+        try {
+            File file;
+            if ("-".equals(path)) {
+                file = new File(root, "synthetic.mdsr");
+                long started = System.nanoTime();
+                long bytes = recordSynthetic(file, minutes);
+                System.out.printf(Locale.US, "Synthetic recording: %d min, %.1f KB, written in %.0f ms%n",
+                    minutes, bytes / 1024.0, (System.nanoTime() - started) / 1e6);
+            } else {
+                file = new File(path);
+            }
+            SessionRecording recording = SessionRecording.read(file);
+            System.out.printf(Locale.US, "Recording: %s, %.1f min, streams %s%s%n", file.getName(),
+                recording.getDurationMillis() / 60_000.0, recording.getStreamNames(),
+                recording.isTruncated() ? " (truncated)" : "");
+
+            String first = null;
+            boolean deterministic = true;
+            for (int i = 0; i < runs; i++) {
+                String digest = replay(recording, weights, scheduler, new File(root, "run-" + i), i);
+                if (first == null) {
+                    first = digest;
+                } else if (!first.equals(digest)) {
+                    deterministic = false;
+                }
+            }
+            System.out.println(deterministic ? "Replays identical" : "Replays DIFFER");
+            if (!deterministic) {
+                System.exit(1);
+            }
+        } finally {
+            scheduler.shutdown();
+            delete(root);
+        }
+    }
+
+    private static String replay(SessionRecording recording, EcgModelWeights weights, SensorScheduler scheduler,
+                                 File store, int index) throws InterruptedException {
+        Run run = new Run();
+        HealthSession session = new HealthSession("replay-" + index, scheduler, store, run);
+        session.getAnomalyDetector().setRules(AlertRule.defaults());
+        SessionReplay replay = new SessionReplay(recording, SessionReplay.AS_FAST_AS_POSSIBLE);
+        replay.install(session);
+
+        long started = System.nanoTime();
+        for (String metric : replay.getMetrics()) {
+            if (session.hasMetric(metric)) {
+                session.startTracking(metric);
+            }
+        }
+        if (replay.ecgSource() != null) {
+            session.startEcg(new EcgInferenceEngine(weights));
+        }
+        while (!replay.isFinished()) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(DRAIN_MILLIS);
+        long[] ecgCounters = session.stopEcg();
+        session.close();
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        SessionRecording.Stream ecg = recording.getStream(SessionRecording.ECG_STREAM);
+        double recordedSeconds = recording.getDurationMillis() / 1000.0;
+        System.out.printf(Locale.US,
+            "Run %d: %.2f s (%.0fx real time), %d readings, %d beats, %d alerts, %d errors, "
+                + "%d ECG samples dropped, digest %s%n",
+            index, seconds, recordedSeconds / seconds, run.readings.get(), run.beats.get(), run.alerts.get(),
+            run.errors.get(), ecgCounters[2], run.digest());
+        if (ecg != null) {
+            System.out.printf(Locale.US, "       ECG %.0f samples/s%n", ecg.sampleCount() / seconds);
+        }
+        return run.digest();
+    }
+
+    // A simulated patient, stepped in recorded time rather than waited for
+    private static long recordSynthetic(File file, int minutes) throws IOException {
+        long start = System.currentTimeMillis();
+        SimulatedSensors.HeartRate heartRate = new SimulatedSensors.HeartRate(SYNTHETIC_SEED, HEART_RATE_PERIOD_MILLIS);
+        SimulatedEcgSource ecg = new SimulatedEcgSource(SimulatedEcgSource.DEFAULT_SAMPLE_RATE);
+        float[] run = new float[ecg.getSampleRate() * ECG_RUN_MILLIS / 1000];
+        SensorReading reading = new SensorReading();
+        long end = start + minutes * 60_000L;
+        long nextReading = start + HEART_RATE_PERIOD_MILLIS;
+
+        SessionRecorder recorder = new SessionRecorder(
+            new BufferedOutputStream(new FileOutputStream(file), 64 * 1024), start);
+        try {
+            for (long now = start + ECG_RUN_MILLIS; now <= end; now += ECG_RUN_MILLIS) {
+                ecg.fill(run, 0, run.length);
+                recorder.recordSamples(SessionRecording.ECG_STREAM, ecg.getSampleRate(), now, run, 0, run.length);
+                if (now >= nextReading) {
+                    if (heartRate.read(now, reading)) {
+                        recorder.recordReading(heartRate.getMetric(), reading);
+                    }
+                    nextReading += HEART_RATE_PERIOD_MILLIS;
+                }
+            }
+        } finally {
+            recorder.close();
+        }
+        if (recorder.getError() != null) {
+            throw recorder.getError();
+        }
+        return recorder.getBytesWritten();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
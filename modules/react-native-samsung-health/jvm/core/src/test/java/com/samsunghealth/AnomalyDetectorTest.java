@@ -0,0 +1,141 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnomalyDetectorTest {
+
+    private static final String HR = AlertRule.STREAM_HEART_RATE;
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+
+    private final List<String> alerts = new ArrayList<>();
+    private final AnomalyDetector detector = new AnomalyDetector(
+        (rule, timestamp, value, sinceTimestamp, raised) -> alerts.add(rule.getId() + (raised ? " raised " : " resolved ")
+            + "at " + timestamp / SECOND + "s since " + sinceTimestamp / SECOND + "s (" + value + ")"));
+
+    @Test
+    public void aboveRaisesOnceTheConditionIsSustained() {
+        rules(AlertRule.above("high", HR, 120, MINUTE, AlertRule.SEVERITY_WARNING));
+        feed(0, 100);
+        feed(10, 130);
+        feed(40, 130);
+        // Another stream, and a missing value, leave the episode alone
+        detector.evaluate(AlertRule.STREAM_SPO2, 50 * SECOND, 80);
+        detector.evaluate(HR, 55 * SECOND, Float.NaN);
+        feed(69, 130);
+        assertEquals(Collections.emptyList(), alerts);
+        feed(70, 131);
+        feed(80, 140);
+        feed(90, 110);
+        feed(100, 105);
+        assertEquals(Arrays.asList(
+            "high raised at 70s since 10s (131.0)",
+            "high resolved at 90s since 10s (110.0)"), alerts);
+        assertEquals(1, detector.getAlertsRaised());
+    }
+
+    @Test
+    public void interruptionRestartsTheSustainPeriod() {
+        rules(AlertRule.above("high", HR, 120, MINUTE, AlertRule.SEVERITY_WARNING));
+        feed(0, 130);
+        feed(50, 130);
+        feed(55, 119);
+        feed(60, 130);
+        feed(110, 130);
+        assertEquals(Collections.emptyList(), alerts);
+        feed(120, 130);
+        assertEquals(Collections.singletonList("high raised at 120s since 60s (130.0)"), alerts);
+    }
+
+    @Test
+    public void cooldownHoldsBackTheNextEpisode() {
+        rules(AlertRule.below("low", HR, 40, 0, AlertRule.SEVERITY_CRITICAL));
+        feed(0, 35);
+        feed(1, 50);
+        // Within the ten minute cooldown: neither raised nor, therefore, resolved
+        feed(2, 35);
+        feed(3, 50);
+        feed(599, 35);
+        feed(600, 34);
+        feed(601, 45);
+        assertEquals(Arrays.asList(
+            "low raised at 0s since 0s (35.0)",
+            "low resolved at 1s since 0s (50.0)",
+            "low raised at 600s since 599s (34.0)",
+            "low resolved at 601s since 599s (45.0)"), alerts);
+    }
+
+    @Test
+    public void ewmaDeviationWaitsForItsWarmup() {
+        rules(AlertRule.ewmaDeviation("jump", HR, 0.1f, 20, 0, AlertRule.SEVERITY_INFO));
+        for (int i = 0; i < AlertRule.WARMUP_VALUES - 1; i++) {
+            feed(i, 70);
+        }
+        // Fifth value: still warming up, so no alert, but it moves the mean to 78
+        feed(4, 150);
+        feed(5, 70);
+        assertEquals(Collections.emptyList(), alerts);
+        feed(700, 120);
+        feed(701, 80);
+        assertEquals(Arrays.asList(
+            "jump raised at 700s since 700s (120.0)",
+            "jump resolved at 701s since 700s (80.0)"), alerts);
+    }
+
+    @Test
+    public void learnedCusumBaselineStaysFrozenDuringADrift() {
+        rules(AlertRule.cusumHigh("rising", HR, Float.NaN, 0.05f, 5, 60, AlertRule.SEVERITY_WARNING));
+        for (int i = 0; i < 10; i++) {
+            feed(i * 60, 70);
+        }
+        // Each value adds 80 - 70 - 5 = 5; a baseline following the drift would add less each time
+        for (int i = 1; i <= 12; i++) {
+            feed(600 + i * 60, 80);
+        }
+        assertEquals(Collections.emptyList(), alerts);
+        feed(600 + 13 * 60, 80);
+        // 65 - 5 = 60 is no longer above the threshold
+        feed(600 + 14 * 60, 70);
+        assertEquals(Arrays.asList(
+            "rising raised at 1380s since 1380s (80.0)",
+            "rising resolved at 1440s since 1380s (70.0)"), alerts);
+    }
+
+    @Test
+    public void cusumLowAgainstAFixedTarget() {
+        rules(AlertRule.cusumLow("falling", AlertRule.STREAM_SPO2, 97, 0.1f, 1, 5, AlertRule.SEVERITY_WARNING));
+        for (int i = 0; i < 5; i++) {
+            detector.evaluate(AlertRule.STREAM_SPO2, i * MINUTE, 95);
+        }
+        // No warmup with a fixed target: 97 - 95 - 1 = 1 per value, above 5 on the sixth
+        assertEquals(Collections.emptyList(), alerts);
+        detector.evaluate(AlertRule.STREAM_SPO2, 5 * MINUTE, 95);
+        assertEquals(Collections.singletonList("falling raised at 300s since 300s (95.0)"), alerts);
+    }
+
+    @Test
+    public void newRulesStartFromScratch() {
+        rules(AlertRule.above("high", HR, 120, MINUTE, AlertRule.SEVERITY_WARNING));
+        feed(0, 130);
+        rules(AlertRule.above("high", HR, 120, MINUTE, AlertRule.SEVERITY_WARNING));
+        feed(60, 130);
+        assertEquals(Collections.emptyList(), alerts);
+        feed(120, 130);
+        assertEquals(Collections.singletonList("high raised at 120s since 60s (130.0)"), alerts);
+    }
+
+    private void rules(AlertRule... rules) {
+        detector.setRules(Arrays.asList(rules));
+    }
+
+    private void feed(long seconds, float value) {
+        detector.evaluate(HR, seconds * SECOND, value);
+    }
+}
@@ -0,0 +1,167 @@
+package com.samsunghealth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BridgeEventBatcherTest {
+
+    private static final String STREAM = "onHeartRateData";
+
+    private static final class Batch {
+        final List<Integer> events;
+        final long sequence;
+
+        Batch(List<Integer> events, long sequence) {
+            this.events = events;
+            this.sequence = sequence;
+        }
+    }
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private LinkedBlockingQueue<Batch> emitted;
+    private BridgeEventBatcher<Integer> batcher;
+
+    @Before
+    public void setUp() {
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        emitted = new LinkedBlockingQueue<>();
+        batcher = new BridgeEventBatcher<>(scheduler, new BridgeEventBatcher.Sink<Integer>() {
+            @Override
+            public void emitBatch(String stream, List<Integer> events, long sequence) {
+                emitted.add(new Batch(new ArrayList<>(events), sequence));
+            }
+        }, BridgeEventBatcher.StreamPolicy.immediate());
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void flushesWhenBatchFillsOrOldestEventIsDue() throws Exception {
+        batcher.setPolicy(STREAM, new BridgeEventBatcher.StreamPolicy(
+            4, 200, 64, BridgeEventBatcher.OverflowPolicy.DROP_OLDEST, 1, 4));
+        for (int i = 0; i < 4; i++) {
+            batcher.submit(STREAM, i);
+        }
+        Batch full = emitted.poll(1, TimeUnit.SECONDS);
+        assertNotNull(full);
+        assertEquals(Arrays.asList(0, 1, 2, 3), full.events);
+        // Let the first event's deadline pass; it was already flushed with the full batch
+        Thread.sleep(300);
+
+        long submitted = System.nanoTime();
+        batcher.submit(STREAM, 4);
+        batcher.submit(STREAM, 5);
+        assertNull("flushed before the deadline", emitted.poll(100, TimeUnit.MILLISECONDS));
+        Batch due = emitted.poll(2, TimeUnit.SECONDS);
+        assertNotNull(due);
+        assertEquals(Arrays.asList(4, 5), due.events);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted) >= 190);
+        assertEquals(1, due.sequence);
+    }
+
+    @Test
+    public void stallsAtMaxInFlightUntilAcknowledged() throws Exception {
+        stall();
+        batcher.acknowledge(STREAM, 1);
+        Batch resumed = emitted.poll(1, TimeUnit.SECONDS);
+        assertNotNull("acknowledgement did not resume the stream", resumed);
+        assertEquals(Arrays.asList(3), resumed.events);
+    }
+
+    @Test
+    public void staleAndUnsentAcknowledgementsAreIgnored() throws Exception {
+        stall();
+        batcher.acknowledge(STREAM, 0);
+        batcher.acknowledge(STREAM, 99);
+        assertNull(emitted.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void listenerChangeResumesStalledStream() throws Exception {
+        stall();
+        batcher.resetAcknowledgements(null);
+        Batch resumed = emitted.poll(1, TimeUnit.SECONDS);
+        assertNotNull("reset did not resume the stream", resumed);
+        assertEquals(Arrays.asList(3), resumed.events);
+
+        // Without acknowledgements the stream is unthrottled again
+        for (int i = 4; i < 10; i++) {
+            batcher.submit(STREAM, i);
+            assertNotNull(emitted.poll(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void emitsAfterAckTimeoutAndStopsRetrying() throws Exception {
+        stall();
+        long stalled = System.nanoTime();
+        Batch late = emitted.poll(BridgeEventBatcher.ACK_TIMEOUT_MILLIS + 2000, TimeUnit.MILLISECONDS);
+        assertNotNull("stream stayed stalled without acknowledgements", late);
+        assertEquals(Arrays.asList(3), late.events);
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stalled);
+        assertTrue(waited >= BridgeEventBatcher.ACK_TIMEOUT_MILLIS - 500);
+
+        // Nothing pending, so nothing is left polling
+        Thread.sleep(100);
+        assertEquals(0, scheduler.getQueue().size());
+    }
+
+    @Test
+    public void downsampleKeepsEveryNthEventWhileSaturated() throws Exception {
+        batcher.setPolicy(STREAM, new BridgeEventBatcher.StreamPolicy(
+            2, 60_000, 2, BridgeEventBatcher.OverflowPolicy.DOWNSAMPLE, 3, 4));
+        // No flush is due for a minute, so the buffer saturates after the first two
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Occupy the only scheduler thread so the size-triggered flush runs after all submits
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        for (int i = 0; i < 8; i++) {
+            batcher.submit(STREAM, i);
+        }
+        Batch batch = emitted.poll(2, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        // 2..7 arrive saturated: 2 and 5 are kept, each pushing out the oldest
+        assertEquals(Arrays.asList(2, 5), batch.events);
+        assertEquals(6, batcher.getStats().get(STREAM)[3]);
+    }
+
+    // One acknowledged batch, then two unacknowledged ones (maxInFlight) and a fourth event held back
+    private void stall() throws Exception {
+        batcher.setPolicy(STREAM, new BridgeEventBatcher.StreamPolicy(
+            1, 0, 8, BridgeEventBatcher.OverflowPolicy.DROP_OLDEST, 1, 2));
+        batcher.submit(STREAM, 0);
+        assertEquals(0, emitted.poll(1, TimeUnit.SECONDS).sequence);
+        batcher.acknowledge(STREAM, 0);
+        batcher.submit(STREAM, 1);
+        assertEquals(1, emitted.poll(1, TimeUnit.SECONDS).sequence);
+        batcher.submit(STREAM, 2);
+        assertEquals(2, emitted.poll(1, TimeUnit.SECONDS).sequence);
+        batcher.submit(STREAM, 3);
+        assertNull("emitted past maxInFlight", emitted.poll(300, TimeUnit.MILLISECONDS));
+    }
+}
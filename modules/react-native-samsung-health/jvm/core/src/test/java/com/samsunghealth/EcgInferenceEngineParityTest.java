@@ -0,0 +1,135 @@
+package com.samsunghealth;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the native engine against the JS model in services/ai/ecgAI.ts: the reference
+ * probabilities in {@code ecg-js-reference.csv} were computed by ecgAI.ts itself
+ * ({@code node scripts/generate-ecg-parity-fixture.js}) on the shipped weights.
+ */
+public class EcgInferenceEngineParityTest {
+
+    // The JS model runs in doubles, the engine in floats
+    private static final float TOLERANCE = 1e-4f;
+
+    private static final class Reference {
+        final String name;
+        final float[] probabilities;
+        final float[] window;
+
+        Reference(String name, float[] probabilities, float[] window) {
+            this.name = name;
+            this.probabilities = probabilities;
+            this.window = window;
+        }
+    }
+
+    private static List<Reference> references;
+    private static File models;
+
+    @BeforeClass
+    public static void loadReferences() throws IOException {
+        models = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+        references = new ArrayList<>();
+        InputStream in = EcgInferenceEngineParityTest.class.getResourceAsStream("/ecg-js-reference.csv");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                float[] probabilities = new float[5];
+                float[] window = new float[fields.length - 1 - probabilities.length];
+                for (int i = 0; i < probabilities.length; i++) {
+                    probabilities[i] = Float.parseFloat(fields[1 + i]);
+                }
+                for (int i = 0; i < window.length; i++) {
+                    window[i] = Float.parseFloat(fields[1 + probabilities.length + i]);
+                }
+                references.add(new Reference(fields[0], probabilities, window));
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue("No reference windows", references.size() >= 3);
+    }
+
+    @Test
+    public void jsonWeightsMatchJs() throws IOException {
+        InputStream in = new FileInputStream(new File(models, "ekg_weights.json"));
+        try {
+            assertMatchesJs(new EcgInferenceEngine(EcgModelWeights.fromJson(in)));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void binaryWeightsMatchJs() throws IOException {
+        assertMatchesJs(new EcgInferenceEngine(
+            EcgModelWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights.bin")))));
+    }
+
+    @Test
+    public void batchMatchesSingleWindows() throws IOException {
+        EcgInferenceEngine engine = new EcgInferenceEngine(
+            EcgModelWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights.bin"))));
+        int n = engine.getInputLength();
+        int classCount = engine.getClassCount();
+        // More windows than one block, so the block loop runs more than once
+        int count = EcgClassifier.BATCH_BLOCK + references.size();
+        float[] windows = new float[count * n];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(references.get(i % references.size()).window, 0, windows, i * n, n);
+        }
+        float[] batchProbabilities = new float[count * classCount];
+        int[] classes = new int[count];
+        engine.classifyBatch(windows, 0, count, batchProbabilities, classes);
+
+        float[] probabilities = new float[classCount];
+        for (int i = 0; i < count; i++) {
+            assertEquals(engine.classify(windows, i * n, probabilities), classes[i]);
+            for (int c = 0; c < classCount; c++) {
+                assertEquals(probabilities[c], batchProbabilities[i * classCount + c], 1e-6f);
+            }
+        }
+    }
+
+    private static void assertMatchesJs(EcgInferenceEngine engine) {
+        float[] probabilities = new float[engine.getClassCount()];
+        for (Reference reference : references) {
+            assertEquals(reference.name, engine.getInputLength(), reference.window.length);
+            int predicted = engine.classify(reference.window, 0, probabilities);
+            assertEquals(reference.name, argMax(reference.probabilities), predicted);
+            for (int c = 0; c < probabilities.length; c++) {
+                assertEquals(reference.name + " class " + c, reference.probabilities[c], probabilities[c], TOLERANCE);
+            }
+        }
+    }
+
+    private static int argMax(float[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
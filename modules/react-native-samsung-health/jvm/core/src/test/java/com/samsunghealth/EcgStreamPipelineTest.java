@@ -0,0 +1,84 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EcgStreamPipelineTest {
+
+    @Test
+    public void stopWaitsForWindowInProgress() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger inListener = new AtomicInteger();
+        final EcgStreamPipeline pipeline = new EcgStreamPipeline(64, 4, new EcgStreamPipeline.WindowListener() {
+            @Override
+            public void onWindow(float[] window, long sequence) {
+                inListener.incrementAndGet();
+                entered.countDown();
+                try {
+                    // A slow classification
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inListener.decrementAndGet();
+            }
+        });
+        pipeline.start();
+        pipeline.getRing().offer(new float[4], 0, 4);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.stop();
+            }
+        });
+        stopper.start();
+        stopper.join(1000);
+        // Well past the old 500 ms bound, stop() is still waiting on the listener
+        assertTrue(stopper.isAlive());
+
+        release.countDown();
+        stopper.join(5000);
+        assertFalse(stopper.isAlive());
+        assertEquals(0, inListener.get());
+    }
+
+    @Test
+    public void restartKeepsOneConsumer() throws Exception {
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final AtomicInteger windows = new AtomicInteger();
+        EcgStreamPipeline pipeline = new EcgStreamPipeline(1024, 8, new EcgStreamPipeline.WindowListener() {
+            @Override
+            public void onWindow(float[] window, long sequence) {
+                int now = concurrent.incrementAndGet();
+                maxConcurrent.accumulateAndGet(now, Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrent.decrementAndGet();
+                windows.incrementAndGet();
+            }
+        });
+        float[] samples = new float[64];
+        for (int round = 0; round < 20; round++) {
+            pipeline.start();
+            pipeline.getRing().offer(samples, 0, samples.length);
+            Thread.sleep(3);
+            pipeline.stop();
+        }
+        assertEquals(1, maxConcurrent.get());
+        assertTrue(windows.get() > 0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.samsunghealth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HealthSessionTest {
+
+    private static final HealthSession.Listener IGNORE = new HealthSession.Listener() {
+        @Override
+        public void onReading(String metric, SensorReading reading, HrvEngine hrv) {
+        }
+
+        @Override
+        public void onEcgBeat(long timestamp, long sequence, float rrMillis, float heartRate,
+                              float[] probabilities, int predictedClass, String className) {
+        }
+
+        @Override
+        public void onEcgError(long timestamp, long sequence, Exception error) {
+        }
+
+        @Override
+        public void onAlert(AlertRule rule, long timestamp, float value, long sinceTimestamp, boolean raised) {
+        }
+
+        @Override
+        public void onStoreError(IOException error) {
+            throw new AssertionError(error);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SensorScheduler scheduler;
+    private HealthSession session;
+
+    @Before
+    public void setUp() {
+        scheduler = new SensorScheduler(1, "test-session", null);
+        session = new HealthSession("test", scheduler, folder.getRoot(), IGNORE);
+    }
+
+    @After
+    public void tearDown() {
+        session.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void earlyStartBackfillsAYearAtMost() {
+        long now = System.currentTimeMillis();
+        SeriesSlice samples = new SeriesSlice(4096);
+        session.query(HealthSession.METRIC_HEART_RATE, 0, now, samples);
+        session.flush();
+
+        long oldest = TimeSeriesStore.dayStart(now) - HealthSession.MAX_BACKFILL_DAYS * TimeSeriesStore.DAY_MILLIS;
+        assertTrue(samples.size() > 0);
+        assertTrue("backfilled before " + oldest, samples.timestampAt(0) >= oldest);
+        File[] days = new File(folder.getRoot(), HealthSession.METRIC_HEART_RATE).listFiles(
+            (directory, name) -> name.endsWith(".seg"));
+        assertTrue(days != null && days.length <= HealthSession.MAX_BACKFILL_DAYS + 1);
+        assertEquals(samples.size(), session.getStore().getSampleCount(HealthSession.METRIC_HEART_RATE));
+    }
+
+    @Test
+    public void backfilledDaysAreSimulatedAndGeneratedOnce() {
+        long now = System.currentTimeMillis();
+        long yesterday = TimeSeriesStore.dayStart(now) - TimeSeriesStore.DAY_MILLIS;
+        SeriesSlice first = new SeriesSlice(16);
+        session.query(HealthSession.METRIC_SPO2, yesterday, yesterday + TimeSeriesStore.DAY_MILLIS, first);
+        TimeSeriesStore store = session.getStore();
+        assertTrue(store.isSimulated(HealthSession.METRIC_SPO2, yesterday));
+
+        // The same samples come back instead of a freshly generated day
+        SeriesSlice second = new SeriesSlice(16);
+        session.query(HealthSession.METRIC_SPO2, yesterday, yesterday + TimeSeriesStore.DAY_MILLIS, second);
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.timestampAt(i), second.timestampAt(i));
+            assertEquals(first.valueAt(i), second.valueAt(i), 0f);
+        }
+
+        // A real reading takes the day over
+        assertTrue(store.append(HealthSession.METRIC_SPO2, yesterday + 1000, 97));
+        SeriesSlice real = new SeriesSlice(16);
+        session.query(HealthSession.METRIC_SPO2, yesterday, yesterday + TimeSeriesStore.DAY_MILLIS, real);
+        assertEquals(1, real.size());
+        assertFalse(store.isSimulated(HealthSession.METRIC_SPO2, yesterday));
+    }
+}
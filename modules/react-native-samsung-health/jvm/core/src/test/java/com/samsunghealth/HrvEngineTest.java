@@ -0,0 +1,115 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HrvEngineTest {
+
+    private static final int WINDOW = 50;
+
+    @Test
+    public void slidingStatisticsMatchABruteForceRecompute() {
+        HrvEngine engine = new HrvEngine(WINDOW);
+        ArrayDeque<Double> window = new ArrayDeque<>();
+        Random random = new Random(9);
+        // Ten window wraps, so evictions and several rebuilds happen in between the checks
+        for (int beat = 0; beat < 10 * WINDOW + 7; beat++) {
+            double ibi = 800 + random.nextGaussian() * 60;
+            if (beat % 37 == 0) {
+                // An artifact: rejected, and must not touch the window
+                assertFalse(engine.addIbi(150));
+                continue;
+            }
+            assertTrue(engine.addIbi(ibi));
+            window.addLast(ibi);
+            if (window.size() > WINDOW) {
+                window.removeFirst();
+            }
+            if (window.size() < 2) {
+                continue;
+            }
+            double[] expected = bruteForce(new ArrayList<>(window));
+            assertEquals("mean at beat " + beat, expected[0], engine.getMeanIbi(), 1e-6);
+            assertEquals("SDNN at beat " + beat, expected[1], engine.getSdnn(), 1e-6);
+            assertEquals("RMSSD at beat " + beat, expected[2], engine.getRmssd(), 1e-6);
+            assertEquals("pNN50 at beat " + beat, expected[3], engine.getPnn50(), 1e-9);
+        }
+        assertEquals(WINDOW, engine.getBeatCount());
+        assertEquals((10 * WINDOW + 7 + 36) / 37, engine.getRejectedCount());
+    }
+
+    @Test
+    public void modulationAt0Point1HzIsLowFrequencyPower() {
+        HrvEngine engine = modulated(0.10);
+        assertTrue("LF " + engine.getLfPower() + " HF " + engine.getHfPower(),
+            engine.getLfPower() > 10 * engine.getHfPower());
+        // A 40 ms sine has a variance of 800 ms^2, all of it in the band
+        assertEquals(800, engine.getLfPower() + engine.getHfPower(), 800 * 0.2);
+        assertTrue(engine.getLfHfRatio() > 10);
+    }
+
+    @Test
+    public void modulationAt0Point25HzIsHighFrequencyPower() {
+        HrvEngine engine = modulated(0.25);
+        assertTrue("LF " + engine.getLfPower() + " HF " + engine.getHfPower(),
+            engine.getHfPower() > 10 * engine.getLfPower());
+        assertEquals(800, engine.getLfPower() + engine.getHfPower(), 800 * 0.2);
+        assertTrue(engine.getLfHfRatio() < 0.1);
+    }
+
+    @Test
+    public void spectrumNeedsEnoughSignal() {
+        HrvEngine engine = new HrvEngine(300);
+        for (int i = 0; i < 40; i++) {
+            engine.addIbi(1000);
+        }
+        // 40 s, less than two of the slowest LF cycles
+        assertTrue(Double.isNaN(engine.getLfPower()));
+        assertTrue(Double.isNaN(engine.getLfHfRatio()));
+    }
+
+    // Five minutes of beats whose interval follows a 40 ms sine at frequencyHz, as respiration or baroreflex would
+    private static HrvEngine modulated(double frequencyHz) {
+        HrvEngine engine = new HrvEngine(300);
+        Random random = new Random(3);
+        double t = 0;
+        while (t < 300) {
+            double ibi = 1000 + 40 * Math.sin(2 * Math.PI * frequencyHz * t) + random.nextGaussian() * 2;
+            engine.addIbi(ibi);
+            t += ibi / 1000;
+        }
+        return engine;
+    }
+
+    // mean, SDNN, RMSSD, pNN50
+    private static double[] bruteForce(List<Double> ibis) {
+        int n = ibis.size();
+        double sum = 0;
+        for (double ibi : ibis) {
+            sum += ibi;
+        }
+        double mean = sum / n;
+        double squares = 0;
+        double squaredDiffs = 0;
+        int nn50 = 0;
+        for (int i = 0; i < n; i++) {
+            squares += (ibis.get(i) - mean) * (ibis.get(i) - mean);
+            if (i > 0) {
+                double diff = ibis.get(i) - ibis.get(i - 1);
+                squaredDiffs += diff * diff;
+                if (Math.abs(diff) > 50) {
+                    nn50++;
+                }
+            }
+        }
+        return new double[] {mean, Math.sqrt(squares / (n - 1)), Math.sqrt(squaredDiffs / (n - 1)), 100.0 * nn50 / (n - 1)};
+    }
+}
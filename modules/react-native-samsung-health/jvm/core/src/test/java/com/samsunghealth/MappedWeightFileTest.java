@@ -0,0 +1,68 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MappedWeightFileTest {
+
+    private static final File MODELS = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+
+    @Test
+    public void everyTruncationFailsAsIOException() throws IOException {
+        for (String name : new String[] {"ekg_weights.bin", "ekg_weights_int8.bin"}) {
+            byte[] bytes = Files.readAllBytes(new File(MODELS, name).toPath());
+            MappedWeightFile whole = MappedWeightFile.wrap(ByteBuffer.wrap(bytes));
+            int headerEnd = bytes.length;
+            for (MappedWeightFile.Tensor tensor : whole.getTensors()) {
+                headerEnd = Math.min(headerEnd, tensor.offset);
+            }
+            // Every cut inside the tensor table, then a sample of cuts inside the data
+            for (int length = 0; length < bytes.length; length += length < headerEnd ? 1 : 4093) {
+                assertRejected(name + " cut at " + length, ByteBuffer.wrap(bytes, 0, length).slice());
+            }
+        }
+    }
+
+    @Test
+    public void corruptTableFailsAsIOException() throws IOException {
+        byte[] bytes = Files.readAllBytes(new File(MODELS, "ekg_weights.bin").toPath());
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int tableStart = 12 + header.getInt(8);
+
+        // First tensor's name length pointing far past the end of the file
+        byte[] longName = bytes.clone();
+        longName[tableStart] = (byte) 0xFF;
+        longName[tableStart + 1] = (byte) 0xFF;
+        assertRejected("name length", ByteBuffer.wrap(longName, 0, tableStart + 64).slice());
+
+        // Metadata length with the sign bit set
+        byte[] negative = bytes.clone();
+        negative[11] = (byte) 0x80;
+        assertRejected("metadata length", ByteBuffer.wrap(negative));
+
+        // First tensor's rank claiming more dimensions than the table holds
+        int nameLength = header.getShort(tableStart) & 0xFFFF;
+        byte[] rank = bytes.clone();
+        rank[tableStart + 2 + nameLength] = (byte) 0xFF;
+        assertRejected("rank", ByteBuffer.wrap(rank, 0, tableStart + 2 + nameLength + 2 + 64).slice());
+
+        assertEquals("scaler/mean", MappedWeightFile.wrap(ByteBuffer.wrap(bytes)).tensor("scaler/mean").name);
+    }
+
+    private static void assertRejected(String what, ByteBuffer buffer) {
+        try {
+            MappedWeightFile.wrap(buffer);
+            fail(what + ": read a damaged weight file");
+        } catch (IOException expected) {
+            // what callers fall back on
+        }
+    }
+}
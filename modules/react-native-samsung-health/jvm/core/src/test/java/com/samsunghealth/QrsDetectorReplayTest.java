@@ -0,0 +1,137 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays annotated ECG strips through {@link QrsDetector} and checks the beats it reports
+ * against the annotated R peaks: count, R-peak positions and RR intervals. Strips live in
+ * {@code src/test/resources/qrs}, one sample per line after {@code # sampleRate=} and
+ * {@code # rPeaks=} header lines ({@code python3 scripts/generate-qrs-fixtures.py}); a new
+ * strip only needs its name added to {@link #strips()}.
+ */
+@RunWith(Parameterized.class)
+public class QrsDetectorReplayTest {
+
+    // The detector learns its thresholds over the first 2 s; beats annotated before this are not scored
+    private static final double SCORED_FROM_SECONDS = 2.5;
+    // Segment span after the R peak; the strip's last beats may not have it
+    private static final float POST_R_SECONDS = 0.25f;
+    // R peak located within 15 ms of the annotation, RR within 20 ms
+    private static final double PEAK_TOLERANCE_SECONDS = 0.015;
+    private static final double RR_TOLERANCE_MILLIS = 20;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> strips() {
+        return Arrays.asList(new Object[][] {{"resting-ectopics"}, {"exercise-noisy"}});
+    }
+
+    private static final class Strip {
+        int sampleRate;
+        long[] rPeaks;
+        float[] samples;
+    }
+
+    private final String name;
+
+    public QrsDetectorReplayTest(String name) {
+        this.name = name;
+    }
+
+    @Test
+    public void detectsAnnotatedBeats() throws IOException {
+        Strip strip = load(name);
+        final List<Long> beats = new ArrayList<>();
+        final List<Float> rrs = new ArrayList<>();
+        QrsDetector detector = new QrsDetector(strip.sampleRate, 180, 0.25f, POST_R_SECONDS,
+            new QrsDetector.BeatListener() {
+                @Override
+                public void onBeat(float[] segment, long rPeakSample, float rrMillis, float heartRate) {
+                    beats.add(rPeakSample);
+                    rrs.add(rrMillis);
+                }
+            });
+        // In sensor-sized chunks, as the pipeline's sample tap receives them
+        for (int offset = 0; offset < strip.samples.length; offset += 25) {
+            detector.onSamples(strip.samples, offset, Math.min(25, strip.samples.length - offset));
+        }
+
+        long scoredFrom = Math.round(SCORED_FROM_SECONDS * strip.sampleRate);
+        long tolerance = Math.round(PEAK_TOLERANCE_SECONDS * strip.sampleRate);
+        long scoredUntil = strip.samples.length - Math.round(POST_R_SECONDS * strip.sampleRate) - tolerance;
+        List<Long> expected = new ArrayList<>();
+        for (long peak : strip.rPeaks) {
+            if (peak >= scoredFrom && peak < scoredUntil) {
+                expected.add(peak);
+            }
+        }
+        List<Long> detected = new ArrayList<>();
+        List<Float> detectedRr = new ArrayList<>();
+        for (int i = 0; i < beats.size(); i++) {
+            // Beats found in the unscored lead-in may still be reported; a tolerance early counts as scored
+            if (beats.get(i) >= scoredFrom - tolerance) {
+                detected.add(beats.get(i));
+                detectedRr.add(rrs.get(i));
+            }
+        }
+
+        assertEquals(name + " beat count", expected.size(), detected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            long error = Math.abs(detected.get(i) - expected.get(i));
+            assertTrue(name + " beat " + i + " at " + detected.get(i) + ", annotated " + expected.get(i),
+                error <= tolerance);
+        }
+        for (int i = 1; i < expected.size(); i++) {
+            double annotatedRr = (expected.get(i) - expected.get(i - 1)) * 1000.0 / strip.sampleRate;
+            assertEquals(name + " RR before beat " + i, annotatedRr, detectedRr.get(i), RR_TOLERANCE_MILLIS);
+        }
+        assertEquals(name + " beats dropped", 0, detector.getBeatsDropped());
+    }
+
+    private static Strip load(String name) throws IOException {
+        InputStream in = QrsDetectorReplayTest.class.getResourceAsStream("/qrs/" + name + ".csv");
+        assertNotNull("No strip " + name, in);
+        Strip strip = new Strip();
+        float[] samples = new float[16_384];
+        int count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("# sampleRate=")) {
+                    strip.sampleRate = Integer.parseInt(line.substring("# sampleRate=".length()));
+                } else if (line.startsWith("# rPeaks=")) {
+                    String[] peaks = line.substring("# rPeaks=".length()).split(",");
+                    strip.rPeaks = new long[peaks.length];
+                    for (int i = 0; i < peaks.length; i++) {
+                        strip.rPeaks[i] = Long.parseLong(peaks[i]);
+                    }
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                    }
+                    samples[count++] = Float.parseFloat(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue(name + " has no sample rate or annotations", strip.sampleRate > 0 && strip.rPeaks != null);
+        strip.samples = Arrays.copyOf(samples, count);
+        return strip;
+    }
+}
@@ -0,0 +1,217 @@
+package com.samsunghealth;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest {
+
+    private static final String METRIC = "heart_rate";
+
+    private static final class Outcome {
+        final String value;
+        final boolean cached;
+        final Exception error;
+
+        Outcome(String value, boolean cached, Exception error) {
+            this.value = value;
+            this.cached = cached;
+            this.error = error;
+        }
+    }
+
+    private static final class Recorder implements ResultCache.Callback<String> {
+        final LinkedBlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onResult(String value, boolean cached) {
+            outcomes.add(new Outcome(value, cached, null));
+        }
+
+        @Override
+        public void onError(Exception error) {
+            outcomes.add(new Outcome(null, false, error));
+        }
+
+        Outcome next() throws InterruptedException {
+            Outcome outcome = outcomes.poll(2, TimeUnit.SECONDS);
+            assertNotNull("no result delivered", outcome);
+            return outcome;
+        }
+    }
+
+    // Counts its runs and, when gated, blocks until released
+    private static final class CountingLoader implements ResultCache.Loader<String> {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        final String value;
+
+        CountingLoader(String value, boolean gated) {
+            this.value = value;
+            this.release = new CountDownLatch(gated ? 1 : 0);
+        }
+
+        @Override
+        public String load() throws Exception {
+            runs.incrementAndGet();
+            started.countDown();
+            assertTrue(release.await(2, TimeUnit.SECONDS));
+            return value + runs.get();
+        }
+    }
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void servesRepeatedQueriesFromTheCache() throws Exception {
+        ResultCache<String> cache = new ResultCache<>(8);
+        CountingLoader loader = new CountingLoader("day", false);
+        Recorder recorder = new Recorder();
+        cache.get("getHistory", METRIC, 0, 100, loader, recorder);
+        cache.get("getHistory", METRIC, 0, 100, loader, recorder);
+
+        Outcome first = recorder.next();
+        Outcome second = recorder.next();
+        assertEquals("day1", first.value);
+        assertFalse(first.cached);
+        assertEquals("day1", second.value);
+        assertTrue(second.cached);
+        assertEquals(1, loader.runs.get());
+        assertArrayEquals(new long[] {1, 1, 0, 0, 0}, cache.getCounters());
+    }
+
+    @Test
+    public void concurrentRequestsShareOneComputation() throws Exception {
+        final ResultCache<String> cache = new ResultCache<>(8);
+        final CountingLoader loader = new CountingLoader("day", true);
+        final Recorder owner = new Recorder();
+        final Recorder waiter = new Recorder();
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, loader, owner));
+        assertTrue(loader.started.await(2, TimeUnit.SECONDS));
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, loader, waiter));
+        awaitCounter(cache, 2, 1);
+
+        loader.release.countDown();
+        assertEquals("day1", owner.next().value);
+        Outcome shared = waiter.next();
+        assertEquals("day1", shared.value);
+        assertTrue(shared.cached);
+        assertEquals(1, loader.runs.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void invalidatedComputationIsDeliveredButNotCached() throws Exception {
+        final ResultCache<String> cache = new ResultCache<>(8);
+        final CountingLoader loader = new CountingLoader("day", true);
+        final Recorder owner = new Recorder();
+        final Recorder waiter = new Recorder();
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, loader, owner));
+        assertTrue(loader.started.await(2, TimeUnit.SECONDS));
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, loader, waiter));
+        awaitCounter(cache, 2, 1);
+
+        // A sample inside the range lands while the query runs
+        cache.invalidate(METRIC, 50);
+        loader.release.countDown();
+        assertEquals("day1", owner.next().value);
+        assertEquals("day1", waiter.next().value);
+        assertEquals(0, cache.size());
+
+        Recorder later = new Recorder();
+        cache.get("getHistory", METRIC, 0, 100, loader, later);
+        Outcome fresh = later.next();
+        assertEquals("day2", fresh.value);
+        assertFalse(fresh.cached);
+    }
+
+    @Test
+    public void invalidationDropsOnlyOverlappingRangesOfTheMetric() throws Exception {
+        ResultCache<String> cache = new ResultCache<>(8);
+        Recorder recorder = new Recorder();
+        cache.get("getHistory", METRIC, 0, 100, new CountingLoader("a", false), recorder);
+        cache.get("getHistory", METRIC, 100, 200, new CountingLoader("b", false), recorder);
+        cache.get("getHistory", "steps", 0, 100, new CountingLoader("c", false), recorder);
+        assertEquals(3, cache.size());
+
+        cache.invalidate(METRIC, 100);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getCounters()[3]);
+        CountingLoader reload = new CountingLoader("x", false);
+        cache.get("getHistory", METRIC, 0, 100, reload, recorder);
+        cache.get("getHistory", "steps", 0, 100, reload, recorder);
+        assertEquals(0, reload.runs.get());
+    }
+
+    @Test
+    public void failuresReachEveryWaiterAndAreNotCached() throws Exception {
+        final ResultCache<String> cache = new ResultCache<>(8);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResultCache.Loader<String> failing = () -> {
+            started.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            throw new IOException("store unavailable");
+        };
+        final Recorder owner = new Recorder();
+        final Recorder waiter = new Recorder();
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, failing, owner));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        callers.execute(() -> cache.get("getHistory", METRIC, 0, 100, failing, waiter));
+        awaitCounter(cache, 2, 1);
+
+        release.countDown();
+        assertTrue(owner.next().error instanceof IOException);
+        assertTrue(waiter.next().error instanceof IOException);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndHonorsZeroTtl() throws Exception {
+        ResultCache<String> cache = new ResultCache<>(2);
+        Recorder recorder = new Recorder();
+        cache.get("getHistory", METRIC, 0, 100, new CountingLoader("a", false), recorder);
+        cache.get("getHistory", METRIC, 100, 200, new CountingLoader("b", false), recorder);
+        // Touch the first, so the second is the eldest
+        cache.get("getHistory", METRIC, 0, 100, new CountingLoader("a", false), recorder);
+        cache.get("getHistory", METRIC, 200, 300, new CountingLoader("c", false), recorder);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getCounters()[4]);
+        CountingLoader reload = new CountingLoader("b", false);
+        cache.get("getHistory", METRIC, 100, 200, reload, recorder);
+        assertEquals(1, reload.runs.get());
+
+        cache.setTtl("steps", 0);
+        cache.get("getHistory", "steps", 0, 100, new CountingLoader("s", false), recorder);
+        CountingLoader again = new CountingLoader("s", false);
+        cache.get("getHistory", "steps", 0, 100, again, recorder);
+        assertEquals(1, again.runs.get());
+    }
+
+    private static void awaitCounter(ResultCache<?> cache, int counter, long value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (cache.getCounters()[counter] < value && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(value, cache.getCounters()[counter]);
+    }
+}
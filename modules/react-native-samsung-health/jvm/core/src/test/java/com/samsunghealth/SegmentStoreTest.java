@@ -0,0 +1,178 @@
+package com.samsunghealth;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SegmentStoreTest {
+
+    private static final String TRACK = SegmentationEngine.TRACK_ACTIVITY;
+    private static final long MINUTE = SegmentationEngine.MINUTE_MILLIS;
+    // 2024-03-10T00:00:00Z
+    private static final long DAY = 1_710_028_800_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queriesFlushedSegmentsAfterReload() throws IOException {
+        File root = folder.getRoot();
+        SegmentStore store = new SegmentStore(root);
+        appendSegments(store, 0, 10);
+        store.flush(state(7));
+
+        SegmentStore reloaded = new SegmentStore(root);
+        assertEquals(10, reloaded.size(TRACK));
+        List<SegmentationEngine.Segment> out = new ArrayList<>();
+        // Segments of 30 minutes: the range touches the 3rd through the 5th
+        assertEquals(3, reloaded.query(TRACK, DAY + 65 * MINUTE, DAY + 150 * MINUTE, out));
+        assertEquals(DAY + 60 * MINUTE, out.get(0).getStart());
+        assertEquals(2, out.get(0).getLabelIndex());
+        assertEquals(30, out.get(0).getMinutes());
+        assertEquals(72f, out.get(0).getMeanHeartRate(), 0f);
+        assertEquals(7, reloaded.readState().getInt());
+        assertEquals(0, reloaded.size(SegmentationEngine.TRACK_SLEEP));
+    }
+
+    @Test
+    public void segmentsFromAnOlderStateAreIgnored() throws IOException {
+        SegmentStore store = new SegmentStore(folder.getRoot());
+        appendSegments(store, 0, 4);
+        // An engine resumed from before the last flush ends its segments again
+        assertFalse(store.append(segment(3)));
+        assertTrue(store.append(segment(4)));
+        assertEquals(5, store.size(TRACK));
+    }
+
+    @Test
+    public void tornRecordIsDroppedAndAppendsStayReadable() throws IOException {
+        File root = folder.getRoot();
+        SegmentStore store = new SegmentStore(root);
+        appendSegments(store, 0, 5);
+        store.flush(null);
+
+        File track = new File(root, TRACK + ".segs");
+        long written = track.length();
+        appendBytes(track, new byte[20]);
+
+        SegmentStore reloaded = new SegmentStore(root);
+        assertEquals(5, reloaded.size(TRACK));
+        assertEquals(written, track.length());
+        appendSegments(reloaded, 5, 3);
+        reloaded.flush(null);
+        assertEquals(8, new SegmentStore(root).size(TRACK));
+    }
+
+    @Test
+    public void unreadableHeaderIsMovedAsideNotTruncated() throws IOException {
+        File root = folder.getRoot();
+        SegmentStore store = new SegmentStore(root);
+        appendSegments(store, 0, 5);
+        store.flush(null);
+
+        File track = new File(root, TRACK + ".segs");
+        long length = track.length();
+        RandomAccessFile file = new RandomAccessFile(track, "rw");
+        try {
+            file.writeInt(0xDEADBEEF);
+        } finally {
+            file.close();
+        }
+
+        SegmentStore reloaded = new SegmentStore(root);
+        assertEquals(0, reloaded.size(TRACK));
+        File corrupt = new File(track.getPath() + ".corrupt");
+        assertTrue(corrupt.isFile());
+        assertEquals(length, corrupt.length());
+
+        appendSegments(reloaded, 10, 2);
+        reloaded.flush(null);
+        assertEquals(2, new SegmentStore(root).size(TRACK));
+        assertEquals(length, corrupt.length());
+    }
+
+    @Test
+    public void failedFlushKeepsSegmentsAndTheOldState() throws IOException {
+        File root = folder.getRoot();
+        SegmentStore store = new SegmentStore(root);
+        appendSegments(store, 0, 3);
+        store.flush(state(1));
+
+        // A directory where the track file should go makes its write fail
+        appendSegments(store, 3, 2);
+        File track = new File(root, TRACK + ".segs");
+        File moved = new File(root, "moved");
+        assertTrue(track.renameTo(moved));
+        assertTrue(track.mkdir());
+        try {
+            store.flush(state(2));
+            fail("flush should fail while the track file cannot be written");
+        } catch (IOException expected) {
+            // segments stay in memory
+        }
+        // The saved state must not run ahead of the segments on disk
+        assertEquals(1, store.readState().getInt());
+
+        assertTrue(track.delete());
+        assertTrue(moved.renameTo(track));
+        appendSegments(store, 5, 1);
+        store.flush(state(3));
+
+        SegmentStore reloaded = new SegmentStore(root);
+        assertEquals(6, reloaded.size(TRACK));
+        List<SegmentationEngine.Segment> out = new ArrayList<>();
+        reloaded.query(TRACK, DAY, DAY + 24 * 60 * MINUTE, out);
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(DAY + i * 30 * MINUTE, out.get(i).getStart());
+        }
+        assertEquals(3, reloaded.readState().getInt());
+    }
+
+    @Test
+    public void missingStateReadsAsNull() throws IOException {
+        assertNull(new SegmentStore(folder.getRoot()).readState());
+    }
+
+    private static void appendSegments(SegmentStore store, int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            assertTrue(store.append(segment(i)));
+        }
+    }
+
+    // Back to back 30-minute segments
+    private static SegmentationEngine.Segment segment(int index) {
+        long start = DAY + index * 30 * MINUTE;
+        return new SegmentationEngine.Segment(TRACK, index % 4, start, start + 30 * MINUTE, 30,
+            70 + index, 40f, index * 100f, false);
+    }
+
+    private static ByteBuffer state(int marker) {
+        ByteBuffer state = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        state.putInt(marker).flip();
+        return state;
+    }
+
+    private static void appendBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
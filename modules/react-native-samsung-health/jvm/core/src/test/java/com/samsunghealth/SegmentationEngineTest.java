@@ -0,0 +1,125 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentationEngineTest {
+
+    private static final long MINUTE = SegmentationEngine.MINUTE_MILLIS;
+    // 2024-03-10T08:00:00Z
+    private static final long START = 1_710_057_600_000L;
+
+    private static final class Collector implements SegmentationEngine.SegmentListener {
+        final List<SegmentationEngine.Segment> segments = new ArrayList<>();
+
+        @Override
+        public void onSegment(SegmentationEngine.Segment segment) {
+            segments.add(segment);
+        }
+
+        List<String> describe(String track) {
+            List<String> out = new ArrayList<>();
+            for (SegmentationEngine.Segment segment : segments) {
+                if (segment.getTrack().equals(track)) {
+                    out.add(segment.getLabel() + "@" + (segment.getStart() - START) / MINUTE
+                        + "+" + segment.getMinutes());
+                }
+            }
+            return out;
+        }
+    }
+
+    @Test
+    public void findsAWalkBetweenSedentaryStretches() {
+        Collector collector = new Collector();
+        SegmentationEngine engine = new SegmentationEngine(collector);
+        Random random = new Random(1);
+        feed(engine, random, 0, 60, 64, 0);
+        feed(engine, random, 60, 90, 105, 112);
+        feed(engine, random, 90, 180, 66, 0);
+        engine.advance(START + 181 * MINUTE);
+
+        List<SegmentationEngine.Segment> walks = new ArrayList<>();
+        for (SegmentationEngine.Segment segment : collector.segments) {
+            assertFalse(segment.isOngoing());
+            if (segment.getLabel().equals("moderate")) {
+                walks.add(segment);
+            }
+        }
+        assertEquals(collector.describe(SegmentationEngine.TRACK_ACTIVITY).toString(), 1, walks.size());
+        SegmentationEngine.Segment walk = walks.get(0);
+        assertEquals(60, (walk.getStart() - START) / MINUTE);
+        assertEquals(30, walk.getMinutes());
+        assertEquals(105, walk.getMeanHeartRate(), 2);
+    }
+
+    @Test
+    public void restoredEngineCarriesOnExactlyLikeTheOriginal() {
+        Collector original = new Collector();
+        SegmentationEngine engine = new SegmentationEngine(original);
+        Random random = new Random(2);
+        feed(engine, random, 0, 45, 64, 0);
+        feed(engine, random, 45, 70, 105, 112);
+        // Mid-walk, with segments open and minutes waiting in the lookahead
+        ByteBuffer state = engine.saveState();
+        int emittedBefore = original.segments.size();
+
+        Collector resumed = new Collector();
+        SegmentationEngine restored = new SegmentationEngine(resumed);
+        assertTrue(restored.restoreState(state.duplicate()));
+
+        long seed = 3;
+        feed(engine, new Random(seed), 70, 200, 66, 0);
+        feed(restored, new Random(seed), 70, 200, 66, 0);
+        engine.advance(START + 201 * MINUTE);
+        restored.advance(START + 201 * MINUTE);
+
+        Collector after = new Collector();
+        after.segments.addAll(original.segments.subList(emittedBefore, original.segments.size()));
+        assertFalse(after.segments.isEmpty());
+        assertEquals(after.describe(SegmentationEngine.TRACK_ACTIVITY), resumed.describe(SegmentationEngine.TRACK_ACTIVITY));
+        assertEquals(after.describe(SegmentationEngine.TRACK_SLEEP), resumed.describe(SegmentationEngine.TRACK_SLEEP));
+        assertEquals(engine.getRestingHeartRate(), restored.getRestingHeartRate(), 0f);
+        assertEquals(engine.getLabelledUntil(), restored.getLabelledUntil());
+    }
+
+    @Test
+    public void truncatedStateLeavesTheEngineAsItWas() {
+        SegmentationEngine engine = new SegmentationEngine(new Collector());
+        feed(engine, new Random(4), 0, 40, 64, 0);
+        ByteBuffer state = engine.saveState();
+
+        SegmentationEngine fresh = new SegmentationEngine(new Collector());
+        ByteBuffer torn = state.duplicate();
+        torn.limit(state.limit() - 10);
+        assertFalse(fresh.restoreState(torn));
+        assertEquals(Long.MIN_VALUE, fresh.getLabelledUntil());
+        assertTrue(Float.isNaN(fresh.getRestingHeartRate()));
+    }
+
+    // Minutes [from, to) at about heartRate bpm: a reading every 10 s with its beats, and the minute's steps
+    private static void feed(SegmentationEngine engine, Random random, int from, int to, float heartRate,
+                             float stepsPerMinute) {
+        int[] intervals = new int[32];
+        for (int minute = from; minute < to; minute++) {
+            for (int reading = 0; reading < 6; reading++) {
+                long timestamp = START + minute * MINUTE + reading * 10_000L;
+                float bpm = heartRate + (float) random.nextGaussian();
+                int count = Math.round(bpm / 6);
+                for (int i = 0; i < count; i++) {
+                    intervals[i] = Math.round(60_000 / bpm + (float) random.nextGaussian() * 15);
+                }
+                engine.addHeartRate(timestamp, bpm, intervals, count);
+            }
+            engine.addSteps(START + minute * MINUTE + 59_000, stepsPerMinute);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.samsunghealth;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SensorSchedulerTest {
+
+    private final LinkedBlockingQueue<String> errors = new LinkedBlockingQueue<>();
+    private final SensorScheduler scheduler = new SensorScheduler(2, "test-sensor",
+        new SensorScheduler.ErrorListener() {
+            @Override
+            public void onTaskError(String key, Throwable error) {
+                errors.add(key + ": " + error.getMessage());
+            }
+        });
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void throwingPeriodicTaskKeepsRunning() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        scheduler.scheduleAtFixedRate("heart_rate", () -> {
+            if (runs.incrementAndGet() == 1) {
+                throw new IllegalStateException("sensor busy");
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertEquals("heart_rate: sensor busy", errors.poll(1, TimeUnit.SECONDS));
+        awaitAtLeast(runs, 5);
+        assertTrue(scheduler.isScheduled("heart_rate"));
+        assertEquals(1, scheduler.getFailureCount());
+    }
+
+    @Test
+    public void restartReplacesTheTaskUnderItsKey() throws Exception {
+        final AtomicInteger first = new AtomicInteger();
+        final AtomicInteger second = new AtomicInteger();
+        scheduler.scheduleAtFixedRate("spo2", first::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        awaitAtLeast(first, 2);
+        scheduler.scheduleAtFixedRate("spo2", second::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        awaitAtLeast(second, 2);
+
+        int stopped = first.get();
+        Thread.sleep(100);
+        assertTrue("replaced task still running", first.get() <= stopped + 1);
+
+        assertTrue(scheduler.cancel("spo2"));
+        assertFalse(scheduler.isScheduled("spo2"));
+        assertFalse(scheduler.cancel("spo2"));
+        int cancelled = second.get();
+        Thread.sleep(100);
+        assertTrue("cancelled task still running", second.get() <= cancelled + 1);
+    }
+
+    @Test
+    public void concurrentStartsLeaveOneTask() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> starters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread starter = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                scheduler.scheduleAtFixedRate("steps", runs::incrementAndGet, 50, 50, TimeUnit.MILLISECONDS);
+            });
+            starter.start();
+            starters.add(starter);
+        }
+        go.countDown();
+        for (Thread starter : starters) {
+            starter.join(1000);
+        }
+        // One task at 50 ms runs about 10 times in half a second; eight would run about 80
+        Thread.sleep(500);
+        int counted = runs.get();
+        assertTrue("ran " + counted + " times", counted >= 5 && counted <= 12);
+
+        scheduler.cancelAll();
+        assertFalse(scheduler.isScheduled("steps"));
+        // Cancelled timers leave the queue at once
+        assertEquals(0, ((ScheduledThreadPoolExecutor) scheduler.executor()).getQueue().size());
+    }
+
+    @Test
+    public void oneOffWorkReportsFailures() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        scheduler.execute("getHistory", () -> {
+            throw new IllegalArgumentException("bad range");
+        });
+        scheduler.execute("getHistory", ran::countDown);
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        String error = errors.poll(1, TimeUnit.SECONDS);
+        assertNotNull(error);
+        assertEquals("getHistory: bad range", error);
+    }
+
+    private static void awaitAtLeast(AtomicInteger counter, int value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (counter.get() < value && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("reached " + counter.get() + " of " + value, counter.get() >= value);
+    }
+}
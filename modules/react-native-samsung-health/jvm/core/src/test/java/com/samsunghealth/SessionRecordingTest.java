@@ -0,0 +1,128 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionRecordingTest {
+
+    private static final long START = 1_710_028_800_000L;
+    private static final int ECG_RATE = 500;
+
+    @Test
+    public void readsBackWhatWasRecorded() throws IOException {
+        SessionRecording recording = SessionRecording.read(new ByteArrayInputStream(record()));
+        assertFalse(recording.isTruncated());
+        assertEquals(START, recording.getStartMillis());
+        assertEquals(Arrays.asList("heart_rate", SessionRecording.ECG_STREAM, "spo2"), recording.getStreamNames());
+
+        SessionRecording.Stream heartRate = recording.getStream("heart_rate");
+        assertFalse(heartRate.isSamples());
+        assertEquals(3, heartRate.size());
+        // Out of order by a few ms, as threads record
+        assertEquals(START + 1000, heartRate.timestampAt(0));
+        assertEquals(START + 1995, heartRate.timestampAt(1));
+        assertEquals(START + 3000, heartRate.timestampAt(2));
+        assertEquals(72.5f, heartRate.valueAt(1), 0f);
+        int[] intervals = heartRate.intervals();
+        assertArrayEquals(new int[] {820, 815}, Arrays.copyOfRange(intervals,
+            heartRate.intervalsStart(1), heartRate.intervalsEnd(1)));
+        assertEquals(heartRate.intervalsStart(2), heartRate.intervalsEnd(2));
+
+        SessionRecording.Stream ecg = recording.getStream(SessionRecording.ECG_STREAM);
+        assertTrue(ecg.isSamples());
+        assertEquals(ECG_RATE, ecg.getSampleRate());
+        assertEquals(2, ecg.size());
+        float[] expected = ecgSamples();
+        assertEquals(expected.length, ecg.sampleCount());
+        // Bit-exact, including values that do not survive a decimal round trip
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Float.floatToRawIntBits(expected[i]), Float.floatToRawIntBits(ecg.samples()[i]));
+        }
+        assertNull(recording.getStream("steps"));
+    }
+
+    @Test
+    public void everyTornTailReadsAsAPrefix() throws IOException {
+        byte[] full = record();
+        SessionRecording complete = SessionRecording.read(new ByteArrayInputStream(full));
+        for (int length = SessionRecording.HEADER_BYTES; length < full.length; length++) {
+            SessionRecording torn = SessionRecording.read(new ByteArrayInputStream(Arrays.copyOf(full, length)));
+            for (String name : torn.getStreamNames()) {
+                SessionRecording.Stream part = torn.getStream(name);
+                SessionRecording.Stream whole = complete.getStream(name);
+                assertTrue(name + " at " + length, part.size() <= whole.size());
+                for (int i = 0; i < part.size(); i++) {
+                    assertEquals(whole.timestampAt(i), part.timestampAt(i));
+                    assertEquals(whole.valueAt(i), part.valueAt(i), 0f);
+                    assertEquals(whole.intervalsEnd(i), part.intervalsEnd(i));
+                }
+                for (int i = 0; part.isSamples() && i < part.sampleCount(); i++) {
+                    assertEquals(whole.samples()[i], part.samples()[i], 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        try {
+            SessionRecording.read(new ByteArrayInputStream(new byte[] {'{', '"', 'a', '"', ':', '1', '}'}));
+            fail("read a file that is not a recording");
+        } catch (IOException expected) {
+            // not a session recording
+        }
+    }
+
+    static byte[] record() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SessionRecorder recorder = new SessionRecorder(bytes, START);
+        SensorReading reading = new SensorReading();
+        reading.set(START + 1000, 71f);
+        reading.addInterval(845);
+        recorder.recordReading("heart_rate", reading);
+
+        float[] ecg = ecgSamples();
+        recorder.recordSamples(SessionRecording.ECG_STREAM, ECG_RATE, START + 1010, ecg, 0, 10);
+
+        reading.clear();
+        reading.set(START + 1995, 72.5f);
+        reading.addInterval(820);
+        reading.addInterval(815);
+        recorder.recordReading("heart_rate", reading);
+
+        recorder.recordSamples(SessionRecording.ECG_STREAM, ECG_RATE, START + 1030, ecg, 10, ecg.length - 10);
+
+        reading.clear();
+        reading.set(START + 2500, 97f);
+        recorder.recordReading("spo2", reading);
+
+        reading.clear();
+        reading.set(START + 3000, 74f);
+        recorder.recordReading("heart_rate", reading);
+        recorder.close();
+        assertNull(recorder.getError());
+        assertEquals(6, recorder.getRecordCount());
+        return bytes.toByteArray();
+    }
+
+    static float[] ecgSamples() {
+        float[] samples = new float[25];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (1000 * Math.sin(i / 3.0)) + 0.1f * i;
+        }
+        samples[7] = -0f;
+        samples[8] = Float.MIN_VALUE;
+        return samples;
+    }
+}
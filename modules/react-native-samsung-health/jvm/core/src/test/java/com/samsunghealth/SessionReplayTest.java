@@ -0,0 +1,85 @@
+package com.samsunghealth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionReplayTest {
+
+    @Test
+    public void fastReplayHandsOverEveryReadingInOrder() throws IOException {
+        SessionReplay replay = new SessionReplay(recording(), SessionReplay.AS_FAST_AS_POSSIBLE);
+        assertEquals(Arrays.asList("heart_rate", "spo2"), replay.getMetrics());
+        SensorSource heartRate = replay.source("heart_rate");
+        assertEquals(1, heartRate.getPeriodMillis());
+        assertNull(replay.source("steps"));
+
+        SensorReading reading = new SensorReading();
+        long[] timestamps = new long[3];
+        for (int i = 0; i < 3; i++) {
+            assertTrue(heartRate.read(System.currentTimeMillis(), reading));
+            timestamps[i] = reading.getTimestamp();
+            if (i == 1) {
+                assertEquals(72.5f, reading.getValue(), 0f);
+                assertArrayEquals(new int[] {820, 815}, Arrays.copyOf(reading.getIntervals(), reading.getIntervalCount()));
+            }
+        }
+        assertFalse(heartRate.read(System.currentTimeMillis(), reading));
+        // Shifted to the replay's start, recorded spacing kept
+        assertEquals(995, timestamps[1] - timestamps[0]);
+        assertEquals(1005, timestamps[2] - timestamps[1]);
+        assertFalse(replay.isFinished());
+        assertTrue(replay.source("spo2").read(System.currentTimeMillis(), reading));
+    }
+
+    @Test
+    public void fastEcgReplayNeverOverflowsTheRing() throws Exception {
+        SessionReplay replay = new SessionReplay(recording(), SessionReplay.AS_FAST_AS_POSSIBLE);
+        EcgSampleSource ecg = replay.ecgSource();
+        assertEquals(500, ecg.getSampleRate());
+        // Smaller than the recording, so the replay has to wait for the consumer
+        SampleRingBuffer ring = new SampleRingBuffer(8);
+        float[] expected = SessionRecordingTest.ecgSamples();
+        float[] received = new float[expected.length];
+        int count = 0;
+        ecg.start(ring);
+        try {
+            long deadline = System.nanoTime() + 2_000_000_000L;
+            while (count < expected.length && System.nanoTime() < deadline) {
+                count += ring.drain(received, count, expected.length - count);
+                Thread.sleep(1);
+            }
+        } finally {
+            ecg.stop();
+        }
+        assertEquals(expected.length, count);
+        assertArrayEquals(expected, received, 0f);
+        assertEquals(0, ring.getOverflowCount());
+    }
+
+    @Test
+    public void timedReplayWaitsForEachReading() throws Exception {
+        // Ten times faster: the first reading, 1 s into the recording, is due after 100 ms
+        SessionReplay replay = new SessionReplay(recording(), 10);
+        SensorSource heartRate = replay.source("heart_rate");
+        assertEquals(100, heartRate.getPeriodMillis());
+        SensorReading reading = new SensorReading();
+        assertFalse(heartRate.read(System.currentTimeMillis(), reading));
+        Thread.sleep(150);
+        assertTrue(heartRate.read(System.currentTimeMillis(), reading));
+        assertEquals(71f, reading.getValue(), 0f);
+        assertFalse(heartRate.read(System.currentTimeMillis(), reading));
+    }
+
+    private static SessionRecording recording() throws IOException {
+        return SessionRecording.read(new ByteArrayInputStream(SessionRecordingTest.record()));
+    }
+}
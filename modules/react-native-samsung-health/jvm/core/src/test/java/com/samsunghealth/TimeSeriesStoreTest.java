@@ -0,0 +1,204 @@
+package com.samsunghealth;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimeSeriesStoreTest {
+
+    private static final String METRIC = "heart_rate";
+    // 2024-03-10T00:00:00Z
+    private static final long DAY = 19792 * TimeSeriesStore.DAY_MILLIS;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reloadsFlushedSamples() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        appendMinutes(store, 0, 100);
+        appendMinutes(store, 24 * 60, 10);
+        store.flush();
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertEquals(110, reloaded.getSampleCount(METRIC));
+        SeriesSlice slice = new SeriesSlice(16);
+        assertEquals(100, reloaded.query(METRIC, DAY, DAY + TimeSeriesStore.DAY_MILLIS, slice));
+        assertEquals(DAY + 99 * 60_000L, slice.timestampAt(99));
+        assertEquals(60 + 99 % 40, slice.valueAt(99), 0f);
+    }
+
+    @Test
+    public void tornTailIsDroppedAndAppendsStayReadable() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        appendMinutes(store, 0, 50);
+        store.flush();
+
+        // Process death mid-record: a varint continuation byte and half a float
+        File segment = segmentFile(root);
+        long written = segment.length();
+        appendBytes(segment, new byte[] {(byte) 0x85, 0x01, 0x00});
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertEquals(50, reloaded.getSampleCount(METRIC));
+        assertEquals(written, segment.length());
+        appendMinutes(reloaded, 50, 10);
+        reloaded.flush();
+
+        assertEquals(60, new TimeSeriesStore(root).getSampleCount(METRIC));
+    }
+
+    @Test
+    public void unreadableHeaderIsMovedAsideNotTruncated() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        appendMinutes(store, 0, 50);
+        store.flush();
+
+        File segment = segmentFile(root);
+        long length = segment.length();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.writeInt(0xDEADBEEF);
+        } finally {
+            file.close();
+        }
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertEquals(0, reloaded.getSampleCount(METRIC));
+        assertEquals(1, reloaded.getRejectedCount(METRIC));
+        File corrupt = new File(segment.getPath() + ".corrupt");
+        assertTrue(corrupt.isFile());
+        assertEquals(length, corrupt.length());
+        assertFalse(segment.exists());
+
+        // The day starts over in a fresh file
+        appendMinutes(reloaded, 100, 5);
+        reloaded.flush();
+        assertEquals(5, new TimeSeriesStore(root).getSampleCount(METRIC));
+        assertEquals(length, corrupt.length());
+    }
+
+    @Test
+    public void failedFlushKeepsRecordsForTheNextOne() throws IOException {
+        File root = folder.getRoot();
+        // A file where the metric directory should go makes the flush fail
+        File blocker = new File(root, METRIC);
+        assertTrue(blocker.createNewFile());
+
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        appendMinutes(store, 0, 30);
+        try {
+            store.flush();
+            fail("flush should fail while the directory cannot be created");
+        } catch (IOException expected) {
+            // records stay buffered
+        }
+        appendMinutes(store, 30, 20);
+        assertTrue(blocker.delete());
+        store.flush();
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertEquals(50, reloaded.getSampleCount(METRIC));
+        assertEquals(0, reloaded.getRejectedCount(METRIC));
+        SeriesSlice slice = new SeriesSlice(64);
+        reloaded.query(METRIC, DAY, DAY + TimeSeriesStore.DAY_MILLIS, slice);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(DAY + i * 60_000L, slice.timestampAt(i));
+        }
+    }
+
+    @Test
+    public void realSamplesReplaceASimulatedDay() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        assertTrue(store.appendSimulatedDay(METRIC, DAY, simulatedDay(10)));
+        assertFalse(store.appendSimulatedDay(METRIC, DAY, simulatedDay(3)));
+        store.flush();
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertTrue(reloaded.isSimulated(METRIC, DAY));
+        assertEquals(10, reloaded.getSampleCount(METRIC));
+        // Earlier than every simulated sample, which would be rejected if they were still there
+        assertTrue(reloaded.append(METRIC, DAY + 60_000L, 88));
+        assertFalse(reloaded.isSimulated(METRIC, DAY));
+        assertEquals(1, reloaded.getSampleCount(METRIC));
+        RollupBuckets day = new RollupBuckets();
+        reloaded.aggregate(METRIC, DAY, DAY + TimeSeriesStore.DAY_MILLIS, TimeSeriesStore.DAY_MILLIS, day);
+        assertEquals(1, day.countAt(0));
+        reloaded.flush();
+
+        TimeSeriesStore again = new TimeSeriesStore(root);
+        assertFalse(again.isSimulated(METRIC, DAY));
+        assertEquals(1, again.getSampleCount(METRIC));
+        assertEquals(0, again.getRejectedCount(METRIC));
+        assertFalse(again.appendSimulatedDay(METRIC, DAY, simulatedDay(10)));
+        assertFalse(new File(new File(root, METRIC), (DAY / TimeSeriesStore.DAY_MILLIS) + ".sim").exists());
+    }
+
+    @Test
+    public void simulatedDayReplacedBeforeItsFlushNeverReachesDisk() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        store.appendSimulatedDay(METRIC, DAY, simulatedDay(10));
+        appendMinutes(store, 0, 5);
+        store.flush();
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertFalse(reloaded.isSimulated(METRIC, DAY));
+        assertEquals(5, reloaded.getSampleCount(METRIC));
+    }
+
+    @Test
+    public void emptySimulatedDayIsRemembered() throws IOException {
+        File root = folder.getRoot();
+        TimeSeriesStore store = new TimeSeriesStore(root);
+        assertTrue(store.appendSimulatedDay(METRIC, DAY, new SeriesSlice()));
+        store.flush();
+
+        TimeSeriesStore reloaded = new TimeSeriesStore(root);
+        assertTrue(reloaded.isSimulated(METRIC, DAY));
+        assertFalse(reloaded.hasDay(METRIC, DAY));
+        assertFalse(reloaded.appendSimulatedDay(METRIC, DAY, simulatedDay(4)));
+        assertEquals(0, reloaded.getSampleCount(METRIC));
+    }
+
+    private static SeriesSlice simulatedDay(int count) {
+        SeriesSlice samples = new SeriesSlice(count);
+        for (int i = 0; i < count; i++) {
+            samples.add(DAY + (i + 2) * 3_600_000L, 70 + i);
+        }
+        return samples;
+    }
+
+    private static void appendMinutes(TimeSeriesStore store, int firstMinute, int count) {
+        for (int i = firstMinute; i < firstMinute + count; i++) {
+            assertTrue(store.append(METRIC, DAY + i * 60_000L, 60 + i % 40));
+        }
+    }
+
+    private static File segmentFile(File root) {
+        return new File(new File(root, METRIC), (DAY / TimeSeriesStore.DAY_MILLIS) + ".seg");
+    }
+
+    private static void appendBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
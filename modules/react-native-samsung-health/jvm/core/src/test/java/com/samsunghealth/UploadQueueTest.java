@@ -0,0 +1,240 @@
+package com.samsunghealth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadQueueTest {
+
+    private static final class Sent {
+        final List<String> records;
+        final long firstSequence;
+        final String thread;
+
+        Sent(List<String> records, long firstSequence, String thread) {
+            this.records = records;
+            this.firstSequence = firstSequence;
+            this.thread = thread;
+        }
+    }
+
+    // Records what it is sent and answers from a script; DELIVERED once the script runs out
+    private static final class FakeUploader implements UploadQueue.Uploader {
+        final LinkedBlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+        final List<UploadQueue.Result> script = Collections.synchronizedList(new ArrayList<UploadQueue.Result>());
+        volatile CountDownLatch gate;
+
+        @Override
+        public UploadQueue.Result upload(byte[] gzipBody, long firstSequence, int count) throws IOException {
+            List<String> records = Arrays.asList(gunzip(gzipBody).split("\n"));
+            assertEquals(count, records.size());
+            sent.add(new Sent(records, firstSequence, Thread.currentThread().getName()));
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return script.isEmpty() ? UploadQueue.Result.DELIVERED : script.remove(0);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScheduledThreadPoolExecutor timers;
+
+    @Before
+    public void setUp() {
+        timers = new ScheduledThreadPoolExecutor(1);
+        timers.setRemoveOnCancelPolicy(true);
+    }
+
+    @After
+    public void tearDown() {
+        timers.shutdownNow();
+    }
+
+    @Test
+    public void replaysStagedRecordsAfterRestart() throws Exception {
+        File root = folder.getRoot();
+        FakeUploader first = new FakeUploader();
+        UploadQueue queue = open(root, 100, first);
+        queue.enqueue("a");
+        queue.enqueue("b");
+        queue.enqueue("c");
+        queue.close();
+        assertNull(first.sent.poll(100, TimeUnit.MILLISECONDS));
+
+        // Process death halfway through the next journal frame
+        appendBytes(new File(root, "staging.journal"), new byte[] {5, 0, 0, 0, 1, 2});
+
+        FakeUploader second = new FakeUploader();
+        UploadQueue reopened = open(root, 100, second);
+        Sent sent = second.sent.poll(2, TimeUnit.SECONDS);
+        assertNotNull("recovered records were not uploaded", sent);
+        assertEquals(Arrays.asList("a", "b", "c"), sent.records);
+        assertEquals(0, sent.firstSequence);
+        awaitDelivered(reopened, 3);
+        assertEquals(0, reopened.getStats()[1]);
+
+        reopened.enqueue("d");
+        reopened.flush();
+        assertEquals(3, second.sent.poll(2, TimeUnit.SECONDS).firstSequence);
+        reopened.close();
+    }
+
+    @Test
+    public void deliveredChunksAreNotSentAgainAfterRestart() throws Exception {
+        File root = folder.getRoot();
+        FakeUploader first = new FakeUploader();
+        UploadQueue queue = open(root, 2, first);
+        queue.enqueue("a");
+        queue.enqueue("b");
+        assertNotNull(first.sent.poll(2, TimeUnit.SECONDS));
+        awaitDelivered(queue, 2);
+        queue.close();
+
+        FakeUploader second = new FakeUploader();
+        UploadQueue reopened = open(root, 2, second);
+        reopened.flush();
+        assertNull("delivered chunk sent twice", second.sent.poll(200, TimeUnit.MILLISECONDS));
+        reopened.enqueue("c");
+        reopened.enqueue("d");
+        Sent sent = second.sent.poll(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("c", "d"), sent.records);
+        assertEquals(2, sent.firstSequence);
+        reopened.close();
+    }
+
+    @Test
+    public void tornChunkIsTruncatedAndEarlierChunksSurvive() throws Exception {
+        File root = folder.getRoot();
+        FakeUploader offline = new FakeUploader();
+        for (int i = 0; i < 10; i++) {
+            offline.script.add(UploadQueue.Result.RETRY);
+        }
+        UploadQueue queue = open(root, 2, offline);
+        queue.enqueue("a");
+        queue.enqueue("b");
+        assertNotNull(offline.sent.poll(2, TimeUnit.SECONDS));
+        queue.close();
+
+        File[] logs = root.listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, logs.length);
+        long length = logs[0].length();
+        // A chunk header claiming more body than made it to disk
+        appendBytes(logs[0], new byte[] {(byte) 0xFF, 0, 0, 0, 1, 2, 3, 4, 2, 0, 0});
+
+        FakeUploader online = new FakeUploader();
+        UploadQueue reopened = open(root, 2, online);
+        assertEquals(length, logs[0].length());
+        reopened.flush();
+        Sent sent = online.sent.poll(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("a", "b"), sent.records);
+        reopened.enqueue("c");
+        reopened.enqueue("d");
+        assertEquals(2, online.sent.poll(2, TimeUnit.SECONDS).firstSequence);
+        reopened.close();
+    }
+
+    @Test
+    public void retriesWithBackoffUntilDelivered() throws Exception {
+        FakeUploader uploader = new FakeUploader();
+        uploader.script.add(UploadQueue.Result.RETRY);
+        uploader.script.add(UploadQueue.Result.RETRY);
+        UploadQueue queue = open(folder.getRoot(), 1, uploader);
+        queue.enqueue("a");
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Sent sent = uploader.sent.poll(2, TimeUnit.SECONDS);
+            assertNotNull("attempt " + attempt + " never came", sent);
+            assertEquals(Arrays.asList("a"), sent.records);
+        }
+        awaitDelivered(queue, 1);
+        long[] stats = queue.getStats();
+        assertEquals(2, stats[7]);
+        assertEquals(0, stats[8]);
+        assertEquals(0, stats[0]);
+        queue.close();
+    }
+
+    @Test
+    public void blockedUploadDoesNotHoldTheSharedExecutor() throws Exception {
+        FakeUploader uploader = new FakeUploader();
+        uploader.gate = new CountDownLatch(1);
+        UploadQueue queue = open(folder.getRoot(), 1, uploader);
+        queue.enqueue("a");
+        Sent sent = uploader.sent.poll(2, TimeUnit.SECONDS);
+        assertNotNull(sent);
+        assertEquals("upload-queue-drain", sent.thread);
+
+        // The upload hangs on the network; the shared executor still runs other work
+        final CountDownLatch ran = new CountDownLatch(1);
+        timers.execute(ran::countDown);
+        assertTrue("shared executor blocked by an upload", ran.await(1, TimeUnit.SECONDS));
+
+        uploader.gate.countDown();
+        awaitDelivered(queue, 1);
+        queue.close();
+    }
+
+    private UploadQueue open(File root, int batch, FakeUploader uploader) throws IOException {
+        UploadQueue.Policy policy = new UploadQueue.Policy(batch, 60_000, 1 << 20, 8 << 20, 20, 40);
+        return new UploadQueue(root, policy, uploader, timers);
+    }
+
+    private static void awaitDelivered(UploadQueue queue, long records) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (queue.getStats()[3] < records && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(records, queue.getStats()[3]);
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void appendBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.samsunghealth.jvm;
+
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.MappedWeightFile;
+import com.samsunghealth.QuantizedEcgEngine;
+import com.samsunghealth.QuantizedEcgWeights;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EcgQuantizationToolTest {
+
+    // Per class, in the model's class order; Fusion beats sit between two classes, so a few flip
+    private static final double[] MIN_AGREEMENT = {1.0, 1.0, 1.0, 0.8, 1.0};
+
+    private static File models;
+    private static EcgModelWeights weights;
+    private static EcgQuantizationTool.Windows windows;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        models = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+        weights = EcgModelWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights.bin")));
+        windows = EcgQuantizationTool.simulatedWindows(weights.inputLength,
+            EcgQuantizationTool.SIMULATION_SEED);
+    }
+
+    @Test
+    public void shippedModelIsReproducible() throws IOException {
+        List<float[]> calibration = new ArrayList<>();
+        for (int i = 0; i < windows.samples.size(); i += 2) {
+            calibration.add(windows.samples.get(i));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EcgQuantizationTool.quantize(weights, calibration, QuantizedEcgWeights.DEFAULT_PERCENTILE, out);
+        byte[] shipped = Files.readAllBytes(new File(models, "ekg_weights_int8.bin").toPath());
+        assertArrayEquals("ekg_weights_int8.bin is stale; run gradle :core:quantizeEcgModel", shipped, out.toByteArray());
+    }
+
+    @Test
+    public void simulationCoversEveryClass() {
+        int[] perLabel = new int[new EcgInferenceEngine(weights).getClassCount()];
+        for (int label : windows.labels) {
+            perLabel[label]++;
+        }
+        for (int c = 0; c < perLabel.length; c++) {
+            assertTrue("no windows labeled " + c, perLabel[c] >= 50);
+        }
+        assertEquals(windows.labels.size(), windows.samples.size());
+    }
+
+    @Test
+    public void int8AgreesWithFloatOnEveryLabel() throws IOException {
+        EcgInferenceEngine reference = new EcgInferenceEngine(weights);
+        QuantizedEcgEngine quantized = new QuantizedEcgEngine(
+            QuantizedEcgWeights.fromBinary(MappedWeightFile.map(new File(models, "ekg_weights_int8.bin"))));
+        int classes = reference.getClassCount();
+        int[] total = new int[classes];
+        int[] agreed = new int[classes];
+        float[] expected = new float[classes];
+        float[] actual = new float[classes];
+        for (int i = 1; i < windows.samples.size(); i += 2) {
+            float[] window = windows.samples.get(i);
+            int label = windows.labels.get(i);
+            total[label]++;
+            if (reference.classify(window, 0, expected) == quantized.classify(window, 0, actual)) {
+                agreed[label]++;
+            }
+        }
+        // The set is seeded and the shipped model fixed, so these are the rates the tool reports:
+        // Normal 359/359, Supraventricular 39/39, Ventricular 43/43, Fusion 35/43, Unknown 73/73
+        assertEquals(MIN_AGREEMENT.length, classes);
+        int allAgreed = 0;
+        int all = 0;
+        for (int c = 0; c < classes; c++) {
+            assertTrue(reference.getClassName(c) + ": " + agreed[c] + "/" + total[c],
+                agreed[c] >= MIN_AGREEMENT[c] * total[c]);
+            allAgreed += agreed[c];
+            all += total[c];
+        }
+        assertTrue("overall: " + allAgreed + "/" + all, allAgreed >= 0.98 * all);
+    }
+}
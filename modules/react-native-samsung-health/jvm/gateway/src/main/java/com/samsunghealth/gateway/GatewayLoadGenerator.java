@@ -0,0 +1,236 @@
+package com.samsunghealth.gateway;
+
+import com.samsunghealth.ColumnarEncoder;
+import com.samsunghealth.HealthSession;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.LatencyHistogram;
+import com.samsunghealth.SensorReading;
+import com.samsunghealth.SeriesSlice;
+import com.samsunghealth.SimulatedSensors;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays module-style sensor streams from many simulated devices against an
+ * {@link IngestionGateway} and reports throughput and latency.
+ *
+ * Every device runs the module's simulated heart rate source at 1 Hz and uploads what it
+ * read since the last upload as one columnar batch, plus an occasional SpO2 reading. A
+ * dashboard subscriber on /v1/live measures the time from a sample's timestamp to its live
+ * update. Without a URL an embedded gateway is started in the same JVM.
+ *
+ * Arguments: {@code [patients] [seconds] [uploadIntervalMillis] [url]}.
+ */
+public final class GatewayLoadGenerator {
+
+    private static final int SPO2_EVERY_UPLOADS = 12;
+
+    private final String baseUrl;
+    private final long uploadIntervalMillis;
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong liveUpdates = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+    private final ThreadLocal<ColumnarEncoder> encoders = new ThreadLocal<ColumnarEncoder>() {
+        @Override
+        protected ColumnarEncoder initialValue() {
+            return new ColumnarEncoder(256);
+        }
+    };
+
+    private GatewayLoadGenerator(String baseUrl, long uploadIntervalMillis) {
+        this.baseUrl = baseUrl;
+        this.uploadIntervalMillis = uploadIntervalMillis;
+    }
+
+    /** One simulated wearer; its uploads never overlap, so it needs no locking. */
+    private final class Device implements Runnable {
+        final String patientId;
+        final SimulatedSensors.HeartRate heartRate;
+        final SensorReading reading = new SensorReading();
+        final SeriesSlice batch = new SeriesSlice(16);
+        long uploadCount;
+
+        Device(String patientId, long seed) {
+            this.patientId = patientId;
+            this.heartRate = new SimulatedSensors.HeartRate(seed, 1000);
+        }
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            int rows = (int) Math.max(1, uploadIntervalMillis / 1000);
+            batch.clear();
+            for (int i = rows - 1; i >= 0; i--) {
+                heartRate.read(now - i * 1000L, reading);
+                batch.add(reading.getTimestamp(), reading.getValue());
+            }
+            upload(HealthSession.METRIC_HEART_RATE);
+            if (++uploadCount % SPO2_EVERY_UPLOADS == 0) {
+                batch.clear();
+                batch.add(now, 95 + (int) (uploadCount % 5));
+                upload(HealthSession.METRIC_SPO2);
+            }
+        }
+
+        private void upload(String metric) {
+            byte[] payload = encoders.get().reset()
+                .addTimestamps("timestamp", batch.timestamps(), batch.size())
+                .addRoundedInts("value", batch.values(), batch.size())
+                .finish();
+            long started = System.nanoTime();
+            try {
+                int status = post(baseUrl + "/v1/patients/" + patientId + "/samples/" + metric, payload);
+                requestLatency.recordNanos(System.nanoTime() - started);
+                if (status == 202) {
+                    uploads.incrementAndGet();
+                    samples.addAndGet(batch.size());
+                } else if (status == 503) {
+                    rejected.incrementAndGet();
+                } else {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static int post(String url, byte[] payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(10_000);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        // Buffered (not streaming) mode sends headers and body in one write, avoiding a Nagle stall
+        OutputStream out = connection.getOutputStream();
+        out.write(payload);
+        out.close();
+        int status = connection.getResponseCode();
+        // Drain the body so the connection goes back to the keep-alive pool
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+            in.close();
+        }
+        return status;
+    }
+
+    // Dashboard stand-in: follows every live update and measures its age on arrival
+    private void followLive() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/v1/live").openConnection();
+            connection.setReadTimeout(0);
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("data: ")) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                int index = 0;
+                while ((index = line.indexOf("\"timestamp\":", index)) >= 0) {
+                    index += "\"timestamp\":".length();
+                    int end = index;
+                    while (end < line.length() && line.charAt(end) != ',' && line.charAt(end) != '}') {
+                        end++;
+                    }
+                    long timestamp = (long) Double.parseDouble(line.substring(index, end));
+                    endToEndLatency.recordNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - timestamp)));
+                    liveUpdates.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            // Gateway stopped
+        }
+    }
+
+    private void printProgress(long elapsedSeconds, long uploadsPerSecond) {
+        System.out.printf(Locale.US,
+            "%4ds  uploads/s %6d  request p50 %6.1f ms p99 %7.1f ms  rejected %d  errors %d  live p99 %6.1f ms%n",
+            elapsedSeconds, uploadsPerSecond, requestLatency.percentileMicros(0.5) / 1000.0,
+            requestLatency.percentileMicros(0.99) / 1000.0, rejected.get(), errors.get(),
+            endToEndLatency.percentileMicros(0.99) / 1000.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        long uploadInterval = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+        String url = args.length > 3 ? args[3] : null;
+        int clientThreads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+        // The JDK keeps only 5 idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(clientThreads));
+
+        IngestionGateway gateway = null;
+        if (url == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            gateway = new IngestionGateway(0, Math.max(2, cores / 2), 4096, Math.max(4, cores), 250);
+            gateway.start();
+            url = "http://127.0.0.1:" + gateway.getPort();
+        }
+        final GatewayLoadGenerator generator = new GatewayLoadGenerator(url, uploadInterval);
+        System.out.printf(Locale.US, "%d devices uploading every %d ms to %s%n", patients, uploadInterval, url);
+
+        Thread live = new Thread(generator::followLive, "live-subscriber");
+        live.setDaemon(true);
+        live.start();
+
+        ScheduledThreadPoolExecutor devices = new ScheduledThreadPoolExecutor(clientThreads);
+        for (int i = 0; i < patients; i++) {
+            // Spread devices evenly over the upload interval
+            long initialDelay = uploadInterval * i / patients;
+            devices.scheduleAtFixedRate(generator.new Device("patient-" + i, i), initialDelay, uploadInterval,
+                TimeUnit.MILLISECONDS);
+        }
+
+        long previousUploads = 0;
+        int previousSecond = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            if (second % 10 == 0 || second == seconds) {
+                long total = generator.uploads.get();
+                generator.printProgress(second, (total - previousUploads) / (second - previousSecond));
+                previousUploads = total;
+                previousSecond = second;
+            }
+        }
+        devices.shutdownNow();
+        devices.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.printf(Locale.US, "Uploads %d (%d samples), rejected %d, errors %d%n", generator.uploads.get(),
+            generator.samples.get(), generator.rejected.get(), generator.errors.get());
+        System.out.printf(Locale.US, "Request latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+            generator.requestLatency.percentileMicros(0.5) / 1000.0,
+            generator.requestLatency.percentileMicros(0.99) / 1000.0,
+            generator.requestLatency.percentileMicros(1.0) / 1000.0);
+        System.out.printf(Locale.US, "Live updates %d, sample-to-dashboard p50 %.1f ms, p99 %.1f ms%n",
+            generator.liveUpdates.get(), generator.endToEndLatency.percentileMicros(0.5) / 1000.0,
+            generator.endToEndLatency.percentileMicros(0.99) / 1000.0);
+        if (gateway != null) {
+            System.out.println("Gateway " + JsonSerializer.toJson(gateway.getStats()));
+            gateway.stop();
+        }
+    }
+}
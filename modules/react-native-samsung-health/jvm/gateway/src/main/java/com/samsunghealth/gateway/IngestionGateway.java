@@ -0,0 +1,289 @@
+package com.samsunghealth.gateway;
+
+import com.samsunghealth.ColumnarDecoder;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.LatencyHistogram;
+import com.samsunghealth.MapPayloadWriter;
+import com.samsunghealth.SeriesSlice;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Server-side ingestion of sensor batches from many devices, for clinician dashboards.
+ *
+ * Devices upload the same columnar payloads the module hands to JS ({@code ColumnarEncoder},
+ * columns "timestamp" and "value"), one metric per request:
+ * <pre>
+ *   POST /v1/patients/{patientId}/samples/{metric}   columnar body -> 202 {"accepted": n}
+ *   GET  /v1/patients/{patientId}/{metric}           latest value, range and recent samples
+ *   GET  /v1/live[?patients=a,b]                     server-sent events, coalesced per series
+ *   GET  /v1/stats                                   counters and apply latency percentiles
+ * </pre>
+ * HTTP threads only decode; batches are applied by {@link ShardedIngestor} workers, sharded
+ * by patient. A saturated shard answers 503 with Retry-After rather than queueing.
+ */
+public final class IngestionGateway {
+
+    public static final int DEFAULT_PORT = 8787;
+
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final long SNAPSHOT_TIMEOUT_MS = 1000;
+    private static final Pattern SAMPLES_PATH = Pattern.compile("/v1/patients/([A-Za-z0-9_.-]{1,64})/samples/([A-Za-z0-9_]{1,32})");
+    private static final Pattern SERIES_PATH = Pattern.compile("/v1/patients/([A-Za-z0-9_.-]{1,64})/([A-Za-z0-9_]{1,32})");
+
+    private final int requestedPort;
+    private final ShardedIngestor ingestor;
+    private final LiveFanout fanout;
+    private final ThreadPoolExecutor httpExecutor;
+    private HttpServer server;
+
+    /**
+     * @param port          0 for any free port
+     * @param shards        ingest worker threads
+     * @param queueCapacity batches each shard may hold before uploads are refused
+     * @param httpThreads   threads decoding requests
+     */
+    public IngestionGateway(int port, int shards, int queueCapacity, int httpThreads, long fanoutIntervalMillis) {
+        this.requestedPort = port;
+        this.fanout = new LiveFanout(fanoutIntervalMillis);
+        this.ingestor = new ShardedIngestor(shards, queueCapacity, fanout);
+        final AtomicInteger threadCount = new AtomicInteger();
+        // Bounded hand-off; when it is full the accepting thread decodes, which slows accepts down
+        this.httpExecutor = new ThreadPoolExecutor(httpThreads, httpThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(httpThreads * 64), runnable -> {
+                Thread thread = new Thread(runnable, "gateway-http-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public synchronized void start() throws IOException {
+        // Small JSON replies otherwise wait on delayed ACKs; read once, when the server classes load
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(requestedPort), 1024);
+        server.createContext("/v1/patients/", this::handlePatients);
+        server.createContext("/v1/live", this::handleLive);
+        server.createContext("/v1/stats", this::handleStats);
+        server.setExecutor(httpExecutor);
+        ingestor.start();
+        fanout.start();
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        fanout.stop();
+        ingestor.stop();
+        httpExecutor.shutdownNow();
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /** Counters and latency percentiles, as served on /v1/stats. */
+    public Map<String, Object> getStats() {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        LatencyHistogram latency = ingestor.getApplyLatency();
+        Map<String, Object> stats = w.createMap();
+        w.putInt(stats, "shards", ingestor.getShardCount());
+        w.putDouble(stats, "appliedBatches", ingestor.getAppliedBatches());
+        w.putDouble(stats, "appliedSamples", ingestor.getAppliedSamples());
+        w.putDouble(stats, "rejectedBatches", ingestor.getRejectedBatches());
+        w.putInt(stats, "queuedBatches", ingestor.getQueuedBatches());
+        w.putDouble(stats, "applyP50Micros", latency.percentileMicros(0.50));
+        w.putDouble(stats, "applyP99Micros", latency.percentileMicros(0.99));
+        w.putDouble(stats, "applyMaxMicros", latency.percentileMicros(1.0));
+        w.putInt(stats, "liveSubscribers", fanout.getSubscriberCount());
+        w.putDouble(stats, "liveEvents", fanout.getEventsSent());
+        w.putDouble(stats, "liveUpdates", fanout.getUpdatesSent());
+        return stats;
+    }
+
+    private void handlePatients(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Matcher samples = SAMPLES_PATH.matcher(path);
+            if (samples.matches()) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    respond(exchange, 405, error("Use POST"));
+                    return;
+                }
+                ingest(exchange, samples.group(1), samples.group(2));
+                return;
+            }
+            Matcher series = SERIES_PATH.matcher(path);
+            if (series.matches() && "GET".equals(exchange.getRequestMethod())) {
+                describe(exchange, series.group(1), series.group(2));
+                return;
+            }
+            respond(exchange, 404, error("Not found"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("Shutting down"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void ingest(HttpExchange exchange, String patientId, String metric) throws IOException {
+        byte[] body = readBody(exchange);
+        if (body == null) {
+            respond(exchange, 413, error("Batch larger than " + MAX_BODY_BYTES + " bytes"));
+            return;
+        }
+        SeriesSlice batch;
+        try {
+            ColumnarDecoder decoder = new ColumnarDecoder(body, 0, body.length);
+            batch = new SeriesSlice(Math.max(1, decoder.getRowCount()));
+            decoder.readSeries("timestamp", "value", batch);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        if (!ingestor.submit(patientId, metric, batch)) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, error("Ingest shard saturated"));
+            return;
+        }
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> result = w.createMap();
+        w.putInt(result, "accepted", batch.size());
+        respond(exchange, 202, result);
+    }
+
+    private void describe(HttpExchange exchange, String patientId, String metric)
+            throws IOException, InterruptedException {
+        ShardedIngestor.Snapshot snapshot = ingestor.snapshot(patientId, metric, SNAPSHOT_TIMEOUT_MS);
+        if (snapshot == null) {
+            respond(exchange, 503, error("Ingest shard busy"));
+            return;
+        }
+        if (snapshot.sampleCount == 0) {
+            respond(exchange, 404, error("No " + metric + " samples for " + patientId));
+            return;
+        }
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> result = w.createMap();
+        w.putString(result, "patientId", patientId);
+        w.putString(result, "metric", metric);
+        w.putDouble(result, "count", snapshot.sampleCount);
+        w.putDouble(result, "timestamp", snapshot.latestTimestamp);
+        w.putDouble(result, "value", snapshot.latestValue);
+        w.putDouble(result, "min", snapshot.min);
+        w.putDouble(result, "max", snapshot.max);
+        List<Object> timestamps = w.createArray();
+        List<Object> values = w.createArray();
+        for (int i = 0; i < snapshot.recent.size(); i++) {
+            w.pushDouble(timestamps, snapshot.recent.timestampAt(i));
+            w.pushDouble(values, snapshot.recent.valueAt(i));
+        }
+        w.putArray(result, "recentTimestamps", timestamps);
+        w.putArray(result, "recentValues", values);
+        respond(exchange, 200, result);
+    }
+
+    private void handleLive(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use GET"));
+            exchange.close();
+            return;
+        }
+        Set<String> patients = null;
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null && query.startsWith("patients=")) {
+            patients = new HashSet<>(Arrays.asList(query.substring("patients=".length()).split(",")));
+        }
+        // The exchange stays open; the fan-out thread writes to it from now on
+        fanout.subscribe(exchange, patients);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, getStats());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // null when the body exceeds MAX_BODY_BYTES
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        int length = 0;
+        byte[] body = new byte[declared != null ? Math.min(MAX_BODY_BYTES + 1, Math.max(0, parseInt(declared))) : 4096];
+        InputStream in = exchange.getRequestBody();
+        while (true) {
+            if (length == body.length) {
+                if (body.length > MAX_BODY_BYTES) {
+                    return null;
+                }
+                body = Arrays.copyOf(body, Math.min(MAX_BODY_BYTES + 1, Math.max(4096, body.length * 2)));
+            }
+            int read = in.read(body, length, body.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length > MAX_BODY_BYTES ? null : Arrays.copyOf(body, length);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> result = w.createMap();
+        w.putString(result, "error", message);
+        return result;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = JsonSerializer.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.flush();
+    }
+
+    /** Arguments: {@code [port] [shards] [queueCapacity] [httpThreads]}. */
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int shards = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(2, cores / 2);
+        int queueCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        int httpThreads = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(4, cores);
+        IngestionGateway gateway = new IngestionGateway(port, shards, queueCapacity, httpThreads, 250);
+        gateway.start();
+        System.out.println("Ingestion gateway listening on port " + gateway.getPort() + " with " + shards + " shards");
+        Thread.currentThread().join();
+    }
+}
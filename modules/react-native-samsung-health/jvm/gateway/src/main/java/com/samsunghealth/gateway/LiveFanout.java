@@ -0,0 +1,160 @@
+package com.samsunghealth.gateway;
+
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.MapPayloadWriter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes live patient updates to dashboard subscribers as server-sent events.
+ *
+ * Updates are coalesced per subscriber by patient and metric: a subscriber holds at most the
+ * latest update of each series it watches, and every flush interval those are written as one
+ * event. A slow dashboard therefore sees fewer, fresher updates instead of a growing backlog,
+ * and shard workers never block on a socket.
+ */
+final class LiveFanout implements ShardedIngestor.UpdateListener {
+
+    private static final long KEEP_ALIVE_MILLIS = 15_000;
+
+    private static final class Subscriber {
+        final HttpExchange exchange;
+        final OutputStream out;
+        final Set<String> patients; // null: every patient
+        final ConcurrentHashMap<String, String> pending = new ConcurrentHashMap<>();
+        long lastWrite = System.currentTimeMillis();
+
+        Subscriber(HttpExchange exchange, Set<String> patients) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            this.patients = patients;
+        }
+
+        boolean wants(String patientId) {
+            return patients == null || patients.contains(patientId);
+        }
+    }
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-fanout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long flushIntervalMillis;
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong updatesSent = new AtomicLong();
+
+    LiveFanout(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        flusher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.exchange.close();
+        }
+        subscribers.clear();
+    }
+
+    /** Takes over {@code exchange} as an event stream until the client goes away. */
+    void subscribe(HttpExchange exchange, Set<String> patients) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(exchange, patients);
+        subscriber.out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+        subscriber.out.flush();
+        subscribers.add(subscriber);
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    long getUpdatesSent() {
+        return updatesSent.get();
+    }
+
+    @Override
+    public void onUpdate(String patientId, String metric, ShardedIngestor.MetricState state) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String json = null;
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.wants(patientId)) {
+                continue;
+            }
+            if (json == null) {
+                json = toJson(patientId, metric, state);
+            }
+            subscriber.pending.put(patientId + '/' + metric, json);
+        }
+    }
+
+    private static String toJson(String patientId, String metric, ShardedIngestor.MetricState state) {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> update = w.createMap();
+        w.putString(update, "patientId", patientId);
+        w.putString(update, "metric", metric);
+        w.putDouble(update, "timestamp", state.latestTimestamp);
+        w.putDouble(update, "value", state.latestValue);
+        w.putDouble(update, "count", state.sampleCount);
+        w.putDouble(update, "min", state.min);
+        w.putDouble(update, "max", state.max);
+        return JsonSerializer.toJson(update);
+    }
+
+    private void flush() {
+        long now = System.currentTimeMillis();
+        StringBuilder event = new StringBuilder(4096);
+        for (Subscriber subscriber : subscribers) {
+            event.setLength(0);
+            int updates = 0;
+            for (Map.Entry<String, String> entry : subscriber.pending.entrySet()) {
+                // Only remove what is written; a newer update for the key stays queued
+                if (subscriber.pending.remove(entry.getKey(), entry.getValue())) {
+                    event.append(updates == 0 ? "data: [" : ",").append(entry.getValue());
+                    updates++;
+                }
+            }
+            try {
+                if (updates > 0) {
+                    event.append("]\n\n");
+                    subscriber.out.write(event.toString().getBytes(StandardCharsets.UTF_8));
+                    subscriber.out.flush();
+                    subscriber.lastWrite = now;
+                    eventsSent.incrementAndGet();
+                    updatesSent.addAndGet(updates);
+                } else if (now - subscriber.lastWrite >= KEEP_ALIVE_MILLIS) {
+                    subscriber.out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                    subscriber.out.flush();
+                    subscriber.lastWrite = now;
+                }
+            } catch (IOException e) {
+                subscribers.remove(subscriber);
+                subscriber.exchange.close();
+            }
+        }
+    }
+}
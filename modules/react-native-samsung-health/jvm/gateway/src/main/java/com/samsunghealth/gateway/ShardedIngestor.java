@@ -0,0 +1,276 @@
+package com.samsunghealth.gateway;
+
+import com.samsunghealth.LatencyHistogram;
+import com.samsunghealth.SeriesSlice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies uploaded batches to per-patient state on a fixed set of worker threads.
+ *
+ * Patients are sharded by a hash of their ID, so one patient's batches are always applied in
+ * arrival order by the same worker and patient state needs no locking. Each shard queue is
+ * bounded: when a shard is full {@link #submit} refuses the batch instead of queueing without
+ * limit, which keeps the time from upload to live update bounded under overload.
+ */
+final class ShardedIngestor {
+
+    /** Recent samples kept per patient and metric for dashboard sparklines. */
+    static final int RECENT_SAMPLES = 120;
+
+    interface UpdateListener {
+        /** Called on the shard's worker thread after a batch has been applied. */
+        void onUpdate(String patientId, String metric, MetricState state);
+    }
+
+    /** One patient's view of one metric; only touched by the owning shard's worker. */
+    static final class MetricState {
+        final long[] recentTimestamps = new long[RECENT_SAMPLES];
+        final float[] recentValues = new float[RECENT_SAMPLES];
+        int recentHead;
+        int recentCount;
+        long sampleCount;
+        long latestTimestamp = Long.MIN_VALUE;
+        float latestValue;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+
+        void add(long timestamp, float value) {
+            int slot = (recentHead + recentCount) % RECENT_SAMPLES;
+            if (recentCount == RECENT_SAMPLES) {
+                recentHead = (recentHead + 1) % RECENT_SAMPLES;
+            } else {
+                recentCount++;
+            }
+            recentTimestamps[slot] = timestamp;
+            recentValues[slot] = value;
+            sampleCount++;
+            if (timestamp >= latestTimestamp) {
+                latestTimestamp = timestamp;
+                latestValue = value;
+            }
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        /** Copies the recent samples, oldest first. */
+        void copyRecent(SeriesSlice out) {
+            for (int i = 0; i < recentCount; i++) {
+                int slot = (recentHead + i) % RECENT_SAMPLES;
+                out.add(recentTimestamps[slot], recentValues[slot]);
+            }
+        }
+    }
+
+    private static final class Batch {
+        final String patientId;
+        final String metric;
+        final SeriesSlice samples;
+        final long enqueuedNanos;
+
+        Batch(String patientId, String metric, SeriesSlice samples, long enqueuedNanos) {
+            this.patientId = patientId;
+            this.metric = metric;
+            this.samples = samples;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Copy of one patient's metric state. Reads from other threads go through the shard's
+     * queue like batches do, so they see state between batches, never mid-batch.
+     */
+    static final class Snapshot {
+        final String patientId;
+        final String metric;
+        final SeriesSlice recent = new SeriesSlice(RECENT_SAMPLES);
+        long sampleCount;
+        long latestTimestamp;
+        float latestValue;
+        float min;
+        float max;
+        private boolean done;
+
+        Snapshot(String patientId, String metric) {
+            this.patientId = patientId;
+            this.metric = metric;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        final ArrayBlockingQueue<Object> queue;
+        final Map<String, Map<String, MetricState>> patients = new HashMap<>();
+        final List<Object> drained = new ArrayList<>();
+        final Thread thread;
+
+        Shard(int index, int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            thread = new Thread(this, "ingest-shard-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    drained.add(first);
+                    queue.drainTo(drained);
+                    for (int i = 0; i < drained.size(); i++) {
+                        Object item = drained.get(i);
+                        if (item instanceof Batch) {
+                            apply((Batch) item);
+                        } else {
+                            answer((Snapshot) item);
+                        }
+                    }
+                    drained.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void apply(Batch batch) {
+            Map<String, MetricState> metrics = patients.get(batch.patientId);
+            if (metrics == null) {
+                metrics = new HashMap<>(8);
+                patients.put(batch.patientId, metrics);
+            }
+            MetricState state = metrics.get(batch.metric);
+            if (state == null) {
+                state = new MetricState();
+                metrics.put(batch.metric, state);
+            }
+            SeriesSlice samples = batch.samples;
+            for (int i = 0; i < samples.size(); i++) {
+                state.add(samples.timestampAt(i), samples.valueAt(i));
+            }
+            appliedSamples.addAndGet(samples.size());
+            appliedBatches.incrementAndGet();
+            applyLatency.recordNanos(System.nanoTime() - batch.enqueuedNanos);
+            listener.onUpdate(batch.patientId, batch.metric, state);
+        }
+
+        private void answer(Snapshot snapshot) {
+            Map<String, MetricState> metrics = patients.get(snapshot.patientId);
+            MetricState state = metrics != null ? metrics.get(snapshot.metric) : null;
+            synchronized (snapshot) {
+                if (state != null) {
+                    snapshot.sampleCount = state.sampleCount;
+                    snapshot.latestTimestamp = state.latestTimestamp;
+                    snapshot.latestValue = state.latestValue;
+                    snapshot.min = state.min;
+                    snapshot.max = state.max;
+                    state.copyRecent(snapshot.recent);
+                }
+                snapshot.done = true;
+                snapshot.notifyAll();
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    private final UpdateListener listener;
+    private volatile boolean running = true;
+
+    private final AtomicLong appliedSamples = new AtomicLong();
+    private final AtomicLong appliedBatches = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private final LatencyHistogram applyLatency = new LatencyHistogram();
+
+    ShardedIngestor(int shardCount, int queueCapacity, UpdateListener listener) {
+        this.listener = listener;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    void start() {
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    void stop() {
+        running = false;
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+    }
+
+    /** Queues a batch for its patient's shard; false when that shard is saturated. */
+    boolean submit(String patientId, String metric, SeriesSlice samples) {
+        if (!shardFor(patientId).queue.offer(new Batch(patientId, metric, samples, System.nanoTime()))) {
+            rejectedBatches.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads one patient's metric (sample count 0 when it has none), waiting at most
+     * {@code timeoutMillis} for the shard. Returns null on timeout.
+     */
+    Snapshot snapshot(String patientId, String metric, long timeoutMillis) throws InterruptedException {
+        Snapshot snapshot = new Snapshot(patientId, metric);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (!shardFor(patientId).queue.offer(snapshot, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        synchronized (snapshot) {
+            while (!snapshot.done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(snapshot, remaining);
+            }
+            return snapshot;
+        }
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    int getQueuedBatches() {
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.queue.size();
+        }
+        return queued;
+    }
+
+    long getAppliedSamples() {
+        return appliedSamples.get();
+    }
+
+    long getAppliedBatches() {
+        return appliedBatches.get();
+    }
+
+    long getRejectedBatches() {
+        return rejectedBatches.get();
+    }
+
+    LatencyHistogram getApplyLatency() {
+        return applyLatency;
+    }
+
+    private Shard shardFor(String patientId) {
+        // Spread the hash so sequential IDs do not cluster on a few shards
+        int hash = patientId.hashCode() * 0x9E3779B9;
+        return shards[(hash >>> 1) % shards.length];
+    }
+}
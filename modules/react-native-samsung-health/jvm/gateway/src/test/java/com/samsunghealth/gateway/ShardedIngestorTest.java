@@ -0,0 +1,129 @@
+package com.samsunghealth.gateway;
+
+import com.samsunghealth.SeriesSlice;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedIngestorTest {
+
+    private ShardedIngestor ingestor;
+
+    @After
+    public void tearDown() {
+        if (ingestor != null) {
+            ingestor.stop();
+        }
+    }
+
+    @Test
+    public void eachPatientsBatchesApplyInArrivalOrder() throws Exception {
+        final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+        final List<String> outOfOrder = new ArrayList<>();
+        ingestor = new ShardedIngestor(4, 4096, new ShardedIngestor.UpdateListener() {
+            @Override
+            public void onUpdate(String patientId, String metric, ShardedIngestor.MetricState state) {
+                Long previous = lastSeen.put(patientId, state.latestTimestamp);
+                if (previous != null && previous >= state.latestTimestamp) {
+                    synchronized (outOfOrder) {
+                        outOfOrder.add(patientId);
+                    }
+                }
+            }
+        });
+        ingestor.start();
+
+        // One uploader thread per patient, all patients sharing the four shards
+        final int patients = 16;
+        final int batches = 200;
+        List<Thread> uploaders = new ArrayList<>();
+        for (int p = 0; p < patients; p++) {
+            final String patientId = "patient-" + p;
+            Thread uploader = new Thread(() -> {
+                for (int b = 0; b < batches; b++) {
+                    SeriesSlice samples = new SeriesSlice(2);
+                    samples.add(b * 2L, b);
+                    samples.add(b * 2L + 1, b);
+                    while (!ingestor.submit(patientId, "heart_rate", samples)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            uploader.start();
+            uploaders.add(uploader);
+        }
+        for (Thread uploader : uploaders) {
+            uploader.join(5000);
+        }
+
+        for (int p = 0; p < patients; p++) {
+            ShardedIngestor.Snapshot snapshot = ingestor.snapshot("patient-" + p, "heart_rate", 2000);
+            assertNotNull(snapshot);
+            // Queued behind the patient's batches, so it sees all of them
+            assertEquals(batches * 2, snapshot.sampleCount);
+            assertEquals(batches * 2 - 1, snapshot.latestTimestamp);
+            assertEquals(ShardedIngestor.RECENT_SAMPLES, snapshot.recent.size());
+            assertEquals(batches * 2 - ShardedIngestor.RECENT_SAMPLES, snapshot.recent.timestampAt(0));
+            assertEquals(0f, snapshot.min, 0f);
+            assertEquals(batches - 1, snapshot.max, 0f);
+        }
+        assertTrue("applied out of order: " + outOfOrder, outOfOrder.isEmpty());
+        assertEquals(patients * batches, ingestor.getAppliedBatches());
+        assertEquals(0, ingestor.getQueuedBatches());
+    }
+
+    @Test
+    public void saturatedShardRefusesBatches() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        ingestor = new ShardedIngestor(1, 2, new ShardedIngestor.UpdateListener() {
+            @Override
+            public void onUpdate(String patientId, String metric, ShardedIngestor.MetricState state) {
+                entered.countDown();
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ingestor.start();
+
+        assertTrue(ingestor.submit("a", "spo2", slice(1)));
+        assertTrue(entered.await(2, TimeUnit.SECONDS));
+        assertTrue(ingestor.submit("a", "spo2", slice(2)));
+        assertTrue(ingestor.submit("b", "spo2", slice(3)));
+        assertFalse("queue of 2 took a third batch", ingestor.submit("c", "spo2", slice(4)));
+        assertEquals(1, ingestor.getRejectedBatches());
+        // A read cannot get into the full queue either, and gives up
+        assertNull(ingestor.snapshot("a", "spo2", 50));
+
+        gate.countDown();
+        ShardedIngestor.Snapshot a = ingestor.snapshot("a", "spo2", 2000);
+        assertNotNull(a);
+        assertEquals(2, a.sampleCount);
+        assertEquals(2f, a.latestValue, 0f);
+        ShardedIngestor.Snapshot c = ingestor.snapshot("c", "spo2", 2000);
+        assertNotNull(c);
+        assertEquals(0, c.sampleCount);
+    }
+
+    private static SeriesSlice slice(long timestamp) {
+        SeriesSlice samples = new SeriesSlice(1);
+        samples.add(timestamp, timestamp);
+        return samples;
+    }
+}
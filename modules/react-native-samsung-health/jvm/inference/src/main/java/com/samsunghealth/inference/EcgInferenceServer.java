@@ -0,0 +1,301 @@
+package com.samsunghealth.inference;
+
+import com.samsunghealth.EcgClassifier;
+import com.samsunghealth.EcgInferenceEngine;
+import com.samsunghealth.EcgModelWeights;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.LatencyHistogram;
+import com.samsunghealth.MapPayloadWriter;
+import com.samsunghealth.MappedWeightFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies uploaded ECG beat windows on a server, for clinician review of recordings, with
+ * the same Conv1D model and engine the app runs ({@code ai-models/ekg_weights.json} or its
+ * binary form).
+ * <pre>
+ *   POST /v1/ecg/classify[?probabilities=true]   float32 LE windows back to back -> 200 classes
+ *   GET  /v1/stats                               throughput, batching and latency percentiles
+ * </pre>
+ * Windows are raw samples of the model's input length, as the module's classifyEcgBatch()
+ * takes them; the engine normalizes them. HTTP threads only decode and wait: requests are
+ * gathered into micro-batches by {@link MicroBatcher}, and a full queue answers 503 with
+ * Retry-After rather than queueing further.
+ */
+public final class EcgInferenceServer {
+
+    public static final int DEFAULT_PORT = 8788;
+
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    private static final long RESULT_TIMEOUT_MS = 30_000;
+    private static final String CLASSIFY_PATH = "/v1/ecg/classify";
+
+    private final int requestedPort;
+    private final MicroBatcher batcher;
+    private final ThreadPoolExecutor httpExecutor;
+    private long startedNanos;
+    private HttpServer server;
+
+    /**
+     * @param port        0 for any free port
+     * @param httpThreads threads decoding requests and waiting for their batches; bounds the
+     *                    requests in flight
+     */
+    public EcgInferenceServer(int port, MicroBatcher batcher, int httpThreads) {
+        this.requestedPort = port;
+        this.batcher = batcher;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.httpExecutor = new ThreadPoolExecutor(httpThreads, httpThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(httpThreads * 64), runnable -> {
+                Thread thread = new Thread(runnable, "inference-http-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public synchronized void start() throws IOException {
+        // Small JSON replies otherwise wait on delayed ACKs; read once, when the server classes load
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(requestedPort), 1024);
+        server.createContext(CLASSIFY_PATH, this::handleClassify);
+        server.createContext("/v1/stats", this::handleStats);
+        server.setExecutor(httpExecutor);
+        batcher.start();
+        startedNanos = System.nanoTime();
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        batcher.stop();
+        httpExecutor.shutdownNow();
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /** Counters, throughput and latency percentiles, as served on /v1/stats. */
+    public Map<String, Object> getStats() {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        EcgClassifier model = batcher.getModel();
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedNanos) / 1e9);
+        long batches = batcher.getBatches();
+        Map<String, Object> stats = w.createMap();
+        w.putInt(stats, "inputLength", model.getInputLength());
+        w.putInt(stats, "workers", batcher.getWorkerCount());
+        w.putInt(stats, "maxBatchWindows", batcher.getMaxBatchWindows());
+        w.putDouble(stats, "maxDelayMicros", batcher.getMaxDelayMicros());
+        w.putDouble(stats, "uptimeSeconds", seconds);
+        w.putDouble(stats, "requests", batcher.getRequests());
+        w.putDouble(stats, "windows", batcher.getWindows());
+        w.putDouble(stats, "batches", batches);
+        w.putDouble(stats, "rejectedRequests", batcher.getRejected());
+        w.putDouble(stats, "failedRequests", batcher.getFailed());
+        w.putInt(stats, "queuedWindows", batcher.getQueuedWindows());
+        w.putDouble(stats, "requestsPerSecond", batcher.getRequests() / seconds);
+        w.putDouble(stats, "windowsPerSecond", batcher.getWindows() / seconds);
+        w.putDouble(stats, "meanBatchWindows", batches == 0 ? 0 : batcher.getWindows() / (double) batches);
+        putLatency(stats, "request", batcher.getRequestLatency());
+        putLatency(stats, "queue", batcher.getQueueLatency());
+        putLatency(stats, "batch", batcher.getBatchLatency());
+        return stats;
+    }
+
+    private static void putLatency(Map<String, Object> stats, String name, LatencyHistogram latency) {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        w.putDouble(stats, name + "P50Micros", latency.percentileMicros(0.50));
+        w.putDouble(stats, name + "P99Micros", latency.percentileMicros(0.99));
+        w.putDouble(stats, name + "MaxMicros", latency.percentileMicros(1.0));
+    }
+
+    private void handleClassify(HttpExchange exchange) throws IOException {
+        try {
+            if (!CLASSIFY_PATH.equals(exchange.getRequestURI().getPath())) {
+                respond(exchange, 404, error("Not found"));
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            classify(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("Shutting down"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void classify(HttpExchange exchange) throws IOException, InterruptedException {
+        byte[] body = readBody(exchange);
+        if (body == null) {
+            respond(exchange, 413, error("Request larger than " + MAX_BODY_BYTES + " bytes"));
+            return;
+        }
+        EcgClassifier model = batcher.getModel();
+        int windowBytes = model.getInputLength() * 4;
+        if (body.length == 0 || body.length % windowBytes != 0) {
+            respond(exchange, 400, error("Body must be whole windows of " + model.getInputLength()
+                + " float32 samples, got " + body.length + " bytes"));
+            return;
+        }
+        float[] windows = new float[body.length / 4];
+        ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(windows);
+        String query = exchange.getRequestURI().getQuery();
+        boolean probabilities = query != null && query.contains("probabilities=true");
+
+        MicroBatcher.Request request = batcher.submit(windows, body.length / windowBytes, probabilities);
+        if (request == null) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, error("Inference queue full"));
+            return;
+        }
+        if (!request.await(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            respond(exchange, 504, error("Inference timed out"));
+            return;
+        }
+        if (request.getError() != null) {
+            respond(exchange, 500, error("Inference failed: " + request.getError().getMessage()));
+            return;
+        }
+
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> result = w.createMap();
+        w.putInt(result, "count", request.getCount());
+        List<Object> classes = w.createArray();
+        for (int predicted : request.getClasses()) {
+            w.pushInt(classes, predicted);
+        }
+        w.putArray(result, "classes", classes);
+        List<Object> classNames = w.createArray();
+        for (int i = 0; i < model.getClassCount(); i++) {
+            w.pushString(classNames, model.getClassName(i));
+        }
+        w.putArray(result, "classNames", classNames);
+        if (request.getProbabilities() != null) {
+            List<Object> values = w.createArray();
+            for (float p : request.getProbabilities()) {
+                w.pushDouble(values, p);
+            }
+            w.putArray(result, "probabilities", values);
+        }
+        w.putInt(result, "batchWindows", request.getBatchWindows());
+        w.putDouble(result, "queueMicros", request.getQueueNanos() / 1000);
+        w.putDouble(result, "inferenceMicros", request.getInferenceNanos() / 1000);
+        respond(exchange, 200, result);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, getStats());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // null when the body exceeds MAX_BODY_BYTES
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        int length = 0;
+        byte[] body = new byte[declared != null ? Math.min(MAX_BODY_BYTES + 1, Math.max(0, parseInt(declared))) : 4096];
+        InputStream in = exchange.getRequestBody();
+        while (true) {
+            if (length == body.length) {
+                if (body.length > MAX_BODY_BYTES) {
+                    return null;
+                }
+                body = Arrays.copyOf(body, Math.min(MAX_BODY_BYTES + 1, Math.max(4096, body.length * 2)));
+            }
+            int read = in.read(body, length, body.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length > MAX_BODY_BYTES ? null : Arrays.copyOf(body, length);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        MapPayloadWriter w = MapPayloadWriter.INSTANCE;
+        Map<String, Object> result = w.createMap();
+        w.putString(result, "error", message);
+        return result;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = JsonSerializer.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.flush();
+    }
+
+    /** The float model from {@code ekg_weights.json}, or the binary export of it. */
+    public static EcgClassifier loadModel(File file) throws IOException {
+        if (file.getName().endsWith(".json")) {
+            InputStream in = new FileInputStream(file);
+            try {
+                return new EcgInferenceEngine(EcgModelWeights.fromJson(in));
+            } finally {
+                in.close();
+            }
+        }
+        return new EcgInferenceEngine(EcgModelWeights.fromBinary(MappedWeightFile.map(file)));
+    }
+
+    /**
+     * Arguments: {@code [port] [workers] [maxBatchWindows] [maxDelayMicros] [queueCapacityWindows] [model]}.
+     * The model defaults to {@code ekg_weights.bin} in the {@code samsunghealth.aiModels} directory.
+     */
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : cores;
+        int maxBatchWindows = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        long maxDelayMicros = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+        int queueCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 65_536;
+        File model = args.length > 5 ? new File(args[5])
+            : new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"), "ekg_weights.bin");
+
+        MicroBatcher batcher = new MicroBatcher(loadModel(model), workers, maxBatchWindows, maxDelayMicros, queueCapacity);
+        EcgInferenceServer server = new EcgInferenceServer(port, batcher, Math.max(64, cores * 8));
+        server.start();
+        System.out.println("ECG inference server listening on port " + server.getPort() + " with " + workers
+            + " workers, batches of up to " + maxBatchWindows + " windows within " + maxDelayMicros + " us");
+        Thread.currentThread().join();
+    }
+}
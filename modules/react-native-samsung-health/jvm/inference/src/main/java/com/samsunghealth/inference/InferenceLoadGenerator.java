@@ -0,0 +1,219 @@
+package com.samsunghealth.inference;
+
+import com.samsunghealth.EcgClassifier;
+import com.samsunghealth.JsonSerializer;
+import com.samsunghealth.LatencyHistogram;
+import com.samsunghealth.SimulatedEcgSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts synthetic ECG beat windows to an {@link EcgInferenceServer} from many closed-loop
+ * clients (each sends its next request once the last one is answered) and reports throughput
+ * and latency. Without a URL an embedded server is started in the same JVM with the given
+ * batching, so runs with {@code maxBatchWindows} 1 and, say, 32 compare per-request inference
+ * against micro-batching on the same load.
+ *
+ * Arguments: {@code [clients] [seconds] [windowsPerRequest] [maxBatchWindows] [maxDelayMicros] [url]}.
+ * The embedded server's model is {@code ekg_weights.bin} in the {@code samsunghealth.aiModels}
+ * directory.
+ */
+public final class InferenceLoadGenerator {
+
+    // MIT-BIH rate, which the model's windows were cut at
+    private static final int SAMPLE_RATE = 360;
+    // Distinct payloads each client cycles through
+    private static final int PAYLOADS = 16;
+
+    private final String classifyUrl;
+    private final int windowsPerRequest;
+    private volatile boolean running = true;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    private InferenceLoadGenerator(String baseUrl, int windowsPerRequest) {
+        this.classifyUrl = baseUrl + "/v1/ecg/classify";
+        this.windowsPerRequest = windowsPerRequest;
+    }
+
+    private void client(int inputLength, long seed) {
+        byte[][] payloads = new byte[PAYLOADS][];
+        SimulatedEcgSource ecg = new SimulatedEcgSource(SAMPLE_RATE);
+        float[] samples = new float[windowsPerRequest * inputLength];
+        // Offset clients so they don't all send the same beats
+        for (long skipped = 0; skipped < seed % SAMPLE_RATE; skipped++) {
+            ecg.fill(samples, 0, 1);
+        }
+        for (int i = 0; i < PAYLOADS; i++) {
+            ecg.fill(samples, 0, samples.length);
+            ByteBuffer buffer = ByteBuffer.allocate(samples.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().put(samples);
+            payloads[i] = buffer.array();
+        }
+        int next = 0;
+        while (running) {
+            long started = System.nanoTime();
+            try {
+                int status = post(classifyUrl, payloads[next++ % PAYLOADS]);
+                requestLatency.recordNanos(System.nanoTime() - started);
+                if (status == 200) {
+                    requests.incrementAndGet();
+                    windows.addAndGet(windowsPerRequest);
+                } else if (status == 503) {
+                    rejected.incrementAndGet();
+                    Thread.sleep(1);
+                } else {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static int post(String url, byte[] payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(35_000);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        // Buffered (not streaming) mode sends headers and body in one write, avoiding a Nagle stall
+        OutputStream out = connection.getOutputStream();
+        out.write(payload);
+        out.close();
+        int status = connection.getResponseCode();
+        // Drain the body so the connection goes back to the keep-alive pool
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+            in.close();
+        }
+        return status;
+    }
+
+    // The window length the remote server's model takes, from its stats
+    private static int fetchInputLength(String baseUrl) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/v1/stats").openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(10_000);
+        InputStream in = connection.getInputStream();
+        StringBuilder body = new StringBuilder();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+        }
+        in.close();
+        int index = body.indexOf("\"inputLength\":");
+        if (index < 0) {
+            throw new IOException("No inputLength in " + baseUrl + "/v1/stats");
+        }
+        int start = index + "\"inputLength\":".length();
+        int end = start;
+        while (end < body.length() && body.charAt(end) != ',' && body.charAt(end) != '}') {
+            end++;
+        }
+        return (int) Double.parseDouble(body.substring(start, end));
+    }
+
+    private void printProgress(long elapsedSeconds, long requestsPerSecond, long windowsPerSecond) {
+        System.out.printf(Locale.US,
+            "%4ds  requests/s %6d  windows/s %7d  request p50 %6.2f ms p99 %7.2f ms  rejected %d  errors %d%n",
+            elapsedSeconds, requestsPerSecond, windowsPerSecond, requestLatency.percentileMicros(0.5) / 1000.0,
+            requestLatency.percentileMicros(0.99) / 1000.0, rejected.get(), errors.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int windowsPerRequest = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int maxBatchWindows = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        long maxDelayMicros = args.length > 4 ? Long.parseLong(args[4]) : 2000;
+        String url = args.length > 5 ? args[5] : null;
+        // The JDK keeps only 5 idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+
+        EcgInferenceServer server = null;
+        int inputLength;
+        if (url == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            File models = new File(System.getProperty("samsunghealth.aiModels", "../../../ai-models"));
+            EcgClassifier model = EcgInferenceServer.loadModel(new File(models, "ekg_weights.bin"));
+            inputLength = model.getInputLength();
+            MicroBatcher batcher = new MicroBatcher(model, Math.max(1, cores / 2), maxBatchWindows, maxDelayMicros,
+                65_536);
+            server = new EcgInferenceServer(0, batcher, Math.max(64, clients));
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+            System.out.printf(Locale.US, "Embedded server: %d workers, batches of up to %d windows within %d us%n",
+                batcher.getWorkerCount(), maxBatchWindows, maxDelayMicros);
+        } else {
+            inputLength = fetchInputLength(url);
+        }
+        final InferenceLoadGenerator generator = new InferenceLoadGenerator(url, windowsPerRequest);
+        System.out.printf(Locale.US, "%d clients posting %d window(s) per request to %s%n", clients,
+            windowsPerRequest, url);
+
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            final long seed = 37L * i;
+            final int length = inputLength;
+            threads[i] = new Thread(() -> generator.client(length, seed), "inference-client-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        long previousRequests = 0;
+        long previousWindows = 0;
+        int previousSecond = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            if (second % 5 == 0 || second == seconds) {
+                long totalRequests = generator.requests.get();
+                long totalWindows = generator.windows.get();
+                int elapsed = second - previousSecond;
+                generator.printProgress(second, (totalRequests - previousRequests) / elapsed,
+                    (totalWindows - previousWindows) / elapsed);
+                previousRequests = totalRequests;
+                previousWindows = totalWindows;
+                previousSecond = second;
+            }
+        }
+        generator.running = false;
+        for (Thread thread : threads) {
+            thread.join(40_000);
+        }
+
+        System.out.printf(Locale.US, "Requests %d (%d windows, %.0f windows/s), rejected %d, errors %d%n",
+            generator.requests.get(), generator.windows.get(), generator.windows.get() / (double) seconds,
+            generator.rejected.get(), generator.errors.get());
+        System.out.printf(Locale.US, "Request latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            generator.requestLatency.percentileMicros(0.5) / 1000.0,
+            generator.requestLatency.percentileMicros(0.99) / 1000.0,
+            generator.requestLatency.percentileMicros(1.0) / 1000.0);
+        if (server != null) {
+            System.out.println("Server " + JsonSerializer.toJson(server.getStats()));
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.samsunghealth.inference;
+
+import com.samsunghealth.EcgClassifier;
+import com.samsunghealth.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers classification requests from many callers into micro-batches for the ECG model.
+ *
+ * Requests (one or more beat windows each) wait in a queue bounded by the windows it holds.
+ * Each worker thread takes the oldest request and keeps adding requests until the batch has
+ * {@code maxBatchWindows} windows or {@code maxDelayMicros} have passed since that oldest
+ * request arrived, then runs the whole batch through {@link EcgClassifier#classifyBatch},
+ * which reads each dense kernel row once per {@link EcgClassifier#BATCH_BLOCK} windows
+ * instead of once per window. So single-beat requests under load cost about what one big
+ * recording does, and an idle server adds at most the delay to a request.
+ *
+ * Every worker owns a copy of the engine ({@link EcgClassifier#copy()}) over the shared
+ * weights. Queue wait, batch inference and end-to-end latency go into
+ * {@link LatencyHistogram}s.
+ */
+public final class MicroBatcher {
+
+    /** One caller's windows and, once {@link #isDone()}, their classes. */
+    public static final class Request {
+        final float[] windows;
+        final int count;
+        final boolean wantsProbabilities;
+        final long enqueuedNanos = System.nanoTime();
+        final CountDownLatch done = new CountDownLatch(1);
+        int[] classes;
+        float[] probabilities;
+        int batchWindows;
+        long startedNanos;
+        long finishedNanos;
+        Throwable error;
+
+        Request(float[] windows, int count, boolean wantsProbabilities) {
+            this.windows = windows;
+            this.count = count;
+            this.wantsProbabilities = wantsProbabilities;
+        }
+
+        /** Waits for the batch holding this request; false on timeout. */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int[] getClasses() {
+            return classes;
+        }
+
+        /** {@code count * classCount} softmax outputs, or null unless asked for. */
+        public float[] getProbabilities() {
+            return probabilities;
+        }
+
+        /** Windows in the batch this request ran in, its own included. */
+        public int getBatchWindows() {
+            return batchWindows;
+        }
+
+        public long getQueueNanos() {
+            return startedNanos - enqueuedNanos;
+        }
+
+        public long getInferenceNanos() {
+            return finishedNanos - startedNanos;
+        }
+
+        /** Why the batch failed, or null. */
+        public Throwable getError() {
+            return error;
+        }
+    }
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final EcgClassifier prototype;
+    private final int workerCount;
+    private final int maxBatchWindows;
+    private final long maxDelayNanos;
+    private final int queueCapacityWindows;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedWindows = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong windows = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    /**
+     * @param workers              inference threads, each with its own engine
+     * @param maxBatchWindows      windows at which a batch is run without waiting further
+     * @param maxDelayMicros       longest a request waits for others to join its batch
+     * @param queueCapacityWindows windows the queue may hold before requests are refused
+     */
+    public MicroBatcher(EcgClassifier prototype, int workers, int maxBatchWindows, long maxDelayMicros,
+                        int queueCapacityWindows) {
+        if (workers < 1 || maxBatchWindows < 1 || maxDelayMicros < 0 || queueCapacityWindows < 1) {
+            throw new IllegalArgumentException("Invalid micro-batching: " + workers + " workers, batches of "
+                + maxBatchWindows + " windows within " + maxDelayMicros + " us, queue of " + queueCapacityWindows);
+        }
+        this.prototype = prototype;
+        this.workerCount = workers;
+        this.maxBatchWindows = maxBatchWindows;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queueCapacityWindows = queueCapacityWindows;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            final EcgClassifier engine = prototype.copy();
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(engine);
+                }
+            }, "ecg-inference-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /** Stops the workers; requests still queued fail. */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+        Request request;
+        while ((request = queue.poll()) != null) {
+            finish(request, new IllegalStateException("Inference stopped"));
+        }
+    }
+
+    public EcgClassifier getModel() {
+        return prototype;
+    }
+
+    /**
+     * Queues {@code count} windows laid out back to back in {@code windows}, which the batcher
+     * reads until the request is done. Returns null when the queue is full; a request larger
+     * than the whole queue is still taken when the queue is empty.
+     */
+    public Request submit(float[] windows, int count, boolean probabilities) {
+        if (count < 1 || (long) count * prototype.getInputLength() > windows.length) {
+            throw new IllegalArgumentException("Request of " + count + " windows needs "
+                + (long) count * prototype.getInputLength() + " samples, got " + windows.length);
+        }
+        if (!running) {
+            throw new IllegalStateException("Inference not running");
+        }
+        while (true) {
+            int queued = queuedWindows.get();
+            if (queued > 0 && queued + count > queueCapacityWindows) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            if (queuedWindows.compareAndSet(queued, queued + count)) {
+                break;
+            }
+        }
+        Request request = new Request(windows, count, probabilities);
+        queue.add(request);
+        return request;
+    }
+
+    public int getQueuedWindows() {
+        return queuedWindows.get();
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public int getMaxBatchWindows() {
+        return maxBatchWindows;
+    }
+
+    public long getMaxDelayMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxDelayNanos);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getWindows() {
+        return windows.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /** Enqueue to the start of the request's batch. */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /** One batch through the model. */
+    public LatencyHistogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    /** Enqueue to result, per request. */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    private void work(EcgClassifier engine) {
+        final int n = engine.getInputLength();
+        final int classCount = engine.getClassCount();
+        List<Request> batch = new ArrayList<>();
+        float[] packed = new float[maxBatchWindows * n];
+        float[] probabilities = new float[maxBatchWindows * classCount];
+        int[] classes = new int[maxBatchWindows];
+        // A request that would have overflowed the last batch starts the next one
+        Request carried = null;
+
+        while (running) {
+            batch.clear();
+            int total;
+            try {
+                Request first = carried != null ? carried : queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                carried = null;
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                total = first.count;
+                // The delay counts from the oldest request's arrival, so time spent queued is part of it
+                long deadline = first.enqueuedNanos + maxDelayNanos;
+                while (total < maxBatchWindows) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (total + next.count > maxBatchWindows) {
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    total += next.count;
+                }
+            } catch (InterruptedException e) {
+                // Stopping; whatever was taken still runs
+                total = 0;
+                for (Request request : batch) {
+                    total += request.count;
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+            }
+            queuedWindows.addAndGet(-total);
+
+            // Only a request bigger than a batch, which runs alone and unpacked, needs more room
+            if (classes.length < total) {
+                probabilities = new float[total * classCount];
+                classes = new int[total];
+            }
+            long started = System.nanoTime();
+            Throwable error = null;
+            try {
+                // One request needs no packing
+                float[] input = batch.size() == 1 ? batch.get(0).windows : packed;
+                if (batch.size() > 1) {
+                    int offset = 0;
+                    for (Request request : batch) {
+                        System.arraycopy(request.windows, 0, packed, offset, request.count * n);
+                        offset += request.count * n;
+                    }
+                }
+                engine.classifyBatch(input, 0, total, probabilities, classes);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            long finished = System.nanoTime();
+            batchLatency.recordNanos(finished - started);
+            batches.incrementAndGet();
+
+            int first = 0;
+            for (Request request : batch) {
+                request.startedNanos = started;
+                request.finishedNanos = finished;
+                request.batchWindows = total;
+                if (error == null) {
+                    request.classes = new int[request.count];
+                    System.arraycopy(classes, first, request.classes, 0, request.count);
+                    if (request.wantsProbabilities) {
+                        request.probabilities = new float[request.count * classCount];
+                        System.arraycopy(probabilities, first * classCount, request.probabilities, 0,
+                            request.count * classCount);
+                    }
+                }
+                first += request.count;
+                queueLatency.recordNanos(started - request.enqueuedNanos);
+                finish(request, error);
+            }
+        }
+        if (carried != null) {
+            queuedWindows.addAndGet(-carried.count);
+            finish(carried, new IllegalStateException("Inference stopped"));
+        }
+    }
+
+    private void finish(Request request, Throwable error) {
+        request.error = error;
+        if (error != null) {
+            failed.incrementAndGet();
+        } else {
+            requests.incrementAndGet();
+            windows.addAndGet(request.count);
+        }
+        requestLatency.recordNanos(System.nanoTime() - request.enqueuedNanos);
+        request.done.countDown();
+    }
+}
@@ -0,0 +1,208 @@
+package com.samsunghealth.inference;
+
+import com.samsunghealth.EcgClassifier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MicroBatcherTest {
+
+    private static final int INPUT = 4;
+
+    /** Class 1 for windows starting above zero; records batch sizes and can hold a batch back. */
+    private static final class FakeClassifier implements EcgClassifier {
+        final List<Integer> batchSizes;
+        final CountDownLatch entered;
+        final CountDownLatch gate;
+
+        FakeClassifier(boolean gated) {
+            this(Collections.synchronizedList(new ArrayList<Integer>()), new CountDownLatch(1),
+                new CountDownLatch(gated ? 1 : 0));
+        }
+
+        private FakeClassifier(List<Integer> batchSizes, CountDownLatch entered, CountDownLatch gate) {
+            this.batchSizes = batchSizes;
+            this.entered = entered;
+            this.gate = gate;
+        }
+
+        @Override
+        public int getInputLength() {
+            return INPUT;
+        }
+
+        @Override
+        public int getClassCount() {
+            return 2;
+        }
+
+        @Override
+        public String getClassName(int index) {
+            return index == 1 ? "Positive" : "Other";
+        }
+
+        @Override
+        public EcgClassifier copy() {
+            return new FakeClassifier(batchSizes, entered, gate);
+        }
+
+        @Override
+        public void normalize(float[] window, int offset) {
+        }
+
+        @Override
+        public int classify(float[] signal, int offset, float[] probabilities) {
+            int c = signal[offset] > 0 ? 1 : 0;
+            probabilities[0] = 1 - c;
+            probabilities[1] = c;
+            return c;
+        }
+
+        @Override
+        public void classifyBatch(float[] windows, int first, int count, float[] probabilities, int[] classes) {
+            batchSizes.add(count);
+            entered.countDown();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Stopping: finish the batch, as a real engine would
+                Thread.currentThread().interrupt();
+            }
+            float[] scratch = new float[2];
+            for (int i = 0; i < count; i++) {
+                classes[i] = classify(windows, (first + i) * INPUT, scratch);
+                probabilities[i * 2] = scratch[0];
+                probabilities[i * 2 + 1] = scratch[1];
+            }
+        }
+    }
+
+    private MicroBatcher batcher;
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    public void partialBatchRunsAtTheDeadline() throws Exception {
+        FakeClassifier model = new FakeClassifier(false);
+        batcher = start(model, 64, 50_000, 1024);
+        long submitted = System.nanoTime();
+        MicroBatcher.Request[] requests = new MicroBatcher.Request[3];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = batcher.submit(windows(i % 2 == 0 ? 1 : -1), 1, false);
+        }
+        for (MicroBatcher.Request request : requests) {
+            assertTrue(request.await(2, TimeUnit.SECONDS));
+            assertNull(request.getError());
+            assertEquals(3, request.getBatchWindows());
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted);
+        assertTrue("ran before the deadline: " + waited + " ms", waited >= 45);
+        assertArrayEquals(new int[] {1}, requests[0].getClasses());
+        assertArrayEquals(new int[] {0}, requests[1].getClasses());
+        assertEquals(Collections.singletonList(3), model.batchSizes);
+        assertEquals(1, batcher.getBatches());
+    }
+
+    @Test
+    public void fullBatchRunsWithoutWaitingForTheDeadline() throws Exception {
+        FakeClassifier model = new FakeClassifier(false);
+        batcher = start(model, 4, 10_000_000, 1024);
+        MicroBatcher.Request small = batcher.submit(windows(1), 1, false);
+        MicroBatcher.Request rest = batcher.submit(windows(-1, 1, -1), 3, true);
+        assertTrue("full batch waited for the deadline", rest.await(2, TimeUnit.SECONDS));
+        assertTrue(small.isDone());
+        assertEquals(4, rest.getBatchWindows());
+        assertArrayEquals(new int[] {0, 1, 0}, rest.getClasses());
+        assertArrayEquals(new float[] {1, 0, 0, 1, 1, 0}, rest.getProbabilities(), 0f);
+        assertNull(small.getProbabilities());
+    }
+
+    @Test
+    public void requestThatDoesNotFitStartsTheNextBatch() throws Exception {
+        FakeClassifier model = new FakeClassifier(false);
+        batcher = start(model, 4, 100_000, 1024);
+        MicroBatcher.Request first = batcher.submit(windows(1, 1, 1), 3, false);
+        MicroBatcher.Request second = batcher.submit(windows(-1, 1), 2, false);
+        assertTrue(first.await(2, TimeUnit.SECONDS));
+        assertTrue(second.await(2, TimeUnit.SECONDS));
+        assertEquals(3, first.getBatchWindows());
+        assertEquals(2, second.getBatchWindows());
+        assertArrayEquals(new int[] {1, 1, 1}, first.getClasses());
+        assertArrayEquals(new int[] {0, 1}, second.getClasses());
+        assertEquals(0, batcher.getQueuedWindows());
+    }
+
+    @Test
+    public void fullQueueRefusesRequests() throws Exception {
+        FakeClassifier model = new FakeClassifier(true);
+        batcher = start(model, 1, 0, 4);
+        MicroBatcher.Request running = batcher.submit(windows(1), 1, false);
+        assertTrue(model.entered.await(2, TimeUnit.SECONDS));
+
+        List<MicroBatcher.Request> queued = new ArrayList<>();
+        queued.add(batcher.submit(windows(1, 1), 2, false));
+        queued.add(batcher.submit(windows(1, 1), 2, false));
+        assertNull("queue of 4 windows took a fifth", batcher.submit(windows(1), 1, false));
+        assertEquals(1, batcher.getRejected());
+
+        model.gate.countDown();
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        for (MicroBatcher.Request request : queued) {
+            assertNotNull(request);
+            assertTrue(request.await(2, TimeUnit.SECONDS));
+        }
+        // An empty queue takes a request larger than itself
+        MicroBatcher.Request large = batcher.submit(windows(1, 1, 1, 1, 1, 1), 6, false);
+        assertNotNull(large);
+        assertTrue(large.await(2, TimeUnit.SECONDS));
+        assertEquals(6, large.getClasses().length);
+    }
+
+    @Test
+    public void stopFailsQueuedRequests() throws Exception {
+        FakeClassifier model = new FakeClassifier(true);
+        batcher = start(model, 1, 0, 1024);
+        MicroBatcher.Request running = batcher.submit(windows(1), 1, false);
+        assertTrue(model.entered.await(2, TimeUnit.SECONDS));
+        MicroBatcher.Request waiting = batcher.submit(windows(1), 1, false);
+
+        batcher.stop();
+        assertTrue(running.isDone());
+        assertNull(running.getError());
+        assertTrue(waiting.isDone());
+        assertTrue(waiting.getError() instanceof IllegalStateException);
+        assertEquals(1, batcher.getFailed());
+    }
+
+    private static MicroBatcher start(EcgClassifier model, int maxBatchWindows, long maxDelayMicros, int capacity) {
+        MicroBatcher batcher = new MicroBatcher(model, 1, maxBatchWindows, maxDelayMicros, capacity);
+        batcher.start();
+        return batcher;
+    }
+
+    // Back to back windows, each starting with the given value
+    private static float[] windows(float... firstSamples) {
+        float[] windows = new float[firstSamples.length * INPUT];
+        for (int i = 0; i < firstSamples.length; i++) {
+            windows[i * INPUT] = firstSamples[i];
+        }
+        return windows;
+    }
+}
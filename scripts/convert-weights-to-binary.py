@@ -0,0 +1,121 @@
+#!/usr/bin/env python3
+"""
+JSON model ağırlıklarını native modülün memory-map ile okuduğu ikili formata dönüştürme.
+Varsayılan olarak yalnızca ekg_weights.json dönüştürülür; model_weights.json'u JS tarafı
+(services/ai/realCardioAI.ts) doğrudan okuduğu için ikili kopyası üretilmez.
+
+Format (little-endian):
+  magic 'MDWB' | u16 version | u16 tensor_count | u32 metadata_length
+  metadata (UTF-8 JSON)
+  tensor_count x [u16 name_length | name (UTF-8) | u8 rank | u8 dtype | u32 dims[rank] | u32 data_offset]
+  float32 veri blokları, her biri 16 byte hizalı
+
+Tensör isimleri JSON yolunu izler: 'weights/conv1d/kernel', 'scaler/mean' ...
+dtype: 0 float32; 1 int8 ve 2 int32 yalnızca int8 modelde (ekg_weights_int8.bin) kullanılır,
+o dosyayı modules/react-native-samsung-health/jvm içinde 'gradle :core:quantizeEcgModel' üretir.
+Okuyucu: modules/react-native-samsung-health/.../MappedWeightFile.java
+"""
+import json
+import os
+import struct
+import sys
+
+MAGIC = b'MDWB'
+VERSION = 1
+DTYPE_FLOAT32 = 0
+ALIGNMENT = 16
+
+
+def shape_of(value):
+    """İç içe listenin boyutlarını bul"""
+    shape = []
+    while isinstance(value, list):
+        shape.append(len(value))
+        if not value:
+            break
+        value = value[0]
+    return shape
+
+
+def flatten(value, out):
+    """İç içe listeyi satır öncelikli düzleştir"""
+    if isinstance(value, list):
+        for item in value:
+            flatten(item, out)
+    else:
+        out.append(float(value))
+
+
+def is_numeric_array(value):
+    while isinstance(value, list):
+        if not value:
+            return True
+        value = value[0]
+    return isinstance(value, (int, float)) and not isinstance(value, bool)
+
+
+def collect_tensors(node, prefix, tensors):
+    """'weights' ve 'scaler' bloklarındaki sayısal dizileri topla"""
+    for key, value in node.items():
+        path = f"{prefix}/{key}" if prefix else key
+        if isinstance(value, dict):
+            collect_tensors(value, path, tensors)
+        elif isinstance(value, list) and is_numeric_array(value):
+            data = []
+            flatten(value, data)
+            tensors.append((path, shape_of(value), data))
+
+
+def align(offset):
+    return (offset + ALIGNMENT - 1) // ALIGNMENT * ALIGNMENT
+
+
+def convert(json_path, bin_path):
+    with open(json_path, 'r', encoding='utf-8') as f:
+        model = json.load(f)
+
+    tensors = []
+    for block in ('weights', 'scaler'):
+        if isinstance(model.get(block), dict):
+            collect_tensors(model[block], block, tensors)
+
+    metadata = json.dumps(model.get('metadata', {}), ensure_ascii=False, separators=(',', ':')).encode('utf-8')
+
+    # Başlık boyutunu hesapla, veri ofsetleri buna göre belirlenir
+    header_size = 4 + 2 + 2 + 4 + len(metadata)
+    for name, shape, _ in tensors:
+        header_size += 2 + len(name.encode('utf-8')) + 1 + 1 + 4 * len(shape) + 4
+
+    offsets = []
+    offset = align(header_size)
+    for _, _, data in tensors:
+        offsets.append(offset)
+        offset = align(offset + 4 * len(data))
+
+    with open(bin_path, 'wb') as out:
+        out.write(MAGIC)
+        out.write(struct.pack('<HHI', VERSION, len(tensors), len(metadata)))
+        out.write(metadata)
+        for (name, shape, _), data_offset in zip(tensors, offsets):
+            encoded = name.encode('utf-8')
+            out.write(struct.pack('<H', len(encoded)))
+            out.write(encoded)
+            out.write(struct.pack('<BB', len(shape), DTYPE_FLOAT32))
+            out.write(struct.pack(f'<{len(shape)}I', *shape))
+            out.write(struct.pack('<I', data_offset))
+        for (_, _, data), data_offset in zip(tensors, offsets):
+            out.write(b'\0' * (data_offset - out.tell()))
+            out.write(struct.pack(f'<{len(data)}f', *data))
+
+    print(f"✅ {json_path} -> {bin_path}")
+    for name, shape, _ in tensors:
+        print(f"   {name}: {shape}")
+    print(f"   {os.path.getsize(json_path)} byte -> {os.path.getsize(bin_path)} byte")
+
+
+if __name__ == '__main__':
+    root = os.path.join(os.path.dirname(os.path.abspath(__file__)), '..', 'ai-models')
+    if len(sys.argv) == 3:
+        convert(sys.argv[1], sys.argv[2])
+    else:
+        convert(os.path.join(root, 'ekg_weights.json'), os.path.join(root, 'ekg_weights.bin'))
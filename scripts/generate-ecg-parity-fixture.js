@@ -0,0 +1,108 @@
+#!/usr/bin/env node
+
+/**
+ * services/ai/ecgAI.ts içindeki JS EKG modelinin sabit pencereler için verdiği olasılıkları
+ * native modülün JVM testine referans olarak yazar (EcgInferenceEngineParityTest).
+ *
+ * ecgAI.ts, devDependency olan 'typescript' ile olduğu gibi derlenip çalıştırılır; yani
+ * referans, uygulamanın kullandığı JS kodunun kendisidir.
+ *
+ * Kullanım (repo kökünden): node scripts/generate-ecg-parity-fixture.js
+ * Çıktı: modules/react-native-samsung-health/jvm/core/src/test/resources/ecg-js-reference.csv
+ */
+
+const fs = require('fs');
+const path = require('path');
+const Module = require('module');
+const ts = require('typescript');
+
+const root = path.resolve(__dirname, '..');
+const source = path.join(root, 'services', 'ai', 'ecgAI.ts');
+const output = path.join(root, 'modules', 'react-native-samsung-health', 'jvm', 'core', 'src', 'test',
+  'resources', 'ecg-js-reference.csv');
+
+const WINDOW = 180;
+
+// ecgAI.ts'i CommonJS'e çevirip kendi yolunda yükle, böylece ağırlık dosyasını kendisi bulur
+function loadEcgModule() {
+  const compiled = ts.transpileModule(fs.readFileSync(source, 'utf8'), {
+    compilerOptions: { module: ts.ModuleKind.CommonJS, target: ts.ScriptTarget.ES2019, esModuleInterop: true },
+    fileName: source,
+  });
+  const mod = new Module(source, module);
+  mod.filename = source;
+  mod.paths = Module._nodeModulePaths(path.dirname(source));
+  mod._compile(compiled.outputText, source);
+  return mod.exports;
+}
+
+// Tekrarlanabilir gürültü için küçük bir LCG
+function lcg(seed) {
+  let state = seed >>> 0;
+  return () => {
+    state = (Math.imul(state, 1664525) + 1013904223) >>> 0;
+    return state / 4294967296 - 0.5;
+  };
+}
+
+function gaussian(t, center, width, amplitude) {
+  const d = (t - center) / width;
+  return amplitude * Math.exp(-0.5 * d * d);
+}
+
+// MIT-BIH kesitleri gibi 0..1 aralığında, R tepesi pencerenin ortasında sentetik vuruşlar
+function beat({ p = 0.08, pCenter = 55, qrsWidth = 4, r = 0.9, s = -0.15, t = 0.2, tCenter = 140, noise = 0, seed = 1 }) {
+  const random = lcg(seed);
+  const window = [];
+  for (let i = 0; i < WINDOW; i++) {
+    const value = 0.3
+      + gaussian(i, pCenter, 7, p)
+      + gaussian(i, 90, qrsWidth, r)
+      + gaussian(i, 90 + 2.5 * qrsWidth, qrsWidth, s)
+      + gaussian(i, tCenter, 14, t)
+      + noise * random();
+    window.push(Number(value.toFixed(6)));
+  }
+  return window;
+}
+
+const windows = [
+  ['normal', beat({})],
+  ['normal-noisy', beat({ noise: 0.04, seed: 7 })],
+  ['early-abnormal-p', beat({ p: -0.06, pCenter: 75, tCenter: 125 })],
+  ['wide-qrs', beat({ p: 0, qrsWidth: 12, r: 0.7, s: -0.4, t: -0.25, tCenter: 150 })],
+  ['inverted', beat({ r: -0.6, s: 0.2, t: -0.15 })],
+  ['flat', beat({ p: 0, r: 0, s: 0, t: 0, noise: 0.01, seed: 3 })],
+  ['noise', beat({ p: 0, r: 0, s: 0, t: 0, noise: 0.8, seed: 11 })],
+];
+
+async function main() {
+  const { ECGAnalysisService } = loadEcgModule();
+  const service = ECGAnalysisService.getInstance();
+  const log = console.log;
+  console.log = () => {};
+  let rows;
+  try {
+    await service.initialize();
+    rows = windows.map(([name, samples]) => {
+      const probabilities = service.predict(samples);
+      return [name, ...probabilities.map(p => p.toPrecision(9)), ...samples].join(',');
+    });
+  } finally {
+    console.log = log;
+  }
+
+  const header = [
+    '# ECGAnalysisService.predict (services/ai/ecgAI.ts) ile ai-models/ekg_weights.json üzerinde hesaplandı.',
+    '# Üreten: node scripts/generate-ecg-parity-fixture.js',
+    '# name,p0..p4,x0..x179',
+  ];
+  fs.mkdirSync(path.dirname(output), { recursive: true });
+  fs.writeFileSync(output, header.concat(rows).join('\n') + '\n');
+  log(`${rows.length} pencere yazıldı: ${path.relative(root, output)}`);
+}
+
+main().catch(error => {
+  console.error('❌ Referans üretilemedi:', error);
+  process.exit(1);
+});
@@ -0,0 +1,93 @@
+#!/usr/bin/env python3
+"""
+QrsDetector'ın JVM testi (QrsDetectorReplayTest) için işaretli EKG kayıtları üretme.
+
+Her kayıt, R tepelerinin yeri bilinen sentetik bir şerittir: P-QRS-T dalgaları, solunumla
+değişen RR, erken (ektopik) ve geniş QRS'li vuruşlar, taban kayması, şebeke gürültüsü ve
+beyaz gürültü. Gürültü sabit tohumla üretilir, yani çıktı her çalıştırmada aynıdır.
+
+Kullanım (repo kökünden): python3 scripts/generate-qrs-fixtures.py
+Çıktı: modules/react-native-samsung-health/jvm/core/src/test/resources/qrs/<ad>.csv
+  '# sampleRate=<Hz>' ve '# rPeaks=<örnek indeksleri>' satırlarından sonra satır başına bir örnek (mV)
+"""
+import math
+import os
+import random
+
+OUTPUT_DIR = os.path.join(os.path.dirname(__file__), '..', 'modules', 'react-native-samsung-health',
+                          'jvm', 'core', 'src', 'test', 'resources', 'qrs')
+
+# (merkez saniye, genlik mV, genişlik saniye), R tepesine göre
+NORMAL_BEAT = [(-0.20, 0.12, 0.025), (-0.025, -0.10, 0.008), (0.0, 1.0, 0.010),
+               (0.030, -0.25, 0.010), (0.25, 0.30, 0.050)]
+# P dalgası yok, geniş QRS ve ters T (ventriküler vuruş benzeri)
+WIDE_BEAT = [(-0.04, -0.20, 0.020), (0.0, 1.1, 0.028), (0.07, -0.45, 0.030), (0.30, -0.35, 0.070)]
+
+
+def gaussian(t, center, amplitude, width):
+    d = (t - center) / width
+    return amplitude * math.exp(-0.5 * d * d)
+
+
+def strip(name, description, sample_rate, seconds, rr_at, special, seed, noise, wander, mains):
+    """rr_at(i, t): i. vuruştan sonraki RR (s); special: {vuruş: 'premature' | 'wide'}"""
+    rng = random.Random(seed)
+    beats = []
+    t = 0.6
+    i = 0
+    while t < seconds:
+        kind = special.get(i, 'normal')
+        beats.append((t, kind))
+        rr = rr_at(i, t)
+        if special.get(i + 1) == 'premature':
+            rr *= 0.62
+        elif kind == 'premature':
+            # Telafi edici duraklama
+            rr *= 1.38
+        t += rr
+        i += 1
+
+    n = int(seconds * sample_rate)
+    samples = []
+    for k in range(n):
+        ts = k / sample_rate
+        value = wander * math.sin(2 * math.pi * 0.3 * ts) + mains * math.sin(2 * math.pi * 50 * ts)
+        value += rng.gauss(0, noise)
+        for beat_time, kind in beats:
+            if abs(ts - beat_time) > 0.6:
+                continue
+            shape = WIDE_BEAT if kind == 'wide' else NORMAL_BEAT
+            for center, amplitude, width in shape:
+                value += gaussian(ts - beat_time, center, amplitude, width)
+        samples.append(value)
+
+    peaks = [round(bt * sample_rate) for bt, _ in beats]
+    os.makedirs(OUTPUT_DIR, exist_ok=True)
+    path = os.path.join(OUTPUT_DIR, name + '.csv')
+    with open(path, 'w') as out:
+        out.write('# ' + description + '\n')
+        out.write('# Üreten: python3 scripts/generate-qrs-fixtures.py\n')
+        out.write('# sampleRate=%d\n' % sample_rate)
+        out.write('# rPeaks=' + ','.join(str(p) for p in peaks) + '\n')
+        for value in samples:
+            out.write('%.4f\n' % value)
+    print('✅ %s: %d örnek, %d vuruş' % (os.path.relpath(path), n, len(peaks)))
+
+
+def main():
+    strip('resting-ectopics',
+          '~75 bpm, solunumla değişen RR, iki erken vuruş ve bir geniş QRS; taban kayması ve 50 Hz',
+          360, 40,
+          lambda i, t: 0.80 + 0.05 * math.sin(2 * math.pi * t / 4.0),
+          {12: 'premature', 20: 'wide', 33: 'premature'},
+          seed=100, noise=0.02, wander=0.15, mains=0.03)
+    strip('exercise-noisy',
+          '95 -> 150 bpm hızlanan ritim, daha güçlü gürültü ve taban kayması',
+          360, 40,
+          lambda i, t: 0.63 - 0.23 * min(1.0, t / 30.0),
+          {40: 'wide'},
+          seed=200, noise=0.04, wander=0.30, mains=0.05)
+
+
+if __name__ == '__main__':
+    main()
@@ -1,4 +1,3 @@
-import modelWeights from '../../ai-models/model_weights.json';
 import { CardioRiskInput, CardioRiskResult } from './cardioAI';
 
 /**
@@ -7,16 +6,34 @@ import { CardioRiskInput, CardioRiskResult } from './cardioAI';
  * Aktivasyon: ReLU (gizli katmanlar), Sigmoid (çıktı)
  */
 export class RealCardioAIService {
-  private weights: any;
-  private scaler: { mean: number[]; scale: number[] };
-
-  constructor() {
-    this.weights = modelWeights.weights;
-    this.scaler = modelWeights.scaler;
-    console.log('🧠 Gerçek AI Modeli yüklendi:', {
-      layers: Object.keys(this.weights).length,
-      scaler_features: this.scaler.mean.length
-    });
+  private model: { weights: any; scaler: { mean: number[]; scale: number[] } } | null = null;
+
+  // Ağırlık JSON'u ilk ekran açılırken değil, ilk tahminde (veya warmUp() ile) yüklenir
+  private get weights(): any {
+    return this.loadModel().weights;
+  }
+
+  private get scaler(): { mean: number[]; scale: number[] } {
+    return this.loadModel().scaler;
+  }
+
+  private loadModel() {
+    if (!this.model) {
+      const modelWeights = require('../../ai-models/model_weights.json');
+      this.model = { weights: modelWeights.weights, scaler: modelWeights.scaler };
+      console.log('🧠 Gerçek AI Modeli yüklendi:', {
+        layers: Object.keys(this.model.weights).length,
+        scaler_features: this.model.scaler.mean.length
+      });
+    }
+    return this.model;
+  }
+
+  /**
+   * Modeli ilk tahminden önce yükle, ör. ilk kare çizildikten sonra
+   */
+  warmUp(): void {
+    this.loadModel();
   }
 
   /**
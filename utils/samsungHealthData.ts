@@ -19,6 +19,32 @@ const MockSamsungHealthModule = {
   getTodayHeartRateData: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
   getTodayStepsData: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
   getTodaySpo2Data: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureEventStream: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  acknowledgeEventBatch: () => {},
+  getEventStats: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getAggregatedSeries: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getAggregatedSeriesColumnar: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getHistoricalSeriesColumnar: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureUploads: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  flushUploads: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getUploadQueueStats: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureSampling: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getSamplingRates: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureAlertRules: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  classifyEcgBatch: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  cancelEcgBatch: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureEcgFilters: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  preprocessEcg: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getMetrics: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureMetrics: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  configureResultCache: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  startRecording: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  stopRecording: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  startReplay: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  stopReplay: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  warmUp: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getReadiness: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
+  getSegments: () => Promise.resolve({ success: false, message: "Samsung Health not available on web" }),
 };
 
 const SamsungHealthModule = Platform.OS === 'web' ? MockSamsungHealthModule : NativeModules.SamsungHealthModule;
@@ -28,6 +54,16 @@ export interface SamsungHealthEcgData {
   timestamp: number;
   status: string;
   ecgData?: number[];
+  // Native EKG CNN output (Normal, Supraventricular, Ventricular, Fusion, Unknown)
+  probabilities?: number[];
+  predictedClass?: number;
+  className?: string;
+  confidence?: number;
+  // Beat index within the current streaming measurement
+  sequence?: number;
+  // From the native QRS detector; absent for the first beat
+  rrInterval?: number; // ms
+  heartRate?: number; // instantaneous, BPM
 }
 
 export interface SamsungHealthSpo2Data {
@@ -36,11 +72,24 @@ export interface SamsungHealthSpo2Data {
   oxygenSaturation?: number;
 }
 
+// Computed natively over the last ~300 beats; fields are omitted until there is enough data
+export interface SamsungHealthHrvMetrics {
+  beats: number;
+  meanIbi?: number; // ms
+  rmssd?: number; // ms
+  sdnn?: number; // ms
+  pnn50?: number; // %
+  lfPower?: number; // ms^2, 0.04-0.15 Hz
+  hfPower?: number; // ms^2, 0.15-0.40 Hz
+  lfHfRatio?: number;
+}
+
 export interface SamsungHealthHeartRateData {
   timestamp: number;
   heartRate?: number;
   status: string;
   ibiList?: number[];
+  hrv?: SamsungHealthHrvMetrics;
 }
 
 export interface SamsungHealthStepsData {
@@ -73,14 +122,407 @@ export interface SamsungHealthError {
   error: string;
 }
 
+// Native module coalesces events per stream and emits them in batches
+export interface SamsungHealthEventBatch<T> {
+  events: T[];
+  count: number;
+  sequence: number;
+}
+
+export type SamsungHealthOverflowPolicy = 'drop_oldest' | 'drop_newest' | 'latest_only' | 'downsample';
+
+export interface SamsungHealthEventStreamOptions {
+  maxBatchSize?: number;
+  maxDelayMs?: number;
+  maxPending?: number;
+  overflowPolicy?: SamsungHealthOverflowPolicy;
+  downsampleFactor?: number;
+  maxInFlight?: number;
+}
+
+export interface SamsungHealthEventStreamStats {
+  received: number;
+  emitted: number;
+  coalesced: number;
+  dropped: number;
+  batches: number;
+  pending: number;
+}
+
+// Native streaming alert rules, evaluated on every reading even while JS is suspended
+export type SamsungHealthAlertStream = 'heartRate' | 'spo2' | 'hrvRmssd' | 'hrvSdnn';
+export type SamsungHealthAlertKind = 'above' | 'below' | 'ewma_deviation' | 'cusum_high' | 'cusum_low';
+export type SamsungHealthAlertSeverity = 'info' | 'warning' | 'critical';
+
+export interface SamsungHealthAlertRule {
+  id: string;
+  stream: SamsungHealthAlertStream;
+  kind: SamsungHealthAlertKind;
+  threshold: number; // limit, max deviation (ewma_deviation) or CUSUM decision interval
+  alpha?: number; // EWMA weight, default 0.05
+  target?: number; // CUSUM reference; omit to learn the wearer's baseline
+  slack?: number; // CUSUM allowance per reading
+  sustainMs?: number; // condition must hold this long before raising
+  cooldownMs?: number; // default 10 minutes
+  severity?: SamsungHealthAlertSeverity;
+}
+
+export interface SamsungHealthAlertEvent {
+  ruleId: string;
+  stream: SamsungHealthAlertStream;
+  kind: SamsungHealthAlertKind;
+  severity: SamsungHealthAlertSeverity;
+  state: 'raised' | 'resolved';
+  threshold: number;
+  value: number;
+  timestamp: number;
+  since: number; // when the condition started holding
+}
+
+// Durable native upload of onHeartRateData / onSpo2Data / onEcgData events (gzip NDJSON POSTs)
+export interface SamsungHealthUploadOptions {
+  url: string;
+  maxBatchRecords?: number; // records per upload, default 256
+  maxBatchDelayMs?: number; // longest a record waits for a full batch, default 60000
+}
+
+export interface SamsungHealthUploadQueueStats {
+  pendingRecords: number;
+  diskBytes: number;
+  deliveredRecords: number;
+  deliveredChunks: number;
+  rejectedRecords: number;
+  droppedRecords: number; // oldest data evicted by the disk cap
+  failedAttempts: number;
+  consecutiveFailures: number;
+  nextRetryAt: number; // epoch ms, 0 when no retry is pending
+}
+
+// Native latency metrics: every bridge method, sensor stream, bridge emission and model inference
+export type SamsungHealthMetricsCategory = 'method' | 'stream' | 'bridge' | 'inference';
+
+export interface SamsungHealthLatencyStats {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+export interface SamsungHealthMetricsSnapshot {
+  enabled: boolean;
+  tracing: boolean;
+  timers: Partial<Record<SamsungHealthMetricsCategory, Record<string, SamsungHealthLatencyStats>>>;
+  counters: Record<string, number>;
+}
+
+export interface SamsungHealthMetricsOptions {
+  enabled?: boolean;
+  tracing?: boolean; // Android Trace sections, visible in systrace / Perfetto
+  reset?: boolean;
+}
+
+// Native cache of today/historical query results; live readings invalidate overlapping ranges
+export interface SamsungHealthResultCacheOptions {
+  enabled?: boolean;
+  maxEntries?: number; // default 64, least recently used evicted first
+  ttlMs?: Record<string, number>; // per metric; 0 stops caching it
+  clear?: boolean;
+}
+
+export interface SamsungHealthResultCacheStats {
+  size: number;
+  hits: number;
+  misses: number;
+  coalesced: number; // served by an identical request already in flight
+  invalidations: number;
+  evictions: number;
+}
+
+// Adaptive polling of tracked metrics: fast while readings are abnormal or moving, slow while stable
+export type SamsungHealthSamplingProfile = 'balanced' | 'cardiac' | 'active' | 'fixed';
+
+export interface SamsungHealthSamplingOptions {
+  profile?: SamsungHealthSamplingProfile; // default 'balanced'
+  periodMs?: number; // 'fixed' only; defaults to the sensor's own period
+  minPeriodMs?: number;
+  maxPeriodMs?: number;
+  low?: number; // readings outside [low, high] poll at minPeriodMs
+  high?: number;
+  changeThreshold?: number; // jump from the recent level that counts as a fast change
+  stableReadings?: number; // unremarkable readings before the period grows
+  backoffFactor?: number;
+}
+
+export interface SamsungHealthSamplingRate {
+  profile: SamsungHealthSamplingProfile;
+  currentPeriodMs: number;
+  nominalPeriodMs: number;
+  readingsPerMinute: number;
+  nominalReadingsPerMinute: number;
+  readings: number;
+  abnormalReadings: number;
+  rapidChanges: number;
+}
+
+// Pre-aggregated summaries maintained by the native time-series store
+export type SamsungHealthMetric = 'heartRate' | 'steps' | 'sleep' | 'spo2';
+
+// Bucket width: a named rollup, 'auto' (picked from the range) or milliseconds (multiple of one minute)
+export type SamsungHealthResolution = 'minute' | 'hour' | 'day' | 'auto' | number;
+
+export interface SamsungHealthAggregateBucket {
+  timestamp: number; // bucket start
+  count: number;
+  min: number;
+  max: number;
+  mean: number;
+  variance: number;
+}
+
+export interface SamsungHealthAggregatedSeries {
+  metric: SamsungHealthMetric;
+  resolution: number; // ms
+  data: SamsungHealthAggregateBucket[];
+}
+
+const RESOLUTION_MILLIS: Record<string, number> = {
+  minute: 60 * 1000,
+  hour: 60 * 60 * 1000,
+  day: 24 * 60 * 60 * 1000,
+  auto: 0,
+};
+
+// Bulk results packed by the native ColumnarEncoder: one typed array per column
+export type SamsungHealthColumn = Float64Array | Int32Array | Float32Array;
+
+export interface SamsungHealthColumnarPayload {
+  rowCount: number;
+  columns: Record<string, SamsungHealthColumn>;
+}
+
+const COLUMNAR_MAGIC = 0x4243444d; // "MDCB"
+const COLUMN_TIMESTAMP_DELTA = 1;
+const COLUMN_INT32 = 2;
+const COLUMN_FLOAT32 = 3;
+const COLUMN_FLOAT64 = 4;
+
+const BASE64_ALPHABET = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+const BASE64_LOOKUP = (() => {
+  const table = new Uint8Array(128);
+  for (let i = 0; i < BASE64_ALPHABET.length; i++) {
+    table[BASE64_ALPHABET.charCodeAt(i)] = i;
+  }
+  return table;
+})();
+
+function base64ToBytes(base64: string): Uint8Array {
+  const padding = base64.endsWith('==') ? 2 : base64.endsWith('=') ? 1 : 0;
+  const bytes = new Uint8Array((base64.length * 3) / 4 - padding);
+  let out = 0;
+  for (let i = 0; i < base64.length; i += 4) {
+    const chunk =
+      (BASE64_LOOKUP[base64.charCodeAt(i)] << 18) |
+      (BASE64_LOOKUP[base64.charCodeAt(i + 1)] << 12) |
+      (BASE64_LOOKUP[base64.charCodeAt(i + 2)] << 6) |
+      BASE64_LOOKUP[base64.charCodeAt(i + 3)];
+    bytes[out++] = chunk >> 16;
+    if (out < bytes.length) bytes[out++] = (chunk >> 8) & 0xff;
+    if (out < bytes.length) bytes[out++] = chunk & 0xff;
+  }
+  return bytes;
+}
+
+function bytesToBase64(bytes: Uint8Array): string {
+  const parts: string[] = [];
+  for (let i = 0; i < bytes.length; i += 3) {
+    const chunk =
+      (bytes[i] << 16) | (i + 1 < bytes.length ? bytes[i + 1] << 8 : 0) | (i + 2 < bytes.length ? bytes[i + 2] : 0);
+    parts.push(
+      BASE64_ALPHABET[chunk >> 18] +
+        BASE64_ALPHABET[(chunk >> 12) & 63] +
+        (i + 1 < bytes.length ? BASE64_ALPHABET[(chunk >> 6) & 63] : '=') +
+        (i + 2 < bytes.length ? BASE64_ALPHABET[chunk & 63] : '=')
+    );
+  }
+  return parts.join('');
+}
+
+/**
+ * Decode a columnar payload. Fixed-width columns are views over the decoded buffer;
+ * timestamp columns are rebuilt from their zigzag varint deltas.
+ */
+export function decodeColumnarPayload(base64: string): SamsungHealthColumnarPayload {
+  const bytes = base64ToBytes(base64);
+  const view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+  if (bytes.byteLength < 12 || view.getUint32(0, true) !== COLUMNAR_MAGIC) {
+    throw new Error('Invalid columnar payload');
+  }
+  const columnCount = view.getUint16(6, true);
+  const rowCount = view.getUint32(8, true);
+  const columns: Record<string, SamsungHealthColumn> = {};
+
+  let offset = 12;
+  for (let c = 0; c < columnCount; c++) {
+    const type = bytes[offset];
+    const nameLength = bytes[offset + 1];
+    let name = '';
+    for (let i = 0; i < nameLength; i++) {
+      name += String.fromCharCode(bytes[offset + 2 + i]);
+    }
+    offset += 2 + nameLength;
+    offset += (8 - ((offset + 4) % 8)) % 8;
+    const byteLength = view.getUint32(offset, true);
+    offset += 4;
+
+    switch (type) {
+      case COLUMN_TIMESTAMP_DELTA: {
+        const timestamps = new Float64Array(rowCount);
+        let position = offset;
+        let previous = 0;
+        for (let row = 0; row < rowCount; row++) {
+          let zigzag = 0;
+          let scale = 1;
+          let b: number;
+          do {
+            b = bytes[position++];
+            zigzag += (b & 0x7f) * scale;
+            scale *= 128;
+          } while (b & 0x80);
+          previous += zigzag % 2 === 0 ? zigzag / 2 : -(zigzag + 1) / 2;
+          timestamps[row] = previous;
+        }
+        columns[name] = timestamps;
+        break;
+      }
+      case COLUMN_INT32:
+        columns[name] = new Int32Array(bytes.buffer, bytes.byteOffset + offset, rowCount);
+        break;
+      case COLUMN_FLOAT32:
+        columns[name] = new Float32Array(bytes.buffer, bytes.byteOffset + offset, rowCount);
+        break;
+      case COLUMN_FLOAT64:
+        columns[name] = new Float64Array(bytes.buffer, bytes.byteOffset + offset, rowCount);
+        break;
+      default:
+        throw new Error('Unknown column type ' + type);
+    }
+    offset += byteLength;
+  }
+  return { rowCount, columns };
+}
+
 // Event Types
+// 'int8' needs the quantized model, shipped only when the app builds with -PsamsungHealth.int8EcgModel=true
+export type SamsungHealthEcgEngine = 'float' | 'int8';
+
+// Whole-recording ECG classification (e.g. a Holter day), run natively across the big cores
+export interface SamsungHealthEcgBatchOptions {
+  includeProbabilities?: boolean; // one probability column per class (probability0, probability1, ...)
+  engine?: SamsungHealthEcgEngine; // default 'float'
+}
+
+export interface SamsungHealthEcgBatchResult extends SamsungHealthColumnarPayload {
+  classNames: string[];
+  elapsedMs: number;
+  parallelism: number;
+}
+
+// Native ECG cleanup: baseline-wander high-pass and powerline notch; 0 turns a filter off
+export interface SamsungHealthEcgFilterOptions {
+  highPassHz?: number; // default 0.5
+  notchHz?: number; // default 50; 60 in the Americas
+}
+
+export interface SamsungHealthEcgConfigureOptions extends SamsungHealthEcgFilterOptions {
+  engine?: SamsungHealthEcgEngine; // model of the live stream, default 'float'
+}
+
+export interface SamsungHealthEcgPreprocessOptions extends SamsungHealthEcgFilterOptions {
+  windowLength?: number; // samples per window; default the whole signal
+  normalize?: boolean; // apply the model's scaler, default true; leave off for classifyEcgBatch
+}
+
+export interface SamsungHealthEcgPreprocessResult {
+  windows: Float32Array; // windowCount windows of inputLength samples, back to back
+  windowCount: number;
+  inputLength: number;
+}
+
+// Native session recordings (every live reading plus raw ECG) for replay in soak and regression runs
+export interface SamsungHealthRecordingResult {
+  path: string;
+  bytes: number;
+  records: number; // readings and ECG runs
+}
+
+export interface SamsungHealthReplayResult {
+  streams: string[]; // recorded metrics, plus 'ecg'
+  durationMs: number;
+}
+
+export const SAMSUNG_HEALTH_REPLAY_AS_FAST_AS_POSSIBLE = 0;
+
+// Native startup: phases deferred from app start, timed from the module's construction
+export type SamsungHealthStartupPhaseName =
+  | 'construct'
+  | 'runtime' // scheduler and session, on first use
+  | 'service' // SDK binding, on the first connectService()
+  | 'firstFrame' // when warmUp() was called
+  | 'history' // today's results into the cache
+  | 'model'; // EKG model mapped and run once
+
+export interface SamsungHealthStartupPhase {
+  name: SamsungHealthStartupPhaseName;
+  state: 'pending' | 'running' | 'ready' | 'failed';
+  startMs: number; // -1 until started
+  durationMs: number; // -1 until finished
+  error?: string;
+}
+
+export interface SamsungHealthReadiness {
+  ready: boolean; // history and model warmed (or failed)
+  progress: number; // 0-1, share of phases finished
+  uptimeMs: number;
+  constructedAfterProcessMs: number; // process start to module construction, -1 if unknown
+  phases: SamsungHealthStartupPhase[];
+}
+
+// Native sleep-stage and activity segmentation of the live heart rate, HRV and step streams
+export type SamsungHealthSegmentTrack = 'activity' | 'sleep';
+
+export type SamsungHealthActivityLabel = 'sedentary' | 'light' | 'moderate' | 'vigorous' | 'asleep';
+
+export type SamsungHealthSleepStage = 'awake' | 'light' | 'deep' | 'rem';
+
+export interface SamsungHealthSegment {
+  start: number;
+  end: number;
+  label: SamsungHealthActivityLabel | SamsungHealthSleepStage;
+  minutes: number; // minutes with data, less than end - start across gaps
+  meanHeartRate?: number;
+  meanRmssd?: number; // ms
+  steps?: number; // absent without a step stream
+  ongoing: boolean; // still open; may grow or change label
+}
+
+export interface SamsungHealthSegments {
+  track: SamsungHealthSegmentTrack;
+  data: SamsungHealthSegment[];
+  totals: Record<string, number>; // minutes per label within the range
+  labelledUntil: number; // later minutes wait for ~20 minutes of lookahead; -1 before any data
+}
+
 export type SamsungHealthEventType = 
   | 'onEcgData'
   | 'onEcgError'
   | 'onSpo2Data'
   | 'onSpo2Error'
   | 'onHeartRateData'
-  | 'onHeartRateError';
+  | 'onHeartRateError'
+  | 'onHealthAlert';
 
 // Samsung Health SDK Status Constants
 export const SAMSUNG_HEALTH_CONSTANTS = {
@@ -227,7 +669,20 @@ export class SamsungHealthService {
     eventType: SamsungHealthEventType,
     listener: (data: T) => void
   ): EmitterSubscription {
-    const subscription = this.eventEmitter.addListener(eventType, listener);
+    // Unpack native batches and acknowledge them so the native side can apply backpressure
+    const subscription = this.eventEmitter.addListener(eventType, (payload: SamsungHealthEventBatch<T> | T) => {
+      const batch = payload as SamsungHealthEventBatch<T>;
+      if (batch && Array.isArray(batch.events)) {
+        try {
+          batch.events.forEach(event => listener(event));
+        } finally {
+          // A throwing listener must not leave the native stream waiting out its ack timeout
+          SamsungHealthModule.acknowledgeEventBatch(eventType, batch.sequence);
+        }
+      } else {
+        listener(payload as T);
+      }
+    });
     
     // Store subscription for cleanup
     if (!this.eventListeners.has(eventType)) {
@@ -287,13 +742,182 @@ export class SamsungHealthService {
       this.eventListeners.clear();
       
       // Remove all listeners from the native event emitter
-      const eventTypes: SamsungHealthEventType[] = ['onEcgData', 'onEcgError', 'onSpo2Data', 'onSpo2Error', 'onHeartRateData', 'onHeartRateError'];
+      const eventTypes: SamsungHealthEventType[] = ['onEcgData', 'onEcgError', 'onSpo2Data', 'onSpo2Error', 'onHeartRateData', 'onHeartRateError', 'onHealthAlert'];
       eventTypes.forEach(eventType => {
         this.eventEmitter.removeAllListeners(eventType);
       });
     }
   }
 
+  /**
+   * Configure batching and backpressure for a native event stream
+   */
+  async configureEventStream(eventType: SamsungHealthEventType, options: SamsungHealthEventStreamOptions): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureEventStream(eventType, options);
+      console.log('Event stream configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure event stream:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Get per-stream emitted / coalesced / dropped event counters
+   */
+  async getEventStats(): Promise<Record<string, SamsungHealthEventStreamStats>> {
+    try {
+      const result = await SamsungHealthModule.getEventStats();
+      if (result.success) {
+        return result.data || {};
+      } else {
+        throw new Error(result.message || 'Failed to get event stats');
+      }
+    } catch (error) {
+      console.error('Failed to get event stats:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Replace the native alert rules (defaults: high/low heart rate, low SpO2, rising heart rate)
+   */
+  async configureAlertRules(rules: SamsungHealthAlertRule[]): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureAlertRules(rules);
+      console.log('Alert rules configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure alert rules:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Set how often a tracked metric is polled; applies to a running tracker at once
+   */
+  async configureSampling(metric: SamsungHealthMetric, options: SamsungHealthSamplingOptions): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureSampling(metric, options);
+      console.log('Sampling configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure sampling:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Effective vs nominal polling rate of every tracked metric
+   */
+  async getSamplingRates(): Promise<Partial<Record<SamsungHealthMetric, SamsungHealthSamplingRate>>> {
+    try {
+      const result = await SamsungHealthModule.getSamplingRates();
+      if (result.success) {
+        return result.data || {};
+      } else {
+        throw new Error(result.message || 'Failed to get sampling rates');
+      }
+    } catch (error) {
+      console.error('Failed to get sampling rates:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Latency percentiles of the native hot paths, to find the slow calls
+   */
+  async getMetrics(): Promise<SamsungHealthMetricsSnapshot> {
+    try {
+      const result = await SamsungHealthModule.getMetrics();
+      if (result.success) {
+        return {
+          enabled: result.enabled,
+          tracing: result.tracing,
+          timers: result.timers || {},
+          counters: result.counters || {},
+        };
+      } else {
+        throw new Error(result.message || 'Failed to get metrics');
+      }
+    } catch (error) {
+      console.error('Failed to get metrics:', error);
+      throw error;
+    }
+  }
+
+  async configureMetrics(options: SamsungHealthMetricsOptions): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureMetrics(options);
+      console.log('Metrics configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure metrics:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Tune or clear the native result cache; pass `{}` just to read its counters
+   */
+  async configureResultCache(options: SamsungHealthResultCacheOptions): Promise<SamsungHealthResultCacheStats> {
+    try {
+      const result = await SamsungHealthModule.configureResultCache(options);
+      if (result.success) {
+        return {
+          size: result.size,
+          hits: result.hits,
+          misses: result.misses,
+          coalesced: result.coalesced,
+          invalidations: result.invalidations,
+          evictions: result.evictions,
+        };
+      } else {
+        throw new Error(result.message || 'Failed to configure result cache');
+      }
+    } catch (error) {
+      console.error('Failed to configure result cache:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Queue live events on disk and upload them to `options.url`; survives the app being killed.
+   * Call on every launch: records left by a previous run are uploaded once this is configured.
+   */
+  async configureUploads(options: SamsungHealthUploadOptions): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureUploads(options);
+      console.log('Uploads configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure uploads:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Upload everything queued now instead of waiting for a full batch
+   */
+  async flushUploads(): Promise<void> {
+    try {
+      await SamsungHealthModule.flushUploads();
+    } catch (error) {
+      console.error('Failed to flush uploads:', error);
+      throw error;
+    }
+  }
+
+  async getUploadQueueStats(): Promise<SamsungHealthUploadQueueStats> {
+    try {
+      const result = await SamsungHealthModule.getUploadQueueStats();
+      if (result.success) {
+        return result.data;
+      } else {
+        throw new Error(result.message || 'Failed to get upload queue stats');
+      }
+    } catch (error) {
+      console.error('Failed to get upload queue stats:', error);
+      throw error;
+    }
+  }
+
   /**
    * Disconnect from Samsung Health Service
    */
@@ -473,6 +1097,325 @@ export class SamsungHealthService {
     }
   }
 
+  /**
+   * Get min / max / mean / count / variance per bucket instead of raw samples
+   */
+  async getAggregatedSeries(
+    metric: SamsungHealthMetric,
+    startDate: Date,
+    endDate: Date,
+    resolution: SamsungHealthResolution = 'auto'
+  ): Promise<SamsungHealthAggregatedSeries> {
+    try {
+      if (!this.isConnected) {
+        throw new Error('Samsung Health service not connected');
+      }
+
+      const resolutionMs = typeof resolution === 'number' ? resolution : RESOLUTION_MILLIS[resolution];
+      const result = await SamsungHealthModule.getAggregatedSeries(
+        metric,
+        startDate.getTime(),
+        endDate.getTime(),
+        resolutionMs
+      );
+
+      if (result.success) {
+        return {
+          metric,
+          resolution: result.resolution,
+          data: result.data || []
+        };
+      } else {
+        throw new Error(result.message || 'Failed to get aggregated series');
+      }
+    } catch (error) {
+      console.error('Failed to get aggregated series:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Get raw samples of one metric as typed arrays (timestamp, value) in a single bridge payload
+   */
+  async getHistoricalSeriesColumns(
+    metric: SamsungHealthMetric,
+    startDate: Date,
+    endDate: Date
+  ): Promise<SamsungHealthColumnarPayload> {
+    try {
+      if (!this.isConnected) {
+        throw new Error('Samsung Health service not connected');
+      }
+
+      const result = await SamsungHealthModule.getHistoricalSeriesColumnar(
+        metric,
+        startDate.getTime(),
+        endDate.getTime()
+      );
+
+      if (result.success) {
+        return decodeColumnarPayload(result.payload);
+      } else {
+        throw new Error(result.message || 'Failed to get columnar historical data');
+      }
+    } catch (error) {
+      console.error('Failed to get columnar historical data:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Same buckets as getAggregatedSeries, as typed arrays
+   * (timestamp, count, min, max, mean, variance)
+   */
+  async getAggregatedSeriesColumns(
+    metric: SamsungHealthMetric,
+    startDate: Date,
+    endDate: Date,
+    resolution: SamsungHealthResolution = 'auto'
+  ): Promise<SamsungHealthColumnarPayload & { resolution: number }> {
+    try {
+      if (!this.isConnected) {
+        throw new Error('Samsung Health service not connected');
+      }
+
+      const resolutionMs = typeof resolution === 'number' ? resolution : RESOLUTION_MILLIS[resolution];
+      const result = await SamsungHealthModule.getAggregatedSeriesColumnar(
+        metric,
+        startDate.getTime(),
+        endDate.getTime(),
+        resolutionMs
+      );
+
+      if (result.success) {
+        return { ...decodeColumnarPayload(result.payload), resolution: result.resolution };
+      } else {
+        throw new Error(result.message || 'Failed to get columnar aggregated series');
+      }
+    } catch (error) {
+      console.error('Failed to get columnar aggregated series:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Classify beat windows of the model's input length in one native batch. Columns:
+   * predictedClass, confidence and, if requested, a probability column per class.
+   * Rejects with ECG_BATCH_CANCELLED when cancelEcgBatch(batchId) is called first.
+   */
+  async classifyEcgBatch(
+    batchId: string,
+    windows: Float32Array[] | Float32Array,
+    options: SamsungHealthEcgBatchOptions = {}
+  ): Promise<SamsungHealthEcgBatchResult> {
+    try {
+      let samples: Float32Array;
+      if (Array.isArray(windows)) {
+        const windowLength = windows.length > 0 ? windows[0].length : 0;
+        samples = new Float32Array(windows.length * windowLength);
+        windows.forEach((window, i) => samples.set(window, i * windowLength));
+      } else {
+        samples = windows;
+      }
+      // Float32 little-endian, which is what typed arrays hold on every platform React Native runs on
+      const bytes = new Uint8Array(samples.buffer, samples.byteOffset, samples.byteLength);
+      const result = await SamsungHealthModule.classifyEcgBatch(batchId, bytesToBase64(bytes), options);
+
+      if (result.success) {
+        return {
+          ...decodeColumnarPayload(result.payload),
+          classNames: result.classNames,
+          elapsedMs: result.elapsedMs,
+          parallelism: result.parallelism,
+        };
+      } else {
+        throw new Error(result.message || 'Failed to classify ECG batch');
+      }
+    } catch (error) {
+      console.error('Failed to classify ECG batch:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Set the filters and model of the live ECG stream; applies from the next startEcgMeasurement()
+   */
+  async configureEcgFilters(options: SamsungHealthEcgConfigureOptions): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.configureEcgFilters(options);
+      console.log('ECG filters configured:', result.message);
+    } catch (error) {
+      console.error('Failed to configure ECG filters:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Filter, resample to the model's input length and normalize raw ECG natively, instead of
+   * normalizing number arrays in JS
+   */
+  async preprocessEcg(
+    signal: Float32Array,
+    sampleRate: number,
+    options: SamsungHealthEcgPreprocessOptions = {}
+  ): Promise<SamsungHealthEcgPreprocessResult> {
+    try {
+      const bytes = new Uint8Array(signal.buffer, signal.byteOffset, signal.byteLength);
+      const result = await SamsungHealthModule.preprocessEcg(bytesToBase64(bytes), sampleRate, options);
+
+      if (result.success) {
+        const windowBytes = base64ToBytes(result.windows);
+        return {
+          windows: new Float32Array(windowBytes.buffer, windowBytes.byteOffset, windowBytes.byteLength / 4),
+          windowCount: result.windowCount,
+          inputLength: result.inputLength,
+        };
+      } else {
+        throw new Error(result.message || 'Failed to preprocess ECG');
+      }
+    } catch (error) {
+      console.error('Failed to preprocess ECG:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Start the native warm-up (today's results, EKG model) deferred from app start; call it
+   * once the first frame is drawn
+   */
+  async warmUp(): Promise<void> {
+    try {
+      await SamsungHealthModule.warmUp();
+    } catch (error) {
+      console.error('Failed to start warm-up:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Native startup progress and per-phase timings
+   */
+  async getReadiness(): Promise<SamsungHealthReadiness> {
+    try {
+      const result = await SamsungHealthModule.getReadiness();
+      if (result.success) {
+        return {
+          ready: result.ready,
+          progress: result.progress,
+          uptimeMs: result.uptimeMs,
+          constructedAfterProcessMs: result.constructedAfterProcessMs,
+          phases: result.phases,
+        };
+      } else {
+        throw new Error(result.message || 'Failed to get readiness');
+      }
+    } catch (error) {
+      console.error('Failed to get readiness:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Get precomputed sleep stages or activity bouts for a range, segmented natively as data arrives
+   */
+  async getSegments(
+    track: SamsungHealthSegmentTrack,
+    startDate: Date,
+    endDate: Date
+  ): Promise<SamsungHealthSegments> {
+    try {
+      if (!this.isConnected) {
+        throw new Error('Samsung Health service not connected');
+      }
+
+      const result = await SamsungHealthModule.getSegments(track, startDate.getTime(), endDate.getTime());
+
+      if (result.success) {
+        return {
+          track,
+          data: result.data || [],
+          totals: result.totals || {},
+          labelledUntil: result.labelledUntil,
+        };
+      } else {
+        throw new Error(result.message || 'Failed to get segments');
+      }
+    } catch (error) {
+      console.error('Failed to get segments:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Record every live reading and the raw ECG natively under `name`, until stopRecording()
+   */
+  async startRecording(name: string): Promise<void> {
+    try {
+      const result = await SamsungHealthModule.startRecording(name);
+      console.log('Recording started:', result.message);
+    } catch (error) {
+      console.error('Failed to start recording:', error);
+      throw error;
+    }
+  }
+
+  async stopRecording(): Promise<SamsungHealthRecordingResult> {
+    try {
+      const result = await SamsungHealthModule.stopRecording();
+      if (!result.success) {
+        console.warn(result.message);
+      }
+      return { path: result.path, bytes: result.bytes, records: result.records };
+    } catch (error) {
+      console.error('Failed to stop recording:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Serve a recording instead of the sensors from the next start of each stream, at `speed`
+   * times real time (SAMSUNG_HEALTH_REPLAY_AS_FAST_AS_POSSIBLE to run it flat out)
+   */
+  async startReplay(name: string, speed: number = 1): Promise<SamsungHealthReplayResult> {
+    try {
+      const result = await SamsungHealthModule.startReplay(name, speed);
+      if (result.success) {
+        return { streams: result.streams, durationMs: result.durationMs };
+      } else {
+        throw new Error(result.message || 'Failed to start replay');
+      }
+    } catch (error) {
+      console.error('Failed to start replay:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Go back to the sensors; resolves with whether the whole recording was played
+   */
+  async stopReplay(): Promise<boolean> {
+    try {
+      const result = await SamsungHealthModule.stopReplay();
+      return result.finished === true;
+    } catch (error) {
+      console.error('Failed to stop replay:', error);
+      throw error;
+    }
+  }
+
+  /**
+   * Stop a running ECG batch, e.g. when the screen that asked for it closes
+   */
+  async cancelEcgBatch(batchId: string): Promise<boolean> {
+    try {
+      const result = await SamsungHealthModule.cancelEcgBatch(batchId);
+      return result.cancelled === true;
+    } catch (error) {
+      console.error('Failed to cancel ECG batch:', error);
+      throw error;
+    }
+  }
+
   /**
    * Get all historical data at once
    */